@@ -0,0 +1,178 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.icthh.xm.ms.entity.domain.Attachment;
+import com.icthh.xm.ms.entity.domain.Comment;
+import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.XmEntityRepository;
+import com.icthh.xm.ms.entity.service.dto.AttachmentExportDto;
+import com.icthh.xm.ms.entity.service.dto.CommentExportDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+
+/**
+ * Import of entities with attachments and comment chains: former in memory matching (linear content lookup
+ * per attachment, comment levels re-filtered after every level) against {@link EntityImportSession}.
+ * Persistence is stubbed, so the score shows how import cost grows with the number of rows, e.g.
+ * {@code ./gradlew jmh -PjmhInclude="EntityImportSessionBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityImportSessionBenchmark {
+
+    private static final int COMMENT_TREE_DEPTH = 10;
+
+    @Param({"1000", "5000", "20000"})
+    private int rows;
+
+    private XmEntityRepository entityRepository;
+    private EntityManager entityManager;
+    private ContentService contentService;
+    private long sequence;
+
+    private List<XmEntity> entities;
+    private List<Content> contents;
+    private List<AttachmentExportDto> attachments;
+    private List<CommentExportDto> comments;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setupPersistence() {
+        entityRepository = mock(XmEntityRepository.class, withSettings().stubOnly());
+        entityManager = mock(EntityManager.class, withSettings().stubOnly());
+        contentService = mock(ContentService.class, withSettings().stubOnly());
+        when(entityRepository.save(any(XmEntity.class))).then(invocation -> {
+            XmEntity entity = invocation.getArgument(0);
+            entity.setId(++sequence);
+            return entity;
+        });
+        doAnswer(invocation -> {
+            ReflectionTestUtils.setField(invocation.getArgument(0), "id", ++sequence);
+            return null;
+        }).when(entityManager).persist(any());
+        when(entityManager.getReference(any(Class.class), anyLong())).then(invocation -> {
+            Object reference = invocation.<Class<?>>getArgument(0).getDeclaredConstructor().newInstance();
+            ReflectionTestUtils.setField(reference, "id", invocation.getArgument(1));
+            return reference;
+        });
+    }
+
+    /**
+     * Import mutates values, so every invocation gets fresh ones.
+     */
+    @Setup(Level.Invocation)
+    public void setupValues() {
+        entities = new ArrayList<>(rows);
+        contents = new ArrayList<>(rows);
+        attachments = new ArrayList<>(rows);
+        comments = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            XmEntity entity = new XmEntity();
+            entity.setId(id);
+            entities.add(entity);
+
+            Content content = new Content();
+            content.setId(id);
+            content.setValue(Long.toString(id).getBytes());
+            contents.add(content);
+
+            AttachmentExportDto attachment = new AttachmentExportDto();
+            attachment.setId(id);
+            attachment.setEntityId(id);
+            attachment.setContentId(rows - id + 1);
+            attachments.add(attachment);
+        }
+        // chains of comments, replies come before the comment they answer
+        for (long id = rows; id >= 1; id--) {
+            CommentExportDto comment = new CommentExportDto();
+            comment.setId(id);
+            comment.setEntityId(id);
+            comment.setCommentId(id % COMMENT_TREE_DEPTH == 1 ? null : id - 1);
+            comments.add(comment);
+        }
+    }
+
+    @Benchmark
+    public long importSession() {
+        EntityImportSession session = new EntityImportSession(entityRepository, entityManager, contentService);
+        session.importSection(EntityImportSession.ENTITIES, entities.iterator());
+        session.importSection(EntityImportSession.CONTENTS, contents.iterator());
+        session.importSection(EntityImportSession.ATTACHMENTS, attachments.iterator());
+        session.importSection(EntityImportSession.COMMENTS, comments.iterator());
+        session.finish();
+        return session.getImported();
+    }
+
+    @Benchmark
+    public long formerImport() {
+        Map<Long, XmEntity> savedEntities = new HashMap<>();
+        entities.forEach(entity -> {
+            Long oldId = entity.getId();
+            entity.setId(null);
+            savedEntities.put(oldId, entityRepository.save(entity));
+        });
+
+        List<Attachment> savedAttachments = new ArrayList<>();
+        attachments.forEach(attachmentExportDto -> {
+            Optional<Content> content = contents.stream()
+                .filter(cont -> Objects.equals(cont.getId(), attachmentExportDto.getContentId()))
+                .findFirst();
+            XmEntity entity = savedEntities.get(attachmentExportDto.getEntityId());
+            if (content.isPresent() && entity != null) {
+                savedAttachments.add(attachmentExportDto.toAttachment(content.get(), entity));
+            }
+        });
+
+        Map<Long, Comment> savedComments = new HashMap<>();
+        List<CommentExportDto> pending = new ArrayList<>(comments);
+        while (!pending.isEmpty()) {
+            List<CommentExportDto> level = pending.stream()
+                .filter(comment -> comment.getCommentId() == null
+                                   || savedComments.containsKey(comment.getCommentId()))
+                .collect(Collectors.toList());
+            if (level.isEmpty()) {
+                break;
+            }
+            level.forEach(commentExportDto -> {
+                Long oldId = commentExportDto.getId();
+                Comment parent = savedComments.get(commentExportDto.getCommentId());
+                XmEntity entity = savedEntities.get(commentExportDto.getEntityId());
+                savedComments.put(oldId, commentExportDto.toComment(entity, parent));
+                pending.remove(commentExportDto);
+            });
+        }
+        return savedEntities.size() + savedAttachments.size() + savedComments.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.JsonValidation.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity data validation: former string round trip with the schema compiled on every call against
+ * {@link JsonValidationService} with both engines. Run with
+ * {@code ./gradlew jmh -PjmhInclude="JsonValidationServiceBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonValidationServiceBenchmark {
+
+    private static final String SCHEMA = "{\"type\": \"object\", \"properties\": {"
+        + "\"name\": {\"type\": \"string\", \"maxLength\": 100},"
+        + "\"count\": {\"type\": \"integer\", \"minimum\": 0},"
+        + "\"tags\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}},"
+        + "\"items\": {\"type\": \"array\", \"items\": {\"type\": \"object\", \"properties\": {"
+        + "\"id\": {\"type\": \"integer\"},"
+        + "\"title\": {\"type\": \"string\", \"pattern\": \"^item-[0-9]+$\"},"
+        + "\"price\": {\"type\": \"number\", \"minimum\": 0}},"
+        + "\"required\": [\"id\", \"title\"]}}},"
+        + "\"required\": [\"name\"]}";
+
+    /**
+     * Number of nested items in data: small, medium and large payload.
+     */
+    @Param({"1", "50", "2000"})
+    private int items;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonSchemaFactory factory = JsonSchemaFactory.byDefault();
+    private JsonValidationService fgeService;
+    private JsonValidationService networkntService;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        fgeService = service(Engine.FGE);
+        networkntService = service(Engine.NETWORKNT);
+
+        data = new LinkedHashMap<>();
+        data.put("name", "benchmark");
+        data.put("count", items);
+        data.put("tags", List.of("a", "b", "c"));
+        List<Map<String, Object>> values = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", i);
+            item.put("title", "item-" + i);
+            item.put("price", i * 1.5);
+            values.add(item);
+        }
+        data.put("items", values);
+    }
+
+    @Benchmark
+    public boolean formerValidation() throws Exception {
+        String stringData = objectMapper.writeValueAsString(data);
+        ProcessingReport report = factory.getJsonSchema(JsonLoader.fromString(SCHEMA))
+                                         .validate(JsonLoader.fromString(stringData));
+        return report.isSuccess();
+    }
+
+    @Benchmark
+    public boolean fgeCompiled() {
+        return fgeService.validateJson(data, SCHEMA).isSuccess();
+    }
+
+    @Benchmark
+    public boolean networkntCompiled() {
+        return networkntService.validateJson(data, SCHEMA).isSuccess();
+    }
+
+    private JsonValidationService service(Engine engine) {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getJsonValidation().setEngine(engine);
+        return new JsonValidationService(objectMapper, properties);
+    }
+}
@@ -0,0 +1,85 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.icthh.xm.ms.entity.domain.spec.FunctionSpec;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per call cost of permission filtered TypeSpec: clone and filter on every call (former behaviour)
+ * against cached view lookup. Run with {@code -prof gc} to compare allocation rate, e.g.
+ * {@code ./gradlew jmh -PjmhInclude="PermittedTypeSpecViewsBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermittedTypeSpecViewsBenchmark {
+
+    private static final String TENANT = "XM";
+    private static final String ROLE = "ROLE_USER";
+
+    @Param({"10", "100"})
+    private int functionCount;
+
+    private TypeSpec spec;
+    private TypeSpecIndex index;
+    private Set<String> permissions;
+    private PermittedTypeSpecViews views;
+
+    @Setup
+    public void setup() {
+        List<FunctionSpec> functions = new ArrayList<>();
+        Set<String> permitted = new HashSet<>();
+        for (int i = 0; i < functionCount; i++) {
+            FunctionSpec function = new FunctionSpec();
+            function.setKey("FUNCTION" + i);
+            functions.add(function);
+            if (i % 2 == 0) {
+                permitted.add(function.getDynamicPrivilegeKey());
+            }
+        }
+        spec = TypeSpec.builder().key("TYPE1").functions(functions).build();
+        index = TypeSpecIndex.of(Map.of(spec.getKey(), spec));
+        permissions = Collections.unmodifiableSet(permitted);
+        views = new PermittedTypeSpecViews();
+    }
+
+    @Benchmark
+    public TypeSpec cloneAndFilter() {
+        return filter(spec);
+    }
+
+    @Benchmark
+    public TypeSpec cachedView() {
+        return views.getView(TENANT, ROLE, index, permissions, spec, this::filter);
+    }
+
+    private TypeSpec filter(TypeSpec typeSpec) {
+        TypeSpec clone = typeSpec.toBuilder().build();
+        clone.setFunctions(clone.getFunctions().stream()
+            .filter(function -> permissions.contains(function.getDynamicPrivilegeKey()))
+            .collect(Collectors.toList()));
+        return clone;
+    }
+}
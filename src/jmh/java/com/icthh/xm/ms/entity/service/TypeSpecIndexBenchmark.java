@@ -0,0 +1,138 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.icthh.xm.ms.entity.domain.spec.FunctionSpec;
+import com.icthh.xm.ms.entity.domain.spec.NextSpec;
+import com.icthh.xm.ms.entity.domain.spec.StateSpec;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link TypeSpecIndex} lookups with the linear search over TypeSpec lists
+ * for tenants with thousands of type specifications.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeSpecIndexBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    private int typeCount;
+
+    @Param({"10", "50"})
+    private int stateCount;
+
+    private Map<String, TypeSpec> types;
+    private TypeSpecIndex index;
+    private String typeKey;
+    private String stateKey;
+    private String functionKey;
+
+    @Setup
+    public void setup() {
+        types = new LinkedHashMap<>();
+        for (int i = 0; i < typeCount; i++) {
+            String key = "TYPE" + (i % 10) + ".SUBTYPE" + i;
+            types.put(key, typeSpec(key));
+        }
+        index = TypeSpecIndex.of(types);
+        typeKey = "TYPE9.SUBTYPE" + (typeCount - 1);
+        stateKey = "STATE" + (stateCount - 1);
+        functionKey = typeKey + "_FUNCTION";
+    }
+
+    @Benchmark
+    public Optional<StateSpec> findStateLinear() {
+        return types.get(typeKey).getStates().stream().filter(s -> s.getKey().equals(stateKey)).findFirst();
+    }
+
+    @Benchmark
+    public Optional<StateSpec> findStateIndexed() {
+        return index.findState(typeKey, stateKey);
+    }
+
+    @Benchmark
+    public List<StateSpec> nextStatesLinear() {
+        TypeSpec typeSpec = types.get(typeKey);
+        return typeSpec.getStates().get(0).getNext().stream()
+            .map(next -> typeSpec.getStates().stream()
+                .filter(s -> s.getKey().equals(next.getStateKey())).findFirst().get())
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<StateSpec> nextStatesIndexed() {
+        return types.get(typeKey).getStates().get(0).getNext().stream()
+            .map(next -> index.findState(typeKey, next.getStateKey()).get())
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Optional<FunctionSpec> findFunctionLinear() {
+        for (TypeSpec ts : types.values()) {
+            for (FunctionSpec fs : ts.getFunctions()) {
+                if (fs.getKey().equals(functionKey)) {
+                    return Optional.of(fs);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Benchmark
+    public Optional<FunctionSpec> findFunctionIndexed() {
+        return index.findFunction(functionKey);
+    }
+
+    @Benchmark
+    public List<TypeSpec> findNonAbstractTypesByPrefixLinear() {
+        return types.values().stream()
+            .filter(t -> t.getKey().equals("TYPE3") || t.getKey().startsWith("TYPE3."))
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<TypeSpec> findNonAbstractTypesByPrefixIndexed() {
+        return index.findNonAbstractTypesByPrefix("TYPE3");
+    }
+
+    private TypeSpec typeSpec(String key) {
+        List<StateSpec> states = new ArrayList<>();
+        List<NextSpec> allNext = new ArrayList<>();
+        for (int i = 0; i < stateCount; i++) {
+            states.add(new StateSpec().key("STATE" + i));
+            allNext.add(NextSpec.builder().stateKey("STATE" + i).build());
+        }
+        states.forEach(state -> state.setNext(allNext));
+
+        FunctionSpec function = new FunctionSpec();
+        function.setKey(key + "_FUNCTION");
+
+        return TypeSpec.builder()
+            .key(key)
+            .isAbstract(false)
+            .states(states)
+            .functions(List.of(function))
+            .build();
+    }
+}
@@ -4,10 +4,13 @@ import com.icthh.xm.commons.lep.TenantScriptStorage;
 import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Properties specific to JHipster.
@@ -23,6 +26,17 @@ public class ApplicationProperties {
     private final Amazon amazon = new Amazon();
     private final Retry retry = new Retry();
     private final Lep lep = new Lep();
+    private final ElasticReindex elasticReindex = new ElasticReindex();
+    private final ElasticOutbox elasticOutbox = new ElasticOutbox();
+    private final JsonValidation jsonValidation = new JsonValidation();
+    private final HibernateCache hibernateCache = new HibernateCache();
+    private final SystemQueue systemQueue = new SystemQueue();
+    private final ProfileEventProducer profileEventProducer = new ProfileEventProducer();
+    private final CustomMetrics customMetrics = new CustomMetrics();
+    private final FunctionAsync functionAsync = new FunctionAsync();
+    private final LinkGraph linkGraph = new LinkGraph();
+    private final JsonbIndexes jsonbIndexes = new JsonbIndexes();
+    private final ContentGc contentGc = new ContentGc();
 
     private List<String> tenantIgnoredPathList = Collections.emptyList();
     private List<String> timelineIgnoredHttpMethods = Collections.emptyList();
@@ -94,12 +108,17 @@ public class ApplicationProperties {
 
             private String bucketPrefix;
             private String bucket;
+            private boolean asyncUpload = false;
+            private int uploadThreads = 10;
+            private long multipartUploadThreshold = 16 * 1024 * 1024;
+            private long minimumUploadPartSize = 5 * 1024 * 1024;
+            private int renditionCacheSize = 1000;
         }
     }
 
     @Getter
     @Setter
-    private static class Retry {
+    public static class Retry {
         private int maxAttempts;
         private long delay;
         private int multiplier;
@@ -112,6 +131,112 @@ public class ApplicationProperties {
         private String lepResourcePathPattern;
     }
 
+    @Getter
+    @Setter
+    public static class ElasticReindex {
+        private int threads = 4;
+        private int bulkSize = 100;
+        private int fetchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class ElasticOutbox {
+        private boolean dispatcherEnabled = true;
+        private long dispatchDelay = 1000;
+        private int batchSize = 500;
+        private int maxBatchesPerRun = 20;
+        private long retryDelay = 1000;
+        private long maxRetryDelay = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class SystemQueue {
+        private boolean batchEnabled;
+        private int threads = 4;
+        private int maxPollRecords = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class ProfileEventProducer {
+        private int lingerMs = 20;
+        private int batchSize = 65536;
+        private String compressionType = "lz4";
+        private boolean transactional;
+        private String transactionIdPrefix = "entity-profile-";
+    }
+
+    @Getter
+    @Setter
+    public static class CustomMetrics {
+        private int defaultUpdatePeriodSeconds = 60;
+        private int timeoutSeconds = 30;
+    }
+
+    @Getter
+    @Setter
+    public static class FunctionAsync {
+        private int threads = 8;
+        private int queueCapacity = 100;
+        private int maxPerTenant = 20;
+        private int maxPerFunction = 5;
+        private long resultTtlSeconds = 3600;
+        private long expiryDelay = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class LinkGraph {
+        private int maxDepth = 5;
+        private int maxSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class JsonbIndexes {
+        private boolean enabled = true;
+    }
+
+    @Getter
+    @Setter
+    public static class ContentGc {
+        private boolean enabled = true;
+        private long delay = 3600000;
+        private long gracePeriod = 86400000;
+        private int batchSize = 500;
+        private int maxBatchesPerRun = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class JsonValidation {
+        private Engine engine = Engine.FGE;
+        private int schemaCacheSize = 1000;
+
+        public enum Engine {
+            FGE, NETWORKNT
+        }
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    public static class HibernateCache {
+        private long maxSize = 10000;
+        private long timeToLive = 3600000;
+        private Map<String, Region> regions = new HashMap<>();
+
+        @Getter
+        @Setter
+        @ToString
+        public static class Region {
+            private Long maxSize;
+            private Long timeToLive;
+        }
+    }
+
     @Getter
     @Setter
     public static class KafkaMetric {
@@ -1,11 +1,14 @@
 package com.icthh.xm.ms.entity.config;
 
 import static com.icthh.xm.ms.entity.config.Constants.CHANGE_LOG_PATH;
+import static org.hibernate.cfg.AvailableSettings.AUTO_EVICT_COLLECTION_CACHE;
+import static org.hibernate.cfg.AvailableSettings.CACHE_REGION_FACTORY;
 import static org.hibernate.cfg.AvailableSettings.JPA_VALIDATION_FACTORY;
 
 import com.icthh.xm.commons.migration.db.XmMultiTenantSpringLiquibase;
 import com.icthh.xm.commons.migration.db.XmSpringLiquibase;
 import com.icthh.xm.commons.migration.db.tenant.SchemaResolver;
+import com.icthh.xm.ms.entity.config.cache.LocalCacheRegionFactory;
 import com.icthh.xm.ms.entity.config.elasticsearch.CustomElasticsearchRepositoryFactoryBean;
 import com.icthh.xm.ms.entity.repository.entitygraph.EntityGraphRepositoryImpl;
 import io.github.jhipster.config.JHipsterConstants;
@@ -121,7 +124,8 @@ public class DatabaseConfiguration {
     public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource,
                                                                        MultiTenantConnectionProvider multiTenantConnectionProviderImpl,
                                                                        CurrentTenantIdentifierResolver currentTenantIdentifierResolverImpl,
-                                                                       LocalValidatorFactoryBean localValidatorFactoryBean) {
+                                                                       LocalValidatorFactoryBean localValidatorFactoryBean,
+                                                                       LocalCacheRegionFactory localCacheRegionFactory) {
         Map<String, Object> properties = new HashMap<>(jpaProperties.getProperties());
         properties.put(org.hibernate.cfg.Environment.MULTI_TENANT, MultiTenancyStrategy.SCHEMA);
         properties.put(org.hibernate.cfg.Environment.MULTI_TENANT_CONNECTION_PROVIDER,
@@ -130,6 +134,10 @@ public class DatabaseConfiguration {
             currentTenantIdentifierResolverImpl);
 
         properties.put(JPA_VALIDATION_FACTORY, localValidatorFactoryBean);
+        // used only when hibernate.cache.use_second_level_cache is enabled
+        properties.put(CACHE_REGION_FACTORY, localCacheRegionFactory);
+        // children are saved by their own repositories, so cached collections of XmEntity are evicted on their change
+        properties.putIfAbsent(AUTO_EVICT_COLLECTION_CACHE, true);
 
         LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
         em.setDataSource(dataSource);
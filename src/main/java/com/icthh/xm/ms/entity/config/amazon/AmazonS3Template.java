@@ -2,6 +2,7 @@ package com.icthh.xm.ms.entity.config.amazon;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.HttpMethod;
+import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.CreateBucketRequest;
@@ -13,11 +14,17 @@ import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.amazonaws.services.s3.transfer.model.UploadResult;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.Amazon.S3;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +37,8 @@ import org.springframework.stereotype.Component;
 public class AmazonS3Template {
 
     private static final String FILE_NAME_ATTRIBUTE = "fileName";
+    private static final ThreadFactory UPLOAD_THREAD_FACTORY = new ThreadFactoryBuilder()
+        .setNameFormat("s3-upload-%d").setDaemon(true).build();
 
     private final ApplicationProperties applicationProperties;
     private final AmazonS3ClientFactory amazonS3ClientFactory;
@@ -96,6 +105,39 @@ public class AmazonS3Template {
         }
     }
 
+    /**
+     * Upload a file asynchronously, files larger than multipart threshold are uploaded by parts in parallel.
+     *
+     * @param key         is the name of the file to save in the bucket
+     * @param file        is the file that will be saved, it must not be changed until the upload is completed
+     * @param contentType is the content type of the file
+     * @return future of the key, completed when the upload is completed
+     */
+    public CompletableFuture<String> saveAsync(String key, File file, String contentType) {
+        String bucket = applicationProperties.getAmazon().getS3().getBucket();
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(contentType);
+        metadata.setContentLength(file.length());
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        PutObjectRequest request = new PutObjectRequest(bucket, key, file).withMetadata(metadata);
+        request.setCannedAcl(CannedAccessControlList.PublicRead);
+        // listener of the request is registered before the transfer starts, so no event is missed
+        request.setGeneralProgressListener(event -> {
+            if (event.getEventType() == ProgressEventType.TRANSFER_COMPLETED_EVENT) {
+                result.complete(key);
+            } else if (event.getEventType() == ProgressEventType.TRANSFER_FAILED_EVENT
+                       || event.getEventType() == ProgressEventType.TRANSFER_CANCELED_EVENT) {
+                result.completeExceptionally(new IOException("Upload of " + key + " was not completed: "
+                                                             + event.getEventType()));
+            }
+        });
+
+        getTransferManager().upload(request);
+        return result;
+    }
+
     /**
      *
      * @param bucketPrefix - using for separate dev int prod env
@@ -159,7 +201,14 @@ public class AmazonS3Template {
      */
     public TransferManager getTransferManager() {
         if (transferManager == null) {
-            transferManager = TransferManagerBuilder.standard().withS3Client(getAmazonS3Client()).build();
+            S3 s3 = applicationProperties.getAmazon().getS3();
+            transferManager = TransferManagerBuilder.standard()
+                                                    .withS3Client(getAmazonS3Client())
+                                                    .withExecutorFactory(() -> Executors.newFixedThreadPool(
+                                                        s3.getUploadThreads(), UPLOAD_THREAD_FACTORY))
+                                                    .withMultipartUploadThreshold(s3.getMultipartUploadThreshold())
+                                                    .withMinimumUploadPartSize(s3.getMinimumUploadPartSize())
+                                                    .build();
         }
         return transferManager;
     }
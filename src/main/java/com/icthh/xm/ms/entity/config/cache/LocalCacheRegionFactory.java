@@ -0,0 +1,173 @@
+package com.icthh.xm.ms.entity.config.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.HibernateCache;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
+import com.icthh.xm.ms.entity.repository.kafka.CacheEvictionProducer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second level cache in the memory of the node.
+ *
+ * Regions are bounded by size and time to live from {@code application.hibernate-cache}. Keys contain the tenant
+ * of the session, so tenants never share entries. Entries evicted on this node are evicted on other nodes
+ * through the system topic. Hits, misses, evictions and size of each region are reported as
+ * {@code hibernate.cache.<region>.*} metrics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocalCacheRegionFactory extends RegionFactoryTemplate {
+
+    private static final String METRICS_PREFIX = "hibernate.cache.";
+
+    private final ConcurrentMap<String, LocalCacheStorageAccess> storages = new ConcurrentHashMap<>();
+
+    private final ApplicationProperties applicationProperties;
+    private final MetricRegistry metricRegistry;
+    private final CacheEvictionProducer cacheEvictionProducer;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+        log.info("Hibernate second level cache started, {}", applicationProperties.getHibernateCache());
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(LocalCacheStorageAccess::release);
+        storages.clear();
+        metricRegistry.removeMatching((name, metric) -> name.startsWith(METRICS_PREFIX));
+    }
+
+    @Override
+    protected CacheKeysFactory getImplicitCacheKeysFactory() {
+        return TenantCacheKeysFactory.INSTANCE;
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return true;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.NONSTRICT_READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return createStorage(regionConfig.getRegionName(), cacheEvictionProducer::evicted);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName, (region, key) -> { });
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName, (region, key) -> { });
+    }
+
+    /**
+     * Applies evictions sent by other node of the service.
+     * @param event eviction event from the system topic
+     */
+    @SuppressWarnings("unchecked")
+    public void evictFromOtherNode(SystemEvent event) {
+        Map<String, Object> data = event.getDataMap();
+        if (!cacheEvictionProducer.getAppName().equals(event.getMessageSource())
+            || cacheEvictionProducer.getNodeId().equals(data.get(CacheEvictionProducer.NODE))) {
+            return;
+        }
+        Map<String, Collection<Map<String, Object>>> regions =
+            (Map<String, Collection<Map<String, Object>>>) data.get(CacheEvictionProducer.REGIONS);
+        if (regions == null) {
+            return;
+        }
+        regions.forEach((regionName, keys) -> {
+            LocalCacheStorageAccess storage = storages.get(regionName);
+            if (storage == null) {
+                return;
+            }
+            if (keys == null) {
+                storage.evictLocally(null);
+            } else {
+                keys.forEach(key -> storage.evictLocally(toCacheKey(key)));
+            }
+        });
+    }
+
+    private static TenantCacheKey toCacheKey(Map<String, Object> key) {
+        Object id = key.get("id");
+        // ids are read from json, numbers of the cached entities are long values
+        if (id instanceof Number) {
+            id = ((Number) id).longValue();
+        }
+        return new TenantCacheKey((String) key.get("tenant"), (String) key.get("name"), id);
+    }
+
+    private LocalCacheStorageAccess createStorage(String regionName,
+                                                  LocalCacheStorageAccess.EvictionListener evictionListener) {
+        HibernateCache config = applicationProperties.getHibernateCache();
+        Optional<HibernateCache.Region> region = Optional.ofNullable(config.getRegions().get(regionName));
+        long maxSize = region.map(HibernateCache.Region::getMaxSize).orElse(config.getMaxSize());
+        long timeToLive = region.map(HibernateCache.Region::getTimeToLive).orElse(config.getTimeToLive());
+
+        Cache<Object, Object> cache = Caffeine.newBuilder()
+                                              .maximumSize(maxSize)
+                                              .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+                                              .recordStats()
+                                              .build();
+        LocalCacheStorageAccess storage = new LocalCacheStorageAccess(regionName, cache, evictionListener);
+        storages.put(regionName, storage);
+        registerMetrics(regionName, cache);
+        log.info("Hibernate cache region {} created, max size {}, time to live {} ms",
+                 regionName, maxSize, timeToLive);
+        return storage;
+    }
+
+    private void registerMetrics(String regionName, Cache<Object, Object> cache) {
+        String prefix = METRICS_PREFIX + regionName + ".";
+        registerGauge(prefix + "hits", () -> cache.stats().hitCount());
+        registerGauge(prefix + "misses", () -> cache.stats().missCount());
+        registerGauge(prefix + "evictions", () -> cache.stats().evictionCount());
+        registerGauge(prefix + "size", cache::estimatedSize);
+    }
+
+    private void registerGauge(String name, Gauge<Long> gauge) {
+        // region of the previous session factory, e.g. after restart of the persistence unit
+        metricRegistry.remove(name);
+        metricRegistry.register(name, gauge);
+    }
+}
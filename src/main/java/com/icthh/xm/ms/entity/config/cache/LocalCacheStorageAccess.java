@@ -0,0 +1,92 @@
+package com.icthh.xm.ms.entity.config.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Region storage in the local bounded cache.
+ *
+ * Removals made by hibernate on entity changes are reported to the listener, so other nodes evict them too.
+ * Evictions received from other nodes are applied by {@link #evictLocally} and are not reported back.
+ */
+class LocalCacheStorageAccess implements DomainDataStorageAccess {
+
+    private final String regionName;
+    private final Cache<Object, Object> cache;
+    private final EvictionListener evictionListener;
+
+    LocalCacheStorageAccess(String regionName, Cache<Object, Object> cache, EvictionListener evictionListener) {
+        this.regionName = regionName;
+        this.cache = cache;
+        this.evictionListener = evictionListener;
+    }
+
+    Cache<Object, Object> getCache() {
+        return cache;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        evictData(key);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        evictData();
+    }
+
+    @Override
+    public void evictData() {
+        cache.invalidateAll();
+        evictionListener.onEvict(regionName, null);
+    }
+
+    @Override
+    public void evictData(Object key) {
+        cache.invalidate(key);
+        evictionListener.onEvict(regionName, key);
+    }
+
+    @Override
+    public void release() {
+        cache.invalidateAll();
+        cache.cleanUp();
+    }
+
+    /**
+     * Evicts key, or the whole region when key is null, without notification of other nodes.
+     */
+    void evictLocally(Object key) {
+        if (key == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(key);
+        }
+    }
+
+    @FunctionalInterface
+    interface EvictionListener {
+
+        /**
+         * @param regionName evicted region
+         * @param key evicted key, null when the whole region is evicted
+         */
+        void onEvict(String regionName, Object key);
+    }
+}
@@ -0,0 +1,30 @@
+package com.icthh.xm.ms.entity.config.cache;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * Second level cache key of entity or collection of the tenant.
+ *
+ * Unlike hibernate default keys, it is built from plain values only, so evicted keys can be sent to other nodes
+ * and built there again.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public final class TenantCacheKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String tenant;
+    /**
+     * Root entity name or collection role.
+     */
+    private final String name;
+    private final Object id;
+}
@@ -0,0 +1,49 @@
+package com.icthh.xm.ms.entity.config.cache;
+
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Builds {@link TenantCacheKey} for entities and collections, natural id keys are hibernate defaults.
+ */
+public class TenantCacheKeysFactory implements CacheKeysFactory {
+
+    public static final TenantCacheKeysFactory INSTANCE = new TenantCacheKeysFactory();
+
+    @Override
+    public Object createCollectionKey(Object id, CollectionPersister persister, SessionFactoryImplementor factory,
+                                      String tenantIdentifier) {
+        return new TenantCacheKey(tenantIdentifier, persister.getRole(), id);
+    }
+
+    @Override
+    public Object createEntityKey(Object id, EntityPersister persister, SessionFactoryImplementor factory,
+                                  String tenantIdentifier) {
+        return new TenantCacheKey(tenantIdentifier, persister.getRootEntityName(), id);
+    }
+
+    @Override
+    public Object createNaturalIdKey(Object[] naturalIdValues, EntityPersister persister,
+                                     SharedSessionContractImplementor session) {
+        return DefaultCacheKeysFactory.staticCreateNaturalIdKey(naturalIdValues, persister, session);
+    }
+
+    @Override
+    public Object getEntityId(Object cacheKey) {
+        return ((TenantCacheKey) cacheKey).getId();
+    }
+
+    @Override
+    public Object getCollectionId(Object cacheKey) {
+        return ((TenantCacheKey) cacheKey).getId();
+    }
+
+    @Override
+    public Object[] getNaturalIdValues(Object cacheKey) {
+        return DefaultCacheKeysFactory.staticGetNaturalIdValues(cacheKey);
+    }
+}
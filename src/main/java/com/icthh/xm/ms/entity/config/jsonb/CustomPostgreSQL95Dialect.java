@@ -2,6 +2,9 @@ package com.icthh.xm.ms.entity.config.jsonb;
 
 import io.github.jhipster.domain.util.FixedPostgreSQL95Dialect;
 import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.BigDecimalType;
+import org.hibernate.type.BooleanType;
+import org.hibernate.type.InstantType;
 import org.hibernate.type.StringType;
 
 public class CustomPostgreSQL95Dialect extends FixedPostgreSQL95Dialect {
@@ -9,12 +12,41 @@ public class CustomPostgreSQL95Dialect extends FixedPostgreSQL95Dialect {
     public static final String JSON_QUERY_TEMPLATE = "jsonb_path_query_first(?1, ?2::jsonpath)";
     public static final String JSON_QUERY = "json_query";
 
+    /**
+     * Scalar value of json path as text, string values are unquoted.
+     */
+    public static final String JSON_QUERY_TEXT_TEMPLATE = "(" + JSON_QUERY_TEMPLATE + " #>> '{}')";
+    public static final String JSON_QUERY_TEXT = "json_query_text";
+
+    public static final String JSON_QUERY_NUMERIC_TEMPLATE = JSON_QUERY_TEXT_TEMPLATE + "::numeric";
+    public static final String JSON_QUERY_NUMERIC = "json_query_numeric";
+
+    public static final String JSON_QUERY_BOOLEAN_TEMPLATE = JSON_QUERY_TEXT_TEMPLATE + "::boolean";
+    public static final String JSON_QUERY_BOOLEAN = "json_query_boolean";
+
+    public static final String JSON_QUERY_TIMESTAMP_TEMPLATE = JSON_QUERY_TEXT_TEMPLATE + "::timestamptz";
+    public static final String JSON_QUERY_TIMESTAMP = "json_query_timestamp";
+
+    public static final String JSONB_CONTAINS_TEMPLATE = "(?1 @> ?2::jsonb)";
+    public static final String JSONB_CONTAINS = "jsonb_contains";
+
+    public static final String JSON_EXISTS = "json_exists";
+
     public static final String TO_JSON_B = "to_json_b";
     public static final String TO_JSON_B_TEMPLATE = "to_jsonb(?1)";
 
     public CustomPostgreSQL95Dialect() {
         super();
         registerFunction(JSON_QUERY, new SQLFunctionTemplate(StringType.INSTANCE, JSON_QUERY_TEMPLATE));
+        registerFunction(JSON_QUERY_TEXT, new SQLFunctionTemplate(StringType.INSTANCE, JSON_QUERY_TEXT_TEMPLATE));
+        registerFunction(JSON_QUERY_NUMERIC,
+                         new SQLFunctionTemplate(BigDecimalType.INSTANCE, JSON_QUERY_NUMERIC_TEMPLATE));
+        registerFunction(JSON_QUERY_BOOLEAN,
+                         new SQLFunctionTemplate(BooleanType.INSTANCE, JSON_QUERY_BOOLEAN_TEMPLATE));
+        registerFunction(JSON_QUERY_TIMESTAMP,
+                         new SQLFunctionTemplate(InstantType.INSTANCE, JSON_QUERY_TIMESTAMP_TEMPLATE));
+        registerFunction(JSONB_CONTAINS, new SQLFunctionTemplate(BooleanType.INSTANCE, JSONB_CONTAINS_TEMPLATE));
+        registerFunction(JSON_EXISTS, new JsonExistsFunction());
         registerFunction(TO_JSON_B, new SQLFunctionTemplate(StringType.INSTANCE, TO_JSON_B_TEMPLATE));
     }
 
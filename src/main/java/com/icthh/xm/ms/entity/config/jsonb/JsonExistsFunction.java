@@ -0,0 +1,43 @@
+package com.icthh.xm.ms.entity.config.jsonb;
+
+import org.hibernate.QueryException;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.BooleanType;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * Renders {@code @?} jsonpath exists operator, supported by GIN indexes of jsonb.
+ *
+ * {@link org.hibernate.dialect.function.SQLFunctionTemplate} treats question marks as arguments, so the operator
+ * is rendered with JDBC escaped {@code ??}.
+ */
+class JsonExistsFunction implements SQLFunction {
+
+    @Override
+    public boolean hasArguments() {
+        return true;
+    }
+
+    @Override
+    public boolean hasParenthesesIfNoArguments() {
+        return true;
+    }
+
+    @Override
+    public Type getReturnType(Type firstArgumentType, Mapping mapping) throws QueryException {
+        return BooleanType.INSTANCE;
+    }
+
+    @Override
+    public String render(Type firstArgumentType, List arguments, SessionFactoryImplementor factory)
+        throws QueryException {
+        if (arguments.size() != 2) {
+            throw new QueryException("json_exists requires jsonb and json path arguments");
+        }
+        return "(" + arguments.get(0) + " @?? " + arguments.get(1) + "::jsonpath)";
+    }
+}
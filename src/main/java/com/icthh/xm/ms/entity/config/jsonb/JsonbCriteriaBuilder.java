@@ -1,6 +1,8 @@
 package com.icthh.xm.ms.entity.config.jsonb;
 
 import com.icthh.xm.ms.entity.domain.XmEntity;
+import java.math.BigDecimal;
+import java.time.Instant;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
@@ -121,4 +123,103 @@ public class JsonbCriteriaBuilder {
             JsonbUtils.toJsonB(criteriaBuilder, expression, String.class));
     }
 
+    /**
+     * Numeric value of the path, values of other json types are null.
+     * Usable by expression index with {@code NUMERIC} value type.
+     */
+    public Expression<BigDecimal> numeric(Root<XmEntity> root, String jsonPath) {
+        return JsonbUtils.jsonQueryNumeric(criteriaBuilder, root, jsonPath);
+    }
+
+    /**
+     * Timestamp value of the path, the value must be ISO-8601 date time string.
+     */
+    public Expression<Instant> timestamp(Root<XmEntity> root, String jsonPath) {
+        return JsonbUtils.jsonQueryTimestamp(criteriaBuilder, root, jsonPath);
+    }
+
+    /**
+     * Boolean value of the path, values of other json types are null.
+     * Usable by expression index with {@code BOOLEAN} value type.
+     */
+    public Expression<Boolean> bool(Root<XmEntity> root, String jsonPath) {
+        return JsonbUtils.jsonQueryBoolean(criteriaBuilder, root, jsonPath);
+    }
+
+    /**
+     * Scalar value of the path as text, strings are unquoted.
+     * Usable by expression index with {@code TEXT} value type.
+     */
+    public Expression<String> text(Root<XmEntity> root, String jsonPath) {
+        return JsonbUtils.jsonQueryText(criteriaBuilder, root, jsonPath);
+    }
+
+    public Predicate numericGreaterThan(Root<XmEntity> root, String jsonPath, Number value) {
+        return criteriaBuilder.greaterThan(numeric(root, jsonPath), toBigDecimal(value));
+    }
+
+    public Predicate numericGreaterThanOrEqualTo(Root<XmEntity> root, String jsonPath, Number value) {
+        return criteriaBuilder.greaterThanOrEqualTo(numeric(root, jsonPath), toBigDecimal(value));
+    }
+
+    public Predicate numericLessThan(Root<XmEntity> root, String jsonPath, Number value) {
+        return criteriaBuilder.lessThan(numeric(root, jsonPath), toBigDecimal(value));
+    }
+
+    public Predicate numericLessThanOrEqualTo(Root<XmEntity> root, String jsonPath, Number value) {
+        return criteriaBuilder.lessThanOrEqualTo(numeric(root, jsonPath), toBigDecimal(value));
+    }
+
+    public Predicate numericBetween(Root<XmEntity> root, String jsonPath, Number from, Number to) {
+        return criteriaBuilder.between(numeric(root, jsonPath), toBigDecimal(from), toBigDecimal(to));
+    }
+
+    public Predicate timestampGreaterThan(Root<XmEntity> root, String jsonPath, Instant value) {
+        return criteriaBuilder.greaterThan(timestamp(root, jsonPath), value);
+    }
+
+    public Predicate timestampGreaterThanOrEqualTo(Root<XmEntity> root, String jsonPath, Instant value) {
+        return criteriaBuilder.greaterThanOrEqualTo(timestamp(root, jsonPath), value);
+    }
+
+    public Predicate timestampLessThan(Root<XmEntity> root, String jsonPath, Instant value) {
+        return criteriaBuilder.lessThan(timestamp(root, jsonPath), value);
+    }
+
+    public Predicate timestampLessThanOrEqualTo(Root<XmEntity> root, String jsonPath, Instant value) {
+        return criteriaBuilder.lessThanOrEqualTo(timestamp(root, jsonPath), value);
+    }
+
+    public Predicate timestampBetween(Root<XmEntity> root, String jsonPath, Instant from, Instant to) {
+        return criteriaBuilder.between(timestamp(root, jsonPath), from, to);
+    }
+
+    public Predicate isTrue(Root<XmEntity> root, String jsonPath) {
+        return criteriaBuilder.isTrue(bool(root, jsonPath));
+    }
+
+    public Predicate isFalse(Root<XmEntity> root, String jsonPath) {
+        return criteriaBuilder.isFalse(bool(root, jsonPath));
+    }
+
+    /**
+     * {@code data @> json}, usable by GIN index of data.
+     *
+     * @param json json string or object to be serialized to json, f.e. {@code Map.of("status", "ACTIVE")}
+     */
+    public Predicate contains(Root<XmEntity> root, Object json) {
+        return criteriaBuilder.isTrue(JsonbUtils.jsonbContains(criteriaBuilder, root, json));
+    }
+
+    /**
+     * {@code data @? jsonPath}, the path has at least one value, usable by GIN index of data.
+     */
+    public Predicate exists(Root<XmEntity> root, String jsonPath) {
+        return criteriaBuilder.isTrue(JsonbUtils.jsonExists(criteriaBuilder, root, jsonPath));
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
 }
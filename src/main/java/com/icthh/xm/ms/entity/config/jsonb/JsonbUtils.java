@@ -1,14 +1,24 @@
 package com.icthh.xm.ms.entity.config.jsonb;
 
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSONB_CONTAINS;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_EXISTS;
 import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_BOOLEAN;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_NUMERIC;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_TEXT;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_TIMESTAMP;
 import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.TO_JSON_B;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.XmEntity_;
 import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
+import java.math.BigDecimal;
+import java.time.Instant;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Root;
+import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 
 /**
@@ -17,6 +27,11 @@ import lombok.experimental.UtilityClass;
 @UtilityClass
 public class JsonbUtils {
 
+    public static final String NUMBER = "number";
+    public static final String BOOLEAN = "boolean";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     public Expression<JsonBinaryType> jsonQuery(CriteriaBuilder cb, Root<XmEntity> root, String jsonPath) {
         return jsonQuery(cb, root, jsonPath, JsonBinaryType.class);
     }
@@ -25,6 +40,49 @@ public class JsonbUtils {
         return cb.function(JSON_QUERY, type, root.get(XmEntity_.DATA), cb.literal(jsonPath));
     }
 
+    public Expression<String> jsonQueryText(CriteriaBuilder cb, Root<XmEntity> root, String jsonPath) {
+        return cb.function(JSON_QUERY_TEXT, String.class, root.get(XmEntity_.DATA), cb.literal(jsonPath));
+    }
+
+    /**
+     * Values of other json types are skipped, so they do not fail the cast.
+     */
+    public Expression<BigDecimal> jsonQueryNumeric(CriteriaBuilder cb, Root<XmEntity> root, String jsonPath) {
+        return cb.function(JSON_QUERY_NUMERIC, BigDecimal.class, root.get(XmEntity_.DATA),
+                           cb.literal(typedPath(jsonPath, NUMBER)));
+    }
+
+    /**
+     * Values of other json types are skipped, so they do not fail the cast.
+     */
+    public Expression<Boolean> jsonQueryBoolean(CriteriaBuilder cb, Root<XmEntity> root, String jsonPath) {
+        return cb.function(JSON_QUERY_BOOLEAN, Boolean.class, root.get(XmEntity_.DATA),
+                           cb.literal(typedPath(jsonPath, BOOLEAN)));
+    }
+
+    /**
+     * Value of the path must be ISO-8601 date time string, the cast fails on other strings.
+     */
+    public Expression<Instant> jsonQueryTimestamp(CriteriaBuilder cb, Root<XmEntity> root, String jsonPath) {
+        return cb.function(JSON_QUERY_TIMESTAMP, Instant.class, root.get(XmEntity_.DATA), cb.literal(jsonPath));
+    }
+
+    public Expression<Boolean> jsonbContains(CriteriaBuilder cb, Root<XmEntity> root, Object json) {
+        return cb.function(JSONB_CONTAINS, Boolean.class, root.get(XmEntity_.DATA), cb.literal(toJson(json)));
+    }
+
+    public Expression<Boolean> jsonExists(CriteriaBuilder cb, Root<XmEntity> root, String jsonPath) {
+        return cb.function(JSON_EXISTS, Boolean.class, root.get(XmEntity_.DATA), cb.literal(jsonPath));
+    }
+
+    /**
+     * Json path filtered by json type of the value, f.e. {@code $.a ? (@.type() == "number")}.
+     * Expression indexes of typed values are defined by the same path.
+     */
+    public String typedPath(String jsonPath, String jsonType) {
+        return jsonPath + " ? (@.type() == \"" + jsonType + "\")";
+    }
+
     public Expression<JsonBinaryType> toJsonB(CriteriaBuilder cb, Object object) {
         return toJsonB(cb, object, JsonBinaryType.class);
     }
@@ -41,4 +99,9 @@ public class JsonbUtils {
         return cb.function(TO_JSON_B, type, expression);
     }
 
+    @SneakyThrows
+    private String toJson(Object json) {
+        return json instanceof String ? (String) json : objectMapper.writeValueAsString(json);
+    }
+
 }
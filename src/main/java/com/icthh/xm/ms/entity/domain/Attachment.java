@@ -1,6 +1,7 @@
 package com.icthh.xm.ms.entity.domain;
 
-import static javax.persistence.CascadeType.ALL;
+import static javax.persistence.CascadeType.MERGE;
+import static javax.persistence.CascadeType.PERSIST;
 
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonIdentityReference;
@@ -20,11 +21,11 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
-import javax.persistence.OneToOne;
 import javax.persistence.PrePersist;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
@@ -116,8 +117,12 @@ public class Attachment implements Serializable {
     @Column(name = "content_checksum")
     private String contentChecksum;
 
-    @OneToOne(cascade = ALL, fetch = FetchType.LAZY, orphanRemoval = true)
-    @JoinColumn(unique = true)
+    /**
+     * Content is shared by attachments with the same value, so it is removed by garbage collection
+     * instead of cascade.
+     */
+    @ManyToOne(cascade = {PERSIST, MERGE}, fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_id")
     private Content content;
 
     @ManyToOne(optional = false)
@@ -257,9 +262,12 @@ public class Attachment implements Serializable {
         return this;
     }
 
+    /**
+     * Size is taken from the loaded value only, reference to stored content is set without reading the value.
+     */
     public void setContent(Content content) {
         this.content = content;
-        if (content != null && content.getValue() != null) {
+        if (content != null && Hibernate.isInitialized(content) && content.getValue() != null) {
             long length = content.getValue().length;
             this.valueContentSize = length;
         }
@@ -1,8 +1,11 @@
 package com.icthh.xm.ms.entity.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Objects;
 import javax.persistence.Column;
@@ -16,6 +19,8 @@ import javax.validation.constraints.NotNull;
 
 /**
  * Represents Attachment content. Content can be extracted separately from the attachment.
+ * Content is shared by attachments with the same value, it is found by the value checksum
+ * and deleted by garbage collection when no attachment references it.
  */
 @ApiModel(description = "Represents Attachment content. Content can be extracted separately from the attachment.")
 @Entity
@@ -38,6 +43,24 @@ public class Content implements Serializable {
     @Column(name = "jhi_value", nullable = false, columnDefinition="BLOB")
     private byte[] value;
 
+    /**
+     * Sha256 checksum of the value, null for contents which are not shared
+     */
+    @ApiModelProperty(value = "Sha256 checksum of the value")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "checksum")
+    private String checksum;
+
+    /**
+     * Time the content was stored or shared by checksum last time, changed by statements only.
+     * Content which is not referenced by any attachment is deleted by garbage collection after grace period,
+     * so the attachment saved with it is committed first. Null for contents created by the content API,
+     * they are not collected.
+     */
+    @JsonIgnore
+    @Column(name = "acquired_date", updatable = false)
+    private Instant acquiredDate = Instant.now();
+
     public Long getId() {
         return id;
     }
@@ -59,6 +82,27 @@ public class Content implements Serializable {
         this.value = value;
     }
 
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public Content checksum(String checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public Instant getAcquiredDate() {
+        return acquiredDate;
+    }
+
+    public void setAcquiredDate(Instant acquiredDate) {
+        this.acquiredDate = acquiredDate;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -84,6 +128,7 @@ public class Content implements Serializable {
         return "Content{" +
             "id=" + getId() +
             ", value='" + Arrays.toString(getValue()) + "'" +
+            ", checksum='" + getChecksum() + "'" +
             "}";
     }
 }
@@ -0,0 +1,50 @@
+package com.icthh.xm.ms.entity.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Change of XmEntity to be applied to elasticsearch index.
+ * Written in the transaction of the change and removed when the index is updated.
+ */
+@Entity
+@Table(name = "elastic_outbox")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class ElasticOutboxEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Operation {
+        SAVE, DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false)
+    private Operation operation;
+
+    @Column(name = "create_date", nullable = false)
+    private Instant createDate;
+}
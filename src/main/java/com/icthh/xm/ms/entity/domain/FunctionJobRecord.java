@@ -0,0 +1,67 @@
+package com.icthh.xm.ms.entity.domain;
+
+import com.icthh.xm.ms.entity.service.dto.FunctionJob;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Asynchronous function execution, shared by all instances so the job can be polled through any of them.
+ * Result is stored as the rendered response body and is removed with the job after its ttl.
+ */
+@Entity
+@Table(name = "function_job")
+@Getter
+@Setter
+@ToString(exclude = "result")
+@NoArgsConstructor
+public class FunctionJobRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private String id;
+
+    @Column(name = "function_key", nullable = false)
+    private String functionKey;
+
+    @Column(name = "user_key")
+    private String userKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false)
+    private FunctionJob.State state;
+
+    @Column(name = "function_context_id")
+    private Long functionContextId;
+
+    @Column(name = "create_date", nullable = false)
+    private Instant createDate;
+
+    @Column(name = "start_date")
+    private Instant startDate;
+
+    @Column(name = "end_date")
+    private Instant endDate;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "result_content_type")
+    private String resultContentType;
+
+    // @Lob // Do not use this annotation as it has different behaviour in Postgres and H2.
+    @Column(name = "result", columnDefinition = "BLOB")
+    private byte[] result;
+}
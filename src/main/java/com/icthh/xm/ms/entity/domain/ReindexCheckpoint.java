@@ -0,0 +1,44 @@
+package com.icthh.xm.ms.entity.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Progress of elasticsearch reindex for one scope (all entities or one type key) of the tenant.
+ * Entities are reindexed in ID order, so all entities with ID up to lastId are already in the index.
+ * Running index rebuild is marked by checkpoint of its own scope, see {@code ElasticIndexRebuildManager}.
+ */
+@Entity
+@Table(name = "reindex_checkpoint")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReindexCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "scope", nullable = false)
+    private String scope;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "indexed", nullable = false)
+    private Long indexed;
+
+    @Column(name = "update_date", nullable = false)
+    private Instant updateDate;
+}
@@ -3,6 +3,7 @@ package com.icthh.xm.ms.entity.domain.converter;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -10,6 +11,10 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
 /**
  * Convert {@link com.icthh.xm.ms.entity.domain.XmEntity} to csv file.
  */
@@ -60,6 +65,25 @@ public class EntityToCsvConverterUtils {
         }
     }
 
+    /**
+     * Writes objects to csv file in the output stream row by row. Output stream is not closed.
+     * @param rows the objects to serialize to csv rows
+     * @param clazz the class from which csv schema based would be
+     * @param outputStream the output stream to write csv file to
+     */
+    public static void writeCsv(Iterator<?> rows, Class clazz, OutputStream outputStream) {
+        CsvMapper mapper = createDefaultCsvMapper();
+        mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        ObjectWriter csvWriter = mapper.writer(createCsvSchemaBasedOnClass(mapper, clazz));
+        try (SequenceWriter sequenceWriter = csvWriter.writeValues(outputStream)) {
+            while (rows.hasNext()) {
+                sequenceWriter.write(rows.next());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Exception while writing data to csv file", e);
+        }
+    }
+
     private static CsvSchema createCsvSchemaBasedOnClass(CsvMapper mapper, Class clazz) {
         return mapper.schemaFor(clazz).withHeader();
     }
@@ -5,19 +5,20 @@ import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.DateFormatConverter;
-import org.apache.poi.xssf.usermodel.XSSFCellStyle;
-import org.apache.poi.xssf.usermodel.XSSFCreationHelper;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.util.CollectionUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.IntStream;
@@ -29,6 +30,11 @@ import java.util.stream.IntStream;
 @Slf4j
 public class EntityToExcelConverterUtils {
 
+    /**
+     * Number of rows kept in memory, older rows are flushed to the temporary file.
+     */
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
     private static final String[] headers = new String[] {"id", "key", "typeKey", "stateKey",
             "name", "startDate", "updateDate", "endDate", "avatarUrl", "description", "removed",
             "createdBy"};
@@ -43,55 +49,74 @@ public class EntityToExcelConverterUtils {
             log.warn("Passed empty object for serialize, therefore return empty byte array which represents excel file");
             return new byte[0];
         }
-        try (XSSFWorkbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            XSSFSheet sheet = workbook.createSheet(sheetName);
-            XSSFCreationHelper creationHelper = workbook.getCreationHelper();
-            XSSFCellStyle cellStyle = workbook.createCellStyle();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeExcel(entities.iterator(), sheetName, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Writes entities to excel file in the output stream. Only a fixed window of rows is kept in memory,
+     * so the number of entities is not limited by heap size. Output stream is not closed.
+     * @param entities the entities iterator
+     * @param sheetName the sheet name
+     * @param outputStream the output stream to write excel file to
+     */
+    public static void writeExcel(Iterator<SimpleExportXmEntityDto> entities, String sheetName,
+                                  OutputStream outputStream) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet(sheetName);
+            CreationHelper creationHelper = workbook.getCreationHelper();
+            CellStyle cellStyle = workbook.createCellStyle();
             cellStyle.setDataFormat(creationHelper.createDataFormat().getFormat(
                             DateFormatConverter.getJavaDateTimePattern(0, Locale.US)));
 
             int rowCount = 0;
-            XSSFRow headerRow = sheet.createRow(rowCount);
+            Row headerRow = sheet.createRow(rowCount);
             IntStream.range(0, headers.length).forEach(i -> headerRow.createCell(i).setCellValue(headers[i]));
 
-            for (SimpleExportXmEntityDto entity : entities) {
-                Row row = sheet.createRow(++rowCount);
-                int columnCount = 0;
-                Cell cell = row.createCell(columnCount);
-                cell.setCellValue(entity.getOrElseId(0L));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseKey(StringUtils.EMPTY));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseTypeKey(StringUtils.EMPTY));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseStateKey(StringUtils.EMPTY));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseName(StringUtils.EMPTY));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(Date.from(entity.getOrElseStartDate(Instant.now())));
-                cell.setCellStyle(cellStyle);
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(Date.from(entity.getOrElseStartDate(Instant.now())));
-                cell.setCellStyle(cellStyle);
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(Date.from(entity.getOrElseEndDate(Instant.now())));
-                cell.setCellStyle(cellStyle);
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseAvatarUrl(StringUtils.EMPTY));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseDescription(StringUtils.EMPTY));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.isOrElseRemoved(false));
-                cell = row.createCell(++columnCount);
-                cell.setCellValue(entity.getOrElseCreatedBy(StringUtils.EMPTY));
+            while (entities.hasNext()) {
+                fillRow(sheet.createRow(++rowCount), entities.next(), cellStyle);
             }
 
             workbook.write(outputStream);
-            return outputStream.toByteArray();
         } catch (IOException e) {
-            throw new IllegalStateException("Exception while writing data to excel file");
+            throw new IllegalStateException("Exception while writing data to excel file", e);
+        } finally {
+            workbook.dispose();
         }
     }
 
+    private static void fillRow(Row row, SimpleExportXmEntityDto entity, CellStyle cellStyle) {
+        int columnCount = 0;
+        Cell cell = row.createCell(columnCount);
+        cell.setCellValue(entity.getOrElseId(0L));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseKey(StringUtils.EMPTY));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseTypeKey(StringUtils.EMPTY));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseStateKey(StringUtils.EMPTY));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseName(StringUtils.EMPTY));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(Date.from(entity.getOrElseStartDate(Instant.now())));
+        cell.setCellStyle(cellStyle);
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(Date.from(entity.getOrElseStartDate(Instant.now())));
+        cell.setCellStyle(cellStyle);
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(Date.from(entity.getOrElseEndDate(Instant.now())));
+        cell.setCellStyle(cellStyle);
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseAvatarUrl(StringUtils.EMPTY));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseDescription(StringUtils.EMPTY));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.isOrElseRemoved(false));
+        cell = row.createCell(++columnCount);
+        cell.setCellValue(entity.getOrElseCreatedBy(StringUtils.EMPTY));
+    }
+
 }
@@ -0,0 +1,52 @@
+package com.icthh.xm.ms.entity.domain.spec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Database index of entity data, managed by {@link com.icthh.xm.ms.entity.service.JsonbIndexService}.
+ * Supported on PostgreSQL only.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({ "paths", "type", "valueType", "partial" })
+@Data
+public class IndexSpec {
+
+    public enum Type {
+        /**
+         * Expression index of values by json paths, for equality and range queries by the paths.
+         */
+        BTREE,
+        /**
+         * GIN index with jsonb_path_ops of values by json paths or of whole data, for containment queries.
+         */
+        GIN
+    }
+
+    /**
+     * Indexed value of BTREE index, the same as value of typed JsonbCriteriaBuilder expression.
+     * Timestamp is not supported, text to timestamp cast is not immutable.
+     */
+    public enum ValueType {
+        JSONB, TEXT, NUMERIC, BOOLEAN
+    }
+
+    /** Json paths of data, f.e. $.address.city */
+    @JsonProperty("paths")
+    private List<String> paths;
+
+    @JsonProperty("type")
+    private Type type = Type.BTREE;
+
+    @JsonProperty("valueType")
+    private ValueType valueType = ValueType.JSONB;
+
+    /** Index entities of the type key only */
+    @JsonProperty("partial")
+    private Boolean partial = false;
+
+}
@@ -18,7 +18,7 @@ import java.util.Set;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonPropertyOrder({"key", "name", "namePattern", "nameValidationPattern", "descriptionPattern", "pluralName", "isApp", "isAbstract",
     "isAvatarEnabled", "isKeyRequired", "isNameRequired", "fastSearch", "icon", "dataSpec", "dataForm", "functions", "access", "attachments", "calendars",
-    "links", "locations", "ratings", "states", "tags", "dataSpecInheritance", "dataFormInheritance"})
+    "links", "locations", "ratings", "states", "tags", "indexes", "dataSpecInheritance", "dataFormInheritance"})
 @Data
 @Builder(toBuilder = true)
 @AllArgsConstructor
@@ -96,6 +96,9 @@ public class TypeSpec {
     @JsonProperty("comments")
     private List<CommentSpec> comments = null;
     @Builder.Default
+    @JsonProperty("indexes")
+    private List<IndexSpec> indexes = null;
+    @Builder.Default
     @JsonIgnore
     private Set<UniqueFieldSpec> uniqueFields = new HashSet<>();
     @Builder.Default
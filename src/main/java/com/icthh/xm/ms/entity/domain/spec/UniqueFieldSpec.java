@@ -1,12 +1,34 @@
 package com.icthh.xm.ms.entity.domain.spec;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.jayway.jsonpath.JsonPath;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class UniqueFieldSpec {
     private String jsonPath;
+
+    /**
+     * Path compiled once, when specification is loaded.
+     */
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private JsonPath compiledJsonPath;
+
+    public UniqueFieldSpec(String jsonPath) {
+        setJsonPath(jsonPath);
+    }
+
+    public void setJsonPath(String jsonPath) {
+        this.jsonPath = jsonPath;
+        this.compiledJsonPath = jsonPath == null ? null : JsonPath.compile(jsonPath);
+    }
 }
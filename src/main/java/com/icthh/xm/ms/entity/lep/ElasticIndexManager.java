@@ -1,70 +1,74 @@
 package com.icthh.xm.ms.entity.lep;
 
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent.Operation;
 import com.icthh.xm.ms.entity.domain.XmEntity;
-import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import javax.persistence.EntityManager;
 
+/**
+ * Collects XmEntity changes of the transaction and writes them to elasticsearch outbox in the same transaction,
+ * the index is updated by {@link com.icthh.xm.ms.entity.service.ElasticOutboxDispatcher}.
+ */
 @Slf4j
 @RequiredArgsConstructor
 @TransactionScoped
 @Component
 public class ElasticIndexManager {
 
-    private final XmEntitySearchRepository searchRepository;
-    private final List<XmEntity> entityToSave = new ArrayList<>();
-    private final List<XmEntity> entityToDelete = new ArrayList<>();
+    private static final String INSERT_OUTBOX_EVENT =
+        "insert into elastic_outbox (entity_id, operation, create_date) values (?, ?, ?)";
+
+    private final EntityManager entityManager;
+    private final Map<Long, Operation> operations = new LinkedHashMap<>();
 
     public void addEntityToSave(XmEntity entity) {
-        if (entityToSave.isEmpty()) {
-            registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCompletion(int status) {
-                    super.afterCompletion(status);
-                    if (status == STATUS_COMMITTED) {
-                        try {
-                            if (!entityToSave.isEmpty()) {
-                                searchRepository.saveAll(entityToSave);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error in afterCompletion stage during transaction synchronization for entity: {}",
-                                    entityToSave, e);
-                        }
-                    }
-                    entityToSave.clear();
-                }
-            });
-        }
-        entityToSave.add(entity);
+        addOperation(entity, Operation.SAVE);
     }
 
     public void addEntityToDelete(XmEntity entity) {
-        if (entityToDelete.isEmpty()) {
-            registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCompletion(int status) {
-                    super.afterCompletion(status);
-                    if (status == STATUS_COMMITTED) {
-                        try {
-                            if (!entityToDelete.isEmpty()) {
-                                searchRepository.deleteAll(entityToDelete);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error in afterCompletion stage during transaction synchronization for entity: {}",
-                                    entityToDelete, e);
-                        }
-                    }
-                    entityToDelete.clear();
-                }
-            });
+        addOperation(entity, Operation.DELETE);
+    }
+
+    /**
+     * Entity listeners are called on flush, so events are written right before commit, after the last flush.
+     * Only the last change of the entity in the transaction is written.
+     */
+    private void addOperation(XmEntity entity, Operation operation) {
+        if (operations.isEmpty()) {
+            entityManager.unwrap(SessionImplementor.class).getActionQueue()
+                         .registerProcess((BeforeTransactionCompletionProcess) this::writeOutboxEvents);
         }
-        entityToDelete.add(entity);
+        operations.remove(entity.getId());
+        operations.put(entity.getId(), operation);
+    }
+
+    private void writeOutboxEvents(SessionImplementor session) {
+        Timestamp now = Timestamp.from(Instant.now());
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_OUTBOX_EVENT)) {
+                for (Map.Entry<Long, Operation> operation : operations.entrySet()) {
+                    statement.setLong(1, operation.getKey());
+                    statement.setString(2, operation.getValue().name());
+                    statement.setTimestamp(3, now, utc);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+        log.debug("Elasticsearch outbox events were written: {}", operations);
+        operations.clear();
     }
 }
@@ -16,7 +16,9 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.BatchConsumerAwareMessageListener;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.GenericMessageListener;
 import org.springframework.kafka.listener.MessageListener;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.stereotype.Component;
@@ -47,10 +49,16 @@ public class ApplicationStartup implements ApplicationListener<ApplicationReadyE
 
     private void createKafkaConsumers() {
         createSystemConsumer(applicationProperties.getKafkaSystemTopic(), systemTopicConsumer::consumeEvent);
-        createSystemConsumer(applicationProperties.getKafkaSystemQueue(), systemQueueConsumer::consumeEvent);
+        if (applicationProperties.getSystemQueue().isBatchEnabled()) {
+            createSystemConsumer(applicationProperties.getKafkaSystemQueue(),
+                (BatchConsumerAwareMessageListener<String, String>) systemQueueConsumer::consumeEvents);
+        } else {
+            createSystemConsumer(applicationProperties.getKafkaSystemQueue(),
+                (MessageListener<String, String>) systemQueueConsumer::consumeEvent);
+        }
     }
 
-    private void createSystemConsumer(String name, MessageListener<String, String> consumeEvent) {
+    private void createSystemConsumer(String name, GenericMessageListener<?> consumeEvent) {
         log.info("Creating kafka consumer for topic {}", name);
         ContainerProperties containerProps = new ContainerProperties(name);
 
@@ -59,6 +67,10 @@ public class ApplicationStartup implements ApplicationListener<ApplicationReadyE
             props.put(ConsumerConfig.GROUP_ID_CONFIG, UUID.randomUUID().toString());
         }
         props.put(ConsumerConfig.METADATA_MAX_AGE_CONFIG, applicationProperties.getKafkaMetadataMaxAge());
+        if (consumeEvent instanceof BatchConsumerAwareMessageListener) {
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+                applicationProperties.getSystemQueue().getMaxPollRecords());
+        }
         ConsumerFactory<String, String> factory = new DefaultKafkaConsumerFactory<>(props);
 
         ConcurrentMessageListenerContainer<String, String> container =
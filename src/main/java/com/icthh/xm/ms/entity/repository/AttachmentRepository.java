@@ -1,12 +1,20 @@
 package com.icthh.xm.ms.entity.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Attachment;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 
 import org.hibernate.Hibernate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -22,10 +30,25 @@ public interface AttachmentRepository extends
 
     int countByXmEntityIdAndTypeKey(long xmEntityId, String typeKey);
 
+    @Query("select a.content.id from Attachment a where a.id = :id")
+    Long findContentIdById(@Param("id") Long id);
+
+    @Query("select count(a) from Attachment a where a.content.id = :contentId")
+    long countByContentId(@Param("contentId") Long contentId);
+
+    @Modifying
+    @Query("update Attachment a set a.contentChecksum = :checksum, a.valueContentSize = :size "
+           + "where a.content.id = :contentId")
+    int updateContentChecksum(@Param("contentId") Long contentId, @Param("checksum") String checksum,
+                              @Param("size") Long size);
+
     static Attachment enrich(Attachment att) {
         Hibernate.initialize(att.getContent());
         return att;
     }
 
     List<Attachment> findByXmEntityTypeKeyAndTypeKeyIn(String entityTypeKey, List<String> typeKeys);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Attachment> streamByXmEntityTypeKeyAndTypeKeyIn(String entityTypeKey, List<String> typeKeys);
 }
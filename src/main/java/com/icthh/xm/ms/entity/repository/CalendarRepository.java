@@ -1,10 +1,15 @@
 package com.icthh.xm.ms.entity.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Calendar;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -18,4 +23,8 @@ public interface CalendarRepository extends JpaRepository<Calendar, Long>, Resou
     Calendar findResourceById(Object id);
 
     Set<Calendar> findByXmEntityTypeKeyAndTypeKeyAndEventsTypeKeyIn(String entityType, String typeKey, List<String> eventTypeKeys);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Calendar> streamDistinctByXmEntityTypeKeyAndTypeKeyAndEventsTypeKeyIn(String entityType, String typeKey,
+                                                                                List<String> eventTypeKeys);
 }
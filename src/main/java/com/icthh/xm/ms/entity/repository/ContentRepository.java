@@ -2,9 +2,16 @@ package com.icthh.xm.ms.entity.repository;
 
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Content;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+
 /**
  * Spring Data JPA repository for the Content entity.
  */
@@ -14,4 +21,31 @@ public interface ContentRepository extends JpaRepository<Content, Long>, Resourc
 
     @Override
     Content findResourceById(Object id);
+
+    @Query("select c.id from Content c where c.checksum = :checksum order by c.id")
+    List<Long> findIdsByChecksum(@Param("checksum") String checksum, Pageable pageable);
+
+    @Query("select c.checksum from Content c where c.id = :id")
+    String findChecksumById(@Param("id") Long id);
+
+    /**
+     * Contents created by the content API are not acquired, they are not shared.
+     *
+     * @return number of updated contents, 0 if the content was deleted by garbage collection
+     */
+    @Modifying
+    @Query("update Content c set c.acquiredDate = :acquiredDate where c.id = :id and c.acquiredDate is not null")
+    int acquire(@Param("id") Long id, @Param("acquiredDate") Instant acquiredDate);
+
+    @Query("select c.id from Content c where c.acquiredDate < :acquiredBefore "
+           + "and not exists (select a.id from Attachment a where a.content = c) order by c.id")
+    List<Long> findUnreferencedIds(@Param("acquiredBefore") Instant acquiredBefore, Pageable pageable);
+
+    /**
+     * Conditions are checked again, the content may be acquired after it was found as unreferenced.
+     */
+    @Modifying
+    @Query("delete from Content c where c.id in :ids and c.acquiredDate < :acquiredBefore "
+           + "and not exists (select a.id from Attachment a where a.content = c)")
+    int deleteUnreferenced(@Param("ids") List<Long> ids, @Param("acquiredBefore") Instant acquiredBefore);
 }
@@ -0,0 +1,133 @@
+package com.icthh.xm.ms.entity.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+
+/**
+ * Reads and writes value of {@link com.icthh.xm.ms.entity.domain.Content} by streams, without loading the whole
+ * value into memory.
+ *
+ * The value is written by input stream binding. On PostgreSQL the value is read by chunks of bytea substring,
+ * other databases stream the value by the driver.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ContentStreamRepository {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    private static final String UPDATE_VALUE_SQL = "update content set jhi_value = ? where id = ?";
+    private static final String FIND_SIZE_SQL = "select length(jhi_value) from content where id = ?";
+    private static final String FIND_CHUNK_SQL = "select substring(jhi_value from ? for ?) from content where id = ?";
+    private static final String FIND_VALUE_SQL = "select jhi_value from content where id = ?";
+
+    private final EntityManager entityManager;
+
+    /**
+     * Replace the content value by bytes of the stream.
+     *
+     * @param contentId the content id
+     * @param value     the value stream
+     * @param size      number of bytes in the stream
+     * @return true if the content exists
+     */
+    public boolean writeValue(Long contentId, InputStream value, long size) {
+        return getSession().doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_VALUE_SQL)) {
+                statement.setBinaryStream(1, value, size);
+                statement.setLong(2, contentId);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * @param contentId the content id
+     * @return size of the content value in bytes
+     */
+    public Optional<Long> findValueSize(Long contentId) {
+        return getSession().doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(FIND_SIZE_SQL)) {
+                statement.setLong(1, contentId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? Optional.of(resultSet.getLong(1)) : Optional.empty();
+                }
+            }
+        });
+    }
+
+    /**
+     * Copy the range of the content value to the output stream.
+     *
+     * @param contentId the content id
+     * @param start     the first byte of the range, zero based
+     * @param length    number of bytes to copy
+     * @param output    the output stream, not closed
+     */
+    public void readValue(Long contentId, long start, long length, OutputStream output) {
+        if (length <= 0) {
+            return;
+        }
+        getSession().doWork(connection -> {
+            try {
+                if (POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName())) {
+                    readChunks(connection, contentId, start, length, output);
+                } else {
+                    readStream(connection, contentId, start, length, output);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void readChunks(Connection connection, Long contentId, long start, long length,
+                                   OutputStream output) throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement(FIND_CHUNK_SQL)) {
+            // bytea is limited by 1GB, so positions are int
+            for (long offset = 0; offset < length; offset += CHUNK_SIZE) {
+                statement.setInt(1, Math.toIntExact(start + offset + 1));
+                statement.setInt(2, (int) Math.min(CHUNK_SIZE, length - offset));
+                statement.setLong(3, contentId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return;
+                    }
+                    output.write(resultSet.getBytes(1));
+                }
+            }
+        }
+    }
+
+    private static void readStream(Connection connection, Long contentId, long start, long length,
+                                   OutputStream output) throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement(FIND_VALUE_SQL)) {
+            statement.setLong(1, contentId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    try (InputStream value = resultSet.getBinaryStream(1)) {
+                        IOUtils.copyLarge(value, output, start, length);
+                    }
+                }
+            }
+        }
+    }
+
+    private Session getSession() {
+        return entityManager.unwrap(Session.class);
+    }
+}
@@ -0,0 +1,155 @@
+package com.icthh.xm.ms.entity.repository;
+
+import com.icthh.xm.commons.permission.repository.PermittedRepository;
+import com.icthh.xm.commons.permission.service.PermissionCheckService;
+import com.icthh.xm.commons.permission.service.translator.SpelToJpqlTranslator;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPosition;
+import com.icthh.xm.ms.entity.repository.cursor.CursorSortProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+/**
+ * Permitted repository with keyset (seek) pagination in addition to the offset one.
+ */
+@Slf4j
+public abstract class CursorPermittedRepository extends PermittedRepository {
+
+    private static final String ALIAS = "returnObject";
+    private static final String AFTER_VALUE = "cursorAfterValue";
+    private static final String AFTER_ID = "cursorAfterId";
+    private static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+
+    private final PermissionCheckService permissionCheckService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    protected CursorPermittedRepository(PermissionCheckService permissionCheckService) {
+        super(permissionCheckService);
+        this.permissionCheckService = permissionCheckService;
+    }
+
+    /**
+     * Find permitted entities after the cursor position. Seek condition replaces offset and no count query
+     * is executed, one extra row is fetched to find out whether next page exists.
+     *
+     * @param whereCondition  the where condition
+     * @param conditionParams the condition params
+     * @param embed           the fields to fetch eagerly
+     * @param pageable        the cursor page info
+     * @param sortProperties  the sort properties allowed for the entity
+     * @param entityClass     the entity class
+     * @param privilegeKey    the privilege key
+     * @return permitted entities page
+     */
+    protected <T> CursorPage<T> findByCondition(String whereCondition,
+                                                Map<String, Object> conditionParams,
+                                                Collection<String> embed,
+                                                CursorPageable pageable,
+                                                CursorSortProperties<T> sortProperties,
+                                                Class<T> entityClass,
+                                                String privilegeKey) {
+        CursorPosition position = sortProperties.resolve(pageable);
+        Map<String, Object> params = new HashMap<>(conditionParams);
+
+        StringBuilder jpql = new StringBuilder("select ").append(ALIAS)
+            .append(" from ").append(entityClass.getSimpleName()).append(' ').append(ALIAS)
+            .append(" where (").append(whereCondition).append(')');
+
+        String permittedCondition = buildCursorPermissionCondition(privilegeKey);
+        if (StringUtils.isNotBlank(permittedCondition)) {
+            jpql.append(" and (").append(permittedCondition).append(')');
+        }
+        if (!position.isFirst()) {
+            jpql.append(" and ").append(seekCondition(position));
+            params.put(AFTER_ID, position.getId());
+            if (!position.isIdOrder()) {
+                params.put(AFTER_VALUE, position.getValue());
+            }
+        }
+        jpql.append(" order by ").append(orderBy(position));
+
+        log.debug("Executing JPQL '{}'", jpql);
+
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), entityClass);
+        params.forEach(query::setParameter);
+        if (CollectionUtils.isNotEmpty(embed)) {
+            EntityGraph<T> graph = entityManager.createEntityGraph(entityClass);
+            embed.forEach(graph::addAttributeNodes);
+            query.setHint(LOAD_GRAPH, graph);
+        }
+        query.setMaxResults(pageable.getSize() + 1);
+
+        return sortProperties.toPage(query.getResultList(), pageable);
+    }
+
+    /**
+     * Find selected values of permitted entities, without loading the entities.
+     *
+     * @param selectClause    the selected expressions of {@code returnObject} alias
+     * @param whereCondition  the where condition
+     * @param conditionParams the condition params
+     * @param maxResults      the max number of rows
+     * @param entityClass     the entity class
+     * @param privilegeKey    the privilege key, no permission condition is applied if null
+     * @return rows of selected values
+     */
+    protected List<Object[]> findValuesByCondition(String selectClause,
+                                                   String whereCondition,
+                                                   Map<String, Object> conditionParams,
+                                                   int maxResults,
+                                                   Class<?> entityClass,
+                                                   String privilegeKey) {
+        StringBuilder jpql = new StringBuilder("select ").append(selectClause)
+            .append(" from ").append(entityClass.getSimpleName()).append(' ').append(ALIAS)
+            .append(" where (").append(whereCondition).append(')');
+
+        String permittedCondition = privilegeKey == null ? null : buildCursorPermissionCondition(privilegeKey);
+        if (StringUtils.isNotBlank(permittedCondition)) {
+            jpql.append(" and (").append(permittedCondition).append(')');
+        }
+        jpql.append(" order by ").append(ALIAS).append('.').append(CursorSortProperties.ID);
+
+        log.debug("Executing JPQL '{}'", jpql);
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class);
+        conditionParams.forEach(query::setParameter);
+        query.setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
+    private static String seekCondition(CursorPosition position) {
+        String operator = position.isAscending() ? " > " : " < ";
+        String idAfter = ALIAS + "." + CursorSortProperties.ID + operator + ":" + AFTER_ID;
+        if (position.isIdOrder()) {
+            return idAfter;
+        }
+        String property = ALIAS + "." + position.getProperty();
+        return "(" + property + operator + ":" + AFTER_VALUE
+               + " or (" + property + " = :" + AFTER_VALUE + " and " + idAfter + "))";
+    }
+
+    private static String orderBy(CursorPosition position) {
+        String direction = position.isAscending() ? " asc" : " desc";
+        String idOrder = ALIAS + "." + CursorSortProperties.ID + direction;
+        return position.isIdOrder() ? idOrder : ALIAS + "." + position.getProperty() + direction + ", " + idOrder;
+    }
+
+    private String buildCursorPermissionCondition(String privilegeKey) {
+        return permissionCheckService.createCondition(SecurityContextHolder.getContext().getAuthentication(),
+                                                      privilegeKey, new SpelToJpqlTranslator());
+    }
+}
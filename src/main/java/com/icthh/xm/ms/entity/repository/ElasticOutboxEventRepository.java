@@ -0,0 +1,29 @@
+package com.icthh.xm.ms.entity.repository;
+
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+/**
+ * Spring Data JPA repository for the ElasticOutboxEvent entity.
+ */
+@Repository
+public interface ElasticOutboxEventRepository extends JpaRepository<ElasticOutboxEvent, Long> {
+
+    /**
+     * Oldest events, events locked by dispatcher of another instance are skipped.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2")) // LockOptions.SKIP_LOCKED
+    List<ElasticOutboxEvent> findAllByOrderByIdAsc(Pageable pageable);
+
+    Optional<ElasticOutboxEvent> findFirstByOrderByIdAsc();
+}
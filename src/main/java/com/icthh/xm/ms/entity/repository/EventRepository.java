@@ -3,9 +3,13 @@ package com.icthh.xm.ms.entity.repository;
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Event;
 import com.icthh.xm.ms.entity.domain.XmEntity;
+import java.util.Collection;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -19,4 +23,8 @@ public interface EventRepository extends JpaRepository<Event, Long>, ResourceRep
     Event findResourceById(Object id);
 
     Optional<Event> findByEventDataRef(XmEntity eventDataRef);
+
+    @Modifying
+    @Query("update Event e set e.eventDataRef = null where e.eventDataRef.id in :eventDataRefIds")
+    int clearEventDataRefByIdIn(@Param("eventDataRefIds") Collection<Long> eventDataRefIds);
 }
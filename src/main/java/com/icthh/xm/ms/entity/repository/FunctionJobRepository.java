@@ -0,0 +1,26 @@
+package com.icthh.xm.ms.entity.repository;
+
+import com.icthh.xm.ms.entity.domain.FunctionJobRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Spring Data JPA repository for the FunctionJobRecord entity.
+ */
+@Repository
+public interface FunctionJobRepository extends JpaRepository<FunctionJobRecord, String> {
+
+    /**
+     * Jobs are deleted without loading their results.
+     *
+     * @return number of deleted jobs
+     */
+    @Modifying
+    @Query("delete from FunctionJobRecord j where j.endDate < :finishedBefore")
+    int deleteFinishedBefore(@Param("finishedBefore") Instant finishedBefore);
+}
@@ -1,10 +1,18 @@
 package com.icthh.xm.ms.entity.repository;
 
-import com.icthh.xm.commons.permission.repository.PermittedRepository;
+import com.google.common.collect.ImmutableSet;
 import com.icthh.xm.commons.permission.service.PermissionCheckService;
 import com.icthh.xm.ms.entity.domain.Link;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.repository.cursor.CursorSortProperties;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -17,7 +25,21 @@ import org.springframework.stereotype.Repository;
  * Permitted repository for Link entity.
  */
 @Repository
-public class LinkPermittedRepository extends PermittedRepository {
+public class LinkPermittedRepository extends CursorPermittedRepository {
+
+    /**
+     * Not null columns of link allowed as the sort of the cursor mode.
+     */
+    public static final CursorSortProperties<Link> CURSOR_SORT = CursorSortProperties.of(Link::getId)
+        .add("typeKey", String.class, Link::getTypeKey)
+        .add("startDate", Instant.class, Link::getStartDate);
+
+    /**
+     * Entity fields which can be projected to the nodes of link graph.
+     */
+    public static final Set<String> GRAPH_NODE_FIELDS = ImmutableSet.of("key", "typeKey", "stateKey", "name",
+                                                                        "startDate", "updateDate", "endDate",
+                                                                        "description");
 
     public LinkPermittedRepository(final PermissionCheckService permissionCheckService) {
         super(permissionCheckService);
@@ -25,17 +47,73 @@ public class LinkPermittedRepository extends PermittedRepository {
 
     public Page<Link> findAllByTargetIdAndTypeKeyIn(Pageable pageable, Long targetId, Set<String> typeKeys,
                                                     String privilegeKey) {
-        String whereCondition = "target.id = :targetId";
+        Map<String, Object> conditionParams = new HashMap<>();
+        String whereCondition = targetIdAndTypeKeyInCondition(targetId, typeKeys, conditionParams);
+
+        return findByCondition(whereCondition, conditionParams, pageable, getType(), privilegeKey);
+    }
+
+    public CursorPage<Link> findAllByTargetIdAndTypeKeyIn(CursorPageable pageable, Long targetId,
+                                                          Set<String> typeKeys, String privilegeKey) {
+        Map<String, Object> conditionParams = new HashMap<>();
+        String whereCondition = targetIdAndTypeKeyInCondition(targetId, typeKeys, conditionParams);
 
+        return findByCondition(whereCondition, conditionParams, null, pageable, CURSOR_SORT, getType(),
+                               privilegeKey);
+    }
+
+    /**
+     * Find permitted links of the nodes in one query.
+     *
+     * @param nodeIds      ids of the linked entities
+     * @param outgoing     true to find links by source id, false by target id
+     * @param typeKeys     link type keys, any type if empty
+     * @param maxResults   the max number of links
+     * @param privilegeKey the privilege key
+     * @return rows of link id, type key, source id and target id
+     */
+    public List<Object[]> findGraphEdges(Collection<Long> nodeIds, boolean outgoing, Set<String> typeKeys,
+                                         int maxResults, String privilegeKey) {
         Map<String, Object> conditionParams = new HashMap<>();
+        String whereCondition = "returnObject." + (outgoing ? "source" : "target") + ".id in (:nodeIds)";
+        conditionParams.put("nodeIds", nodeIds);
+
+        if (CollectionUtils.isNotEmpty(typeKeys)) {
+            conditionParams.put("typeKeys", typeKeys);
+            whereCondition += " and returnObject.typeKey in (:typeKeys)";
+        }
+        return findValuesByCondition("returnObject.id, returnObject.typeKey, returnObject.source.id, "
+                                     + "returnObject.target.id", whereCondition, conditionParams, maxResults,
+                                     getType(), privilegeKey);
+    }
+
+    /**
+     * Find projected fields of the permitted link graph nodes in one query.
+     *
+     * @param nodeIds      ids of the entities
+     * @param fields       fields from {@link #GRAPH_NODE_FIELDS}
+     * @param privilegeKey the privilege key of the entities
+     * @return rows of entity id followed by the fields in the given order
+     */
+    public List<Object[]> findGraphNodes(Collection<Long> nodeIds, List<String> fields, String privilegeKey) {
+        StringBuilder selectClause = new StringBuilder("returnObject.id");
+        fields.forEach(field -> selectClause.append(", returnObject.").append(field));
+
+        return findValuesByCondition(selectClause.toString(), "returnObject.id in (:nodeIds)",
+                                     Collections.singletonMap("nodeIds", nodeIds), nodeIds.size(), XmEntity.class,
+                                     privilegeKey);
+    }
+
+    private static String targetIdAndTypeKeyInCondition(Long targetId, Set<String> typeKeys,
+                                                        Map<String, Object> conditionParams) {
+        String whereCondition = "target.id = :targetId";
         conditionParams.put("targetId", targetId);
 
         if (CollectionUtils.isNotEmpty(typeKeys)) {
             conditionParams.put("typeKeys", typeKeys);
             whereCondition += " and typeKey in (:typeKeys)";
         }
-
-        return findByCondition(whereCondition, conditionParams, pageable, getType(), privilegeKey);
+        return whereCondition;
     }
 
     private Class<Link> getType() {
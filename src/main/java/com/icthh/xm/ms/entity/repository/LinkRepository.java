@@ -1,12 +1,21 @@
 package com.icthh.xm.ms.entity.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Link;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 
 import com.icthh.xm.ms.entity.projection.LinkProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -25,8 +34,27 @@ public interface LinkRepository extends JpaRepository<Link, Long>, JpaSpecificat
 
     List<Link> findBySourceTypeKeyAndTypeKeyIn(String sourceTypeKey, List<String> linksTypeKeys);
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Link> streamBySourceTypeKeyAndTypeKeyIn(String sourceTypeKey, List<String> linksTypeKeys);
+
     List<Link> findBySourceIdAndTypeKey(Long id, String typeKey);
 
     List<LinkProjection> findLinkProjectionsBySourceIdAndTypeKey(Long id, String typeKey);
 
+    /**
+     * @return rows of link type key, source id, source type key and target id
+     */
+    @Query("select l.typeKey, l.source.id, l.source.typeKey, l.target.id from Link l where l.source.id in :sourceIds")
+    List<Object[]> findTypeKeysBySourceIdIn(@Param("sourceIds") Collection<Long> sourceIds);
+
+    /**
+     * @return rows of target id and source id
+     */
+    @Query("select l.target.id, l.source.id from Link l where l.target.id in :targetIds")
+    List<Object[]> findSourceIdsByTargetIdIn(@Param("targetIds") Collection<Long> targetIds);
+
+    @Modifying
+    @Query("delete from Link l where l.source.id in :entityIds or l.target.id in :entityIds")
+    int deleteBySourceIdInOrTargetIdIn(@Param("entityIds") Collection<Long> entityIds);
+
 }
@@ -1,9 +1,14 @@
 package com.icthh.xm.ms.entity.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Location;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -18,6 +23,9 @@ public interface LocationRepository extends JpaRepository<Location, Long>, Resou
 
     List<Location> findAllByXmEntityTypeKeyAndTypeKeyIn(String entityTypeKey, List<String> typeKeys);
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Location> streamAllByXmEntityTypeKeyAndTypeKeyIn(String entityTypeKey, List<String> typeKeys);
+
     List<Location> findAllByXmEntityIdIn(List<Long> xmEntityIds);
 
     List<Location> findAllByIdIn(List<Long> locationIds);
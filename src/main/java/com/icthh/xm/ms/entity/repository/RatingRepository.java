@@ -1,9 +1,14 @@
 package com.icthh.xm.ms.entity.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import com.icthh.xm.commons.permission.access.repository.ResourceRepository;
 import com.icthh.xm.ms.entity.domain.Rating;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -17,4 +22,7 @@ public interface RatingRepository extends JpaRepository<Rating, Long>, ResourceR
     Rating findResourceById(Object id);
 
     List<Rating> findByXmEntityTypeKeyAndTypeKeyIn(String entityTypeKey, List<String> typeKeys);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Rating> streamByXmEntityTypeKeyAndTypeKeyIn(String entityTypeKey, List<String> typeKeys);
 }
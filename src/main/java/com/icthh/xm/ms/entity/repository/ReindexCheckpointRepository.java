@@ -0,0 +1,19 @@
+package com.icthh.xm.ms.entity.repository;
+
+import com.icthh.xm.ms.entity.domain.ReindexCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the ReindexCheckpoint entity.
+ */
+@Repository
+public interface ReindexCheckpointRepository extends JpaRepository<ReindexCheckpoint, String> {
+
+    Optional<ReindexCheckpoint> findFirstByScopeStartingWithOrderByUpdateDateDesc(String scopePrefix);
+
+    List<ReindexCheckpoint> findAllByScopeStartingWith(String scopePrefix);
+}
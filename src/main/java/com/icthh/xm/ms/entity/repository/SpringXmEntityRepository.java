@@ -6,6 +6,7 @@ import com.icthh.xm.ms.entity.projection.XmEntityStateProjection;
 import com.icthh.xm.ms.entity.projection.XmEntityVersion;
 import com.icthh.xm.ms.entity.repository.entitygraph.EntityGraphRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -36,6 +37,9 @@ public interface SpringXmEntityRepository extends
     @EntityGraph(value = "xmEntityGraph", type = EntityGraph.EntityGraphType.LOAD)
     XmEntity findOneById(Long id);
 
+    @Query("SELECT DISTINCT e FROM XmEntity e LEFT JOIN FETCH e.uniqueFields WHERE e.id IN :ids")
+    List<XmEntity> findAllWithUniqueFieldsByIdIn(@Param("ids") Collection<Long> ids);
+
     Page<XmEntity> findAllByTypeKeyIn(Pageable pageable, Set<String> typeKeys);
 
     XmEntityIdKeyTypeKey findOneIdKeyTypeKeyById(Long id);
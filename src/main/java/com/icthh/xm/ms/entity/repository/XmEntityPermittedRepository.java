@@ -1,9 +1,12 @@
 package com.icthh.xm.ms.entity.repository;
 
-import com.icthh.xm.commons.permission.repository.PermittedRepository;
 import com.icthh.xm.commons.permission.service.PermissionCheckService;
 import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.repository.cursor.CursorSortProperties;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
@@ -14,7 +17,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public class XmEntityPermittedRepository extends PermittedRepository {
+public class XmEntityPermittedRepository extends CursorPermittedRepository {
+
+    /**
+     * Not null columns of xm_entity allowed as the sort of the cursor mode.
+     */
+    public static final CursorSortProperties<XmEntity> CURSOR_SORT = CursorSortProperties.of(XmEntity::getId)
+        .add("typeKey", String.class, XmEntity::getTypeKey)
+        .add("key", String.class, XmEntity::getKey)
+        .add("name", String.class, XmEntity::getName)
+        .add("startDate", Instant.class, XmEntity::getStartDate)
+        .add("updateDate", Instant.class, XmEntity::getUpdateDate);
 
     public XmEntityPermittedRepository(PermissionCheckService permissionCheckService) {
         super(permissionCheckService);
@@ -37,6 +50,37 @@ public class XmEntityPermittedRepository extends PermittedRepository {
         return findByCondition(whereCondition, conditionParams, pageable, getType(), privilegeKey);
     }
 
+    /**
+     * Find permitted xm entities by type key in, cursor mode.
+     *
+     * @param pageable     the cursor page info
+     * @param typeKeys     the type keys
+     * @param privilegeKey the privilege key
+     * @return permitted xm entities
+     */
+    public CursorPage<XmEntity> findAllByTypeKeyIn(CursorPageable pageable, Set<String> typeKeys,
+                                                   String privilegeKey) {
+        String whereCondition = "typeKey in (:typeKeys)";
+
+        Map<String, Object> conditionParams = Collections.singletonMap("typeKeys",
+            CollectionUtils.isEmpty(typeKeys) ? null : typeKeys);
+
+        return findByCondition(whereCondition, conditionParams, null, pageable, CURSOR_SORT, getType(),
+                               privilegeKey);
+    }
+
+    /**
+     * Find all permitted xm entities, cursor mode.
+     *
+     * @param pageable     the cursor page info
+     * @param privilegeKey the privilege key
+     * @return permitted xm entities
+     */
+    public CursorPage<XmEntity> findAll(CursorPageable pageable, String privilegeKey) {
+        return findByCondition("1=1", Collections.emptyMap(), null, pageable, CURSOR_SORT, getType(),
+                               privilegeKey);
+    }
+
     public Page<XmEntity> findAllByIdsWithEmbed(Pageable pageable,
                                                 Set<Long> ids,
                                                 Set<String> embed,
@@ -49,6 +93,19 @@ public class XmEntityPermittedRepository extends PermittedRepository {
         return findByCondition(whereCondition, conditionParams, embed, pageable, getType(), privilegeKey);
     }
 
+    public CursorPage<XmEntity> findAllByIdsWithEmbed(CursorPageable pageable,
+                                                      Set<Long> ids,
+                                                      Set<String> embed,
+                                                      String privilegeKey) {
+        String whereCondition = "id in (:ids)";
+
+        Map<String, Object> conditionParams = Collections.singletonMap("ids",
+            CollectionUtils.isEmpty(ids) ? null : ids);
+
+        return findByCondition(whereCondition, conditionParams, embed, pageable, CURSOR_SORT, getType(),
+                               privilegeKey);
+    }
+
     private Class<XmEntity> getType() {
         return XmEntity.class;
     }
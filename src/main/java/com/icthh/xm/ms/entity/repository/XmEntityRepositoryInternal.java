@@ -5,6 +5,8 @@ import com.icthh.xm.ms.entity.projection.XmEntityVersion;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -25,9 +27,30 @@ public interface XmEntityRepositoryInternal extends XmEntityRepository {
 
     void flush();
 
+    /**
+     * Detaches all entities from persistence context, used to keep it small while reading from database cursor.
+     */
+    void clear();
+
+    /**
+     * Detaches the entity and its cascaded relationships from persistence context.
+     */
+    void detach(XmEntity xmEntity);
+
     long count();
 
     long count(Specification<XmEntity> spec);
 
+    /**
+     * Streams entities ordered by ID from database cursor. Stream must be closed by caller.
+     *
+     * @param spec      entity filter, nullable
+     * @param afterId   stream entities with ID greater than given one, nullable
+     * @param fetchSize JDBC fetch size of the cursor
+     * @return stream of read only entities
+     */
+    Stream<XmEntity> streamAllOrderedById(@Nullable Specification<XmEntity> spec, @Nullable Long afterId,
+                                          int fetchSize);
+
     void deleteAll();
 }
@@ -1,5 +1,7 @@
 package com.icthh.xm.ms.entity.repository.backend;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.amazon.AmazonS3Template;
@@ -8,24 +10,54 @@ import com.icthh.xm.ms.entity.util.XmHttpEntityUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+/**
+ * Stores files in S3 bucket.
+ *
+ * The file is written to a temporary file in the calling thread, then it is uploaded by the transfer manager.
+ * With async upload the URL is returned before the upload is completed. Resized images are cached by checksum
+ * of the source and the size, the same rendition is resized and uploaded once.
+ */
 @Slf4j
-@RequiredArgsConstructor
 @Component
 public class StorageRepository {
 
+    private static final String TEMP_FILE_PREFIX = "storage-";
+    private static final String RENDITION_EXTENSION = "png";
+
     private final ApplicationProperties applicationProperties;
     private final AmazonS3Template amazonS3Template;
+    private final Cache<String, CompletableFuture<String>> renditions;
+
+    public StorageRepository(ApplicationProperties applicationProperties, AmazonS3Template amazonS3Template) {
+        this.applicationProperties = applicationProperties;
+        this.amazonS3Template = amazonS3Template;
+        this.renditions = Caffeine.newBuilder()
+                                  .maximumSize(applicationProperties.getAmazon().getS3().getRenditionCacheSize())
+                                  .build();
+    }
 
     @SneakyThrows
     public String store(MultipartFile file, Integer size) {
@@ -34,37 +66,112 @@ public class StorageRepository {
 
     @SneakyThrows
     public String store(HttpEntity<Resource> httpEntity, Integer size) {
-        return store(httpEntity.getBody().getInputStream(), size,
-            httpEntity.getHeaders().getContentType().getType(), XmHttpEntityUtils.getFileName(httpEntity.getHeaders()));
+        MediaType contentType = httpEntity.getHeaders().getContentType();
+        return store(httpEntity.getBody().getInputStream(), size, contentType == null ? null : contentType.toString(),
+            XmHttpEntityUtils.getFileName(httpEntity.getHeaders()));
     }
 
     private String store(InputStream stream, Integer size, String contentType, String name) {
-        try {
-            if (size != null && contentType != null && "image".equals(contentType.substring(0, 5))) {
-                stream = ImageResizeUtil.resize(stream, size);
+        try (InputStream input = stream) {
+            PendingUpload upload;
+            if (size != null && contentType != null && contentType.startsWith("image")) {
+                upload = storeRendition(input, size);
+            } else {
+                upload = storeFile(input, contentType, FilenameUtils.getExtension(name));
+            }
+            if (!applicationProperties.getAmazon().getS3().isAsyncUpload()) {
+                upload.getResult().join();
             }
-            String filename = UUID.randomUUID().toString() + "." + FilenameUtils.getExtension(name);
-            amazonS3Template.save(filename, stream);
-
-            closeQuietly(stream);
 
             String prefix = String.format(applicationProperties.getAmazon().getAws().getTemplate(),
                 applicationProperties.getAmazon().getS3().getBucket());
-            return prefix + filename;
-        } catch (IOException e) {
+            return prefix + upload.getKey();
+        } catch (IOException | UncheckedIOException | CompletionException e) {
             log.error("Error storing file", e);
             throw new BusinessException("Error storing file");
         }
     }
 
-    private void closeQuietly(final InputStream stream) {
+    private PendingUpload storeFile(InputStream input, String contentType, String extension) throws IOException {
+        Path file = Files.createTempFile(TEMP_FILE_PREFIX, "." + extension);
+        try {
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            String key = UUID.randomUUID().toString() + "." + extension;
+            return new PendingUpload(key, upload(key, file, contentType));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Rendition key is derived from the source checksum, so the URL is the same for the same image and size.
+     */
+    private PendingUpload storeRendition(InputStream input, int size) throws IOException {
+        Path source = Files.createTempFile(TEMP_FILE_PREFIX, null);
+        try {
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            Files.copy(new DigestInputStream(input, digest), source, StandardCopyOption.REPLACE_EXISTING);
+            String key = Hex.encodeHexString(digest.digest()) + "-" + size + "." + RENDITION_EXTENSION;
+
+            CompletableFuture<String> rendition = renditions.get(key, k -> resizeAndUpload(source, size, k));
+            // failed rendition is resized and uploaded again by the next request
+            rendition.whenComplete((result, error) -> {
+                if (error != null) {
+                    renditions.asMap().remove(key, rendition);
+                }
+            });
+            return new PendingUpload(key, rendition);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    private CompletableFuture<String> resizeAndUpload(Path source, int size, String key) {
         try {
-            if (stream != null) {
-                stream.close();
+            Path rendition = Files.createTempFile(TEMP_FILE_PREFIX, "." + RENDITION_EXTENSION);
+            try (InputStream input = Files.newInputStream(source);
+                 OutputStream output = Files.newOutputStream(rendition)) {
+                ImageResizeUtil.resize(input, size, output);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(rendition);
+                throw e;
+            }
+            log.info("Image resized to rendition {}", key);
+            return upload(key, rendition, MediaType.IMAGE_PNG_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<String> upload(String key, Path file, String contentType) {
+        return amazonS3Template.saveAsync(key, file.toFile(), contentType).whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Upload of file {} failed", key, error);
+            } else {
+                log.info("File {} uploaded", key);
             }
+            deleteQuietly(file);
+        });
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
         } catch (IOException ignore) {
-            log.warn("Close stream fail: {}", ignore.getMessage());
+            log.warn("Delete temporary file fail: {}", ignore.getMessage());
         }
     }
 
+    /**
+     * Key of the stored file, known before the upload is completed.
+     */
+    @Value
+    private static class PendingUpload {
+
+        private final String key;
+
+        private final CompletableFuture<String> result;
+    }
+
 }
@@ -0,0 +1,60 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates all rows page by page, every page is requested with the cursor of the previous one when the consumer
+ * has taken all its rows. So only one page is held in memory and a slow consumer just delays the next request,
+ * there is no server side context to keep alive or to clear.
+ */
+public class CursorIterator<T> implements Iterator<T> {
+
+    private final Function<CursorPageable, CursorPage<T>> pageLoader;
+    private final int size;
+    private final Sort sort;
+
+    private CursorPage<T> page;
+    private Iterator<T> rows = Collections.emptyIterator();
+
+    public CursorIterator(Function<CursorPageable, CursorPage<T>> pageLoader, int size, Sort sort) {
+        this.pageLoader = pageLoader;
+        this.size = size;
+        this.sort = sort;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!rows.hasNext()) {
+            if (page != null && !page.hasNext()) {
+                return false;
+            }
+            page = pageLoader.apply(page == null
+                                    ? CursorPageable.first(size, sort)
+                                    : new CursorPageable(page.getNext(), size, sort));
+            rows = page.getContent().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return rows.next();
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED
+                                                                              | Spliterator.NONNULL), false);
+    }
+}
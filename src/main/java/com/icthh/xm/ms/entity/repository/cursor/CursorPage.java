@@ -0,0 +1,34 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Page of the cursor mode, {@link #getNext()} is the {@code after} token of the next page.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final CursorPageable pageable;
+
+    /**
+     * Token of the next page, {@code null} for the last page.
+     */
+    private final String next;
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public <U> CursorPage<U> map(Function<? super T, ? extends U> converter) {
+        return new CursorPage<>(content.stream().map(converter).collect(Collectors.toList()), pageable, next);
+    }
+}
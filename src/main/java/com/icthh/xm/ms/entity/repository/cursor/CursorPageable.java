@@ -0,0 +1,57 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import com.icthh.xm.commons.exceptions.BusinessException;
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Sort;
+
+import java.util.Iterator;
+
+/**
+ * Keyset (seek) page request: rows after the position of the {@code after} token ordered by one sort property
+ * and id. Unlike {@link org.springframework.data.domain.Pageable} there is no page number and no total count,
+ * so every page costs the same, however deep the client walks.
+ */
+@Getter
+@ToString
+public class CursorPageable {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 2000;
+
+    private static final Sort.Order DEFAULT_ORDER = Sort.Order.asc(CursorSortProperties.ID);
+
+    /**
+     * Token of the last row of the previous page, {@code null} for the first page.
+     */
+    private final String after;
+    private final int size;
+    private final Sort.Order order;
+
+    public CursorPageable(String after, int size, Sort sort) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new BusinessException(CursorSortProperties.ERROR_CODE,
+                                        "Cursor page size must be between 1 and " + MAX_SIZE);
+        }
+        this.after = StringUtils.isBlank(after) ? null : after;
+        this.size = size;
+        this.order = firstOrder(sort);
+    }
+
+    public static CursorPageable first(int size, Sort sort) {
+        return new CursorPageable(null, size, sort);
+    }
+
+    public boolean isFirst() {
+        return after == null;
+    }
+
+    private static Sort.Order firstOrder(Sort sort) {
+        if (sort == null) {
+            return DEFAULT_ORDER;
+        }
+        Iterator<Sort.Order> orders = sort.iterator();
+        return orders.hasNext() ? orders.next() : DEFAULT_ORDER;
+    }
+}
@@ -0,0 +1,27 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import lombok.Value;
+
+/**
+ * Resolved cursor: sort property and direction, and the (value, id) of the last row of the previous page.
+ * Next page contains rows with {@code (property, id)} strictly after {@code (value, id)} in that order.
+ */
+@Value
+public class CursorPosition {
+
+    String property;
+    boolean ascending;
+    Object value;
+    Long id;
+
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    /**
+     * Id is unique, so there is no tie to break when rows are ordered by id.
+     */
+    public boolean isIdOrder() {
+        return CursorSortProperties.ID.equals(property);
+    }
+}
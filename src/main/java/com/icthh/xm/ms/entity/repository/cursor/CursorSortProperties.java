@@ -0,0 +1,134 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.commons.exceptions.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Sort properties of an entity allowed in the cursor mode and the codec of the {@code after} token.
+ *
+ * Only not null properties may be registered, otherwise rows with null value are never reached by the seek
+ * condition. Token is an url safe base64 of json {@code [property, direction, value, id]} of the last row.
+ */
+public final class CursorSortProperties<T> {
+
+    public static final String ID = "id";
+    static final String ERROR_CODE = "error.cursor.invalid";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Function<T, Long> idGetter;
+    private final Map<String, SortProperty<T>> properties = new LinkedHashMap<>();
+
+    private CursorSortProperties(Function<T, Long> idGetter) {
+        this.idGetter = idGetter;
+        properties.put(ID, new SortProperty<>(Long.class, idGetter));
+    }
+
+    public static <T> CursorSortProperties<T> of(Function<T, Long> idGetter) {
+        return new CursorSortProperties<>(idGetter);
+    }
+
+    /**
+     * Registers sort property.
+     *
+     * @param property the entity property name
+     * @param type     the property type, one of {@link String}, {@link Long} or {@link Instant}
+     * @param getter   the property getter
+     * @return this
+     */
+    public CursorSortProperties<T> add(String property, Class<?> type, Function<T, ?> getter) {
+        properties.put(property, new SortProperty<>(type, getter));
+        return this;
+    }
+
+    public CursorPosition resolve(CursorPageable pageable) {
+        Sort.Order order = pageable.getOrder();
+        SortProperty<T> sortProperty = properties.get(order.getProperty());
+        if (sortProperty == null) {
+            throw new BusinessException(ERROR_CODE, "Cursor pagination does not support sort by "
+                                                    + order.getProperty() + ", supported: " + properties.keySet());
+        }
+        if (pageable.isFirst()) {
+            return new CursorPosition(order.getProperty(), order.isAscending(), null, null);
+        }
+        return decode(pageable.getAfter(), order, sortProperty);
+    }
+
+    /**
+     * Builds page from rows fetched with limit {@code size + 1}, the extra row only tells that next page exists.
+     */
+    public CursorPage<T> toPage(List<T> rows, CursorPageable pageable) {
+        if (rows.size() <= pageable.getSize()) {
+            return new CursorPage<>(rows, pageable, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, pageable.getSize()));
+        return new CursorPage<>(content, pageable, encode(pageable.getOrder(), content.get(content.size() - 1)));
+    }
+
+    @SneakyThrows
+    private String encode(Sort.Order order, T last) {
+        Object value = properties.get(order.getProperty()).getter.apply(last);
+        List<Object> token = Arrays.asList(order.getProperty(), order.getDirection().name(),
+                                           value instanceof Instant ? value.toString() : value,
+                                           idGetter.apply(last));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(token));
+    }
+
+    private CursorPosition decode(String after, Sort.Order order, SortProperty<T> sortProperty) {
+        JsonNode token;
+        try {
+            token = MAPPER.readTree(Base64.getUrlDecoder().decode(after));
+        } catch (IOException | IllegalArgumentException e) {
+            throw invalidCursor(after);
+        }
+        if (token == null || !token.isArray() || token.size() != 4 || !token.get(3).canConvertToLong()) {
+            throw invalidCursor(after);
+        }
+        if (!order.getProperty().equals(token.get(0).asText())
+            || !order.getDirection().name().equals(token.get(1).asText())) {
+            throw new BusinessException(ERROR_CODE, "Cursor was issued for another sort, start from the first page");
+        }
+        try {
+            return new CursorPosition(order.getProperty(), order.isAscending(),
+                                      sortProperty.parse(token.get(2)), token.get(3).asLong());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw invalidCursor(after);
+        }
+    }
+
+    private static BusinessException invalidCursor(String after) {
+        return new BusinessException(ERROR_CODE, "Cursor is not valid: " + after);
+    }
+
+    @RequiredArgsConstructor
+    private static final class SortProperty<T> {
+
+        private final Class<?> type;
+        private final Function<T, ?> getter;
+
+        Object parse(JsonNode value) {
+            if (Long.class.equals(type) && value.canConvertToLong()) {
+                return value.asLong();
+            }
+            if (!value.isTextual()) {
+                throw new IllegalArgumentException("Unexpected cursor value " + value);
+            }
+            return Instant.class.equals(type) ? Instant.parse(value.asText()) : value.asText();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.icthh.xm.ms.entity.repository.impl;
 
+import static java.util.Optional.ofNullable;
+
 import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.projection.XmEntityIdKeyTypeKey;
@@ -7,12 +9,21 @@ import com.icthh.xm.ms.entity.projection.XmEntityStateProjection;
 import com.icthh.xm.ms.entity.projection.XmEntityVersion;
 import com.icthh.xm.ms.entity.repository.SpringXmEntityRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.query.Query;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -26,8 +37,11 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class XmEntityRepositoryInternalImpl implements XmEntityRepositoryInternal {
 
+    private static final String FIELD_ID = "id";
+
     private final SpringXmEntityRepository springXmEntityRepository;
     private final XmEntityTenantConfigService tenantConfigService;
+    private final EntityManager entityManager;
 
     @Override
     public XmEntity findOneByIdForUpdate(@Param("id") Long id) {
@@ -132,6 +146,16 @@ public class XmEntityRepositoryInternalImpl implements XmEntityRepositoryInterna
         springXmEntityRepository.flush();
     }
 
+    @Override
+    public void clear() {
+        entityManager.clear();
+    }
+
+    @Override
+    public void detach(XmEntity xmEntity) {
+        entityManager.detach(xmEntity);
+    }
+
     /**
      * Returns a reference to the entity with the given identifier.
      *
@@ -203,6 +227,36 @@ public class XmEntityRepositoryInternalImpl implements XmEntityRepositoryInterna
         return springXmEntityRepository.count(spec);
     }
 
+    /**
+     * Keyset (ID greater than) query over Hibernate scrollable results, so the cost of the next
+     * portion does not depend on the number of already read entities as with offset pagination.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<XmEntity> streamAllOrderedById(@Nullable Specification<XmEntity> spec, @Nullable Long afterId,
+                                                 int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<XmEntity> query = cb.createQuery(XmEntity.class);
+        Root<XmEntity> root = query.from(XmEntity.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (spec != null) {
+            ofNullable(spec.toPredicate(root, query, cb)).ifPresent(predicates::add);
+        }
+        if (afterId != null) {
+            predicates.add(cb.greaterThan(root.get(FIELD_ID), afterId));
+        }
+        query.select(root)
+             .where(predicates.toArray(new Predicate[0]))
+             .orderBy(cb.asc(root.get(FIELD_ID)));
+
+        return entityManager.createQuery(query)
+                            .unwrap(Query.class)
+                            .setFetchSize(fetchSize)
+                            .setReadOnly(true)
+                            .stream();
+    }
+
     @Override
     public void deleteById(Long id) {
         springXmEntityRepository.deleteById(id);
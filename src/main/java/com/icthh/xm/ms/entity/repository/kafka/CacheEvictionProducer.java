@@ -0,0 +1,130 @@
+package com.icthh.xm.ms.entity.repository.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.commons.logging.aop.IgnoreLogginAspect;
+import com.icthh.xm.commons.logging.util.MdcUtils;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.cache.TenantCacheKey;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sends second level cache evictions of this node to the system topic, so other nodes of the service evict
+ * the same entries.
+ *
+ * Evictions made in a transaction are sent in one event after commit. Keys which cannot be restored
+ * on the other node evict the whole region there.
+ */
+@Slf4j
+@Component
+@IgnoreLogginAspect
+@RequiredArgsConstructor
+public class CacheEvictionProducer {
+
+    public static final String EVENT_TYPE = "HIBERNATE_CACHE_EVICT";
+    public static final String NODE = "node";
+    public static final String REGIONS = "regions";
+
+    @Getter
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final KafkaTemplate<String, String> template;
+    private final ApplicationProperties applicationProperties;
+
+    @Getter
+    @Value("${spring.application.name}")
+    private String appName;
+
+    /**
+     * @param regionName evicted region
+     * @param key evicted key, null when the whole region is evicted
+     */
+    public void evicted(String regionName, Object key) {
+        if (!applicationProperties.isKafkaEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            addEviction(getTransactionEvictions(), regionName, key);
+        } else {
+            Map<String, Set<Object>> evictions = new LinkedHashMap<>();
+            addEviction(evictions, regionName, key);
+            send(evictions);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<Object>> getTransactionEvictions() {
+        Map<String, Set<Object>> evictions = (Map<String, Set<Object>>) TransactionSynchronizationManager
+            .getResource(this);
+        if (evictions == null) {
+            Map<String, Set<Object>> transactionEvictions = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, transactionEvictions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    send(transactionEvictions);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheEvictionProducer.this);
+                }
+            });
+            evictions = transactionEvictions;
+        }
+        return evictions;
+    }
+
+    private static void addEviction(Map<String, Set<Object>> evictions, String regionName, Object key) {
+        if (evictions.containsKey(regionName) && evictions.get(regionName) == null) {
+            // the whole region is already evicted
+            return;
+        }
+        if (key instanceof TenantCacheKey && isPlainValue(((TenantCacheKey) key).getId())) {
+            evictions.computeIfAbsent(regionName, name -> new LinkedHashSet<>()).add(key);
+        } else {
+            evictions.put(regionName, null);
+        }
+    }
+
+    private static boolean isPlainValue(Object id) {
+        return id instanceof Number || id instanceof String;
+    }
+
+    private void send(Map<String, Set<Object>> evictions) {
+        if (evictions.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put(NODE, nodeId);
+            data.put(REGIONS, evictions);
+
+            SystemEvent event = new SystemEvent();
+            event.setEventId(MdcUtils.getRid());
+            event.setMessageSource(appName);
+            event.setEventType(EVENT_TYPE);
+            event.setData(data);
+            String content = mapper.writeValueAsString(event);
+            log.debug("Sending cache eviction {} to topic {}", content, applicationProperties.getKafkaSystemTopic());
+            template.send(applicationProperties.getKafkaSystemTopic(), content);
+        } catch (Exception e) {
+            // entries on other nodes expire by time to live
+            log.error("Cache eviction was not sent to other nodes, regions: {}", evictions.keySet(), e);
+        }
+    }
+}
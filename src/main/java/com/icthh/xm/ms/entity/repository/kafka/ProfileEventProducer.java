@@ -1,6 +1,8 @@
 package com.icthh.xm.ms.entity.repository.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -8,41 +10,83 @@ import com.icthh.xm.commons.logging.util.MdcUtils;
 import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.domain.Profile;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaOperations;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import javax.annotation.PreDestroy;
 
 /**
  * Kafka event producer for {@link com.icthh.xm.ms.entity.domain.Profile}.
+ *
+ * Events are serialized straight to bytes and keyed by tenant and profile user, so events of the same profile go to
+ * the same partition and keep their order. The producer is idempotent, linger, batch size and compression are
+ * set by {@code application.profile-event-producer}. In transactional mode events raised in a database
+ * transaction are sent in one kafka transaction after commit and dropped on rollback.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ProfileEventProducer {
 
-    private final KafkaTemplate<String, String> template;
+    private static final String METRICS_PREFIX = "profile.event.";
+
     private final ObjectMapper mapper = new ObjectMapper().configure(
         SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false).registerModule(new JavaTimeModule());
 
+    private final KafkaTemplate<String, byte[]> template;
+    private final ApplicationProperties applicationProperties;
     private final TenantContextHolder tenantContextHolder;
     private final XmAuthenticationContextHolder authContextHolder;
+    private final MetricRegistry metricRegistry;
 
     @Value("${spring.application.name}")
     private String appName;
 
-    @Value("${application.kafka-system-queue}")
-    private String topicName;
+    @Autowired
+    public ProfileEventProducer(KafkaProperties kafkaProperties,
+                                ApplicationProperties applicationProperties,
+                                TenantContextHolder tenantContextHolder,
+                                XmAuthenticationContextHolder authContextHolder,
+                                MetricRegistry metricRegistry) {
+        this(createTemplate(kafkaProperties, applicationProperties.getProfileEventProducer()),
+             applicationProperties, tenantContextHolder, authContextHolder, metricRegistry);
+    }
+
+    ProfileEventProducer(KafkaTemplate<String, byte[]> template,
+                         ApplicationProperties applicationProperties,
+                         TenantContextHolder tenantContextHolder,
+                         XmAuthenticationContextHolder authContextHolder,
+                         MetricRegistry metricRegistry) {
+        this.template = template;
+        this.applicationProperties = applicationProperties;
+        this.tenantContextHolder = tenantContextHolder;
+        this.authContextHolder = authContextHolder;
+        this.metricRegistry = metricRegistry;
+    }
 
     /**
      * Build message content for kafka's event.
@@ -53,41 +97,157 @@ public class ProfileEventProducer {
      */
     // FIXME must not be public: this is internal implementation protocol
     public String createEventJson(Profile profile, String eventType) {
-        SystemEvent event = null;
-        try {
-            event = buildSystemEvent(eventType);
-            event.setData(buildDataContent(profile));
-            return mapper.writeValueAsString(event);
-        } catch (JsonProcessingException e) {
-            log.warn("Event creation error, eventType = {}, data = {}", eventType, event.getData(), e);
-        }
-        return null;
+        return createEventJson(buildDataContent(profile), eventType);
     }
 
     public String createEventJson(Object data, String eventType) {
-        SystemEvent event = null;
-        try {
-            event = buildSystemEvent(eventType);
-            event.setData(data);
-            return mapper.writeValueAsString(event);
-        } catch (JsonProcessingException e) {
-            log.warn("Event creation error, eventType = {}, data = {}", eventType, event.getData(), e);
-        }
-        return null;
+        SystemEvent event = buildSystemEvent(eventType, data);
+        byte[] content = serialize(event);
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
     }
 
     /**
-     * Send event to XM System Queue.
+     * Send event to XM System Queue, keyed by tenant and {@code data.userKey} of the event,
+     * or by tenant and current user when the event has no user key.
      *
      * @param content the event data
      */
     // FIXME internal implementation protocol (JSON) should be encapsulated
-    @Async
     public void send(String content) {
         if (StringUtils.isNoneBlank(content)) {
-            log.debug("Sending kafka event with data {} to topic {}", content, topicName);
-            template.send(topicName, content);
+            send(buildKey(TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder), getUserKey(content)),
+                 content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Send profile event to XM System Queue, keyed by tenant and profile user.
+     *
+     * @param profile   data for kafka message content
+     * @param eventType event type for kafka message content
+     */
+    public void send(Profile profile, String eventType) {
+        SystemEvent event = buildSystemEvent(eventType, buildDataContent(profile));
+        byte[] content = serialize(event);
+        if (content != null) {
+            send(buildKey(event.getTenantKey(), profile.getUserKey()), content);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (template.getProducerFactory() instanceof DefaultKafkaProducerFactory) {
+            ((DefaultKafkaProducerFactory<String, byte[]>) template.getProducerFactory()).destroy();
+        }
+    }
+
+    private void send(String key, byte[] content) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(applicationProperties.getKafkaSystemQueue(),
+                                                                     key, content);
+        if (template.isTransactional() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            getTransactionRecords().add(record);
+        } else if (template.isTransactional()) {
+            template.executeInTransaction(operations -> {
+                doSend(operations, record);
+                return null;
+            });
+        } else {
+            doSend(template, record);
+        }
+    }
+
+    private void doSend(KafkaOperations<String, byte[]> operations,
+                        ProducerRecord<String, byte[]> record) {
+        log.debug("Sending kafka event with key {} to topic {}", record.key(), record.topic());
+        try {
+            operations.send(record).addCallback(
+                result -> metricRegistry.meter(METRICS_PREFIX + "sent").mark(),
+                e -> failed(record, e));
+        } catch (RuntimeException e) {
+            failed(record, e);
+            throw e;
+        }
+    }
+
+    private void failed(ProducerRecord<String, byte[]> record, Throwable e) {
+        metricRegistry.meter(METRICS_PREFIX + "failed").mark();
+        log.error("Profile event with key {} was not sent to topic {}: {}", record.key(), record.topic(),
+                  new String(record.value(), StandardCharsets.UTF_8), e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProducerRecord<String, byte[]>> getTransactionRecords() {
+        List<ProducerRecord<String, byte[]>> records = (List<ProducerRecord<String, byte[]>>)
+            TransactionSynchronizationManager.getResource(this);
+        if (records == null) {
+            List<ProducerRecord<String, byte[]>> transactionRecords = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, transactionRecords);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        template.executeInTransaction(operations -> {
+                            transactionRecords.forEach(record -> doSend(operations, record));
+                            return null;
+                        });
+                    } catch (RuntimeException e) {
+                        // database changes are committed already, failed events are logged by doSend
+                        log.error("Kafka transaction of {} profile events was aborted", transactionRecords.size());
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProfileEventProducer.this);
+                }
+            });
+            records = transactionRecords;
+        }
+        return records;
+    }
+
+    private static String buildKey(String tenant, String userKey) {
+        return tenant + ":" + userKey;
+    }
+
+    private String getUserKey(String content) {
+        try {
+            JsonNode userKey = mapper.readTree(content).path("data").path("userKey");
+            if (userKey.isTextual()) {
+                return userKey.asText();
+            }
+        } catch (IOException e) {
+            log.warn("Event content is not json, event is keyed by current user", e);
+        }
+        return authContextHolder.getContext().getUserKey().orElse(null);
+    }
+
+    private byte[] serialize(SystemEvent event) {
+        try {
+            return mapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            log.warn("Event creation error, eventType = {}, data = {}", event.getEventType(), event.getData(), e);
+            return null;
+        }
+    }
+
+    private static KafkaTemplate<String, byte[]> createTemplate(KafkaProperties kafkaProperties,
+                                                                ApplicationProperties.ProfileEventProducer config) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties();
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        // retries of the idempotent producer neither duplicate nor reorder events of a partition
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.LINGER_MS_CONFIG, config.getLingerMs());
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, config.getBatchSize());
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, config.getCompressionType());
+
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(props);
+        if (config.isTransactional()) {
+            factory.setTransactionIdPrefix(config.getTransactionIdPrefix() + UUID.randomUUID() + "-");
         }
+        return new KafkaTemplate<>(factory);
     }
 
     private Map<String, Object> buildDataContent(Profile profile) {
@@ -103,7 +263,7 @@ public class ProfileEventProducer {
         return data;
     }
 
-    private SystemEvent buildSystemEvent(String eventType) {
+    private SystemEvent buildSystemEvent(String eventType, Object data) {
         SystemEvent event = new SystemEvent();
         event.setEventId(MdcUtils.getRid());
         event.setMessageSource(appName);
@@ -111,6 +271,7 @@ public class ProfileEventProducer {
         event.setTenantKey(TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder));
         event.setUserLogin(authContextHolder.getContext().getRequiredLogin());
         event.setStartDate(Instant.now().toString());
+        event.setData(data);
         return event;
     }
 }
@@ -3,6 +3,9 @@ package com.icthh.xm.ms.entity.repository.kafka;
 import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_AUTH_CONTEXT;
 import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_TENANT_CONTEXT;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -11,33 +14,69 @@ import com.icthh.xm.commons.logging.util.MdcUtils;
 import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
 
 @Slf4j
 @Service
 public class SystemQueueConsumer {
 
+    private static final String METRICS_PREFIX = "system.queue.";
+    private static final String RECORDS_LAG_MAX = "records-lag-max";
+
+    private final ObjectMapper mapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .registerModule(new JavaTimeModule());
+
     private final TenantContextHolder tenantContextHolder;
     private final XmAuthenticationContextHolder authContextHolder;
     private final SystemConsumerService systemConsumerService;
     private final LepManager lepManager;
+    private final ApplicationProperties applicationProperties;
+    private final MetricRegistry metricRegistry;
+
+    private final AtomicLong recordsLag = new AtomicLong();
+    private final AtomicLong timeLag = new AtomicLong();
+    private volatile ExecutorService workers;
+    private volatile RetryTemplate retryTemplate;
 
     public SystemQueueConsumer(TenantContextHolder tenantContextHolder,
                                XmAuthenticationContextHolder authContextHolder,
                                SystemConsumerService systemConsumerService,
-                               LepManager lepManager) {
+                               LepManager lepManager,
+                               ApplicationProperties applicationProperties,
+                               MetricRegistry metricRegistry) {
         this.tenantContextHolder = tenantContextHolder;
         this.authContextHolder = authContextHolder;
         this.systemConsumerService = systemConsumerService;
         this.lepManager = lepManager;
+        this.applicationProperties = applicationProperties;
+        this.metricRegistry = metricRegistry;
+        metricRegistry.register(METRICS_PREFIX + "lag", (Gauge<Long>) recordsLag::get);
+        metricRegistry.register(METRICS_PREFIX + "time-lag", (Gauge<Long>) timeLag::get);
     }
 
     /**
@@ -52,30 +91,139 @@ public class SystemQueueConsumer {
         MdcUtils.putRid();
         try {
             log.info("Consume event from topic [{}]", message.topic());
-            ObjectMapper mapper = new ObjectMapper()
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            mapper.registerModule(new JavaTimeModule());
-            try {
-                SystemEvent event = mapper.readValue(message.value(), SystemEvent.class);
+            SystemEvent event = readEvent(message);
+            if (event == null) {
+                return;
+            }
+            init(event.getTenantKey(), event.getUserLogin());
 
-                log.info("Process event from topic [{}], {}", message.topic(), event);
+            systemConsumerService.acceptSystemEvent(event);
+            metricRegistry.meter(METRICS_PREFIX + "events").mark();
+        } finally {
+            destroy();
+        }
+    }
 
-                if (StringUtils.isBlank(event.getTenantKey())) {
-                    log.info("Event ignored due to tenantKey is empty {}", event);
-                    return;
+    /**
+     * Consume polled system event messages, batch mode of {@code application.system-queue.batch-enabled}.
+     *
+     * Events are grouped by tenant in the order of records, groups are processed in parallel and events of
+     * a group one by one, so the order of events of the same key is kept. Tenant and LEP thread context are
+     * created once per group. Each event is retried like in the record mode, failed event is logged and skipped.
+     *
+     * @param messages the system event messages
+     * @param consumer the consumer, to read its lag
+     */
+    public void consumeEvents(List<ConsumerRecord<String, String>> messages, Consumer<?, ?> consumer) {
+        MdcUtils.putRid();
+        try (Timer.Context ignored = metricRegistry.timer(METRICS_PREFIX + "batch").time()) {
+            log.info("Consume {} events from system queue", messages.size());
+            updateLag(messages, consumer);
+
+            Map<String, List<SystemEvent>> eventsByTenant = new LinkedHashMap<>();
+            for (ConsumerRecord<String, String> message : messages) {
+                SystemEvent event = readEvent(message);
+                if (event != null) {
+                    eventsByTenant.computeIfAbsent(event.getTenantKey(), key -> new ArrayList<>()).add(event);
                 }
-                init(event.getTenantKey(), event.getUserLogin());
+            }
+
+            String rid = MdcUtils.getRid();
+            List<CompletableFuture<Void>> tenantRuns = new ArrayList<>(eventsByTenant.size());
+            eventsByTenant.forEach((tenantKey, events) -> tenantRuns.add(
+                CompletableFuture.runAsync(() -> consumeTenantEvents(tenantKey, events, rid), getWorkers())));
+            // offsets of the batch are committed only after all its events are processed
+            CompletableFuture.allOf(tenantRuns.toArray(new CompletableFuture[0])).join();
+        } finally {
+            MdcUtils.removeRid();
+        }
+    }
 
-                systemConsumerService.acceptSystemEvent(event);
+    @PreDestroy
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
 
-            } catch (IOException e) {
-                log.error("System queue message has incorrect format: '{}'", message.value(), e);
+    private void consumeTenantEvents(String tenantKey, List<SystemEvent> events, String rid) {
+        MdcUtils.putRid(rid);
+        try {
+            init(tenantKey, null);
+            String tenantRid = MdcUtils.getRid();
+            for (SystemEvent event : events) {
+                MdcUtils.putRid(tenantRid + ":" + StringUtils.defaultIfBlank(event.getUserLogin(), ""));
+                try {
+                    getRetryTemplate().execute(context -> {
+                        systemConsumerService.acceptSystemEvent(event);
+                        return null;
+                    });
+                    metricRegistry.meter(METRICS_PREFIX + "events").mark();
+                } catch (RuntimeException e) {
+                    metricRegistry.meter(METRICS_PREFIX + "failures").mark();
+                    log.error("System event {} of tenant {} was not processed", event, tenantKey, e);
+                }
             }
         } finally {
             destroy();
         }
     }
 
+    private SystemEvent readEvent(ConsumerRecord<String, String> message) {
+        try {
+            SystemEvent event = mapper.readValue(message.value(), SystemEvent.class);
+
+            log.info("Process event from topic [{}], {}", message.topic(), event);
+
+            if (StringUtils.isBlank(event.getTenantKey())) {
+                log.info("Event ignored due to tenantKey is empty {}", event);
+                return null;
+            }
+            return event;
+        } catch (IOException e) {
+            log.error("System queue message has incorrect format: '{}'", message.value(), e);
+            return null;
+        }
+    }
+
+    private void updateLag(List<ConsumerRecord<String, String>> messages, Consumer<?, ?> consumer) {
+        messages.stream().mapToLong(ConsumerRecord::timestamp).filter(timestamp -> timestamp >= 0).min()
+                .ifPresent(oldest -> timeLag.set(Math.max(0, System.currentTimeMillis() - oldest)));
+        for (Map.Entry<MetricName, ? extends Metric> metric : consumer.metrics().entrySet()) {
+            MetricName name = metric.getKey();
+            // consumer level metric has no topic and partition tags
+            if (RECORDS_LAG_MAX.equals(name.name()) && !name.tags().containsKey("topic")
+                && metric.getValue().metricValue() instanceof Number) {
+                recordsLag.set(((Number) metric.getValue().metricValue()).longValue());
+            }
+        }
+    }
+
+    private ExecutorService getWorkers() {
+        if (workers == null) {
+            synchronized (this) {
+                if (workers == null) {
+                    workers = Executors.newFixedThreadPool(applicationProperties.getSystemQueue().getThreads());
+                }
+            }
+        }
+        return workers;
+    }
+
+    private RetryTemplate getRetryTemplate() {
+        if (retryTemplate == null) {
+            ApplicationProperties.Retry retry = applicationProperties.getRetry();
+            ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+            backOffPolicy.setInitialInterval(retry.getDelay());
+            backOffPolicy.setMultiplier(retry.getMultiplier());
+            RetryTemplate template = new RetryTemplate();
+            template.setRetryPolicy(new SimpleRetryPolicy(retry.getMaxAttempts()));
+            template.setBackOffPolicy(backOffPolicy);
+            retryTemplate = template;
+        }
+        return retryTemplate;
+    }
+
     private void init(String tenantKey, String login) {
         if (StringUtils.isNotBlank(tenantKey)) {
             TenantContextUtils.setTenant(tenantContextHolder, tenantKey);
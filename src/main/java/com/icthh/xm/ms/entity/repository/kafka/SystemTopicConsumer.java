@@ -1,6 +1,10 @@
 package com.icthh.xm.ms.entity.repository.kafka;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.icthh.xm.commons.logging.util.MdcUtils;
+import com.icthh.xm.ms.entity.config.cache.LocalCacheRegionFactory;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -8,11 +12,18 @@ import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+
 @Slf4j
 @RequiredArgsConstructor
 @Service
 public class SystemTopicConsumer {
 
+    private final ObjectMapper mapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final LocalCacheRegionFactory localCacheRegionFactory;
+
     /**
      * Consume tenant command event message.
      *
@@ -24,9 +35,24 @@ public class SystemTopicConsumer {
     public void consumeEvent(ConsumerRecord<String, String> message) {
         MdcUtils.putRid();
         try {
+            SystemEvent event = readEvent(message);
+            if (event != null && CacheEvictionProducer.EVENT_TYPE.equals(event.getEventType())) {
+                log.debug("Consume cache eviction from topic [{}], {}", message.topic(), event);
+                localCacheRegionFactory.evictFromOtherNode(event);
+                return;
+            }
             log.info("Consume event from topic [{}]", message.topic());
         } finally {
             MdcUtils.removeRid();
         }
     }
+
+    private SystemEvent readEvent(ConsumerRecord<String, String> message) {
+        try {
+            return mapper.readValue(message.value(), SystemEvent.class);
+        } catch (IOException e) {
+            log.debug("System topic message is not a system event: '{}'", message.value());
+            return null;
+        }
+    }
 }
@@ -1,19 +1,36 @@
 package com.icthh.xm.ms.entity.repository.search;
 
 import static java.util.Objects.nonNull;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.springframework.data.elasticsearch.core.query.Query.DEFAULT_PAGE;
 
+import com.icthh.xm.commons.permission.access.subject.Subject;
 import com.icthh.xm.commons.permission.service.PermissionCheckService;
+import com.icthh.xm.commons.permission.service.translator.SpelTranslator;
 import com.icthh.xm.ms.entity.domain.XmEntity;
-import com.icthh.xm.ms.entity.repository.search.translator.SpelToElasticTranslator;
+import com.icthh.xm.ms.entity.repository.cursor.CursorIterator;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPosition;
+import com.icthh.xm.ms.entity.repository.cursor.CursorSortProperties;
+import com.icthh.xm.ms.entity.repository.search.translator.SpelToElasticQueryTranslator;
 import com.icthh.xm.ms.entity.service.dto.SearchDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.data.elasticsearch.core.ScrolledPage;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
@@ -22,18 +39,19 @@ import org.springframework.data.elasticsearch.core.query.SearchQuery;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class PermittedSearchRepository {
 
-    private static final String AND = " AND ";
-
     private final PermissionCheckService permissionCheckService;
-    private final SpelToElasticTranslator spelToElasticTranslator;
+    private final SpelToElasticQueryTranslator spelToElasticQueryTranslator;
     private final ElasticsearchTemplate elasticsearchTemplate;
 
     /**
@@ -102,37 +120,134 @@ public class PermittedSearchRepository {
         return new PageImpl<>(resultList, pageable, resultList.size());
     }
 
+    /**
+     * Search permitted entities after the cursor position.
+     *
+     * <p>Spring data query of this version has no {@code search_after}, so the same seek is expressed as a filter
+     * on (sort property, id) of the last hit: the request is always the first page of the filtered hits, its cost
+     * does not grow with the depth as {@code from + size} does.
+     *
+     * @param query the elastic query
+     * @param pageable the cursor page info
+     * @param sortProperties the sort properties allowed for the entity, must be keyword, numeric or date fields
+     * @param entityClass the search entity class
+     * @param privilegeKey the privilege key
+     * @return permitted entities
+     */
+    public <T> CursorPage<T> searchForCursorPage(String query,
+                                                 CursorPageable pageable,
+                                                 CursorSortProperties<T> sortProperties,
+                                                 Class<T> entityClass,
+                                                 String privilegeKey) {
+        CursorPosition position = sortProperties.resolve(pageable);
+        BoolQueryBuilder esQuery = buildPermittedQuery(userQuery(query), privilegeKey);
+        if (!position.isFirst()) {
+            esQuery.filter(seekQuery(position));
+        }
+
+        log.debug("Executing DSL '{}'", esQuery);
+
+        SortOrder order = position.isAscending() ? SortOrder.ASC : SortOrder.DESC;
+        NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder()
+            .withQuery(esQuery)
+            .withPageable(PageRequest.of(0, pageable.getSize() + 1));
+        if (!position.isIdOrder()) {
+            queryBuilder.withSort(SortBuilders.fieldSort(position.getProperty()).order(order));
+        }
+        queryBuilder.withSort(SortBuilders.fieldSort(CursorSortProperties.ID).order(order));
+
+        return sortProperties.toPage(getElasticsearchTemplate().queryForList(queryBuilder.build(), entityClass),
+                                     pageable);
+    }
+
+    /**
+     * Search all permitted entities as a lazy stream ordered by id. Hits are requested by pages of fetch size
+     * after the last id of the previous page when the stream consumer reaches the end of the page, like
+     * {@code search_after} does, so heap usage is bounded by one page whatever the number of hits.
+     *
+     * @param query the elastic query
+     * @param fetchSize the number of hits per request
+     * @param sortProperties the sort properties of the entity
+     * @param entityClass the search entity class
+     * @param privilegeKey the privilege key
+     * @return permitted entities
+     */
+    public <T> Stream<T> searchForStream(String query,
+                                         int fetchSize,
+                                         CursorSortProperties<T> sortProperties,
+                                         Class<T> entityClass,
+                                         String privilegeKey) {
+        return new CursorIterator<>(pageable -> searchForCursorPage(query, pageable, sortProperties, entityClass,
+                                                                    privilegeKey),
+                                    fetchSize, Sort.by(CursorSortProperties.ID)).stream();
+    }
+
+    private static QueryBuilder seekQuery(CursorPosition position) {
+        RangeQueryBuilder idAfter = after(rangeQuery(CursorSortProperties.ID), position.getId(), position);
+        if (position.isIdOrder()) {
+            return idAfter;
+        }
+        Object value = position.getValue() instanceof Instant ? position.getValue().toString() : position.getValue();
+        return boolQuery()
+            .should(after(rangeQuery(position.getProperty()), value, position))
+            .should(boolQuery().must(termQuery(position.getProperty(), value)).must(idAfter))
+            .minimumShouldMatch(1);
+    }
+
+    private static RangeQueryBuilder after(RangeQueryBuilder range, Object value, CursorPosition position) {
+        return position.isAscending() ? range.gt(value) : range.lt(value);
+    }
+
     private SearchQuery buildQuery(String query, Pageable pageable, String privilegeKey, FetchSourceFilter fetchSourceFilter) {
-        String permittedQuery = buildPermittedQuery(query, privilegeKey);
+        BoolQueryBuilder permittedQuery = buildPermittedQuery(userQuery(query), privilegeKey);
 
         log.debug("Executing DSL '{}'", permittedQuery);
 
         return new NativeSearchQueryBuilder()
-            .withQuery(queryStringQuery(permittedQuery))
+            .withQuery(permittedQuery)
             .withSourceFilter(fetchSourceFilter)
             .withPageable(pageable == null ? DEFAULT_PAGE : pageable)
             .build();
     }
 
-    String buildPermittedQuery(String query, String privilegeKey) {
-        String permittedQuery = query;
+    private static QueryBuilder userQuery(String query) {
+        return StringUtils.isBlank(query) ? null : queryStringQuery(query);
+    }
 
-        String permittedCondition = createPermissionCondition(privilegeKey);
-        if (StringUtils.isNotBlank(permittedCondition)) {
-            if (StringUtils.isBlank(query)) {
-                permittedQuery = permittedCondition;
-            } else {
-                permittedQuery += AND + "(" + permittedCondition + ")";
-            }
+    /**
+     * User query stays in the scoring clause and permission condition goes to filter context,
+     * where elastic does not score it and caches its result.
+     * @param query the user query, {@code null} to match all permitted
+     * @param privilegeKey the privilege key
+     * @return permitted query
+     */
+    BoolQueryBuilder buildPermittedQuery(QueryBuilder query, String privilegeKey) {
+        BoolQueryBuilder permittedQuery = boolQuery();
+        if (query != null) {
+            permittedQuery.must(query);
+        }
+
+        QueryBuilder permissionFilter = createPermissionFilter(privilegeKey);
+        if (permissionFilter != null) {
+            permittedQuery.filter(permissionFilter);
         }
 
         return permittedQuery;
     }
 
-    private String createPermissionCondition(String privilegeKey) {
-        return permissionCheckService.createCondition(
+    private QueryBuilder createPermissionFilter(String privilegeKey) {
+        AtomicReference<QueryBuilder> permissionFilter = new AtomicReference<>();
+        // condition of the role is only captured here, it is compiled once by the query translator
+        permissionCheckService.createCondition(
             SecurityContextHolder.getContext().getAuthentication(), privilegeKey,
-            spelToElasticTranslator);
+            new SpelTranslator() {
+                @Override
+                public String translate(String spel, Subject subject) {
+                    permissionFilter.set(spelToElasticQueryTranslator.translate(spel, subject));
+                    return spel;
+                }
+            });
+        return permissionFilter.get();
     }
 
     // do not renamed! called from lep for not simple string query
@@ -11,10 +11,14 @@ import static org.springframework.data.elasticsearch.core.query.Query.DEFAULT_PA
 
 import com.icthh.xm.commons.permission.service.PermissionCheckService;
 import com.icthh.xm.ms.entity.domain.XmEntity;
-import com.icthh.xm.ms.entity.repository.search.translator.SpelToElasticTranslator;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.repository.cursor.CursorSortProperties;
+import com.icthh.xm.ms.entity.repository.search.translator.SpelToElasticQueryTranslator;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
@@ -22,9 +26,11 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
@@ -32,10 +38,19 @@ public class XmEntityPermittedSearchRepository extends PermittedSearchRepository
 
     private static final String TYPE_KEY = "typeKey";
 
+    /**
+     * Not null keyword and date fields of the index allowed as the sort of the cursor mode.
+     */
+    public static final CursorSortProperties<XmEntity> CURSOR_SORT = CursorSortProperties.of(XmEntity::getId)
+        .add(TYPE_KEY, String.class, XmEntity::getTypeKey)
+        .add("key", String.class, XmEntity::getKey)
+        .add("startDate", Instant.class, XmEntity::getStartDate)
+        .add("updateDate", Instant.class, XmEntity::getUpdateDate);
+
     public XmEntityPermittedSearchRepository(PermissionCheckService permissionCheckService,
-                                             SpelToElasticTranslator spelToElasticTranslator,
+                                             SpelToElasticQueryTranslator spelToElasticQueryTranslator,
                                              ElasticsearchTemplate elasticsearchTemplate) {
-        super(permissionCheckService, spelToElasticTranslator, elasticsearchTemplate);
+        super(permissionCheckService, spelToElasticQueryTranslator, elasticsearchTemplate);
     }
 
     /**
@@ -50,13 +65,7 @@ public class XmEntityPermittedSearchRepository extends PermittedSearchRepository
                                                   String typeKey,
                                                   Pageable pageable,
                                                   String privilegeKey) {
-        String permittedQuery = buildPermittedQuery(query, privilegeKey);
-
-        BoolQueryBuilder typeKeyQuery = typeKeyQuery(typeKey);
-
-        val esQuery = isEmpty(permittedQuery)
-            ? boolQuery().must(typeKeyQuery)
-            : typeKeyQuery.must(simpleQueryStringQuery(permittedQuery));
+        val esQuery = buildPermittedQuery(userQuery(query), privilegeKey).must(typeKeyQuery(typeKey));
 
         log.debug("Executing DSL '{}'", esQuery);
 
@@ -68,6 +77,32 @@ public class XmEntityPermittedSearchRepository extends PermittedSearchRepository
         return getElasticsearchTemplate().queryForPage(queryBuilder, XmEntity.class);
     }
 
+    /**
+     * Search for XmEntity by query, cursor mode.
+     * @param query the query
+     * @param pageable the cursor page info
+     * @param privilegeKey the privilege key
+     * @return permitted entities
+     */
+    public CursorPage<XmEntity> searchForCursorPage(String query, CursorPageable pageable, String privilegeKey) {
+        return searchForCursorPage(query, pageable, CURSOR_SORT, XmEntity.class, privilegeKey);
+    }
+
+    /**
+     * Search for all XmEntity by query as a lazy stream.
+     * @param query the query
+     * @param fetchSize the number of entities per elasticsearch request
+     * @param privilegeKey the privilege key
+     * @return permitted entities ordered by id
+     */
+    public Stream<XmEntity> searchForStream(String query, int fetchSize, String privilegeKey) {
+        return searchForStream(query, fetchSize, CURSOR_SORT, XmEntity.class, privilegeKey);
+    }
+
+    private static QueryBuilder userQuery(String query) {
+        return isEmpty(query) ? null : simpleQueryStringQuery(query);
+    }
+
     private BoolQueryBuilder typeKeyQuery(String typeKey) {
         val prefix = typeKey + ".";
         return boolQuery()
@@ -79,14 +114,9 @@ public class XmEntityPermittedSearchRepository extends PermittedSearchRepository
     public Page<XmEntity> searchWithIdNotIn(String query, Set<Long> ids,
                                             String targetEntityTypeKey,
                                             Pageable pageable, String privilegeKey) {
-        String permittedQuery = buildPermittedQuery(query, privilegeKey);
-
-        BoolQueryBuilder typeKeyQuery = typeKeyQuery(targetEntityTypeKey);
-
-        BoolQueryBuilder idNotIn = boolQuery().mustNot(termsQuery("id", ids));
-        var esQuery = isEmpty(permittedQuery)
-            ? idNotIn.must(typeKeyQuery)
-            : idNotIn.must(simpleQueryStringQuery(permittedQuery)).must(typeKeyQuery);
+        var esQuery = buildPermittedQuery(userQuery(query), privilegeKey)
+            .mustNot(termsQuery("id", ids))
+            .must(typeKeyQuery(targetEntityTypeKey));
 
         log.info("Executing DSL '{}'", esQuery);
 
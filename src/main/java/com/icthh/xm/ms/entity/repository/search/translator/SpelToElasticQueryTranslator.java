@@ -0,0 +1,203 @@
+package com.icthh.xm.ms.entity.repository.search.translator;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.existsQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchPhraseQuery;
+import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+
+import com.icthh.xm.commons.permission.access.subject.Subject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.springframework.expression.ExpressionException;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.BooleanLiteral;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.Operator;
+import org.springframework.expression.spel.ast.OperatorNot;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Compiles SpEL permission condition to typed elastic query, to be used in filter context of the search.
+ *
+ * Condition is parsed once per SpEL text, i.e. once per role and privilege until the permission is changed, only
+ * subject values are bound on every request. Logical operators, comparisons of {@code #returnObject} fields with
+ * literals or {@code #subject} values are supported, any other condition is translated to query string as before.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpelToElasticQueryTranslator {
+
+    private static final int CACHE_SIZE = 1000;
+    private static final String RETURN_OBJECT = "#returnObject";
+    private static final String SUBJECT = "#subject";
+
+    private final SpelToElasticTranslator spelToElasticTranslator;
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ConcurrentMap<String, Condition> conditions = new ConcurrentHashMap<>();
+
+    /**
+     * Translates SpEL permission condition to elastic query.
+     *
+     * @param spel    the permission condition
+     * @param subject the subject to bind {@code #subject} values
+     * @return query or {@code null} for blank condition
+     */
+    public QueryBuilder translate(String spel, Subject subject) {
+        if (StringUtils.isBlank(spel)) {
+            return null;
+        }
+        Condition condition = conditions.get(spel);
+        if (condition == null) {
+            // conditions of changed permissions are never requested again, so just start over
+            if (conditions.size() >= CACHE_SIZE) {
+                conditions.clear();
+            }
+            condition = conditions.computeIfAbsent(spel, this::compile);
+        }
+        return condition.toQuery(subject);
+    }
+
+    private Condition compile(String spel) {
+        try {
+            Condition condition = compile(parser.parseRaw(spel).getAST());
+            log.debug("SpEL was compiled to Elastic query for permission filtering: [{}]", spel);
+            return condition;
+        } catch (ExpressionException | IllegalArgumentException e) {
+            log.warn("SpEL [{}] is translated to Elastic query string for permission filtering: {}",
+                     spel, e.getMessage());
+            return subject -> queryStringQuery(spelToElasticTranslator.translate(spel, subject));
+        }
+    }
+
+    private Condition compile(SpelNode node) {
+        if (node instanceof OpAnd) {
+            Condition left = compile(node.getChild(0));
+            Condition right = compile(node.getChild(1));
+            return subject -> boolQuery().filter(left.toQuery(subject)).filter(right.toQuery(subject));
+        }
+        if (node instanceof OpOr) {
+            Condition left = compile(node.getChild(0));
+            Condition right = compile(node.getChild(1));
+            return subject -> boolQuery().should(left.toQuery(subject)).should(right.toQuery(subject))
+                                         .minimumShouldMatch(1);
+        }
+        if (node instanceof OperatorNot) {
+            Condition operand = compile(node.getChild(0));
+            return subject -> boolQuery().mustNot(operand.toQuery(subject));
+        }
+        if (node instanceof BooleanLiteral) {
+            boolean value = Boolean.TRUE.equals(((BooleanLiteral) node).getLiteralValue().getValue());
+            return subject -> value ? matchAllQuery() : boolQuery().mustNot(matchAllQuery());
+        }
+        if (node instanceof Operator && node.getChildCount() == 2) {
+            return comparison((Operator) node);
+        }
+        throw new IllegalArgumentException("not supported expression " + node.toStringAST());
+    }
+
+    private Condition comparison(Operator operator) {
+        SpelNode left = operator.getChild(0);
+        SpelNode right = operator.getChild(1);
+        boolean swapped = fieldName(left) == null;
+        String field = fieldName(swapped ? right : left);
+        if (field == null) {
+            throw new IllegalArgumentException("no #returnObject field in " + operator.toStringAST());
+        }
+        Function<Subject, Object> value = operand(swapped ? left : right);
+
+        switch (operator.getOperatorName()) {
+            case "==":
+                return subject -> equalsQuery(field, value.apply(subject));
+            case "!=":
+                return subject -> boolQuery().mustNot(equalsQuery(field, value.apply(subject)));
+            case "<":
+                return subject -> swapped ? rangeQuery(field).gt(value.apply(subject))
+                                          : rangeQuery(field).lt(value.apply(subject));
+            case "<=":
+                return subject -> swapped ? rangeQuery(field).gte(value.apply(subject))
+                                          : rangeQuery(field).lte(value.apply(subject));
+            case ">":
+                return subject -> swapped ? rangeQuery(field).lt(value.apply(subject))
+                                          : rangeQuery(field).gt(value.apply(subject));
+            case ">=":
+                return subject -> swapped ? rangeQuery(field).lte(value.apply(subject))
+                                          : rangeQuery(field).gte(value.apply(subject));
+            default:
+                throw new IllegalArgumentException("not supported operator " + operator.getOperatorName());
+        }
+    }
+
+    /**
+     * Phrase match gives the same result as quoted value of the query string for keyword and text fields.
+     */
+    private static QueryBuilder equalsQuery(String field, Object value) {
+        return value == null ? boolQuery().mustNot(existsQuery(field)) : matchPhraseQuery(field, value);
+    }
+
+    private static Function<Subject, Object> operand(SpelNode node) {
+        if (node instanceof Literal) {
+            Object value = ((Literal) node).getLiteralValue().getValue();
+            return subject -> value;
+        }
+        List<String> path = referencePath(node, SUBJECT);
+        if (path != null && path.size() == 1) {
+            switch (path.get(0)) {
+                case "login":
+                    return Subject::getLogin;
+                case "userKey":
+                    return Subject::getUserKey;
+                case "role":
+                    return Subject::getRole;
+                default:
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("not supported operand " + node.toStringAST());
+    }
+
+    private static String fieldName(SpelNode node) {
+        List<String> path = referencePath(node, RETURN_OBJECT);
+        return path == null || path.isEmpty() ? null : String.join(".", path);
+    }
+
+    /**
+     * Property names of the {@code #variable.property.property} expression, {@code null} for other expressions.
+     */
+    private static List<String> referencePath(SpelNode node, String variable) {
+        if (!(node instanceof CompoundExpression) || !(node.getChild(0) instanceof VariableReference)
+            || !variable.equals(node.getChild(0).toStringAST())) {
+            return null;
+        }
+        List<String> path = new ArrayList<>();
+        for (int i = 1; i < node.getChildCount(); i++) {
+            SpelNode property = node.getChild(i);
+            if (!(property instanceof PropertyOrFieldReference)) {
+                return null;
+            }
+            path.add(((PropertyOrFieldReference) property).getName());
+        }
+        return path;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        QueryBuilder toQuery(Subject subject);
+    }
+}
@@ -5,7 +5,6 @@ import static java.lang.String.format;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import com.icthh.xm.commons.logging.aop.IgnoreLogginAspect;
 import com.icthh.xm.commons.permission.constants.RoleConstant;
 import com.icthh.xm.commons.permission.domain.Permission;
@@ -19,10 +18,12 @@ import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
 import com.icthh.xm.ms.entity.security.SecurityUtils;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -83,6 +84,8 @@ public class DynamicPermissionCheckService {
     private final TenantContextHolder tenantContextHolder;
     private final XmAuthenticationContextHolder xmAuthenticationContextHolder;
 
+    private final Map<String, TenantFunctionPermissions> functionPermissionsByTenant = new ConcurrentHashMap<>();
+
     /**
      * Checks if user has permission with dynamic key feature
      * if some feature defined by FeatureContext in tenantConfigService enabled TRUE,
@@ -143,23 +146,33 @@ public class DynamicPermissionCheckService {
     }
 
     /**
-     * Function should return set of custom.dynamicFunctionFeature permissions assigned to role in current security scope
-     * @return set
+     * Function should return set of custom.dynamicFunctionFeature permissions assigned to role in current security scope.
+     * Result is cached per tenant and role, the same set instance is returned until tenant permissions are refreshed,
+     * so callers can use set identity as permissions version.
+     * @return unmodifiable set
      */
-    Set<String> getRoleFunctionPermissions() {
+    @IgnoreLogginAspect
+    public Set<String> getRoleFunctionPermissions() {
 
         //TODO throw error here, after migration to new test paradigm
         final Optional<String> userRole = SecurityUtils.getCurrentUserRole();
         if (!userRole.isPresent()) {
-            return Sets.newHashSet();
+            return Collections.emptySet();
         }
 
-        Map<String, Permission> permissions = permissionService.getPermissions(
-            TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder.getContext()));
-        return nullSafe(permissions).values().stream()
-                                    .filter(functionPermissionMatcher(userRole.get()))
-                                    .map(Permission::getPrivilegeKey)
-                                    .collect(Collectors.toSet());
+        String tenantKey = TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder.getContext());
+        Map<String, Permission> permissions = permissionService.getPermissions(tenantKey);
+
+        TenantFunctionPermissions tenantPermissions = functionPermissionsByTenant.get(tenantKey);
+        if (tenantPermissions == null || tenantPermissions.source != permissions) {
+            tenantPermissions = new TenantFunctionPermissions(permissions);
+            functionPermissionsByTenant.put(tenantKey, tenantPermissions);
+        }
+        return tenantPermissions.byRole.computeIfAbsent(userRole.get(), role ->
+            Collections.unmodifiableSet(nullSafe(permissions).values().stream()
+                                            .filter(functionPermissionMatcher(role))
+                                            .map(Permission::getPrivilegeKey)
+                                            .collect(Collectors.toSet())));
     }
 
     /**
@@ -222,7 +235,7 @@ public class DynamicPermissionCheckService {
      * Checks if feature tenant-config -> functions -> dynamic enabled
      * @return true if feature enabled
      */
-    private boolean isDynamicFunctionPermissionEnabled() {
+    public boolean isDynamicFunctionPermissionEnabled() {
         return tenantConfigService.getXmEntityTenantConfig().getEntityFunctions().getDynamicPermissionCheckEnabled();
     }
 
@@ -239,5 +252,14 @@ public class DynamicPermissionCheckService {
         throw new UnsupportedOperationException("isDynamicChangeStatePermissionEnabled Not implementer");
     }
 
-}
+    /**
+     * Role function permissions computed from one instance of tenant permissions map.
+     * Permission service replaces the map on permissions refresh, so instance change means new permissions version.
+     */
+    @RequiredArgsConstructor
+    private static final class TenantFunctionPermissions {
+        private final Map<String, Permission> source;
+        private final Map<String, Set<String>> byRole = new ConcurrentHashMap<>();
+    }
 
+}
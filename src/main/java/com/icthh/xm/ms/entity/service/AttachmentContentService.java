@@ -0,0 +1,159 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.icthh.xm.commons.exceptions.BusinessException;
+import com.icthh.xm.commons.exceptions.EntityNotFoundException;
+import com.icthh.xm.ms.entity.domain.Attachment;
+import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.repository.AttachmentRepository;
+import com.icthh.xm.ms.entity.repository.ContentStreamRepository;
+import com.icthh.xm.ms.entity.service.dto.AttachmentContent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.persistence.EntityManager;
+
+/**
+ * Service for binary content of attachments, the content is streamed and never loaded into memory as a whole.
+ */
+@Slf4j
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class AttachmentContentService {
+
+    public static final String CONTENT_SIZE_ERROR = "error.attachment.content.size";
+
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentService attachmentService;
+    private final ContentStreamRepository contentStreamRepository;
+    private final ContentService contentService;
+    private final EntityManager entityManager;
+
+    /**
+     * Replace the attachment content by the stream, checksum, size and content type of the attachment are updated.
+     * The stream is read twice: the checksum is computed first and the value is written only if no content
+     * with the checksum is stored yet.
+     *
+     * @param id          the attachment id
+     * @param value       source of the content stream
+     * @param size        number of bytes in the stream
+     * @param contentType the content type
+     * @return the updated attachment
+     */
+    public Attachment updateContent(Long id, InputStreamSource value, long size,
+                                    String contentType) throws IOException {
+        Attachment attachment = getAttachment(id);
+        String checksum = getChecksum(id, value, size);
+        Content content = contentService.acquire(checksum).orElse(null);
+        if (content == null) {
+            content = storeContent(id, value, size, checksum);
+        }
+
+        attachment.setContent(content);
+        attachment.setContentChecksum(checksum);
+        attachment.setValueContentSize(size);
+        attachment.setValueContentType(contentType);
+        return attachmentRepository.save(attachment);
+    }
+
+    /**
+     * Replace the attachment content by already stored content with the checksum, so the value is not uploaded.
+     * Only content of attachments the current user can read is linked, otherwise the value has to be uploaded.
+     *
+     * @param id       the attachment id
+     * @param checksum sha256 checksum of the value
+     * @return the updated attachment
+     */
+    public Attachment linkContent(Long id, String checksum) {
+        Attachment attachment = getAttachment(id);
+        Content content = attachmentService.findReadableContentId(checksum, null)
+                                           .flatMap(contentService::acquire)
+                                           .orElseThrow(() -> new EntityNotFoundException(
+                                               "No content found by checksum: " + checksum));
+        log.info("Content {} was linked to attachment {} by checksum", content.getId(), id);
+
+        attachment.setContent(content);
+        attachment.setContentChecksum(checksum);
+        attachment.setValueContentSize(contentStreamRepository.findValueSize(content.getId()).orElse(null));
+        return attachmentRepository.save(attachment);
+    }
+
+    /**
+     * Get metadata of the attachment content.
+     *
+     * @param id the attachment id
+     * @return the content metadata
+     */
+    @Transactional(readOnly = true)
+    public AttachmentContent getContent(Long id) {
+        Attachment attachment = getAttachment(id);
+        Long contentId = attachmentRepository.findContentIdById(id);
+        Long size = contentId == null ? null : contentStreamRepository.findValueSize(contentId).orElse(null);
+        if (size == null) {
+            throw new EntityNotFoundException("No content found for attachment: " + id);
+        }
+        return AttachmentContent.builder()
+                                .contentId(contentId)
+                                .name(attachment.getName())
+                                .contentType(attachment.getValueContentType())
+                                .size(size)
+                                .checksum(attachment.getContentChecksum())
+                                .build();
+    }
+
+    /**
+     * Copy the range of the content value to the output stream.
+     *
+     * @param contentId the content id
+     * @param start     the first byte of the range, zero based
+     * @param length    number of bytes to copy
+     * @param output    the output stream
+     */
+    @Transactional(readOnly = true)
+    public void writeContent(Long contentId, long start, long length, OutputStream output) {
+        contentStreamRepository.readValue(contentId, start, length, output);
+    }
+
+    private String getChecksum(Long id, InputStreamSource value, long size) throws IOException {
+        try (CountingInputStream input = new CountingInputStream(value.getInputStream())) {
+            String checksum = DigestUtils.sha256Hex(input);
+            assertSize(id, input, size);
+            return checksum;
+        }
+    }
+
+    /**
+     * The value is written by the statement, so the managed instance must not hold it.
+     */
+    private Content storeContent(Long id, InputStreamSource value, long size, String checksum) throws IOException {
+        Content content = new Content().value(new byte[0]).checksum(checksum);
+        entityManager.persist(content);
+        entityManager.flush();
+        entityManager.detach(content);
+        try (CountingInputStream input = new CountingInputStream(value.getInputStream())) {
+            contentStreamRepository.writeValue(content.getId(), input, size);
+            assertSize(id, input, size);
+        }
+        log.info("Content {} of attachment {} was written, {} bytes", content.getId(), id, size);
+        return entityManager.getReference(Content.class, content.getId());
+    }
+
+    private static void assertSize(Long id, CountingInputStream input, long size) {
+        if (input.getByteCount() != size) {
+            throw new BusinessException(CONTENT_SIZE_ERROR, "Content of attachment " + id + " has "
+                                                            + input.getByteCount() + " bytes instead of " + size);
+        }
+    }
+
+    private Attachment getAttachment(Long id) {
+        return attachmentRepository.findById(id).orElseThrow(
+            () -> new EntityNotFoundException("No attachment found by id: " + id));
+    }
+}
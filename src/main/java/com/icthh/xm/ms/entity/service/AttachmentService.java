@@ -1,5 +1,7 @@
 package com.icthh.xm.ms.entity.service;
 
+import static com.google.common.collect.ImmutableMap.of;
+
 import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.commons.exceptions.EntityNotFoundException;
 import com.icthh.xm.commons.lep.LogicExtensionPoint;
@@ -8,6 +10,7 @@ import com.icthh.xm.commons.permission.annotation.FindWithPermission;
 import com.icthh.xm.commons.permission.repository.PermittedRepository;
 import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
 import com.icthh.xm.ms.entity.domain.Attachment;
+import com.icthh.xm.ms.entity.domain.Content;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.spec.AttachmentSpec;
 import com.icthh.xm.ms.entity.repository.AttachmentRepository;
@@ -17,6 +20,7 @@ import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -50,8 +54,11 @@ public class AttachmentService {
 
     private final XmEntitySpecService xmEntitySpecService;
 
+    private final ContentService contentService;
+
     /**
      * Save a attachment.
+     * Content value is stored once per checksum, attachments with the same value share the stored content.
      *
      * @param attachment the entity to save
      * @return the persisted entity
@@ -84,9 +91,13 @@ public class AttachmentService {
 
         attachment.setXmEntity(entity);
 
-        if (attachment.getContent() != null) {
-            byte[] content = attachment.getContent().getValue();
-            attachment.setContentChecksum(DigestUtils.sha256Hex(content));
+        Content content = attachment.getContent();
+        if (content != null && content.getValue() != null) {
+            byte[] value = content.getValue();
+            String checksum = DigestUtils.sha256Hex(value);
+            attachment.setContentChecksum(checksum);
+            attachment.setContent(contentService.store(checksum, value));
+            attachment.setValueContentSize((long) value.length);
         }
         return attachmentRepository.save(attachment);
     }
@@ -103,6 +114,24 @@ public class AttachmentService {
         return permittedRepository.findAll(Attachment.class, privilegeKey);
     }
 
+    /**
+     * Find content with the checksum among contents of attachments the current user can read,
+     * so the checksum does not give access to contents uploaded by other users.
+     *
+     * @param checksum sha256 checksum of the value
+     * @return the content id, empty if no readable attachment has content with the checksum
+     */
+    @Transactional(readOnly = true)
+    @FindWithPermission("ATTACHMENT.GET_LIST")
+    public Optional<Long> findReadableContentId(String checksum, String privilegeKey) {
+        return permittedRepository.findByCondition("returnObject.content.checksum = :checksum",
+                                                   of("checksum", checksum), PageRequest.of(0, 1),
+                                                   Attachment.class, privilegeKey)
+                                  .getContent().stream()
+                                  .findFirst()
+                                  .map(attachment -> attachmentRepository.findContentIdById(attachment.getId()));
+    }
+
     /**
      *  Get one attachment by id.
      *
@@ -0,0 +1,85 @@
+package com.icthh.xm.ms.entity.service;
+
+import static com.icthh.xm.commons.tenant.TenantContextUtils.buildTenant;
+
+import com.icthh.xm.commons.config.client.repository.TenantListRepository;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.ContentGc;
+import com.icthh.xm.ms.entity.repository.ContentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Deletes attachment contents which are not referenced by any attachment.
+ *
+ * Contents are shared by attachments with the same value, however they are created: uploaded, imported or saved
+ * with the attachment. Content is deleted when no attachment references it and it was not stored or shared during
+ * grace period, so attachments saved with it in running transactions are not broken. Contents are deleted
+ * in batches, each batch in a separate transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContentGarbageCollector {
+
+    private final ContentRepository contentRepository;
+    private final SeparateTransactionExecutor separateTransactionExecutor;
+    private final TenantContextHolder tenantContextHolder;
+    private final TenantListRepository tenantListRepository;
+    private final ApplicationProperties applicationProperties;
+
+    @Scheduled(fixedDelayString = "${application.content-gc.delay:3600000}")
+    public void collectAll() {
+        if (!applicationProperties.getContentGc().isEnabled()) {
+            return;
+        }
+        for (String tenant : tenantListRepository.getTenants()) {
+            try {
+                tenantContextHolder.getPrivilegedContext().execute(buildTenant(tenant.toUpperCase()), this::collect);
+            } catch (RuntimeException e) {
+                log.error("Content garbage collection of tenant {} failed", tenant, e);
+            }
+        }
+    }
+
+    /**
+     * Delete unreferenced contents of the current tenant which were not acquired during grace period.
+     * @return number of deleted contents.
+     */
+    public int collect() {
+        return collect(Instant.now().minusMillis(applicationProperties.getContentGc().getGracePeriod()));
+    }
+
+    /**
+     * Delete unreferenced contents of the current tenant.
+     * @param acquiredBefore contents stored or shared after this time are kept
+     * @return number of deleted contents.
+     */
+    public int collect(Instant acquiredBefore) {
+        ContentGc config = applicationProperties.getContentGc();
+        int deleted = 0;
+        for (int i = 0; i < config.getMaxBatchesPerRun(); i++) {
+            List<Long> ids = contentRepository.findUnreferencedIds(acquiredBefore,
+                                                                   PageRequest.of(0, config.getBatchSize()));
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += separateTransactionExecutor.doInSeparateTransaction(
+                () -> contentRepository.deleteUnreferenced(ids, acquiredBefore));
+            if (ids.size() < config.getBatchSize()) {
+                break;
+            }
+        }
+        if (deleted > 0) {
+            log.info("Unreferenced contents were deleted: {}", deleted);
+        }
+        return deleted;
+    }
+}
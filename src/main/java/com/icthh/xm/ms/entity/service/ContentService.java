@@ -1,29 +1,123 @@
 package com.icthh.xm.ms.entity.service;
 
+import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.commons.permission.annotation.FindWithPermission;
 import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
 import com.icthh.xm.commons.permission.repository.PermittedRepository;
 import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.repository.AttachmentRepository;
+import com.icthh.xm.ms.entity.repository.ContentRepository;
 import com.icthh.xm.ms.entity.repository.search.PermittedSearchRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
+@Slf4j
 @Service
 @Transactional
 @RequiredArgsConstructor
 public class ContentService {
 
+    public static final String ERROR_CONTENT_SHARED = "error.content.shared";
+
     private final PermittedRepository permittedRepository;
 
     private final PermittedSearchRepository permittedSearchRepository;
 
+    private final ContentRepository contentRepository;
+
+    private final AttachmentRepository attachmentRepository;
+
     @FindWithPermission("CONTENT.GET_LIST")
     @PrivilegeDescription("Privilege to get all the contents")
     public List<Content> findAll(String privilegeKey) {
         return permittedRepository.findAll(Content.class, privilegeKey);
     }
 
+    /**
+     * Create content of the content API, it is not shared by checksum and not collected as garbage.
+     *
+     * @param content the content to create
+     * @return the created content
+     */
+    public Content create(Content content) {
+        content.setChecksum(null);
+        content.setAcquiredDate(null);
+        return contentRepository.save(content);
+    }
+
+    /**
+     * Update value of the content of the content API. Value of content shared by several attachments can not be
+     * changed, checksum and size of the only attachment are updated with the value.
+     *
+     * @param content the content to update
+     * @return the updated content
+     */
+    public Content update(Content content) {
+        long attachments = attachmentRepository.countByContentId(content.getId());
+        if (attachments > 1) {
+            throw new BusinessException(ERROR_CONTENT_SHARED,
+                                        "Content " + content.getId() + " is shared by " + attachments
+                                        + " attachments and can not be updated");
+        }
+        if (attachments == 0 && contentRepository.findChecksumById(content.getId()) == null) {
+            return create(content);
+        }
+        String checksum = DigestUtils.sha256Hex(content.getValue());
+        content.setChecksum(checksum);
+        Content result = contentRepository.save(content);
+        attachmentRepository.updateContentChecksum(content.getId(), checksum, (long) content.getValue().length);
+        return result;
+    }
+
+    /**
+     * Get reference to the stored content with the value, the content is created if the value is not stored yet.
+     * Content which is not referenced by any attachment is deleted by {@link ContentGarbageCollector}.
+     *
+     * @param checksum sha256 checksum of the value
+     * @param value    the content value
+     * @return the content, uninitialized reference if the content was already stored
+     */
+    public Content store(String checksum, byte[] value) {
+        return acquire(checksum).orElseGet(() -> contentRepository.save(new Content().value(value)
+                                                                                     .checksum(checksum)));
+    }
+
+    /**
+     * Find content by checksum of the value, the content is not collected as garbage during grace period after it.
+     *
+     * @param checksum sha256 checksum of the value
+     * @return uninitialized reference to the content, empty if no content has the checksum
+     */
+    public Optional<Content> acquire(String checksum) {
+        // the content may be deleted by garbage collection after it was found, then it is not updated
+        for (Long id : contentRepository.findIdsByChecksum(checksum, PageRequest.of(0, 1))) {
+            Optional<Content> content = acquire(id);
+            if (content.isPresent()) {
+                log.info("Content {} is shared by checksum {}", id, checksum);
+                return content;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Find content by id, the content is not collected as garbage during grace period after it.
+     *
+     * @param contentId the content id
+     * @return uninitialized reference to the content, empty if the content was deleted by garbage collection
+     */
+    public Optional<Content> acquire(Long contentId) {
+        if (contentRepository.acquire(contentId, Instant.now()) > 0) {
+            return Optional.of(contentRepository.getOne(contentId));
+        }
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,257 @@
+package com.icthh.xm.ms.entity.service;
+
+import static com.icthh.xm.commons.tenant.TenantContextUtils.getRequiredTenantKeyValue;
+
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.ms.entity.config.IndexConfiguration;
+import com.icthh.xm.ms.entity.config.MappingConfiguration;
+import com.icthh.xm.ms.entity.domain.ReindexCheckpoint;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ReindexCheckpointRepository;
+import com.icthh.xm.ms.entity.service.dto.IndexRebuildStatus;
+import com.icthh.xm.ms.entity.service.dto.IndexRebuildStatus.State;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Blue/green rebuild of the tenant elasticsearch index.
+ *
+ * Live index name is an alias of the versioned index. New versioned index is filled while the live one serves
+ * searches, then alias is moved to it by one request. Entity changes made during the rebuild are written to both
+ * indexes, see {@link ElasticOutboxDispatcher}. Running rebuild is marked in database, so changes dispatched
+ * by every instance reach the new index, deletes included.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ElasticIndexRebuildManager {
+
+    private static final String VERSION_SEPARATOR = "_";
+    private static final String REBUILD_MARKER_PREFIX = "REBUILD:";
+
+    private final ConcurrentMap<String, IndexRebuildStatus> rebuilds = new ConcurrentHashMap<>();
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final TenantContextHolder tenantContextHolder;
+    private final IndexConfiguration indexConfiguration;
+    private final MappingConfiguration mappingConfiguration;
+    private final ReindexCheckpointRepository reindexCheckpointRepository;
+    private final SeparateTransactionExecutor separateTransactionExecutor;
+
+    public String getLiveIndexName() {
+        return persistentEntity().getIndexName();
+    }
+
+    public boolean isLiveIndexExists() {
+        return elasticsearchTemplate.indexExists(XmEntity.class);
+    }
+
+    public boolean isIndexExists(String index) {
+        return elasticsearchTemplate.indexExists(index);
+    }
+
+    /**
+     * Prefix of versioned index names of the tenant.
+     */
+    public String getIndexVersionPrefix() {
+        return getLiveIndexName() + VERSION_SEPARATOR;
+    }
+
+    /**
+     * Creation time of versioned index, it is the version itself.
+     */
+    public Instant getIndexVersionDate(String index) {
+        return Instant.ofEpochMilli(Long.parseLong(index.substring(getIndexVersionPrefix().length())));
+    }
+
+    /**
+     * Creates new versioned index with tenant index configuration and mapping.
+     * Mapping of the live index is used when tenant has no mapping configuration.
+     *
+     * @return name of created index
+     */
+    public String createIndexVersion() {
+        String index = getIndexVersionPrefix() + System.currentTimeMillis();
+        if (indexConfiguration.isConfigExists()) {
+            elasticsearchTemplate.createIndex(index, indexConfiguration.getConfiguration());
+        } else {
+            elasticsearchTemplate.createIndex(index);
+        }
+
+        String type = persistentEntity().getIndexType();
+        Object mapping = mappingConfiguration.isMappingExists() ? mappingConfiguration.getMapping() : getLiveMapping(type);
+        elasticsearchTemplate.putMapping(index, type, mapping);
+        log.info("Elasticsearch: index {} was created", index);
+        return index;
+    }
+
+    /**
+     * Marks the index as under rebuild for all instances, marker of previous rebuild of the tenant is replaced.
+     * Marker is committed before entities are read for the rebuild, so entity deleted later is deleted
+     * from the index by any instance.
+     */
+    public void start(String index, long indexed) {
+        String markerPrefix = REBUILD_MARKER_PREFIX + getIndexVersionPrefix();
+        separateTransactionExecutor.doInSeparateTransaction(() -> {
+            reindexCheckpointRepository.deleteAll(reindexCheckpointRepository.findAllByScopeStartingWith(markerPrefix));
+            return reindexCheckpointRepository.save(new ReindexCheckpoint(REBUILD_MARKER_PREFIX + index, 0L, 0L,
+                                                                          Instant.now()));
+        });
+        rebuilds.put(getTenant(), IndexRebuildStatus.builder()
+                                                    .index(index)
+                                                    .state(State.RUNNING)
+                                                    .indexed(indexed)
+                                                    .startDate(Instant.now())
+                                                    .build());
+    }
+
+    /**
+     * Removes rebuild marker, alias is already moved to the index.
+     */
+    public void complete() {
+        separateTransactionExecutor.doInSeparateTransaction(() -> {
+            Optional<ReindexCheckpoint> marker = findMarker();
+            marker.ifPresent(reindexCheckpointRepository::delete);
+            return marker;
+        });
+        rebuilds.computeIfPresent(getTenant(), (tenant, status) -> status.toBuilder()
+                                                                        .state(State.COMPLETED)
+                                                                        .endDate(Instant.now())
+                                                                        .build());
+    }
+
+    /**
+     * Failed rebuild keeps its marker, so the index gets changes until the rebuild is continued.
+     */
+    public void fail(Exception e) {
+        rebuilds.computeIfPresent(getTenant(), (tenant, status) -> status.toBuilder()
+                                                                        .state(State.FAILED)
+                                                                        .endDate(Instant.now())
+                                                                        .error(e.getMessage())
+                                                                        .build());
+    }
+
+    public Optional<IndexRebuildStatus> getStatus() {
+        return Optional.ofNullable(rebuilds.get(getTenant()));
+    }
+
+    /**
+     * Bulk request of entities to the index under rebuild, counts them in rebuild progress.
+     */
+    public void index(String index, List<XmEntity> entities) {
+        bulkIndex(index, entities);
+        rebuilds.computeIfPresent(getTenant(), (tenant, status) -> status.toBuilder()
+                                                                        .indexed(status.getIndexed() + entities.size())
+                                                                        .build());
+    }
+
+    /**
+     * Writes entities to the index under rebuild of the current tenant, if any.
+     */
+    public void saveToRebuildIndex(List<XmEntity> entities) {
+        getRunningIndex().ifPresent(index -> bulkIndex(index, entities));
+    }
+
+    /**
+     * Deletes entities from the index under rebuild of the current tenant, if any.
+     */
+    public void deleteFromRebuildIndex(List<XmEntity> entities) {
+        getRunningIndex().ifPresent(index -> entities.forEach(entity -> elasticsearchTemplate
+            .delete(index, persistentEntity().getIndexType(), String.valueOf(entity.getId()))));
+    }
+
+    /**
+     * Moves live alias to the given index by one request and deletes other versioned indexes of the tenant.
+     * Live index created before blue/green rebuild has alias name, it is removed in the same request.
+     */
+    public void swapAlias(String index) {
+        String alias = getLiveIndexName();
+        IndicesAdminClient indices = elasticsearchTemplate.getClient().admin().indices();
+        elasticsearchTemplate.refresh(index);
+
+        IndicesAliasesRequestBuilder request = indices.prepareAliases().addAlias(index, alias);
+        if (indices.prepareAliasesExist(alias).get().exists()) {
+            indices.prepareGetAliases(alias).get().getAliases().forEach(aliases -> {
+                if (!aliases.value.isEmpty() && !index.equals(aliases.key)) {
+                    request.removeAlias(aliases.key, alias);
+                }
+            });
+        } else {
+            request.addAliasAction(AliasActions.removeIndex().index(alias));
+        }
+        request.get();
+        log.info("Elasticsearch: alias {} was moved to index {}", alias, index);
+
+        for (String oldIndex : indices.prepareGetIndex().addIndices(getIndexVersionPrefix() + "*").get().indices()) {
+            if (!index.equals(oldIndex)) {
+                elasticsearchTemplate.deleteIndex(oldIndex);
+                log.info("Elasticsearch: old index {} was deleted", oldIndex);
+            }
+        }
+    }
+
+    /**
+     * ElasticsearchTemplate.getMapping does not resolve alias, so mapping is taken from the index behind it.
+     */
+    private Map<String, Object> getLiveMapping(String type) {
+        ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> mappings = elasticsearchTemplate
+            .getClient().admin().indices().prepareGetMappings(getLiveIndexName()).setTypes(type).get().getMappings();
+        for (ObjectCursor<ImmutableOpenMap<String, MappingMetaData>> indexMappings : mappings.values()) {
+            MappingMetaData mapping = indexMappings.value.get(type);
+            if (mapping != null) {
+                return mapping.getSourceAsMap();
+            }
+        }
+        throw new IllegalStateException("Mapping of type " + type + " was not found in " + getLiveIndexName());
+    }
+
+    private Optional<String> getRunningIndex() {
+        return findMarker().map(marker -> marker.getScope().substring(REBUILD_MARKER_PREFIX.length()));
+    }
+
+    private Optional<ReindexCheckpoint> findMarker() {
+        return reindexCheckpointRepository.findFirstByScopeStartingWithOrderByUpdateDateDesc(
+            REBUILD_MARKER_PREFIX + getIndexVersionPrefix());
+    }
+
+    private void bulkIndex(String index, List<XmEntity> entities) {
+        String type = persistentEntity().getIndexType();
+        List<IndexQuery> queries = entities.stream()
+                                           .map(entity -> new IndexQueryBuilder().withIndexName(index)
+                                                                                 .withType(type)
+                                                                                 .withId(String.valueOf(entity.getId()))
+                                                                                 .withObject(entity)
+                                                                                 .build())
+                                           .collect(Collectors.toList());
+        if (!queries.isEmpty()) {
+            elasticsearchTemplate.bulkIndex(queries);
+        }
+    }
+
+    private ElasticsearchPersistentEntity<?> persistentEntity() {
+        return elasticsearchTemplate.getPersistentEntityFor(XmEntity.class);
+    }
+
+    private String getTenant() {
+        return getRequiredTenantKeyValue(tenantContextHolder);
+    }
+}
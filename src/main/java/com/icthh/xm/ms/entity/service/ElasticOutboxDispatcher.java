@@ -0,0 +1,178 @@
+package com.icthh.xm.ms.entity.service;
+
+import static com.icthh.xm.commons.tenant.TenantContextUtils.buildTenant;
+import static com.icthh.xm.commons.tenant.TenantContextUtils.getRequiredTenantKeyValue;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.icthh.xm.commons.config.client.repository.TenantListRepository;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.ElasticOutbox;
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent;
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent.Operation;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ElasticOutboxEventRepository;
+import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
+import com.icthh.xm.ms.entity.util.XmEntityUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Applies XmEntity changes from elasticsearch outbox to the index.
+ *
+ * Events are taken in bulk batches in creation order, only the last change of each entity in the batch is applied.
+ * Saved entities are read from database with indexed relationships, so index gets their latest state. Failed batch stays in the outbox
+ * and dispatch of the tenant is retried with exponential backoff.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ElasticOutboxDispatcher {
+
+    private static final String METRICS_PREFIX = "elastic.outbox.";
+
+    private final ConcurrentMap<String, TenantOutbox> outboxes = new ConcurrentHashMap<>();
+
+    private final ElasticOutboxEventRepository elasticOutboxEventRepository;
+    private final XmEntityRepositoryInternal xmEntityRepository;
+    private final XmEntitySearchRepository xmEntitySearchRepository;
+    private final ElasticIndexRebuildManager elasticIndexRebuildManager;
+    private final SeparateTransactionExecutor separateTransactionExecutor;
+    private final TenantContextHolder tenantContextHolder;
+    private final TenantListRepository tenantListRepository;
+    private final ApplicationProperties applicationProperties;
+    private final MetricRegistry metricRegistry;
+
+    @Scheduled(fixedDelayString = "${application.elastic-outbox.dispatch-delay:1000}")
+    public void dispatchAll() {
+        if (!applicationProperties.getElasticOutbox().isDispatcherEnabled()) {
+            return;
+        }
+        for (String tenant : tenantListRepository.getTenants()) {
+            tenantContextHolder.getPrivilegedContext().execute(buildTenant(tenant.toUpperCase()), this::dispatch);
+        }
+    }
+
+    /**
+     * Applies outbox events of the current tenant, unless its dispatch waits for retry.
+     * @return number of applied events.
+     */
+    public int dispatch() {
+        ElasticOutbox config = applicationProperties.getElasticOutbox();
+        TenantOutbox outbox = outboxes.computeIfAbsent(getRequiredTenantKeyValue(tenantContextHolder),
+                                                       this::registerOutbox);
+        if (outbox.nextAttempt > System.currentTimeMillis()) {
+            return 0;
+        }
+
+        int dispatched = 0;
+        try {
+            for (int i = 0; i < config.getMaxBatchesPerRun(); i++) {
+                int batch = separateTransactionExecutor.doInSeparateTransaction(() -> dispatchBatch(config));
+                dispatched += batch;
+                if (batch < config.getBatchSize()) {
+                    break;
+                }
+            }
+            outbox.failures = 0;
+            outbox.nextAttempt = 0;
+            outbox.oldestEventDate = elasticOutboxEventRepository.findFirstByOrderByIdAsc()
+                                                                 .map(ElasticOutboxEvent::getCreateDate)
+                                                                 .orElse(null);
+        } catch (RuntimeException e) {
+            long delay = Math.min(config.getRetryDelay() << Math.min(outbox.failures, 30), config.getMaxRetryDelay());
+            outbox.failures++;
+            outbox.nextAttempt = System.currentTimeMillis() + delay;
+            metricRegistry.meter(METRICS_PREFIX + "failures").mark();
+            log.error("Elasticsearch outbox dispatch failed {} times in a row, retry in {} ms",
+                      outbox.failures, delay, e);
+        }
+        metricRegistry.meter(METRICS_PREFIX + "dispatched").mark(dispatched);
+        return dispatched;
+    }
+
+    private int dispatchBatch(ElasticOutbox config) {
+        List<ElasticOutboxEvent> events = elasticOutboxEventRepository
+            .findAllByOrderByIdAsc(PageRequest.of(0, config.getBatchSize()));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // events are ordered by creation, so the last operation of the entity wins
+        Map<Long, Operation> operations = new LinkedHashMap<>();
+        events.forEach(event -> operations.put(event.getEntityId(), event.getOperation()));
+
+        List<Long> toSave = getEntityIds(operations, Operation.SAVE);
+        if (!toSave.isEmpty()) {
+            List<XmEntity> entities = xmEntityRepository.findAllById(toSave);
+            entities.forEach(XmEntityUtils::initIndexedRelationships);
+            if (!entities.isEmpty()) {
+                xmEntitySearchRepository.saveAll(entities);
+                elasticIndexRebuildManager.saveToRebuildIndex(entities);
+            }
+        }
+
+        List<XmEntity> toDelete = getEntityIds(operations, Operation.DELETE).stream()
+                                                                            .map(this::toXmEntity)
+                                                                            .collect(Collectors.toList());
+        if (!toDelete.isEmpty()) {
+            xmEntitySearchRepository.deleteAll(toDelete);
+            elasticIndexRebuildManager.deleteFromRebuildIndex(toDelete);
+        }
+
+        elasticOutboxEventRepository.deleteInBatch(events);
+        log.debug("Elasticsearch outbox: {} events applied, saved {}, deleted {}",
+                  events.size(), toSave.size(), toDelete.size());
+        return events.size();
+    }
+
+    private static List<Long> getEntityIds(Map<Long, Operation> operations, Operation operation) {
+        return operations.entrySet().stream()
+                         .filter(entry -> entry.getValue() == operation)
+                         .map(Map.Entry::getKey)
+                         .collect(Collectors.toList());
+    }
+
+    private XmEntity toXmEntity(Long id) {
+        XmEntity entity = new XmEntity();
+        entity.setId(id);
+        return entity;
+    }
+
+    private TenantOutbox registerOutbox(String tenant) {
+        TenantOutbox outbox = new TenantOutbox();
+        metricRegistry.register(METRICS_PREFIX + tenant.toLowerCase() + ".lag", (Gauge<Long>) outbox::getLag);
+        return outbox;
+    }
+
+    /**
+     * Dispatch state of the tenant outbox.
+     */
+    private static class TenantOutbox {
+
+        private volatile int failures;
+        private volatile long nextAttempt;
+        private volatile Instant oldestEventDate;
+
+        /**
+         * Age of the oldest event not applied to the index at last dispatch, in milliseconds.
+         */
+        private long getLag() {
+            Instant oldest = oldestEventDate;
+            return oldest == null ? 0L : System.currentTimeMillis() - oldest.toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+
+/**
+ * Worker pool of {@code application.elastic-reindex.threads} for elasticsearch bulk requests of reindexing,
+ * shared by all reindex runs of the instance.
+ *
+ * Not registered as {@link java.util.concurrent.Executor}, so it is not picked up as the async task executor.
+ */
+@Component
+public class ElasticReindexExecutor {
+
+    private final ExecutorService workers;
+
+    public ElasticReindexExecutor(ApplicationProperties applicationProperties) {
+        this.workers = Executors.newFixedThreadPool(applicationProperties.getElasticReindex().getThreads(),
+                                                    new CustomizableThreadFactory("elastic-reindex-"));
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, workers);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        workers.shutdownNow();
+    }
+}
@@ -3,50 +3,55 @@ package com.icthh.xm.ms.entity.service;
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 
 import com.codahale.metrics.annotation.Timed;
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.icthh.xm.commons.logging.util.MdcUtils;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
 import com.icthh.xm.commons.tenant.TenantKey;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.ElasticReindex;
 import com.icthh.xm.ms.entity.config.IndexConfiguration;
 import com.icthh.xm.ms.entity.config.MappingConfiguration;
+import com.icthh.xm.ms.entity.domain.ReindexCheckpoint;
 import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ReindexCheckpointRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
 import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
+import com.icthh.xm.ms.entity.service.dto.IndexRebuildStatus;
+import com.icthh.xm.ms.entity.util.XmEntityUtils;
 import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.StopWatch;
 import org.elasticsearch.ResourceAlreadyExistsException;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
-import javax.persistence.OneToMany;
 import javax.persistence.PersistenceContext;
 import javax.persistence.criteria.CriteriaBuilder;
 
@@ -54,10 +59,13 @@ import javax.persistence.criteria.CriteriaBuilder;
 @Service
 public class ElasticsearchIndexService {
 
-    private static final Lock reindexLock = new ReentrantLock();
-    private static final int PAGE_SIZE = 100;
     private static final String XM_ENTITY_FIELD_TYPEKEY = "typeKey";
     private static final String XM_ENTITY_FIELD_ID = "id";
+    private static final String XM_ENTITY_FIELD_UPDATE_DATE = "updateDate";
+    private static final String CHECKPOINT_REBUILD_PREFIX = "ALL:";
+    private static final String CHECKPOINT_TYPE_KEY_PREFIX = "TYPE_KEY:";
+
+    private final ConcurrentMap<String, Lock> reindexLocks = new ConcurrentHashMap<>();
 
     private final XmEntityRepositoryInternal xmEntityRepositoryInternal;
     private final XmEntitySearchRepository xmEntitySearchRepository;
@@ -66,6 +74,11 @@ public class ElasticsearchIndexService {
     private final MappingConfiguration mappingConfiguration;
     private final IndexConfiguration indexConfiguration;
     private final Executor executor;
+    private final ReindexCheckpointRepository reindexCheckpointRepository;
+    private final SeparateTransactionExecutor separateTransactionExecutor;
+    private final ApplicationProperties applicationProperties;
+    private final ElasticIndexRebuildManager elasticIndexRebuildManager;
+    private final ElasticReindexExecutor reindexExecutor;
 
     @PersistenceContext
     private final EntityManager entityManager;
@@ -82,7 +95,12 @@ public class ElasticsearchIndexService {
                                      MappingConfiguration mappingConfiguration,
                                      IndexConfiguration indexConfiguration,
                                      @Qualifier("taskExecutor") Executor executor,
-                                     EntityManager entityManager) {
+                                     EntityManager entityManager,
+                                     ReindexCheckpointRepository reindexCheckpointRepository,
+                                     SeparateTransactionExecutor separateTransactionExecutor,
+                                     ApplicationProperties applicationProperties,
+                                     ElasticIndexRebuildManager elasticIndexRebuildManager,
+                                     ElasticReindexExecutor reindexExecutor) {
         this.xmEntityRepositoryInternal = xmEntityRepositoryInternal;
         this.xmEntitySearchRepository = xmEntitySearchRepository;
         this.elasticsearchTemplate = elasticsearchTemplate;
@@ -91,6 +109,11 @@ public class ElasticsearchIndexService {
         this.indexConfiguration = indexConfiguration;
         this.executor = executor;
         this.entityManager = entityManager;
+        this.reindexCheckpointRepository = reindexCheckpointRepository;
+        this.separateTransactionExecutor = separateTransactionExecutor;
+        this.applicationProperties = applicationProperties;
+        this.elasticIndexRebuildManager = elasticIndexRebuildManager;
+        this.reindexExecutor = reindexExecutor;
     }
 
     /**
@@ -145,25 +168,48 @@ public class ElasticsearchIndexService {
     }
 
     /**
-     * Recreates index and then reindexes ALL entities from database.
+     * Rebuilds index from ALL entities of database.
+     *
+     * New versioned index is filled while the live one serves searches and then live alias is moved to it,
+     * see {@link ElasticIndexRebuildManager}. Interrupted rebuild continues filling the same versioned index.
+     * When there is no live index yet, it is created and filled directly.
      * @return number of reindexed entities.
      */
     @Timed
     @Transactional(readOnly = true)
     public long reindexAll() {
-        long reindexed = 0L;
-        if (reindexLock.tryLock()) {
-            try {
+        String tenant = TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder);
+        return withReindexLock(tenant, () -> {
+            long reindexed;
+            if (elasticIndexRebuildManager.isLiveIndexExists()) {
+                reindexed = rebuildIndex();
+            } else {
                 recreateIndex();
-                reindexed = reindexXmEntity();
-                log.info("Elasticsearch: Successfully performed full reindexing");
-            } finally {
-                reindexLock.unlock();
+                reindexed = reindexXmEntity(null, null, 0L, this::indexBulk);
             }
-        } else {
-            log.info("Elasticsearch: concurrent reindexing attempt");
+            log.info("Elasticsearch: Successfully performed full reindexing");
+            return reindexed;
+        });
+    }
+
+    /**
+     * Progress of the current or last index rebuild of the tenant.
+     * Rebuild started on another instance is visible only after interruption, by its checkpoint.
+     * @return rebuild status, empty if there was no rebuild.
+     */
+    public Optional<IndexRebuildStatus> getRebuildStatus() {
+        Optional<IndexRebuildStatus> status = elasticIndexRebuildManager.getStatus();
+        if (status.isPresent()) {
+            return status;
         }
-        return reindexed;
+        return findRebuildCheckpoint().map(checkpoint -> IndexRebuildStatus
+            .builder()
+            .index(getRebuildIndex(checkpoint))
+            .state(IndexRebuildStatus.State.INTERRUPTED)
+            .indexed(checkpoint.getIndexed())
+            .startDate(elasticIndexRebuildManager.getIndexVersionDate(getRebuildIndex(checkpoint)))
+            .endDate(checkpoint.getUpdateDate())
+            .build());
     }
 
     /**
@@ -179,22 +225,29 @@ public class ElasticsearchIndexService {
 
         Objects.requireNonNull(typeKey, "typeKey should not be null");
 
-        Specification<XmEntity> spec = Specification
-            .where((root, query, cb) -> cb.equal(root.get(XM_ENTITY_FIELD_TYPEKEY), typeKey));
-
-        return reindexXmEntity(spec);
-
+        return reindexByTypeKey(typeKey, null);
     }
 
+    /**
+     * Refreshes entities in elasticsearch index filtered by typeKey.
+     *
+     * Interrupted reindex of the type key continues after the last indexed entity.
+     * @param typeKey typeKey to filter source entities.
+     * @param startFrom number of bulks to skip when there is no checkpoint for the type key, nullable.
+     * @return number of reindexed entities.
+     */
     @Timed
     @Transactional(readOnly = true)
     public long reindexByTypeKey(@Nonnull String typeKey, Integer startFrom) {
         Objects.requireNonNull(typeKey, "typeKey should not be null");
-        Specification spec = (Specification) (root, query, criteriaBuilder) -> {
-            query.orderBy(criteriaBuilder.desc(root.get("id")));
-            return criteriaBuilder.equal(root.get(XM_ENTITY_FIELD_TYPEKEY), typeKey);
-        };
-        return reindexXmEntity(spec, startFrom);
+
+        Specification<XmEntity> spec = Specification
+            .where((root, query, cb) -> cb.equal(root.get(XM_ENTITY_FIELD_TYPEKEY), typeKey));
+        String scope = CHECKPOINT_TYPE_KEY_PREFIX + typeKey;
+        long skip = (long) defaultIfNull(startFrom, 0) * applicationProperties.getElasticReindex().getBulkSize();
+        String tenant = TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder);
+
+        return withReindexLock(tenant, () -> reindexXmEntity(spec, scope, skip, this::indexBulk));
     }
 
     /**
@@ -220,47 +273,174 @@ public class ElasticsearchIndexService {
         return reindexXmEntity(spec);
     }
 
-    private Long reindexXmEntity() {
+    private long reindexXmEntity(@Nullable Specification<XmEntity> spec) {
+        return reindexXmEntity(spec, null, 0L, this::indexBulk);
+    }
 
-        return reindexXmEntity(null);
+    private long rebuildIndex() {
+        Optional<ReindexCheckpoint> checkpoint = findRebuildCheckpoint();
+        String index;
+        if (checkpoint.isPresent()) {
+            index = getRebuildIndex(checkpoint.get());
+            log.info("Elasticsearch: continue interrupted rebuild of index {}", index);
+        } else {
+            index = elasticIndexRebuildManager.createIndexVersion();
+        }
+        Instant changedSince = elasticIndexRebuildManager.getIndexVersionDate(index);
+
+        elasticIndexRebuildManager.start(index, checkpoint.map(ReindexCheckpoint::getIndexed).orElse(0L));
+        try {
+            Consumer<List<XmEntity>> rebuildIndexer = bulk -> elasticIndexRebuildManager.index(index, bulk);
+            long reindexed = reindexXmEntity(null, CHECKPOINT_REBUILD_PREFIX + index, 0L, rebuildIndexer);
+            // entities changed by other instances or while rebuild was interrupted
+            reindexXmEntity(updatedSince(changedSince), null, 0L, rebuildIndexer);
+            elasticIndexRebuildManager.swapAlias(index);
+            elasticIndexRebuildManager.complete();
+            return reindexed;
+        } catch (RuntimeException e) {
+            elasticIndexRebuildManager.fail(e);
+            throw e;
+        }
     }
 
-    private long reindexXmEntity(@Nullable Specification<XmEntity> spec) {
-        return reindexXmEntity(spec, null);
+    /**
+     * Checkpoint of interrupted rebuild, which index still exists.
+     */
+    private Optional<ReindexCheckpoint> findRebuildCheckpoint() {
+        Optional<ReindexCheckpoint> checkpoint = reindexCheckpointRepository
+            .findFirstByScopeStartingWithOrderByUpdateDateDesc(CHECKPOINT_REBUILD_PREFIX
+                                                               + elasticIndexRebuildManager.getIndexVersionPrefix());
+        if (checkpoint.isPresent() && !elasticIndexRebuildManager.isIndexExists(getRebuildIndex(checkpoint.get()))) {
+            deleteCheckpoint(checkpoint.get().getScope());
+            return Optional.empty();
+        }
+        return checkpoint;
     }
 
-    private long reindexXmEntity(@Nullable Specification<XmEntity> spec,  Integer startFrom) {
+    private static String getRebuildIndex(ReindexCheckpoint checkpoint) {
+        return checkpoint.getScope().substring(CHECKPOINT_REBUILD_PREFIX.length());
+    }
+
+    private static Specification<XmEntity> updatedSince(Instant changedSince) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get(XM_ENTITY_FIELD_UPDATE_DATE), changedSince);
+    }
+
+    /**
+     * Bulk request to the live index, also written to the index under rebuild if any.
+     */
+    private void indexBulk(List<XmEntity> bulk) {
+        xmEntitySearchRepository.saveAll(bulk);
+        elasticIndexRebuildManager.saveToRebuildIndex(bulk);
+    }
+
+    /**
+     * Streams entities in ID order and sends them to elasticsearch by bulk requests from worker threads.
+     * When checkpoint scope is set, ID of the last entity of the completed bulks prefix is saved after each bulk
+     * and next reindex of the same scope continues after it. Checkpoint is removed when reindex is finished.
+     * Entities are skipped only when reindex is not continued from checkpoint.
+     */
+    private long reindexXmEntity(@Nullable Specification<XmEntity> spec, @Nullable String checkpointScope,
+                                 long skip, Consumer<List<XmEntity>> bulkIndexer) {
 
         StopWatch stopWatch = StopWatch.createStarted();
-        startFrom = defaultIfNull(startFrom, 0);
+        ElasticReindex config = applicationProperties.getElasticReindex();
 
-        final Class<XmEntity> clazz = XmEntity.class;
+        ReindexCheckpoint checkpoint = findCheckpoint(checkpointScope)
+            .orElseGet(() -> new ReindexCheckpoint(checkpointScope, null, 0L, null));
+        if (checkpoint.getLastId() != null) {
+            log.info("Elasticsearch: resume reindexing of {} after id {}, already indexed {}",
+                     checkpointScope, checkpoint.getLastId(), checkpoint.getIndexed());
+        }
 
-        long reindexed = 0L;
+        TenantKey tenantKey = TenantContextUtils.getRequiredTenantKey(tenantContextHolder);
+        String rid = MdcUtils.getRid();
+        Deque<PendingBulk> pendingBulks = new ArrayDeque<>();
+        int maxPendingBulks = config.getThreads() * 2;
 
-        if (xmEntityRepositoryInternal.count(spec) > 0) {
-            List<Method> relationshipGetters = Arrays.stream(clazz.getDeclaredFields())
-                                                     .filter(field -> field.getType().equals(Set.class))
-                                                     .filter(field -> field.getAnnotation(OneToMany.class) != null)
-                                                     .filter(field -> field.getAnnotation(JsonIgnore.class) == null)
-                                                     .map(field -> extractFieldGetter(clazz, field))
-                                                     .filter(Objects::nonNull)
-                                                     .collect(Collectors.toList());
-
-            for (int i = startFrom; i <= xmEntityRepositoryInternal.count(spec) / PAGE_SIZE ; i++) {
-                Pageable page = PageRequest.of(i, PAGE_SIZE);
-                log.info("Indexing page {} of {}, pageSize {}", i, xmEntityRepositoryInternal.count(spec) / PAGE_SIZE, PAGE_SIZE);
-                Page<XmEntity> results = xmEntityRepositoryInternal.findAll(spec, page);
-                results.map(entity -> loadEntityRelationships(relationshipGetters, entity));
-                xmEntitySearchRepository.saveAll(results.getContent());
-                reindexed += results.getContent().size();
+        long reindexed = 0L;
+        try (Stream<XmEntity> entities = xmEntityRepositoryInternal
+            .streamAllOrderedById(spec, checkpoint.getLastId(), config.getFetchSize())) {
+
+            Iterator<XmEntity> iterator = entities.skip(checkpoint.getLastId() == null ? skip : 0L).iterator();
+            List<XmEntity> bulk = new ArrayList<>(config.getBulkSize());
+            while (iterator.hasNext()) {
+                bulk.add(XmEntityUtils.initIndexedRelationships(iterator.next()));
+                if (bulk.size() == config.getBulkSize()) {
+                    pendingBulks.add(submitBulk(bulk, bulkIndexer, tenantKey, rid));
+                    reindexed += bulk.size();
+                    bulk = new ArrayList<>(config.getBulkSize());
+                    // relationships are already loaded, detach entities to keep persistence context small
+                    entityManager.clear();
+                    completeBulks(pendingBulks, maxPendingBulks, checkpoint);
+                }
+            }
+            if (!bulk.isEmpty()) {
+                pendingBulks.add(submitBulk(bulk, bulkIndexer, tenantKey, rid));
+                reindexed += bulk.size();
                 entityManager.clear();
             }
+            completeBulks(pendingBulks, 0, checkpoint);
+        } catch (RuntimeException e) {
+            // workers are shared, bulks of the failed reindex are not sent
+            pendingBulks.forEach(pendingBulk -> pendingBulk.result.cancel(false));
+            throw e;
         }
+
+        deleteCheckpoint(checkpointScope);
         log.info("Elasticsearch: Indexed [{}] rows for {} in {} ms",
-                 reindexed, clazz.getSimpleName(), stopWatch.getTime());
+                 reindexed, XmEntity.class.getSimpleName(), stopWatch.getTime());
         return reindexed;
+    }
+
+    private PendingBulk submitBulk(List<XmEntity> bulk, Consumer<List<XmEntity>> bulkIndexer,
+                                   TenantKey tenantKey, String rid) {
+        Long lastId = bulk.get(bulk.size() - 1).getId();
+        CompletableFuture<Long> result = reindexExecutor.supplyAsync(
+            () -> execForCustomContext(tenantKey, rid, () -> {
+                bulkIndexer.accept(bulk);
+                return (long) bulk.size();
+            }));
+        return new PendingBulk(lastId, result);
+    }
+
+    /**
+     * Waits for the oldest bulks while there are more than maxPending of them and takes already completed ones,
+     * then moves checkpoint to the last entity of the taken bulks.
+     * Failure of bulk request is rethrown, checkpoint stays on the last successful prefix.
+     */
+    private void completeBulks(Deque<PendingBulk> pendingBulks, int maxPending, ReindexCheckpoint checkpoint) {
+        boolean completed = false;
+        while (!pendingBulks.isEmpty()
+               && (pendingBulks.size() > maxPending || pendingBulks.peek().result.isDone())) {
+            PendingBulk pendingBulk = pendingBulks.poll();
+            checkpoint.setIndexed(checkpoint.getIndexed() + pendingBulk.result.join());
+            checkpoint.setLastId(pendingBulk.lastId);
+            completed = true;
+        }
+        if (completed) {
+            saveCheckpoint(checkpoint);
+        }
+    }
+
+    private Optional<ReindexCheckpoint> findCheckpoint(@Nullable String scope) {
+        return scope == null ? Optional.empty() : reindexCheckpointRepository.findById(scope);
+    }
+
+    private void saveCheckpoint(ReindexCheckpoint checkpoint) {
+        if (checkpoint.getScope() != null) {
+            checkpoint.setUpdateDate(Instant.now());
+            separateTransactionExecutor.doInSeparateTransaction(() -> reindexCheckpointRepository.save(checkpoint));
+        }
+    }
 
+    private void deleteCheckpoint(@Nullable String scope) {
+        if (scope != null) {
+            separateTransactionExecutor.doInSeparateTransaction(() -> {
+                Optional<ReindexCheckpoint> checkpoint = reindexCheckpointRepository.findById(scope);
+                checkpoint.ifPresent(reindexCheckpointRepository::delete);
+                return checkpoint;
+            });
+        }
     }
 
     private void recreateIndex() {
@@ -289,29 +469,6 @@ public class ElasticsearchIndexService {
                  XmEntity.class.getSimpleName(), stopWatch.getTime());
     }
 
-    private Method extractFieldGetter(final Class<XmEntity> clazz, final Field field) {
-        try {
-            return new PropertyDescriptor(field.getName(), clazz).getReadMethod();
-        } catch (IntrospectionException e) {
-            log.error("Error retrieving getter for class {}, field {}. Field will NOT be indexed",
-                      clazz.getSimpleName(), field.getName(), e);
-            return null;
-        }
-    }
-
-    private XmEntity loadEntityRelationships(final List<Method> relationshipGetters, final XmEntity entity) {
-        // if there are any relationships to load, do it now
-        relationshipGetters.forEach(method -> {
-            try {
-                // eagerly load the relationship set
-                ((Set) method.invoke(entity)).size();
-            } catch (Exception ex) {
-                log.error("Error loading relationships for entity: {}, error: {}", entity, ex.getMessage());
-            }
-        });
-        return entity;
-    }
-
     private Long execForCustomContext(TenantKey tenantKey, String rid, Supplier<Long> runnable) {
         try {
             MdcUtils.putRid(rid);
@@ -320,4 +477,27 @@ public class ElasticsearchIndexService {
             MdcUtils.removeRid();
         }
     }
+
+    /**
+     * Runs reindex under the reindex lock of the tenant, so full and type key reindexing of the tenant exclude
+     * each other. Concurrent attempt is skipped.
+     */
+    private long withReindexLock(String tenant, Supplier<Long> reindex) {
+        Lock lock = reindexLocks.computeIfAbsent(tenant, key -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            log.info("Elasticsearch: concurrent reindexing attempt for tenant {}", tenant);
+            return 0L;
+        }
+        try {
+            return reindex.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingBulk {
+        private final Long lastId;
+        private final CompletableFuture<Long> result;
+    }
 }
@@ -0,0 +1,417 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.icthh.xm.ms.entity.domain.Calendar;
+import com.icthh.xm.ms.entity.domain.Comment;
+import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.domain.Rating;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.XmEntityRepository;
+import com.icthh.xm.ms.entity.service.dto.AttachmentExportDto;
+import com.icthh.xm.ms.entity.service.dto.CalendarExportDto;
+import com.icthh.xm.ms.entity.service.dto.CommentExportDto;
+import com.icthh.xm.ms.entity.service.dto.EventExportDto;
+import com.icthh.xm.ms.entity.service.dto.ImportDto;
+import com.icthh.xm.ms.entity.service.dto.LinkExportDto;
+import com.icthh.xm.ms.entity.service.dto.LocationExportDto;
+import com.icthh.xm.ms.entity.service.dto.RatingExportDto;
+import com.icthh.xm.ms.entity.service.dto.TagsExportDto;
+import com.icthh.xm.ms.entity.service.dto.VoteExportDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+
+/**
+ * One run of xmEntities import from {@link ImportDto} sections.
+ *
+ * <p>Rows are persisted one by one and flushed in chunks of jdbc batch size, rows persisted by the session are
+ * detached after every chunk, entities loaded by the caller stay managed. Only exported id to saved id mappings
+ * are kept between chunks, in primitive long maps.
+ * Contents are shared by checksum with already stored contents, like contents of uploaded attachments.
+ * Section which references rows of another section is imported after that section. When it comes first,
+ * its values are kept in memory until dependencies are imported.
+ */
+@Slf4j
+class EntityImportSession {
+
+    static final String ENTITIES = "entities";
+    static final String LINKS = "links";
+    static final String CONTENTS = "contents";
+    static final String ATTACHMENTS = "attachments";
+    static final String CALENDARS = "calendars";
+    static final String EVENTS = "events";
+    static final String COMMENTS = "comments";
+    static final String TAGS = "tags";
+    static final String LOCATIONS = "locations";
+    static final String RATINGS = "ratings";
+    static final String VOTES = "votes";
+
+    /**
+     * Same as hibernate.jdbc.batch_size, so every flush is sent to database by jdbc batches.
+     */
+    static final int BATCH_SIZE = 50;
+
+    private final XmEntityRepository entityRepository;
+    private final EntityManager entityManager;
+    private final ContentService contentService;
+
+    private final Map<String, Section<?>> sections = new LinkedHashMap<>();
+    private final LongLongHashMap entityIds = new LongLongHashMap();
+    private final LongLongHashMap contentIds = new LongLongHashMap();
+    private final LongLongHashMap calendarIds = new LongLongHashMap();
+    private final LongLongHashMap commentIds = new LongLongHashMap();
+    private final LongLongHashMap ratingIds = new LongLongHashMap();
+    /**
+     * Saved ids of contents created by the session, other contents may be managed by the caller.
+     */
+    private final LongHashSet createdContentIds = new LongHashSet();
+    /**
+     * Rows and references put to persistence context by the session since the last flush.
+     */
+    private final List<Object> unflushedRows = new ArrayList<>();
+    /**
+     * Comments which parent comment is not imported yet, by exported id of the parent.
+     */
+    private final Map<Long, List<CommentExportDto>> waitingComments = new HashMap<>();
+
+    private int unflushed;
+    private long imported;
+    private long skipped;
+
+    EntityImportSession(XmEntityRepository entityRepository, EntityManager entityManager,
+                        ContentService contentService) {
+        this.entityRepository = entityRepository;
+        this.entityManager = entityManager;
+        this.contentService = contentService;
+
+        section(ENTITIES, XmEntity.class, this::importEntity);
+        section(LINKS, LinkExportDto.class, this::importLink, ENTITIES);
+        section(CONTENTS, Content.class, this::importContent);
+        section(ATTACHMENTS, AttachmentExportDto.class, this::importAttachment, ENTITIES, CONTENTS);
+        section(CALENDARS, CalendarExportDto.class, this::importCalendar, ENTITIES);
+        section(EVENTS, EventExportDto.class, this::importEvent, ENTITIES, CALENDARS);
+        section(COMMENTS, CommentExportDto.class, this::importComment, ENTITIES);
+        section(TAGS, TagsExportDto.class, this::importTag, ENTITIES);
+        section(LOCATIONS, LocationExportDto.class, this::importLocation, ENTITIES);
+        section(RATINGS, RatingExportDto.class, this::importRating, ENTITIES);
+        section(VOTES, VoteExportDto.class, this::importVote, ENTITIES, RATINGS);
+    }
+
+    /**
+     * @param name section name, the same as {@link ImportDto} property
+     * @return type of section values or null for unknown section
+     */
+    Class<?> getValueType(String name) {
+        Section<?> section = sections.get(name);
+        return section == null ? null : section.type;
+    }
+
+    /**
+     * Imports all values of the section or keeps them until sections it depends on are imported.
+     */
+    void importSection(String name, Iterator<?> values) {
+        Section<?> section = sections.get(name);
+        if (section == null || section.received) {
+            throw new IllegalArgumentException("Unknown or duplicated import section: " + name);
+        }
+        section.received = true;
+        if (isReady(section)) {
+            importValues(section, values);
+            importWaitingSections();
+        } else {
+            List<Object> pending = new ArrayList<>();
+            values.forEachRemaining(pending::add);
+            section.pending = pending;
+            log.info("Import of {} {} waits for {}", pending.size(), name, section.dependencies);
+        }
+    }
+
+    void importAll(ImportDto importDto) {
+        importSection(ENTITIES, importDto.getEntities().iterator());
+        importSection(LINKS, importDto.getLinks().iterator());
+        importSection(CONTENTS, importDto.getContents().iterator());
+        importSection(ATTACHMENTS, importDto.getAttachments().iterator());
+        importSection(CALENDARS, importDto.getCalendars().iterator());
+        importSection(EVENTS, importDto.getEvents().iterator());
+        importSection(COMMENTS, importDto.getComments().iterator());
+        importSection(TAGS, importDto.getTags().iterator());
+        importSection(LOCATIONS, importDto.getLocations().iterator());
+        importSection(RATINGS, importDto.getRatings().iterator());
+        importSection(VOTES, importDto.getVotes().iterator());
+        finish();
+    }
+
+    /**
+     * Treats sections missing in import as empty and imports sections which still wait for them.
+     */
+    void finish() {
+        sections.values().stream().filter(section -> !section.received).forEach(section -> {
+            section.received = true;
+            section.completed = true;
+        });
+        importWaitingSections();
+        log.info("Import finished, imported: {}, skipped: {}", imported, skipped);
+    }
+
+    long getImported() {
+        return imported;
+    }
+
+    long getSkipped() {
+        return skipped;
+    }
+
+    private <T> void section(String name, Class<T> type, Consumer<T> importer, String... dependencies) {
+        sections.put(name, new Section<>(type, importer, List.of(dependencies)));
+    }
+
+    private boolean isReady(Section<?> section) {
+        return section.dependencies.stream().allMatch(dependency -> sections.get(dependency).completed);
+    }
+
+    private void importWaitingSections() {
+        boolean importedAny;
+        do {
+            importedAny = false;
+            for (Section<?> section : sections.values()) {
+                if (section.pending != null && isReady(section)) {
+                    List<Object> pending = section.pending;
+                    section.pending = null;
+                    importValues(section, pending.iterator());
+                    importedAny = true;
+                }
+            }
+        } while (importedAny);
+    }
+
+    private <T> void importValues(Section<T> section, Iterator<?> values) {
+        values.forEachRemaining(value -> section.importer.accept(section.type.cast(value)));
+        flushAndDetach();
+        section.completed = true;
+        if (section.type == CommentExportDto.class && !waitingComments.isEmpty()) {
+            // parents of these comments are not in import or were skipped
+            waitingComments.values().stream()
+                           .flatMap(List::stream)
+                           .forEach(comment -> skip("Comment", comment.getId()));
+            waitingComments.clear();
+        }
+    }
+
+    private void importEntity(XmEntity entity) {
+        Long oldId = entity.getId();
+        entity.setId(null);
+        XmEntity saved = entityRepository.save(entity);
+        putId(entityIds, oldId, saved.getId());
+        saved(saved);
+    }
+
+    private void importLink(LinkExportDto linkExportDto) {
+        XmEntity source = reference(XmEntity.class, entityIds, linkExportDto.getSourceId());
+        XmEntity target = reference(XmEntity.class, entityIds, linkExportDto.getTargetId());
+        if (source == null || target == null) {
+            skip("Link", linkExportDto.getId());
+            return;
+        }
+        persist(linkExportDto.toLink(source, target));
+    }
+
+    /**
+     * Same as {@link ContentService#store(String, byte[])}, but created content is detached with the chunk.
+     */
+    private void importContent(Content content) {
+        Long oldId = content.getId();
+        if (content.getValue() == null) {
+            skip("Content", oldId);
+            return;
+        }
+        String checksum = DigestUtils.sha256Hex(content.getValue());
+        Optional<Content> shared = contentService.acquire(checksum);
+        Long savedId;
+        if (shared.isPresent()) {
+            savedId = shared.get().getId();
+            imported++;
+        } else {
+            Content created = new Content().value(content.getValue()).checksum(checksum);
+            persist(created);
+            savedId = created.getId();
+            createdContentIds.add(savedId);
+        }
+        putId(contentIds, oldId, savedId);
+    }
+
+    private void importAttachment(AttachmentExportDto attachmentExportDto) {
+        Content content = reference(Content.class, contentIds, attachmentExportDto.getContentId());
+        XmEntity entity = reference(XmEntity.class, entityIds, attachmentExportDto.getEntityId());
+        if (content == null || entity == null) {
+            skip("Attachment", attachmentExportDto.getId());
+            return;
+        }
+        persist(attachmentExportDto.toAttachment(content, entity));
+    }
+
+    private void importCalendar(CalendarExportDto calendarExportDto) {
+        XmEntity entity = reference(XmEntity.class, entityIds, calendarExportDto.getEntityId());
+        if (entity == null) {
+            skip("Calendar", calendarExportDto.getId());
+            return;
+        }
+        Calendar calendar = calendarExportDto.toCalendar(entity);
+        persist(calendar);
+        putId(calendarIds, calendarExportDto.getId(), calendar.getId());
+    }
+
+    private void importEvent(EventExportDto eventExportDto) {
+        Calendar calendar = reference(Calendar.class, calendarIds, eventExportDto.getCalendarId());
+        if (calendar == null) {
+            skip("Event", eventExportDto.getId());
+            return;
+        }
+        XmEntity assigned = reference(XmEntity.class, entityIds, eventExportDto.getAssignedId());
+        persist(eventExportDto.toEvent(calendar, assigned));
+    }
+
+    /**
+     * Comment is imported as soon as its parent is imported, comments waiting for it are imported right after,
+     * so comment trees are resolved in one pass whatever the order of comments in import is.
+     */
+    private void importComment(CommentExportDto commentExportDto) {
+        Long parentId = commentExportDto.getCommentId();
+        if (parentId != null && !commentIds.containsKey(parentId)) {
+            waitingComments.computeIfAbsent(parentId, id -> new ArrayList<>()).add(commentExportDto);
+            return;
+        }
+
+        Deque<CommentExportDto> ready = new ArrayDeque<>();
+        ready.add(commentExportDto);
+        while (!ready.isEmpty()) {
+            CommentExportDto next = ready.poll();
+            Long oldId = next.getId();
+            XmEntity entity = reference(XmEntity.class, entityIds, next.getEntityId());
+            if (entity == null) {
+                skip("Comment", oldId);
+                continue;
+            }
+            Comment parent = reference(Comment.class, commentIds, next.getCommentId());
+            Comment comment = next.toComment(entity, parent);
+            persist(comment);
+            if (oldId != null) {
+                commentIds.put(oldId, comment.getId());
+                List<CommentExportDto> children = waitingComments.remove(oldId);
+                if (children != null) {
+                    ready.addAll(children);
+                }
+            }
+        }
+    }
+
+    private void importTag(TagsExportDto tagsExportDto) {
+        XmEntity entity = reference(XmEntity.class, entityIds, tagsExportDto.getEntityId());
+        if (entity == null) {
+            skip("Tag", tagsExportDto.getId());
+            return;
+        }
+        persist(tagsExportDto.toTag(entity));
+    }
+
+    private void importLocation(LocationExportDto locationExportDto) {
+        XmEntity entity = reference(XmEntity.class, entityIds, locationExportDto.getEntityId());
+        if (entity == null) {
+            skip("Location", locationExportDto.getId());
+            return;
+        }
+        persist(locationExportDto.toLocation(entity));
+    }
+
+    private void importRating(RatingExportDto ratingExportDto) {
+        XmEntity entity = reference(XmEntity.class, entityIds, ratingExportDto.getEntityId());
+        if (entity == null) {
+            skip("Rating", ratingExportDto.getId());
+            return;
+        }
+        Rating rating = ratingExportDto.toRating(entity);
+        persist(rating);
+        putId(ratingIds, ratingExportDto.getId(), rating.getId());
+    }
+
+    private void importVote(VoteExportDto voteExportDto) {
+        XmEntity entity = reference(XmEntity.class, entityIds, voteExportDto.getEntityId());
+        Rating rating = reference(Rating.class, ratingIds, voteExportDto.getRatingId());
+        if (entity == null || rating == null) {
+            skip("Vote", voteExportDto.getId());
+            return;
+        }
+        persist(voteExportDto.toVote(rating, entity));
+    }
+
+    private <E> E reference(Class<E> type, LongLongHashMap ids, Long oldId) {
+        if (oldId == null || !ids.containsKey(oldId)) {
+            return null;
+        }
+        long id = ids.get(oldId);
+        E reference = entityManager.getReference(type, id);
+        if (type != Content.class || createdContentIds.contains(id)) {
+            unflushedRows.add(reference);
+        }
+        return reference;
+    }
+
+    private static void putId(LongLongHashMap ids, Long oldId, Long newId) {
+        if (oldId != null && newId != null) {
+            ids.put(oldId, newId);
+        }
+    }
+
+    private void persist(Object entity) {
+        entityManager.persist(entity);
+        saved(entity);
+    }
+
+    private void saved(Object entity) {
+        imported++;
+        unflushedRows.add(entity);
+        if (++unflushed >= BATCH_SIZE) {
+            flushAndDetach();
+        }
+    }
+
+    /**
+     * Import runs in the caller transaction, so only rows of the session are detached, not the whole context.
+     */
+    private void flushAndDetach() {
+        if (unflushed > 0) {
+            entityManager.flush();
+            unflushedRows.forEach(entityManager::detach);
+            unflushedRows.clear();
+            unflushed = 0;
+        }
+    }
+
+    private void skip(String type, Long id) {
+        skipped++;
+        log.info("{} with id: {} skipped", type, id);
+    }
+
+    @RequiredArgsConstructor
+    private static class Section<T> {
+
+        private final Class<T> type;
+        private final Consumer<T> importer;
+        private final List<String> dependencies;
+        private boolean received;
+        private boolean completed;
+        private List<Object> pending;
+    }
+}
@@ -1,36 +1,35 @@
 package com.icthh.xm.ms.entity.service;
 
-import static java.lang.Integer.MAX_VALUE;
-import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
-import static org.springframework.data.domain.PageRequest.of;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.icthh.xm.commons.lep.LogicExtensionPoint;
 import com.icthh.xm.commons.lep.spring.LepService;
 import com.icthh.xm.commons.logging.LoggingAspectConfig;
 import com.icthh.xm.ms.entity.domain.Attachment;
 import com.icthh.xm.ms.entity.domain.Calendar;
 import com.icthh.xm.ms.entity.domain.Comment;
-import com.icthh.xm.ms.entity.domain.Content;
-import com.icthh.xm.ms.entity.domain.Event;
 import com.icthh.xm.ms.entity.domain.Link;
 import com.icthh.xm.ms.entity.domain.Location;
 import com.icthh.xm.ms.entity.domain.Rating;
 import com.icthh.xm.ms.entity.domain.Tag;
-import com.icthh.xm.ms.entity.domain.Vote;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.repository.AttachmentRepository;
 import com.icthh.xm.ms.entity.repository.CalendarRepository;
 import com.icthh.xm.ms.entity.repository.CommentRepository;
-import com.icthh.xm.ms.entity.repository.EventRepository;
 import com.icthh.xm.ms.entity.repository.LinkRepository;
 import com.icthh.xm.ms.entity.repository.LocationRepository;
 import com.icthh.xm.ms.entity.repository.RatingRepository;
 import com.icthh.xm.ms.entity.repository.TagRepository;
-import com.icthh.xm.ms.entity.repository.VoteRepository;
-import com.icthh.xm.ms.entity.repository.XmEntityRepository;
+import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
 import com.icthh.xm.ms.entity.service.dto.AttachmentExportDto;
 import com.icthh.xm.ms.entity.service.dto.CalendarExportDto;
 import com.icthh.xm.ms.entity.service.dto.CommentExportDto;
@@ -40,21 +39,30 @@ import com.icthh.xm.ms.entity.service.dto.ImportDto;
 import com.icthh.xm.ms.entity.service.dto.LinkExportDto;
 import com.icthh.xm.ms.entity.service.dto.LocationExportDto;
 import com.icthh.xm.ms.entity.service.dto.RatingExportDto;
+import com.icthh.xm.ms.entity.service.dto.StreamedImportDto;
 import com.icthh.xm.ms.entity.service.dto.TagsExportDto;
 import com.icthh.xm.ms.entity.service.dto.VoteExportDto;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
 
 @Slf4j
 @Service
@@ -63,312 +71,334 @@ import org.springframework.util.CollectionUtils;
 @RequiredArgsConstructor
 public class ExportImportService {
 
-    private final XmEntityRepository entityRepository;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final ThreadLocal<OutputStream> EXPORT_OUTPUT = new ThreadLocal<>();
+
+    private final XmEntityRepositoryInternal entityRepository;
     private final ObjectMapper objectMapper;
     private final AttachmentRepository attachmentRepository;
     private final CalendarRepository calendarRepository;
     private final LinkRepository linkRepository;
-    private final EventRepository eventRepository;
     private final CommentRepository commentRepository;
     private final TagRepository tagRepository;
     private final LocationRepository locationRepository;
     private final RatingRepository ratingRepository;
-    private final VoteRepository voteRepository;
+    private final EntityManager entityManager;
+    private final ContentService contentService;
+
+    private ExportImportService self;
+
+    /**
+     * Holder for the same service instance.
+     *
+     * @param self link for the same service instance
+     */
+    @Autowired
+    public void setSelf(@Lazy ExportImportService self) {
+        this.self = self;
+    }
 
     @SneakyThrows
     @LogicExtensionPoint("exportEntities")
     public byte[] exportEntities(Set<ExportDto> exportEntities) {
-        ImportDto importDto = new ImportDto();
-        processXmEntities(exportEntities, importDto);
+        OutputStream exportOutput = EXPORT_OUTPUT.get();
+        if (exportOutput != null) {
+            writeExport(exportEntities, exportOutput);
+            return null;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeExport(exportEntities, outputStream);
+        return outputStream.toByteArray();
+    }
 
-        exportEntities.forEach(exportDto -> {
-            String typeKey = exportDto.getTypeKey();
-            processLinks(importDto, exportDto, typeKey);
-            processAttachments(importDto, exportDto, typeKey);
-            processCalendars(importDto, exportDto, typeKey);
-            processLocations(importDto, exportDto, typeKey);
-            processRating(importDto, exportDto, typeKey);
-            processTags(importDto, exportDto, typeKey);
-        });
-        processComments(exportEntities, importDto);
+    /**
+     * Writes export of entities in {@link ImportDto} json format directly to the output stream.
+     * Export goes through {@code exportEntities} LEP, its default implementation reads every section from
+     * database cursor and writes it value by value, persistence context is cleared in chunks, so memory usage
+     * does not depend on the number of exported rows. Bytes returned by tenant override of the LEP are written
+     * to the stream.
+     */
+    @SneakyThrows
+    @Transactional(readOnly = true)
+    public void exportEntities(Set<ExportDto> exportEntities, OutputStream outputStream) {
+        byte[] content;
+        EXPORT_OUTPUT.set(outputStream);
+        try {
+            content = self.exportEntities(exportEntities);
+        } finally {
+            EXPORT_OUTPUT.remove();
+        }
+        if (content != null) {
+            outputStream.write(content);
+        }
+    }
 
-        return objectMapper.writeValueAsString(importDto).getBytes();
+    private void writeExport(Set<ExportDto> exportEntities, OutputStream outputStream) throws IOException {
+        // pending changes must reach database before persistence context is cleared
+        entityManager.flush();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            ExportWriter writer = new ExportWriter(generator);
+
+            generator.writeStartObject();
+            writer.writeArray("entities", () -> writeXmEntities(exportEntities, writer));
+            writer.writeArray("links", () -> exportEntities.forEach(exportDto -> writeLinks(exportDto, writer)));
+            writer.writeArray("contents", () -> writeContents(exportEntities, writer));
+            writer.writeArray("attachments",
+                              () -> exportEntities.forEach(exportDto -> writeAttachments(exportDto, writer)));
+            writer.writeArray("calendars",
+                              () -> exportEntities.forEach(exportDto -> writeCalendars(exportDto, writer)));
+            writer.writeArray("events", () -> exportEntities.forEach(exportDto -> writeEvents(exportDto, writer)));
+            writer.writeArray("comments", () -> writeComments(exportEntities, writer));
+            writer.writeArray("tags", () -> exportEntities.forEach(exportDto -> writeTags(exportDto, writer)));
+            writer.writeArray("locations",
+                              () -> exportEntities.forEach(exportDto -> writeLocations(exportDto, writer)));
+            writer.writeArray("ratings", () -> exportEntities.forEach(exportDto -> writeRatings(exportDto, writer)));
+            writer.writeArray("votes", () -> exportEntities.forEach(exportDto -> writeVotes(exportDto, writer)));
+            generator.writeEndObject();
+            log.info("Exported values count: {}", writer.count);
+        }
+    }
+
+    /**
+     * Imports entities from {@link ImportDto} json stream through {@code importEntities} LEP.
+     * Default implementation of the LEP imports section values while they are parsed, so memory usage
+     * does not depend on the size of import. Whole import is read only when tenant override of the LEP
+     * requests values of the dto.
+     */
+    @LoggingAspectConfig(inputExcludeParams = "inputStream")
+    public void importEntities(InputStream inputStream) {
+        self.importEntities(new StreamedImportDto(inputStream, objectMapper));
     }
 
     @LoggingAspectConfig(inputExcludeParams = "importDto")
     @LogicExtensionPoint("importEntities")
     public void importEntities(ImportDto importDto) {
-        Map<Long, XmEntity> savedEntities = saveEntities(importDto);
-        saveLinks(importDto.getLinks(), savedEntities);
-        saveCalendars(importDto.getCalendars(), importDto.getEvents(), savedEntities);
-        saveAttachments(importDto.getAttachments(), importDto.getContents(), savedEntities);
-        saveComments(importDto.getComments(), savedEntities);
-        saveLocations(importDto.getLocations(), savedEntities);
-        saveTags(importDto.getTags(), savedEntities);
-        Map<Long, Rating> savedRatings = saveRatings(importDto.getRatings(), savedEntities);
-        saveVotes(importDto.getVotes(), savedRatings, savedEntities);
+        if (importDto instanceof StreamedImportDto && !((StreamedImportDto) importDto).isRead()) {
+            importStream(((StreamedImportDto) importDto).getInputStream());
+            return;
+        }
+        new EntityImportSession(entityRepository, entityManager, contentService).importAll(importDto);
     }
 
-    private Map<Long, Rating> saveRatings(List<RatingExportDto> ratingExportDtos, Map<Long, XmEntity> savedEntities) {
-        Map<Long, Rating> savedRatings = new HashMap<>();
-        ratingExportDtos.forEach(ratingExportDto -> {
-            XmEntity entity = savedEntities.get(ratingExportDto.getEntityId());
-            if (entity == null) {
-                log.info("Rating with id: {} skipped", ratingExportDto.getId());
-                return;
+    @SneakyThrows
+    private void importStream(InputStream inputStream) {
+        EntityImportSession session = new EntityImportSession(entityRepository, entityManager, contentService);
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Import must be a json object");
             }
-            Long oldId = ratingExportDto.getId();
-            Rating savedRating = ratingRepository.save(ratingExportDto.toRating(entity));
-            savedRatings.put(oldId, savedRating);
-        });
-        return savedRatings;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.getCurrentName();
+                Class<?> valueType = session.getValueType(section);
+                if (parser.nextToken() != JsonToken.START_ARRAY || valueType == null) {
+                    log.warn("Import section {} is skipped", section);
+                    parser.skipChildren();
+                    continue;
+                }
+                session.importSection(section, readArrayValues(parser, objectMapper.readerFor(valueType)));
+            }
+        }
+        session.finish();
     }
 
-    private void saveVotes(List<VoteExportDto> voteExportDtos, Map<Long, Rating> savedRatings,
-            Map<Long, XmEntity> savedEntities) {
-        List<Vote> votes = new ArrayList<>();
-        voteExportDtos.forEach(voteExportDto -> {
-            XmEntity entity = savedEntities.get(voteExportDto.getEntityId());
-            Rating rating = savedRatings.get(voteExportDto.getRatingId());
-            if (entity == null || rating == null) {
-                log.info("Vote with id: {} skipped", voteExportDto.getId());
-                return;
+    /**
+     * Iterates values of json array the parser points to, every value is read on demand.
+     */
+    private static Iterator<Object> readArrayValues(JsonParser parser, ObjectReader reader) {
+        return new Iterator<>() {
+
+            private JsonToken token;
+
+            @Override
+            @SneakyThrows
+            public boolean hasNext() {
+                if (token == null) {
+                    token = parser.nextToken();
+                }
+                return token != JsonToken.END_ARRAY;
             }
-            Vote vote = voteExportDto.toVote(rating, entity);
-            votes.add(vote);
-        });
-        voteRepository.saveAll(votes);
+
+            @Override
+            @SneakyThrows
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                token = null;
+                return reader.readValue(parser);
+            }
+        };
     }
 
-    private void processXmEntities(Set<ExportDto> exportEntities, ImportDto importDto) {
+    private void writeXmEntities(Set<ExportDto> exportEntities, ExportWriter writer) {
         Set<String> entityTypeKeys = exportEntities.stream().map(ExportDto::getTypeKey).collect(toSet());
-        List<XmEntity> entities = entityRepository.findAllByTypeKeyIn(of(0, MAX_VALUE), entityTypeKeys)
-                .getContent();
-        importDto.getEntities().addAll(entities);
-        log.info("Found export entities count: {}", entities.size());
-    }
+        Specification<XmEntity> byTypeKeys = (root, query, cb) -> root.get("typeKey").in(entityTypeKeys);
+        // only ids of written entities are kept to skip link targets which are already exported
+        Set<Long> entityIds = new HashSet<>();
+        try (Stream<XmEntity> entities = entityRepository.streamAllOrderedById(byTypeKeys, null, EXPORT_FETCH_SIZE)) {
+            entities.forEach(entity -> {
+                entityIds.add(entity.getId());
+                writer.write(entity);
+            });
+        }
+        log.info("Found export entities count: {}", entityIds.size());
 
-    private void processLinks(ImportDto importDto, ExportDto exportDto, String typeKey) {
-        List<String> linkTypeKeys = exportDto.getLinkTypeKeys();
-        List<Link> links = linkRepository.findBySourceTypeKeyAndTypeKeyIn(typeKey, linkTypeKeys);
-        log.info("For typeKey: {} found links count: {}", typeKey, links.size());
-        importDto.getLinks().addAll(links.stream().map(LinkExportDto::new).collect(toSet()));
-        importDto.getEntities().addAll(links.stream().map(Link::getTarget).collect(toSet()));
+        exportEntities.forEach(exportDto -> {
+            try (Stream<Link> links = streamLinks(exportDto)) {
+                links.map(Link::getTarget)
+                     .filter(target -> entityIds.add(target.getId()))
+                     .forEach(target -> writer.write(Hibernate.unproxy(target)));
+            }
+        });
     }
 
-    private void processLocations(ImportDto importDto, ExportDto exportDto, String typeKey) {
-        List<String> locationTypeKeys = exportDto.getLocationTypeKeys();
-        List<Location> locations = locationRepository.findAllByXmEntityTypeKeyAndTypeKeyIn(typeKey, locationTypeKeys);
-        log.info("For typeKey: {} found locations count: {}", typeKey, locations.size());
-        importDto.getLocations().addAll(locations.stream().map(LocationExportDto::new).collect(toSet()));
+    private void writeLinks(ExportDto exportDto, ExportWriter writer) {
+        try (Stream<Link> links = streamLinks(exportDto)) {
+            long count = writer.writeAll(links.map(LinkExportDto::new));
+            log.info("For typeKey: {} found links count: {}", exportDto.getTypeKey(), count);
+        }
     }
 
-    private void processAttachments(ImportDto importDto, ExportDto exportDto, String typeKey) {
-        List<String> attTypeKeys = exportDto.getAttachmentTypeKeys();
-        List<Attachment> attachments = attachmentRepository.findByXmEntityTypeKeyAndTypeKeyIn(typeKey, attTypeKeys);
-        log.info("For typeKey: {} found attachments count: {}", typeKey, attachments.size());
-        importDto.getAttachments()
-                .addAll(attachments.stream().map(AttachmentExportDto::new).collect(toSet()));
-        importDto.getContents().addAll(attachments.stream().map(Attachment::getContent).collect(toSet()));
+    private Stream<Link> streamLinks(ExportDto exportDto) {
+        return linkRepository.streamBySourceTypeKeyAndTypeKeyIn(exportDto.getTypeKey(), exportDto.getLinkTypeKeys());
     }
 
-    private void processRating(ImportDto importDto, ExportDto exportDto, String typeKey) {
-        List<String> ratingTypeKeys = exportDto.getRatingTypeKeys();
-        List<Rating> ratings = ratingRepository.findByXmEntityTypeKeyAndTypeKeyIn(typeKey, ratingTypeKeys);
-        log.info("For typeKey: {} found ratings count: {}", typeKey, ratings.size());
-        importDto.getRatings()
-                .addAll(ratings.stream().map(RatingExportDto::new).collect(toSet()));
-        importDto.getVotes().addAll(ratings.stream()
-                .flatMap(rating -> rating.getVotes().stream())
-                .map(VoteExportDto::new)
-                .collect(toSet()));
+    private void writeLocations(ExportDto exportDto, ExportWriter writer) {
+        String typeKey = exportDto.getTypeKey();
+        try (Stream<Location> locations = locationRepository
+            .streamAllByXmEntityTypeKeyAndTypeKeyIn(typeKey, exportDto.getLocationTypeKeys())) {
+            long count = writer.writeAll(locations.map(LocationExportDto::new));
+            log.info("For typeKey: {} found locations count: {}", typeKey, count);
+        }
     }
 
-    private void processCalendars(ImportDto importDto, ExportDto exportDto, String typeKey) {
-        exportDto.getCalendars().forEach(calendarDto -> {
-            String calendarTypeKey = calendarDto.getTypeKey();
-            List<String> eventTypeKeys = calendarDto.getEventTypeKeys();
-
-            Set<Calendar> calendars = calendarRepository
-                    .findByXmEntityTypeKeyAndTypeKeyAndEventsTypeKeyIn(typeKey, calendarTypeKey, eventTypeKeys);
-            log.info("For typeKey: {} and calendar typeKey: {} found calendars count: {}", typeKey, calendarTypeKey,
-                    calendars.size());
-
-            List<Event> events = calendars.stream()
-                    .flatMap(calendar -> calendar.getEvents().stream())
-                    .filter(event -> eventTypeKeys.contains(event.getTypeKey()))
-                    .collect(toList());
-            log.info("For typeKey: {} and calendar typeKey: {} found events count: {}", typeKey, calendarTypeKey,
-                    events.size());
-
-            importDto.getCalendars().addAll(calendars.stream().map(CalendarExportDto::new).collect(toSet()));
-            importDto.getEvents().addAll(events.stream().map(EventExportDto::new).collect(toSet()));
+    private void writeAttachments(ExportDto exportDto, ExportWriter writer) {
+        try (Stream<Attachment> attachments = streamAttachments(exportDto)) {
+            long count = writer.writeAll(attachments.map(AttachmentExportDto::new));
+            log.info("For typeKey: {} found attachments count: {}", exportDto.getTypeKey(), count);
+        }
+    }
 
+    private void writeContents(Set<ExportDto> exportEntities, ExportWriter writer) {
+        // content is shared by attachments with the same value, only its first reference is written
+        Set<Long> contentIds = new HashSet<>();
+        exportEntities.forEach(exportDto -> {
+            try (Stream<Attachment> attachments = streamAttachments(exportDto)) {
+                attachments.map(Attachment::getContent)
+                           .filter(Objects::nonNull)
+                           .filter(content -> contentIds.add(content.getId()))
+                           .forEach(content -> writer.write(Hibernate.unproxy(content)));
+            }
         });
+        log.info("Found export contents count: {}", contentIds.size());
     }
 
-    private void processComments(Set<ExportDto> exportEntities, ImportDto importDto) {
-        List<String> commentsTypeKeys = exportEntities.stream()
-                .filter(ExportDto::isComments)
-                .map(ExportDto::getTypeKey)
-                .collect(toList());
-        List<Comment> comments = commentRepository.findAllByXmEntityTypeKeyIn(commentsTypeKeys);
-        importDto.getComments().addAll(comments.stream().map(CommentExportDto::new).collect(toSet()));
+    private Stream<Attachment> streamAttachments(ExportDto exportDto) {
+        return attachmentRepository.streamByXmEntityTypeKeyAndTypeKeyIn(exportDto.getTypeKey(),
+                                                                        exportDto.getAttachmentTypeKeys());
     }
 
-    private void processTags(ImportDto importDto, ExportDto exportDto, String typeKey) {
-        List<String> tagTypeKeys = exportDto.getTagTypeKeys();
-        List<Tag> tags = tagRepository.findByXmEntityTypeKeyAndTypeKeyIn(typeKey, tagTypeKeys);
-        log.info("For typeKey: {} found tags count: {}", typeKey, tags.size());
-        importDto.getTags().addAll(tags.stream().map(TagsExportDto::new).collect(toSet()));
-
+    private void writeRatings(ExportDto exportDto, ExportWriter writer) {
+        try (Stream<Rating> ratings = streamRatings(exportDto)) {
+            long count = writer.writeAll(ratings.map(RatingExportDto::new));
+            log.info("For typeKey: {} found ratings count: {}", exportDto.getTypeKey(), count);
+        }
     }
 
-    private Map<Long, XmEntity> saveEntities(ImportDto importDto) {
-        Map<Long, XmEntity> savedEntities = new HashMap<>();
-        importDto.getEntities().forEach(xmEntity -> {
-            Long oldId = xmEntity.getId();
-            xmEntity.setId(null);
-            XmEntity saved = entityRepository.save(xmEntity);
-            savedEntities.put(oldId, saved);
-        });
-        return savedEntities;
+    private void writeVotes(ExportDto exportDto, ExportWriter writer) {
+        try (Stream<Rating> ratings = streamRatings(exportDto)) {
+            writer.writeAll(ratings.flatMap(
+                rating -> rating.getVotes().stream().map(VoteExportDto::new).collect(toList()).stream()));
+        }
     }
 
-    private void saveLinks(List<LinkExportDto> linkExportDtos, Map<Long, XmEntity> savedEntities) {
-        List<Link> links = new ArrayList<>();
-        linkExportDtos.forEach(linkExportDto -> {
-            XmEntity target = savedEntities.get(linkExportDto.getTargetId());
-            XmEntity source = savedEntities.get(linkExportDto.getSourceId());
-            if (target == null || source == null) {
-                log.info("Link with id: {} skipped", linkExportDto.getId());
-                return;
-            }
-            Link link = linkExportDto.toLink(source, target);
-            links.add(link);
-        });
-        linkRepository.saveAll(links);
+    private Stream<Rating> streamRatings(ExportDto exportDto) {
+        return ratingRepository.streamByXmEntityTypeKeyAndTypeKeyIn(exportDto.getTypeKey(),
+                                                                    exportDto.getRatingTypeKeys());
     }
 
-    private void saveCalendars(List<CalendarExportDto> calendarExportDtos, List<EventExportDto> eventExportDtos,
-            Map<Long, XmEntity> savedEntities) {
-        calendarExportDtos.forEach(calendarExportDto -> {
-            XmEntity entity = savedEntities.get(calendarExportDto.getEntityId());
-            if (entity == null) {
-                log.info("Calendar with id: {} skipped", calendarExportDto.getId());
-                return;
+    private void writeCalendars(ExportDto exportDto, ExportWriter writer) {
+        String typeKey = exportDto.getTypeKey();
+        exportDto.getCalendars().forEach(calendarDto -> {
+            try (Stream<Calendar> calendars = streamCalendars(typeKey, calendarDto)) {
+                long count = writer.writeAll(calendars.map(CalendarExportDto::new));
+                log.info("For typeKey: {} and calendar typeKey: {} found calendars count: {}", typeKey,
+                         calendarDto.getTypeKey(), count);
             }
-
-            Calendar calendar = calendarExportDto.toCalendar(entity);
-            Calendar saved = calendarRepository.save(calendar);
-
-            List<Event> events = new ArrayList<>();
-            eventExportDtos.forEach(eventExportDto -> {
-                if (!Objects.equals(eventExportDto.getCalendarId(), calendarExportDto.getId())) {
-                    return;
-                }
-                XmEntity assigned = ofNullable(savedEntities.get(eventExportDto.getAssignedId())).orElse(null);
-                Event event = eventExportDto.toEvent(saved, assigned);
-                events.add(event);
-            });
-            eventRepository.saveAll(events);
         });
     }
 
-    private void saveAttachments(List<AttachmentExportDto> attachmentExportDtos, List<Content> contents,
-            Map<Long, XmEntity> savedEntities) {
-        List<Attachment> attachments = new ArrayList<>();
-        attachmentExportDtos.forEach(attachmentExportDto -> {
-            Optional<Content> contentOptional = contents.stream()
-                    .filter(cont -> Objects.equals(cont.getId(), attachmentExportDto.getContentId()))
-                    .findFirst();
-            XmEntity entity = savedEntities.get(attachmentExportDto.getEntityId());
-
-            if (contentOptional.isEmpty() || entity == null) {
-                log.info("Attachment with id: {} skipped", attachmentExportDto.getId());
-                return;
+    private void writeEvents(ExportDto exportDto, ExportWriter writer) {
+        String typeKey = exportDto.getTypeKey();
+        exportDto.getCalendars().forEach(calendarDto -> {
+            List<String> eventTypeKeys = calendarDto.getEventTypeKeys();
+            try (Stream<Calendar> calendars = streamCalendars(typeKey, calendarDto)) {
+                long count = writer.writeAll(calendars.flatMap(
+                    calendar -> calendar.getEvents().stream()
+                                        .filter(event -> eventTypeKeys.contains(event.getTypeKey()))
+                                        .map(EventExportDto::new)
+                                        .collect(toList()).stream()));
+                log.info("For typeKey: {} and calendar typeKey: {} found events count: {}", typeKey,
+                         calendarDto.getTypeKey(), count);
             }
-            Content content = contentOptional.get();
-            content.setId(null);
-            Attachment attachment = attachmentExportDto.toAttachment(content, entity);
-            attachments.add(attachment);
         });
-        attachmentRepository.saveAll(attachments);
     }
 
-    private void saveComments(List<CommentExportDto> commentExportDtos, Map<Long, XmEntity> savedEntities) {
-        Map<Long, Comment> savedComments = new HashMap<>();
-        List<CommentExportDto> comments = commentExportDtos.stream()
-                .filter(commentExportDto -> Objects.isNull(commentExportDto.getCommentId())).collect(toList());
-
-        comments.forEach(commentExportDto -> {
-            Long oldCommentId = commentExportDto.getId();
-            XmEntity entity = savedEntities.get(commentExportDto.getEntityId());
-            if (entity == null) {
-                log.info("Comment with id: {} skipped", commentExportDto.getId());
-                return;
-            }
-            Comment comment = commentRepository.save(commentExportDto.toComment(entity, null));
-
-            commentExportDtos.remove(commentExportDto);
-            savedComments.put(oldCommentId, comment);
-        });
-
-        saveCommentsRecursive(commentExportDtos, savedComments, savedEntities);
+    private Stream<Calendar> streamCalendars(String typeKey, ExportDto.CalendarDto calendarDto) {
+        return calendarRepository.streamDistinctByXmEntityTypeKeyAndTypeKeyAndEventsTypeKeyIn(
+            typeKey, calendarDto.getTypeKey(), calendarDto.getEventTypeKeys());
     }
 
-    private void saveCommentsRecursive(List<CommentExportDto> commentExportDtos, Map<Long, Comment> savedComments,
-            Map<Long, XmEntity> savedEntities) {
-
-        if (CollectionUtils.isEmpty(commentExportDtos)) {
-            return;
-        }
-        List<CommentExportDto> comments = commentExportDtos.stream()
-                .filter(commentExportDto -> savedComments.containsKey(commentExportDto.getCommentId()))
+    private void writeComments(Set<ExportDto> exportEntities, ExportWriter writer) {
+        List<String> commentsTypeKeys = exportEntities.stream()
+                .filter(ExportDto::isComments)
+                .map(ExportDto::getTypeKey)
                 .collect(toList());
-        comments.forEach(commentExportDto -> {
-            XmEntity entity = savedEntities.get(commentExportDto.getEntityId());
-            Comment savedComment = savedComments.get(commentExportDto.getCommentId());
-
-            if (entity == null || savedComment == null) {
-                log.info("Comment with id: {} skipped", commentExportDto.getId());
-                return;
-            }
-            Long oldCommentId = commentExportDto.getId();
-            Comment comment = commentRepository
-                    .save(commentExportDto.toComment(entity, savedComment));
-            commentExportDtos.remove(commentExportDto);
-            savedComments.put(oldCommentId, comment);
-        });
-        saveCommentsRecursive(commentExportDtos, savedComments, savedEntities);
+        try (Stream<Comment> comments = commentRepository.streamAllByXmEntityTypeKeyIn(commentsTypeKeys)) {
+            writer.writeAll(comments.map(CommentExportDto::new));
+        }
     }
 
-    private void saveTags(List<TagsExportDto> tagsExportDtos, Map<Long, XmEntity> savedEntities) {
-        List<Tag> tags = new ArrayList<>();
-        tagsExportDtos.forEach(tagsExportDto -> {
-            XmEntity entity = savedEntities.get(tagsExportDto.getEntityId());
-            if (entity == null) {
-                log.info("Tag with id: {} skipped", tagsExportDto.getId());
-                return;
-            }
-            Tag tag = tagsExportDto.toTag(entity);
-            tags.add(tag);
-        });
-        tagRepository.saveAll(tags);
+    private void writeTags(ExportDto exportDto, ExportWriter writer) {
+        String typeKey = exportDto.getTypeKey();
+        try (Stream<Tag> tags = tagRepository.streamByXmEntityTypeKeyAndTypeKeyIn(typeKey,
+                                                                                  exportDto.getTagTypeKeys())) {
+            long count = writer.writeAll(tags.map(TagsExportDto::new));
+            log.info("For typeKey: {} found tags count: {}", typeKey, count);
+        }
     }
 
-    private void saveLocations(List<LocationExportDto> locationExportDtos, Map<Long, XmEntity> savedEntities) {
-        List<Location> locations = new ArrayList<>();
-        locationExportDtos.forEach(locationExportDto -> {
-            XmEntity entity = savedEntities.get(locationExportDto.getEntityId());
+    /**
+     * Writes values of export json one by one and clears persistence context after every chunk of values.
+     */
+    @RequiredArgsConstructor
+    private class ExportWriter {
+
+        private final JsonGenerator generator;
+        private final ObjectWriter valueWriter = objectMapper.writer()
+                                                             .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        private long count;
+
+        @SneakyThrows
+        void writeArray(String fieldName, Runnable values) {
+            generator.writeArrayFieldStart(fieldName);
+            values.run();
+            generator.writeEndArray();
+        }
+
+        long writeAll(Stream<?> values) {
+            long before = count;
+            values.forEach(this::write);
+            return count - before;
+        }
 
-            if (entity == null) {
-                log.info("Location with id: {} skipped", locationExportDto.getId());
-                return;
+        @SneakyThrows
+        void write(Object value) {
+            valueWriter.writeValue(generator, value);
+            if (++count % EXPORT_FETCH_SIZE == 0) {
+                entityManager.clear();
             }
-            Location location = locationExportDto.toLocation(entity);
-            locations.add(location);
-        });
-        locationRepository.saveAll(locations);
+        }
     }
 }
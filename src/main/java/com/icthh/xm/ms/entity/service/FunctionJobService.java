@@ -0,0 +1,354 @@
+package com.icthh.xm.ms.entity.service;
+
+import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_AUTH_CONTEXT;
+import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_TENANT_CONTEXT;
+import static com.icthh.xm.commons.tenant.TenantContextUtils.buildTenant;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.commons.config.client.repository.TenantListRepository;
+import com.icthh.xm.commons.exceptions.BusinessException;
+import com.icthh.xm.commons.logging.util.MdcUtils;
+import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.commons.tenant.TenantKey;
+import com.icthh.xm.lep.api.LepManager;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.domain.FunctionContext;
+import com.icthh.xm.ms.entity.domain.FunctionJobRecord;
+import com.icthh.xm.ms.entity.repository.FunctionJobRepository;
+import com.icthh.xm.ms.entity.service.dto.FunctionJob;
+import com.icthh.xm.ms.entity.util.CustomCollectionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+
+/**
+ * Executes functions asynchronously on the bounded pool of {@code application.function-async}.
+ *
+ * Function is executed with tenant, security and LEP context of the caller. Numbers of queued and running
+ * functions of a tenant and of a function are limited, call over the limit or over the queue capacity is rejected.
+ * Jobs and rendered results are stored in the tenant database, so a job can be polled through any instance,
+ * and are visible to the same user only. Finished jobs are deleted on schedule {@code result-ttl-seconds} after
+ * completion. Limits are counted per instance.
+ */
+@Slf4j
+@Service
+public class FunctionJobService {
+
+    private static final String METRICS_PREFIX = "functions.async.";
+    private static final String ERROR_LIMIT = "error.function.async.limit";
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final FunctionService functionService;
+    private final TenantContextHolder tenantContextHolder;
+    private final XmAuthenticationContextHolder authContextHolder;
+    private final LepManager lepManager;
+    private final MetricRegistry metricRegistry;
+    private final FunctionJobRepository functionJobRepository;
+    private final SeparateTransactionExecutor separateTransactionExecutor;
+    private final TenantListRepository tenantListRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties.FunctionAsync config;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, Integer> activeByTenant = new ConcurrentHashMap<>();
+    private final Map<String, Integer> activeByFunction = new ConcurrentHashMap<>();
+
+    public FunctionJobService(@Qualifier("functionService") FunctionService functionService,
+                              TenantContextHolder tenantContextHolder,
+                              XmAuthenticationContextHolder authContextHolder,
+                              LepManager lepManager,
+                              MetricRegistry metricRegistry,
+                              FunctionJobRepository functionJobRepository,
+                              SeparateTransactionExecutor separateTransactionExecutor,
+                              TenantListRepository tenantListRepository,
+                              ObjectMapper objectMapper,
+                              ApplicationProperties applicationProperties) {
+        this.functionService = functionService;
+        this.tenantContextHolder = tenantContextHolder;
+        this.authContextHolder = authContextHolder;
+        this.lepManager = lepManager;
+        this.metricRegistry = metricRegistry;
+        this.functionJobRepository = functionJobRepository;
+        this.separateTransactionExecutor = separateTransactionExecutor;
+        this.tenantListRepository = tenantListRepository;
+        this.objectMapper = objectMapper;
+        this.config = applicationProperties.getFunctionAsync();
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                                               new CustomizableThreadFactory("function-async-"));
+        metricRegistry.register(METRICS_PREFIX + "queue-depth", (Gauge<Integer>) () -> executor.getQueue().size());
+        metricRegistry.register(METRICS_PREFIX + "running", (Gauge<Integer>) executor::getActiveCount);
+    }
+
+    /**
+     * Submits function execution without binding to any XmEntity instance.
+     *
+     * @param functionKey   the function key, unique in Tenant
+     * @param functionInput function input context
+     * @return queued job
+     */
+    public FunctionJob submit(String functionKey, Map<String, Object> functionInput) {
+        Objects.requireNonNull(functionKey, "functionKey can't be null");
+
+        String tenant = TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder);
+        String functionLimitKey = tenant + ":" + functionKey;
+        acquire(activeByTenant, tenant, config.getMaxPerTenant(), "tenant " + tenant);
+        try {
+            acquire(activeByFunction, functionLimitKey, config.getMaxPerFunction(), "function " + functionKey);
+        } catch (BusinessException e) {
+            release(activeByTenant, tenant);
+            throw e;
+        }
+
+        FunctionJobRecord job = new FunctionJobRecord();
+        job.setId(UUID.randomUUID().toString());
+        job.setFunctionKey(functionKey);
+        job.setUserKey(getUserKey());
+        job.setState(FunctionJob.State.QUEUED);
+        job.setCreateDate(Instant.now());
+        // input is copied, the caller may reuse its map
+        Map<String, Object> input = new HashMap<>(CustomCollectionUtils.emptyIfNull(functionInput));
+        TenantKey tenantKey = TenantContextUtils.getRequiredTenantKey(tenantContextHolder);
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        String rid = MdcUtils.getRid();
+
+        Runnable releaseLimits = () -> {
+            release(activeByFunction, functionLimitKey);
+            release(activeByTenant, tenant);
+        };
+        // committed before execution, the job is updated by the executor thread
+        FunctionJobRecord queued = saveQueued(job, releaseLimits);
+        FunctionJob status = toJob(queued);
+        try {
+            executor.execute(() -> run(queued, input, tenantKey, securityContext, rid, releaseLimits));
+        } catch (RejectedExecutionException e) {
+            separateTransactionExecutor.doInSeparateTransaction(() -> {
+                functionJobRepository.deleteById(queued.getId());
+                return queued.getId();
+            });
+            releaseLimits.run();
+            metricRegistry.meter(METRICS_PREFIX + "rejected").mark();
+            throw new BusinessException(ERROR_LIMIT, "Function execution queue is full");
+        }
+        log.info("Function {} is queued as job {}", functionKey, queued.getId());
+        return status;
+    }
+
+    /**
+     * @param jobId the job id
+     * @return job of the current tenant and user, empty if it is unknown or expired
+     */
+    public Optional<FunctionJob> findJob(String jobId) {
+        return findOwnJob(jobId).map(FunctionJobService::toJob);
+    }
+
+    /**
+     * @param jobId the job id
+     * @return completed job of the current tenant and user with the rendered function result
+     */
+    public Optional<FunctionJobRecord> findResult(String jobId) {
+        return findOwnJob(jobId).filter(job -> job.getState() == FunctionJob.State.COMPLETED);
+    }
+
+    /**
+     * Deletes jobs of all tenants which were finished more than {@code result-ttl-seconds} ago.
+     */
+    @Scheduled(fixedDelayString = "${application.function-async.expiry-delay:60000}")
+    public void removeExpiredJobs() {
+        for (String tenant : tenantListRepository.getTenants()) {
+            try {
+                tenantContextHolder.getPrivilegedContext().execute(buildTenant(tenant.toUpperCase()),
+                                                                   this::removeExpiredTenantJobs);
+            } catch (RuntimeException e) {
+                log.error("Expired function jobs of tenant {} were not removed", tenant, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private Optional<FunctionJobRecord> findOwnJob(String jobId) {
+        String userKey = getUserKey();
+        // jobs are stored in the tenant schema
+        return functionJobRepository.findById(jobId).filter(job -> Objects.equals(job.getUserKey(), userKey));
+    }
+
+    private int removeExpiredTenantJobs() {
+        Instant finishedBefore = Instant.now().minusSeconds(config.getResultTtlSeconds());
+        int deleted = separateTransactionExecutor.doInSeparateTransaction(
+            () -> functionJobRepository.deleteFinishedBefore(finishedBefore));
+        if (deleted > 0) {
+            log.info("Expired function jobs were deleted: {}", deleted);
+        }
+        return deleted;
+    }
+
+    private void run(FunctionJobRecord job, Map<String, Object> input, TenantKey tenantKey,
+                     SecurityContext securityContext, String rid, Runnable releaseLimits) {
+        MdcUtils.putRid(rid + ":" + job.getId());
+        SecurityContextHolder.setContext(securityContext);
+        try {
+            tenantContextHolder.getPrivilegedContext().execute(buildTenant(tenantKey),
+                                                               () -> run(job, input, releaseLimits));
+        } catch (RuntimeException e) {
+            log.error("Function job {} was not updated", job.getId(), e);
+        } finally {
+            SecurityContextHolder.clearContext();
+            MdcUtils.removeRid();
+        }
+    }
+
+    private FunctionJobRecord run(FunctionJobRecord queued, Map<String, Object> input, Runnable releaseLimits) {
+        Instant startDate = Instant.now();
+        metricRegistry.timer(METRICS_PREFIX + "latency")
+                      .update(Duration.between(queued.getCreateDate(), startDate).toMillis(), TimeUnit.MILLISECONDS);
+        FunctionJobRecord job = queued;
+        try {
+            job.setState(FunctionJob.State.RUNNING);
+            job.setStartDate(startDate);
+            job = save(job);
+            FunctionContext result = execute(job.getFunctionKey(), input);
+            renderResult(job, result);
+            job.setState(FunctionJob.State.COMPLETED);
+            job.setFunctionContextId(result.getId());
+        } catch (Exception e) {
+            log.error("Function job {} failed", job.getId(), e);
+            metricRegistry.meter(METRICS_PREFIX + "failed").mark();
+            job.setState(FunctionJob.State.FAILED);
+            job.setError(StringUtils.abbreviate(e.getMessage(), MAX_ERROR_LENGTH));
+            job.setResultContentType(null);
+            job.setResult(null);
+        } finally {
+            metricRegistry.timer(METRICS_PREFIX + "execution")
+                          .update(Duration.between(startDate, Instant.now()).toMillis(), TimeUnit.MILLISECONDS);
+            job.setEndDate(Instant.now());
+            // caller which sees the finished job can submit the next one
+            releaseLimits.run();
+            job = save(job);
+        }
+        return job;
+    }
+
+    private FunctionJobRecord saveQueued(FunctionJobRecord job, Runnable releaseLimits) {
+        try {
+            return save(job);
+        } catch (RuntimeException e) {
+            releaseLimits.run();
+            throw e;
+        }
+    }
+
+    private FunctionJobRecord save(FunctionJobRecord job) {
+        return separateTransactionExecutor.doInSeparateTransaction(() -> functionJobRepository.save(job));
+    }
+
+    /**
+     * Result is rendered as it is returned by the synchronous call: binary data as is, other results as json.
+     */
+    private void renderResult(FunctionJobRecord job, FunctionContext result) throws IOException {
+        Object body = result.functionResult();
+        if (result.isBinaryData()) {
+            job.setResultContentType(Objects.toString(result.getBinaryDataType(),
+                                                      MediaType.APPLICATION_OCTET_STREAM_VALUE));
+            job.setResult(toBytes(body));
+        } else {
+            job.setResultContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            job.setResult(objectMapper.writeValueAsBytes(body));
+        }
+    }
+
+    private static byte[] toBytes(Object body) throws IOException {
+        if (body instanceof InputStream) {
+            try (InputStream inputStream = (InputStream) body) {
+                return StreamUtils.copyToByteArray(inputStream);
+            }
+        } else if (body instanceof byte[]) {
+            return (byte[]) body;
+        } else if (body != null) {
+            return body.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return new byte[0];
+    }
+
+    private static FunctionJob toJob(FunctionJobRecord job) {
+        return FunctionJob.builder()
+                          .id(job.getId())
+                          .functionKey(job.getFunctionKey())
+                          .state(job.getState())
+                          .functionContextId(job.getFunctionContextId())
+                          .createDate(job.getCreateDate())
+                          .startDate(job.getStartDate())
+                          .endDate(job.getEndDate())
+                          .error(job.getError())
+                          .build();
+    }
+
+    private FunctionContext execute(String functionKey, Map<String, Object> input) {
+        lepManager.beginThreadContext(threadContext -> {
+            threadContext.setValue(THREAD_CONTEXT_KEY_TENANT_CONTEXT, tenantContextHolder.getContext());
+            threadContext.setValue(THREAD_CONTEXT_KEY_AUTH_CONTEXT, authContextHolder.getContext());
+        });
+        try {
+            return functionService.execute(functionKey, input);
+        } finally {
+            lepManager.endThreadContext();
+        }
+    }
+
+    private void acquire(Map<String, Integer> counters, String key, int limit, String subject) {
+        AtomicBoolean acquired = new AtomicBoolean();
+        counters.compute(key, (k, active) -> {
+            int count = active == null ? 0 : active;
+            if (count >= limit) {
+                return active;
+            }
+            acquired.set(true);
+            return count + 1;
+        });
+        if (!acquired.get()) {
+            metricRegistry.meter(METRICS_PREFIX + "rejected").mark();
+            throw new BusinessException(ERROR_LIMIT, "Too many queued and running functions of the " + subject);
+        }
+    }
+
+    private static void release(Map<String, Integer> counters, String key) {
+        counters.computeIfPresent(key, (k, active) -> active <= 1 ? null : active - 1);
+    }
+
+    private String getUserKey() {
+        return authContextHolder.getContext().getUserKey().orElse(null);
+    }
+}
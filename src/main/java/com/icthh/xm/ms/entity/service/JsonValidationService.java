@@ -3,39 +3,66 @@ package com.icthh.xm.ms.entity.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.core.report.ListProcessingReport;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
 import com.github.fge.jsonschema.main.JsonSchema;
 import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import com.icthh.xm.commons.exceptions.BusinessException;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.JsonValidation;
+import com.networknt.schema.ValidationMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import static com.icthh.xm.ms.entity.config.Constants.REGEX_EOL;
 
+/**
+ * Validates entity data and function input against json schemas of the specification.
+ *
+ * Data is converted to the tree model directly, without serialization to string. Schemas are compiled once
+ * per schema text, i.e. once per specification version, by the engine from {@code application.json-validation}.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class JsonValidationService {
 
     private final ObjectMapper objectMapper;
+    private final ApplicationProperties applicationProperties;
     private final JsonSchemaFactory factory = JsonSchemaFactory.byDefault();
+    private final com.networknt.schema.JsonSchemaFactory networkntFactory =
+        com.networknt.schema.JsonSchemaFactory.getInstance();
+    private final ConcurrentMap<String, CompiledJsonSchema> compiledSchemas = new ConcurrentHashMap<>();
 
     public ProcessingReport validateJson(Map<String, Object> data, JsonSchema schema) {
-        ProcessingReport report = validate(data, schema);
-        if (!report.isSuccess()) {
-            log.error("Validation data report: {}", getReportErrorMessage(report));
-        }
-        return report;
+        return logReport(schema.validateUnchecked(toJsonNode(data)));
+    }
+
+    /**
+     * Validates data against the schema text, schema is compiled on the first call only.
+     */
+    public ProcessingReport validateJson(Map<String, Object> data, String jsonSchema) {
+        return logReport(getCompiledSchema(jsonSchema).validate(toJsonNode(data)));
+    }
+
+    /**
+     * @return fge schema of the schema text, compiled once and cached with the schemas used for validation
+     */
+    public JsonSchema getJsonSchema(String jsonSchema) {
+        return getCompiledSchema(jsonSchema).getFgeSchema(factory);
     }
 
-    @SneakyThrows
     public void assertJson(Map<String, Object> data, String jsonSchema) {
-        JsonSchema schema = factory.getJsonSchema(JsonLoader.fromString(jsonSchema));
-        ProcessingReport report = validate(data, schema);
+        ProcessingReport report = getCompiledSchema(jsonSchema).validate(toJsonNode(data));
         if (!report.isSuccess()) {
             String message = getReportErrorMessage(report);
             log.error("Validation data report: {}", message);
@@ -43,17 +70,87 @@ public class JsonValidationService {
         }
     }
 
+    private ProcessingReport logReport(ProcessingReport report) {
+        if (!report.isSuccess()) {
+            log.error("Validation data report: {}", getReportErrorMessage(report));
+        }
+        return report;
+    }
+
     private String getReportErrorMessage(ProcessingReport report) {
         return report.toString().replaceAll(REGEX_EOL, " | ");
     }
 
+    private JsonNode toJsonNode(Map<String, Object> data) {
+        JsonNode dataNode = objectMapper.valueToTree(data);
+        log.debug("Validation data: {}", dataNode);
+        return dataNode;
+    }
+
+    private CompiledJsonSchema getCompiledSchema(String jsonSchema) {
+        CompiledJsonSchema compiled = compiledSchemas.get(jsonSchema);
+        if (compiled != null) {
+            return compiled;
+        }
+        JsonValidation config = applicationProperties.getJsonValidation();
+        // schemas of previous specification versions are never requested again, so just start over
+        if (compiledSchemas.size() >= config.getSchemaCacheSize()) {
+            compiledSchemas.clear();
+        }
+        return compiledSchemas.computeIfAbsent(jsonSchema, schema -> compile(schema, config.getEngine()));
+    }
+
     @SneakyThrows
-    private ProcessingReport validate(Map<String, Object> data, JsonSchema jsonSchema) {
-        String stringData = objectMapper.writeValueAsString(data);
-        log.debug("Validation data. map: {}, jsonData: {}", data, stringData);
+    private CompiledJsonSchema compile(String jsonSchema, JsonValidation.Engine engine) {
+        JsonNode schemaNode = JsonLoader.fromString(jsonSchema);
+        if (engine == JsonValidation.Engine.NETWORKNT) {
+            com.networknt.schema.JsonSchema schema = networkntFactory.getSchema(schemaNode);
+            return new CompiledJsonSchema(schemaNode, null, data -> toProcessingReport(schema.validate(data)));
+        }
+        JsonSchema schema = factory.getJsonSchema(schemaNode);
+        return new CompiledJsonSchema(schemaNode, schema, schema::validateUnchecked);
+    }
 
-        JsonNode dataNode = JsonLoader.fromString(stringData);
-        return jsonSchema.validate(dataNode);
+    /**
+     * Keeps fge report as the result of both engines, so callers get the same messages format.
+     */
+    @SneakyThrows
+    private static ProcessingReport toProcessingReport(Set<ValidationMessage> messages) {
+        ListProcessingReport report = new ListProcessingReport();
+        for (ValidationMessage message : messages) {
+            report.error(new ProcessingMessage().setMessage(message.getMessage())
+                                                .put("keyword", message.getType())
+                                                .put("instance", message.getPath()));
+        }
+        return report;
+    }
+
+    private static final class CompiledJsonSchema {
+
+        private final JsonNode schemaNode;
+        private final Function<JsonNode, ProcessingReport> validator;
+        private volatile JsonSchema fgeSchema;
+
+        CompiledJsonSchema(JsonNode schemaNode, JsonSchema fgeSchema, Function<JsonNode, ProcessingReport> validator) {
+            this.schemaNode = schemaNode;
+            this.fgeSchema = fgeSchema;
+            this.validator = validator;
+        }
+
+        ProcessingReport validate(JsonNode data) {
+            return validator.apply(data);
+        }
+
+        /**
+         * fge schema is compiled on demand when schemas are validated by another engine.
+         */
+        @SneakyThrows
+        JsonSchema getFgeSchema(JsonSchemaFactory factory) {
+            if (fgeSchema == null) {
+                fgeSchema = factory.getJsonSchema(schemaNode);
+            }
+            return fgeSchema;
+        }
     }
 
     public static class InvalidJsonException extends BusinessException {
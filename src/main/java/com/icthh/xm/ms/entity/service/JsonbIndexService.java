@@ -0,0 +1,302 @@
+package com.icthh.xm.ms.entity.service;
+
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_BOOLEAN_TEMPLATE;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_NUMERIC_TEMPLATE;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_TEMPLATE;
+import static com.icthh.xm.ms.entity.config.jsonb.CustomPostgreSQL95Dialect.JSON_QUERY_TEXT_TEMPLATE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.jsonb.JsonbUtils;
+import com.icthh.xm.ms.entity.domain.spec.IndexSpec;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import com.icthh.xm.ms.entity.service.dto.JsonbIndexStatus;
+import com.icthh.xm.ms.entity.service.dto.JsonbIndexStatus.Index;
+import com.icthh.xm.ms.entity.service.dto.JsonbIndexStatus.State;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+
+/**
+ * Keeps indexes of {@code xm_entity.data} in the tenant schema in line with {@code indexes} of type specs.
+ *
+ * Managed indexes are named by hash of their definition, so changed definition is a new index. Missing and
+ * invalid indexes are created and indexes removed from the spec are dropped concurrently, without locking
+ * writes of entities. Indexes are updated in background, one tenant at a time, the last spec of the tenant wins.
+ * Expressions are the same as {@code json_query} and typed functions of
+ * {@link com.icthh.xm.ms.entity.config.jsonb.JsonbCriteriaBuilder} predicates, so the predicates use the indexes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JsonbIndexService {
+
+    static final String INDEX_PREFIX = "xm_entity_spec_";
+
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String FIND_INDEXES_SQL = "select c.relname, i.indisvalid from pg_index i"
+        + " join pg_class c on c.oid = i.indexrelid"
+        + " join pg_class t on t.oid = i.indrelid"
+        + " join pg_namespace n on n.oid = t.relnamespace"
+        + " where n.nspname = current_schema() and t.relname = 'xm_entity' and c.relname like ?";
+
+    private static final String NAME_PLACEHOLDER = "{name}";
+    /**
+     * Instances updating indexes of the same schema wait for each other.
+     */
+    private static final String LOCK_SQL = "select pg_advisory_lock(hashtext(current_schema() || '.xm_entity_spec'))";
+    private static final String UNLOCK_SQL =
+        "select pg_advisory_unlock(hashtext(current_schema() || '.xm_entity_spec'))";
+
+    private final TenantContextHolder tenantContextHolder;
+    private final MultiTenantConnectionProvider connectionProvider;
+    private final CurrentTenantIdentifierResolver tenantIdentifierResolver;
+    private final ApplicationProperties applicationProperties;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+        new CustomizableThreadFactory("jsonb-index-"));
+
+    private final Map<String, List<Index>> pendingPlans = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> plannedNames = new ConcurrentHashMap<>();
+    private final Map<String, JsonbIndexStatus> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Plans indexes of the tenant spec and updates them in background.
+     *
+     * @param tenant the tenant key
+     * @param types  type specs of the tenant
+     */
+    public void updateIndexes(String tenant, Map<String, TypeSpec> types) {
+        if (!applicationProperties.getJsonbIndexes().isEnabled()) {
+            return;
+        }
+        List<Index> plan = planIndexes(types.values());
+        Set<String> names = plan.stream().map(Index::getName).collect(Collectors.toSet());
+        if (names.equals(plannedNames.put(tenant, names))) {
+            // spec is changed, but indexes are the same
+            return;
+        }
+        statuses.put(tenant, JsonbIndexStatus.builder().state(State.PENDING).indexes(plan).build());
+        if (pendingPlans.put(tenant, plan) == null) {
+            executor.execute(() -> update(tenant));
+        }
+    }
+
+    /**
+     * @return status of the last indexes update of the current tenant
+     */
+    public Optional<JsonbIndexStatus> getStatus() {
+        return Optional.ofNullable(statuses.get(TenantContextUtils.getRequiredTenantKeyValue(tenantContextHolder)));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    static List<Index> planIndexes(Collection<TypeSpec> types) {
+        Map<String, Index> indexes = new LinkedHashMap<>();
+        for (TypeSpec type : types) {
+            if (type.getIndexes() == null) {
+                continue;
+            }
+            for (IndexSpec spec : type.getIndexes()) {
+                if (spec.getType() != IndexSpec.Type.GIN && CollectionUtils.isEmpty(spec.getPaths())) {
+                    log.warn("Index of type {} is ignored, it has no paths", type.getKey());
+                    continue;
+                }
+                String sql = toCreateSql(type.getKey(), spec);
+                String name = INDEX_PREFIX + Hashing.sha256().hashString(sql, UTF_8).toString().substring(0, 16);
+                indexes.putIfAbsent(name, Index.builder()
+                                               .name(name)
+                                               .typeKey(type.getKey())
+                                               .operation(Index.Operation.CREATE)
+                                               .sql(sql.replace(NAME_PLACEHOLDER, name))
+                                               .state(Index.State.PLANNED)
+                                               .build());
+            }
+        }
+        return new ArrayList<>(indexes.values());
+    }
+
+    /**
+     * @return create index statement with {@link #NAME_PLACEHOLDER}
+     */
+    private static String toCreateSql(String typeKey, IndexSpec spec) {
+        IndexSpec.ValueType valueType = spec.getType() == IndexSpec.Type.GIN || spec.getValueType() == null
+                                        ? IndexSpec.ValueType.JSONB : spec.getValueType();
+        List<String> expressions = spec.getPaths() == null ? new ArrayList<>() : spec.getPaths().stream()
+            .map(path -> "(" + toExpression(path, valueType) + ")")
+            .collect(Collectors.toList());
+
+        StringBuilder sql = new StringBuilder("create index concurrently if not exists ").append(NAME_PLACEHOLDER)
+            .append(" on xm_entity");
+        if (spec.getType() == IndexSpec.Type.GIN) {
+            if (expressions.isEmpty()) {
+                expressions.add("data");
+            }
+            sql.append(" using gin (").append(expressions.stream().map(expression -> expression + " jsonb_path_ops")
+                                                             .collect(Collectors.joining(", "))).append(')');
+        } else {
+            sql.append(" (").append(String.join(", ", expressions)).append(')');
+        }
+        if (Boolean.TRUE.equals(spec.getPartial())) {
+            sql.append(" where type_key = ").append(quote(typeKey));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * The same expression as rendered by typed functions of the dialect.
+     */
+    private static String toExpression(String path, IndexSpec.ValueType valueType) {
+        String template;
+        switch (valueType) {
+            case TEXT:
+                template = JSON_QUERY_TEXT_TEMPLATE;
+                break;
+            case NUMERIC:
+                template = JSON_QUERY_NUMERIC_TEMPLATE;
+                path = JsonbUtils.typedPath(path, JsonbUtils.NUMBER);
+                break;
+            case BOOLEAN:
+                template = JSON_QUERY_BOOLEAN_TEMPLATE;
+                path = JsonbUtils.typedPath(path, JsonbUtils.BOOLEAN);
+                break;
+            default:
+                template = JSON_QUERY_TEMPLATE;
+        }
+        return template.replace("?1", "data").replace("?2", quote(path));
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private void update(String tenant) {
+        List<Index> plan = pendingPlans.remove(tenant);
+        if (plan == null) {
+            return;
+        }
+        JsonbIndexStatus running = JsonbIndexStatus.builder().state(State.RUNNING).indexes(plan)
+                                                   .startDate(Instant.now()).build();
+        statuses.put(tenant, running);
+        JsonbIndexStatus status = running;
+        String tenantIdentifier = tenantContextHolder.getPrivilegedContext().execute(
+            TenantContextUtils.buildTenant(tenant), tenantIdentifierResolver::resolveCurrentTenantIdentifier);
+        try {
+            Connection connection = connectionProvider.getConnection(tenantIdentifier);
+            try {
+                status = update(connection, plan, status);
+            } finally {
+                connectionProvider.releaseConnection(tenantIdentifier, connection);
+            }
+        } catch (Exception e) {
+            log.error("Entity data indexes of tenant {} were not updated", tenant, e);
+            status = status.toBuilder().state(State.FAILED).error(e.getMessage()).build();
+        }
+        if (status.getState() == State.FAILED) {
+            // next spec refresh retries
+            plannedNames.remove(tenant);
+        }
+        status = status.toBuilder().endDate(Instant.now()).build();
+        // status of the next pending update is kept
+        statuses.replace(tenant, running, status);
+        log.info("Entity data indexes of tenant {} were updated: {}", tenant, status);
+    }
+
+    private JsonbIndexStatus update(Connection connection, List<Index> plan, JsonbIndexStatus status)
+        throws SQLException {
+        if (!POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName())) {
+            return status.toBuilder().state(State.UNSUPPORTED).build();
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        // concurrent index operations are not allowed in a transaction
+        connection.setAutoCommit(true);
+        execute(connection, LOCK_SQL);
+        try {
+            Map<String, Boolean> existing = findManagedIndexes(connection);
+            List<Index> result = new ArrayList<>();
+            for (Index index : plan) {
+                Boolean valid = existing.remove(index.getName());
+                if (Boolean.TRUE.equals(valid)) {
+                    result.add(index.toBuilder().state(Index.State.EXISTS).build());
+                    continue;
+                }
+                if (valid != null) {
+                    // invalid index is left by failed concurrent build
+                    execute(connection, dropSql(index.getName()));
+                }
+                result.add(execute(connection, index));
+            }
+            for (String name : existing.keySet()) {
+                result.add(execute(connection, Index.builder().name(name).operation(Index.Operation.DROP)
+                                                    .sql(dropSql(name)).build()));
+            }
+            boolean failed = result.stream().anyMatch(index -> index.getState() == Index.State.FAILED);
+            return status.toBuilder().state(failed ? State.FAILED : State.COMPLETED).indexes(result).build();
+        } finally {
+            execute(connection, UNLOCK_SQL);
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static Map<String, Boolean> findManagedIndexes(Connection connection) throws SQLException {
+        Map<String, Boolean> indexes = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(FIND_INDEXES_SQL)) {
+            statement.setString(1, INDEX_PREFIX.replace("_", "\\_") + "%");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    indexes.put(resultSet.getString(1), resultSet.getBoolean(2));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static Index execute(Connection connection, Index index) {
+        try {
+            execute(connection, index.getSql());
+            log.info("Entity data index operation done: {}", index.getSql());
+            return index.toBuilder().state(Index.State.DONE).build();
+        } catch (SQLException e) {
+            log.error("Entity data index operation failed: {}", index.getSql(), e);
+            return index.toBuilder().state(Index.State.FAILED).error(e.getMessage()).build();
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String dropSql(String name) {
+        return "drop index concurrently if exists " + name;
+    }
+}
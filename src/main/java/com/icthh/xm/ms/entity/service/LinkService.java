@@ -1,10 +1,13 @@
 package com.icthh.xm.ms.entity.service;
 
+import com.google.common.collect.Lists;
+import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.commons.exceptions.EntityNotFoundException;
 import com.icthh.xm.commons.lep.LogicExtensionPoint;
 import com.icthh.xm.commons.lep.spring.LepService;
 import com.icthh.xm.commons.permission.annotation.FindWithPermission;
 import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
 import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService.XmEntityTenantConfig;
 import com.icthh.xm.ms.entity.domain.Link;
@@ -14,8 +17,11 @@ import com.icthh.xm.ms.entity.projection.LinkProjection;
 import com.icthh.xm.ms.entity.repository.LinkPermittedRepository;
 import com.icthh.xm.ms.entity.repository.LinkRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepository;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
 import com.icthh.xm.ms.entity.repository.search.PermittedSearchRepository;
 import com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckService;
+import com.icthh.xm.ms.entity.service.dto.LinkGraph;
 import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -27,8 +33,14 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckService.FeatureContext.LINK_DELETE;
 
@@ -42,6 +54,13 @@ import static com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckServi
 @RequiredArgsConstructor
 public class LinkService {
 
+    private static final String ERROR_LINK_GRAPH = "error.link.graph.invalid";
+    private static final String GRAPH_NODE_PRIVILEGE_KEY = "XMENTITY.GET_LIST";
+    /**
+     * Max number of ids in one IN condition of the graph queries.
+     */
+    private static final int GRAPH_QUERY_BATCH_SIZE = 500;
+
     private final LinkRepository linkRepository;
 
     private final LinkPermittedRepository permittedRepository;
@@ -54,6 +73,8 @@ public class LinkService {
 
     private final DynamicPermissionCheckService permissionCheckService;
 
+    private final ApplicationProperties applicationProperties;
+
     @Setter(onMethod = @__(@Autowired))
     private LinkService self;
 
@@ -162,6 +183,128 @@ public class LinkService {
         return permittedRepository.findAllByTargetIdAndTypeKeyIn(pageable, id, typeKey, privilegeKey);
     }
 
+    @FindWithPermission("LINK.SOURCE.GET_LIST")
+    @Transactional(readOnly = true)
+    @PrivilegeDescription("Privilege to get all the source links by target entity id and typeKeys")
+    public CursorPage<Link> findSourceByTargetIdAndTypeKey(CursorPageable pageable, Long id, Set<String> typeKey,
+                                                           String privilegeKey) {
+        return permittedRepository.findAllByTargetIdAndTypeKeyIn(pageable, id, typeKey, privilegeKey);
+    }
+
+    /**
+     * Traverse links from the start entity breadth-first, one query of links and one query of nodes per level.
+     * Every node is visited once, so cycles are traversed once as well. Traversal stops when the number of nodes
+     * or links reaches the limit, the result is marked as truncated then. Nodes are filtered by the permission
+     * condition of XMENTITY.GET_LIST, links of not permitted nodes are skipped and not traversed.
+     *
+     * @param startId      the start entity id
+     * @param typeKeys     link type keys to follow, any type if empty
+     * @param direction    the direction of links to follow
+     * @param depth        the max number of hops from the start entity
+     * @param fields       entity fields of the nodes, see {@link LinkPermittedRepository#GRAPH_NODE_FIELDS}
+     * @param limit        the max number of nodes and of links, {@code application.link-graph.max-size} if null
+     * @param privilegeKey the privilege key
+     * @return the graph of nodes and links
+     */
+    @FindWithPermission("LINK.GRAPH.GET")
+    @Transactional(readOnly = true)
+    @PrivilegeDescription("Privilege to get the graph of entities linked with the entity")
+    public LinkGraph findGraph(Long startId, Set<String> typeKeys, LinkGraph.Direction direction, int depth,
+                               List<String> fields, Integer limit, String privilegeKey) {
+        ApplicationProperties.LinkGraph config = applicationProperties.getLinkGraph();
+        if (depth < 1 || depth > config.getMaxDepth()) {
+            throw new BusinessException(ERROR_LINK_GRAPH, "Depth must be from 1 to " + config.getMaxDepth());
+        }
+        fields.stream().filter(field -> !LinkPermittedRepository.GRAPH_NODE_FIELDS.contains(field)).findAny()
+              .ifPresent(field -> {
+                  throw new BusinessException(ERROR_LINK_GRAPH, "Field " + field + " is not allowed");
+              });
+        int maxSize = limit == null ? config.getMaxSize() : Math.max(1, Math.min(limit, config.getMaxSize()));
+
+        List<Map<String, Object>> nodes = findGraphNodes(Collections.singletonList(startId), fields);
+        if (nodes.isEmpty()) {
+            throw new EntityNotFoundException("XmEntity with id [" + startId + "] not found");
+        }
+        Set<Long> visited = new HashSet<>(Collections.singleton(startId));
+        Set<Long> hidden = new HashSet<>();
+        Map<Long, LinkGraph.Edge> edges = new LinkedHashMap<>();
+        List<Long> level = Collections.singletonList(startId);
+        boolean truncated = false;
+
+        for (int hop = 0; hop < depth && !level.isEmpty() && !truncated; hop++) {
+            List<LinkGraph.Edge> levelEdges = new ArrayList<>();
+            // links over the query limit are unknown, so the limited level is truncated
+            truncated = findGraphEdges(level, direction, typeKeys, maxSize - edges.size() + 1, privilegeKey,
+                                       levelEdges);
+            List<Long> nextLevel = new ArrayList<>();
+            for (LinkGraph.Edge edge : levelEdges) {
+                if (edges.containsKey(edge.getId())
+                    || hidden.contains(edge.getSource()) || hidden.contains(edge.getTarget())) {
+                    continue;
+                }
+                Long next = visited.contains(edge.getSource()) ? edge.getTarget() : edge.getSource();
+                boolean newNode = !visited.contains(next);
+                if (edges.size() >= maxSize || (newNode && visited.size() >= maxSize)) {
+                    truncated = true;
+                    break;
+                }
+                edges.put(edge.getId(), edge);
+                if (newNode) {
+                    visited.add(next);
+                    nextLevel.add(next);
+                }
+            }
+            List<Map<String, Object>> levelNodes = findGraphNodes(nextLevel, fields);
+            nodes.addAll(levelNodes);
+            if (levelNodes.size() < nextLevel.size()) {
+                Set<Object> permitted = levelNodes.stream().map(node -> node.get("id")).collect(Collectors.toSet());
+                nextLevel.stream().filter(id -> !permitted.contains(id)).forEach(hidden::add);
+                nextLevel.removeAll(hidden);
+                edges.values().removeIf(edge -> hidden.contains(edge.getSource())
+                                                || hidden.contains(edge.getTarget()));
+            }
+            level = nextLevel;
+        }
+        return new LinkGraph(nodes, new ArrayList<>(edges.values()), truncated);
+    }
+
+    private boolean findGraphEdges(List<Long> nodeIds, LinkGraph.Direction direction, Set<String> typeKeys,
+                                   int maxResults, String privilegeKey, List<LinkGraph.Edge> edges) {
+        boolean limited = false;
+        for (List<Long> ids : Lists.partition(nodeIds, GRAPH_QUERY_BATCH_SIZE)) {
+            if (direction != LinkGraph.Direction.INCOMING) {
+                limited |= addGraphEdges(permittedRepository.findGraphEdges(ids, true, typeKeys, maxResults,
+                                                                            privilegeKey), maxResults, edges);
+            }
+            if (direction != LinkGraph.Direction.OUTGOING) {
+                limited |= addGraphEdges(permittedRepository.findGraphEdges(ids, false, typeKeys, maxResults,
+                                                                            privilegeKey), maxResults, edges);
+            }
+        }
+        return limited;
+    }
+
+    private static boolean addGraphEdges(List<Object[]> rows, int maxResults, List<LinkGraph.Edge> edges) {
+        rows.forEach(row -> edges.add(new LinkGraph.Edge((Long) row[0], (String) row[1], (Long) row[2],
+                                                         (Long) row[3])));
+        return rows.size() >= maxResults;
+    }
+
+    private List<Map<String, Object>> findGraphNodes(List<Long> nodeIds, List<String> fields) {
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        for (List<Long> ids : Lists.partition(nodeIds, GRAPH_QUERY_BATCH_SIZE)) {
+            for (Object[] row : permittedRepository.findGraphNodes(ids, fields, GRAPH_NODE_PRIVILEGE_KEY)) {
+                Map<String, Object> node = new LinkedHashMap<>();
+                node.put("id", row[0]);
+                for (int i = 0; i < fields.size(); i++) {
+                    node.put(fields.get(i), row[i + 1]);
+                }
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
     /**
      *  Delete the  link by id.
      *
@@ -0,0 +1,52 @@
+package com.icthh.xm.ms.entity.service;
+
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cache of TypeSpec views with functions filtered by dynamic function permissions.
+ * Views are kept per (tenant, role, specification version, permissions version), where specification version
+ * is the {@link TypeSpecIndex} instance and permissions version is the role permissions set instance.
+ */
+class PermittedTypeSpecViews {
+
+    private final Map<String, TenantViews> viewsByTenant = new ConcurrentHashMap<>();
+
+    TypeSpec getView(String tenant, String role, TypeSpecIndex index, Set<String> permissions,
+                     TypeSpec spec, UnaryOperator<TypeSpec> filter) {
+        TenantViews tenantViews = viewsByTenant.get(tenant);
+        if (tenantViews == null || tenantViews.index != index) {
+            tenantViews = new TenantViews(index);
+            viewsByTenant.put(tenant, tenantViews);
+        }
+
+        RoleViews roleViews = tenantViews.byRole.get(role);
+        if (roleViews == null || roleViews.permissions != permissions) {
+            roleViews = new RoleViews(permissions);
+            tenantViews.byRole.put(role, roleViews);
+        }
+
+        return roleViews.byType.computeIfAbsent(spec.getKey(), key -> filter.apply(spec));
+    }
+
+    void evict(String tenant) {
+        viewsByTenant.remove(tenant);
+    }
+
+    @RequiredArgsConstructor
+    private static final class TenantViews {
+        private final TypeSpecIndex index;
+        private final Map<String, RoleViews> byRole = new ConcurrentHashMap<>();
+    }
+
+    @RequiredArgsConstructor
+    private static final class RoleViews {
+        private final Set<String> permissions;
+        private final Map<String, TypeSpec> byType = new ConcurrentHashMap<>();
+    }
+}
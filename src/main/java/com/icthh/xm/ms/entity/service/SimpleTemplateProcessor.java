@@ -1,18 +1,18 @@
 package com.icthh.xm.ms.entity.service;
 
-import static com.jayway.jsonpath.Configuration.defaultConfiguration;
-import static com.jayway.jsonpath.Option.SUPPRESS_EXCEPTIONS;
 import static org.apache.commons.lang3.ObjectUtils.firstNonNull;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.DocumentContext;
+import com.icthh.xm.ms.entity.util.JsonPathUtils;
 import com.jayway.jsonpath.JsonPath;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.text.StringSubstitutor;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -20,20 +20,25 @@ public class SimpleTemplateProcessor {
 
     private final ObjectMapper objectMapper;
 
-    @SneakyThrows
+    /**
+     * Template variables are paths from type specifications, so they are compiled once.
+     */
+    private final ConcurrentMap<String, JsonPath> compiledPaths = new ConcurrentHashMap<>();
+
     public String processTemplate(String template, Object object) {
-        String json = objectMapper.writeValueAsString(object);
-        DocumentContext document = JsonPath.using(defaultConfiguration().addOptions(SUPPRESS_EXCEPTIONS)).parse(json);
+        // the same json model, as serialized object has, but without string round trip
+        Object document = objectMapper.convertValue(object, Object.class);
         StringSubstitutor sub = new StringSubstitutor();
         sub.setVariableResolver(key -> {
             String defaultValue = "";
             if (key.contains(":")) {
                 defaultValue = key.split(":")[1];
             }
-            return String.valueOf(firstNonNull((Object) document.read(key), defaultValue));
+            JsonPath jsonPath = compiledPaths.computeIfAbsent(key, JsonPath::compile);
+            return String.valueOf(firstNonNull((Object) JsonPathUtils.read(jsonPath, document), defaultValue));
         });
         String result = sub.replace(template);
-        log.debug("Template {}, params {}, result {}", template, json, result);
+        log.debug("Template {}, params {}, result {}", template, document, result);
         return result;
     }
 }
@@ -0,0 +1,208 @@
+package com.icthh.xm.ms.entity.service;
+
+import static com.icthh.xm.ms.entity.util.CustomCollectionUtils.nullSafe;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Optional.ofNullable;
+
+import com.icthh.xm.ms.entity.domain.spec.AttachmentSpec;
+import com.icthh.xm.ms.entity.domain.spec.CalendarSpec;
+import com.icthh.xm.ms.entity.domain.spec.EventSpec;
+import com.icthh.xm.ms.entity.domain.spec.FunctionSpec;
+import com.icthh.xm.ms.entity.domain.spec.LinkSpec;
+import com.icthh.xm.ms.entity.domain.spec.LocationSpec;
+import com.icthh.xm.ms.entity.domain.spec.RatingSpec;
+import com.icthh.xm.ms.entity.domain.spec.StateSpec;
+import com.icthh.xm.ms.entity.domain.spec.TagSpec;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Immutable lookup index over the entity Type specifications of one tenant.
+ * It is built once per specification refresh, so that sub specification lookups
+ * are served by hash lookups instead of streaming over TypeSpec lists on every call.
+ * The first specification wins when keys are duplicated, the same as the former linear search.
+ */
+public final class TypeSpecIndex {
+
+    static final char TYPE_SEPARATOR = '.';
+
+    private static final TypeSpecIndex EMPTY = new TypeSpecIndex(emptyMap());
+
+    private final Map<String, TypeSpec> types;
+    private final Map<String, SubSpecs> subSpecs;
+    private final Map<String, FunctionSpec> functions;
+    private final Map<String, List<EventSpec>> events;
+    private final List<TypeSpec> nonAbstractTypes;
+    private final Map<String, List<TypeSpec>> nonAbstractTypesByPrefix;
+
+    private TypeSpecIndex(Map<String, TypeSpec> typeSpecs) {
+        Map<String, SubSpecs> subSpecs = new HashMap<>();
+        Map<String, FunctionSpec> functions = new HashMap<>();
+        Map<String, List<EventSpec>> events = new HashMap<>();
+        List<TypeSpec> nonAbstractTypes = new ArrayList<>();
+        Map<String, List<TypeSpec>> nonAbstractTypesByPrefix = new HashMap<>();
+
+        for (TypeSpec typeSpec : typeSpecs.values()) {
+            subSpecs.put(typeSpec.getKey(), new SubSpecs(typeSpec));
+            nullSafe(typeSpec.getFunctions()).forEach(fs -> functions.putIfAbsent(fs.getKey(), fs));
+            for (CalendarSpec calendarSpec : nullSafe(typeSpec.getCalendars())) {
+                for (EventSpec eventSpec : nullSafe(calendarSpec.getEvents())) {
+                    events.computeIfAbsent(eventSpec.getKey(), key -> new ArrayList<>(1)).add(eventSpec);
+                }
+            }
+            if (!Boolean.TRUE.equals(typeSpec.getIsAbstract())) {
+                nonAbstractTypes.add(typeSpec);
+                for (String prefix : prefixes(typeSpec.getKey())) {
+                    nonAbstractTypesByPrefix.computeIfAbsent(prefix, key -> new ArrayList<>()).add(typeSpec);
+                }
+            }
+        }
+
+        this.types = unmodifiableMap(new LinkedHashMap<>(typeSpecs));
+        this.subSpecs = subSpecs;
+        this.functions = functions;
+        this.events = events;
+        this.nonAbstractTypes = unmodifiableList(nonAbstractTypes);
+        this.nonAbstractTypesByPrefix = nonAbstractTypesByPrefix;
+    }
+
+    /**
+     * Builds index for tenant specifications. Specifications must be already processed
+     * (inheritance, unique fields), index does not copy TypeSpec instances.
+     *
+     * @param typeSpecs tenant specifications by type key in declaration order
+     * @return new index instance
+     */
+    public static TypeSpecIndex of(Map<String, TypeSpec> typeSpecs) {
+        return typeSpecs == null || typeSpecs.isEmpty() ? EMPTY : new TypeSpecIndex(typeSpecs);
+    }
+
+    public static TypeSpecIndex empty() {
+        return EMPTY;
+    }
+
+    public Map<String, TypeSpec> getTypes() {
+        return types;
+    }
+
+    public Optional<TypeSpec> findType(String typeKey) {
+        return ofNullable(types.get(typeKey));
+    }
+
+    public List<TypeSpec> getNonAbstractTypes() {
+        return nonAbstractTypes;
+    }
+
+    /**
+     * Non abstract types which key is equal to prefix or starts with prefix followed by type separator.
+     *
+     * @param prefix type key prefix
+     * @return types in declaration order
+     */
+    public List<TypeSpec> findNonAbstractTypesByPrefix(String prefix) {
+        return unmodifiableList(nonAbstractTypesByPrefix.getOrDefault(prefix, emptyList()));
+    }
+
+    public Optional<StateSpec> findState(String typeKey, String stateKey) {
+        return subSpecs(typeKey).map(it -> it.states.get(stateKey));
+    }
+
+    public Optional<LinkSpec> findLink(String typeKey, String linkKey) {
+        return subSpecs(typeKey).map(it -> it.links.get(linkKey));
+    }
+
+    public Optional<TagSpec> findTag(String typeKey, String tagKey) {
+        return subSpecs(typeKey).map(it -> it.tags.get(tagKey));
+    }
+
+    public Optional<AttachmentSpec> findAttachment(String typeKey, String attachmentKey) {
+        return subSpecs(typeKey).map(it -> it.attachments.get(attachmentKey));
+    }
+
+    public Optional<RatingSpec> findRating(String typeKey, String ratingKey) {
+        return subSpecs(typeKey).map(it -> it.ratings.get(ratingKey));
+    }
+
+    public Optional<LocationSpec> findLocation(String typeKey, String locationKey) {
+        return subSpecs(typeKey).map(it -> it.locations.get(locationKey));
+    }
+
+    /**
+     * Function lookup over all types of the tenant.
+     *
+     * @param functionKey function key
+     * @return first declared function with the key
+     */
+    public Optional<FunctionSpec> findFunction(String functionKey) {
+        return ofNullable(functions.get(functionKey));
+    }
+
+    /**
+     * Event lookup over all calendars of all types of the tenant.
+     *
+     * @param eventTypeKey event type key
+     * @return all event specifications with the key, empty list if none found
+     */
+    public List<EventSpec> findEvents(String eventTypeKey) {
+        return unmodifiableList(events.getOrDefault(eventTypeKey, emptyList()));
+    }
+
+    private Optional<SubSpecs> subSpecs(String typeKey) {
+        return ofNullable(subSpecs.get(typeKey));
+    }
+
+    /**
+     * Key "A.B.C" gives prefixes "A", "A.B" and "A.B.C".
+     */
+    static List<String> prefixes(String typeKey) {
+        List<String> prefixes = new ArrayList<>();
+        for (int i = typeKey.indexOf(TYPE_SEPARATOR); i >= 0; i = typeKey.indexOf(TYPE_SEPARATOR, i + 1)) {
+            prefixes.add(typeKey.substring(0, i));
+        }
+        prefixes.add(typeKey);
+        return prefixes;
+    }
+
+    private static final class SubSpecs {
+
+        private final Map<String, StateSpec> states;
+        private final Map<String, LinkSpec> links;
+        private final Map<String, TagSpec> tags;
+        private final Map<String, AttachmentSpec> attachments;
+        private final Map<String, RatingSpec> ratings;
+        private final Map<String, LocationSpec> locations;
+
+        private SubSpecs(TypeSpec typeSpec) {
+            this.states = byKey(typeSpec.getStates(), StateSpec::getKey);
+            this.links = byKey(typeSpec.getLinks(), LinkSpec::getKey);
+            this.tags = byKey(typeSpec.getTags(), TagSpec::getKey);
+            this.attachments = byKey(typeSpec.getAttachments(), AttachmentSpec::getKey);
+            this.ratings = byKey(typeSpec.getRatings(), RatingSpec::getKey);
+            this.locations = byKey(typeSpec.getLocations(), LocationSpec::getKey);
+        }
+
+        private static <T> Map<String, T> byKey(List<T> specs, Function<T, String> keyGetter) {
+            if (specs == null || specs.isEmpty()) {
+                return emptyMap();
+            }
+            Map<String, T> result = new HashMap<>(specs.size() * 2);
+            for (T spec : specs) {
+                String key = keyGetter.apply(spec);
+                if (key != null) {
+                    result.putIfAbsent(key, spec);
+                }
+            }
+            return result;
+        }
+    }
+}
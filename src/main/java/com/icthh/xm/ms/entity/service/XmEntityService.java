@@ -8,15 +8,20 @@ import com.icthh.xm.ms.entity.domain.ext.IdOrKey;
 import com.icthh.xm.ms.entity.domain.template.TemplateParamsHolder;
 import com.icthh.xm.ms.entity.projection.XmEntityIdKeyTypeKey;
 import com.icthh.xm.ms.entity.projection.XmEntityStateProjection;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.service.dto.LinkGraph;
 import com.icthh.xm.ms.entity.service.dto.LinkSourceDto;
 
 import com.icthh.xm.ms.entity.service.dto.SearchDto;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.NotImplementedException;
@@ -33,8 +38,12 @@ public interface XmEntityService extends ResourceRepository {
 
     XmEntity save(XmEntity xmEntity);
 
+    List<XmEntity> saveAll(List<XmEntity> xmEntities);
+
     Page<XmEntity> findAll(Pageable pageable, String typeGroup, String privilegeKey);
 
+    CursorPage<XmEntity> findAll(CursorPageable pageable, String typeGroup, String privilegeKey);
+
     Set<String> getTypeKeyHierarchy(String typeKey);
 
     List<XmEntity> findAll(Specification<XmEntity> spec);
@@ -51,6 +60,8 @@ public interface XmEntityService extends ResourceRepository {
 
     Page<XmEntity> findByIds(Pageable pageable, Set<Long> ids, Set<String> embed, String privilegeKey);
 
+    CursorPage<XmEntity> findByIds(CursorPageable pageable, Set<Long> ids, Set<String> embed, String privilegeKey);
+
     @LoggingAspectConfig(resultDetails = false)
     XmEntity findOne(IdOrKey idOrKey);
 
@@ -63,6 +74,8 @@ public interface XmEntityService extends ResourceRepository {
 
     Page<XmEntity> search(String query, Pageable pageable, String privilegeKey);
 
+    CursorPage<XmEntity> search(String query, CursorPageable pageable, String privilegeKey);
+
     Page<XmEntity> searchV2(SearchDto searchDto, String privilegeKey);
 
     Page<XmEntity> search(String template,
@@ -72,6 +85,16 @@ public interface XmEntityService extends ResourceRepository {
 
     Page<XmEntity> search(Long scrollTimeInMillis, String query, Pageable pageable, String privilegeKey);
 
+    /**
+     * Search all permitted entities as a lazy stream, the stream must be closed by the caller.
+     */
+    Stream<XmEntity> searchStream(String query, String privilegeKey);
+
+    /**
+     * Write all permitted entities found by query to the output stream as newline delimited json.
+     */
+    void searchToStream(String query, OutputStream outputStream);
+
     Page<XmEntity> searchXmEntitiesToLink(IdOrKey idOrKey, String entityTypeKey, String linkTypeKey, String query,
                                           Pageable pageable, String privilegeKey);
 
@@ -95,6 +118,12 @@ public interface XmEntityService extends ResourceRepository {
     Page<LinkSourceDto> getLinkSourcesInverted(Pageable pageable, IdOrKey idOrKey, Set<String> typeKey,
                                                String privilegeKey);
 
+    CursorPage<LinkSourceDto> getLinkSourcesInverted(CursorPageable pageable, IdOrKey idOrKey, Set<String> typeKey,
+                                                     String privilegeKey);
+
+    LinkGraph getLinkGraph(IdOrKey idOrKey, Set<String> typeKeys, LinkGraph.Direction direction, int depth,
+                           List<String> fields, Integer limit, String privilegeKey);
+
     Link updateLinkTarget(IdOrKey idOrKey, String targetId, Link link, MultipartFile file);
 
     Link saveLinkTarget(IdOrKey idOrKey, Link link, MultipartFile file);
@@ -140,4 +169,6 @@ public interface XmEntityService extends ResourceRepository {
 
     byte[] exportEntities(String fileFormat, String typeKey);
 
+    void exportEntities(String fileFormat, String typeKey, OutputStream outputStream);
+
 }
@@ -31,8 +31,6 @@ import com.fasterxml.jackson.module.jsonSchema.types.ArraySchema;
 import com.fasterxml.jackson.module.jsonSchema.types.ObjectSchema;
 import com.fasterxml.jackson.module.jsonSchema.types.StringSchema;
 import com.github.fge.jackson.JsonLoader;
-import com.github.fge.jsonschema.core.exceptions.ProcessingException;
-import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.icthh.xm.commons.config.client.api.RefreshableConfiguration;
@@ -59,30 +57,30 @@ import com.icthh.xm.ms.entity.domain.spec.TagSpec;
 import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
 import com.icthh.xm.ms.entity.domain.spec.UniqueFieldSpec;
 import com.icthh.xm.ms.entity.domain.spec.XmEntitySpec;
+import com.icthh.xm.ms.entity.security.SecurityUtils;
 import com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckService;
 import com.icthh.xm.ms.entity.service.privileges.custom.EntityCustomPrivilegeService;
+import com.jayway.jsonpath.InvalidPathException;
 
-import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.AntPathMatcher;
 
@@ -99,12 +97,15 @@ public class XmEntitySpecService implements RefreshableConfiguration {
     private static final String TYPE_SEPARATOR = ".";
     private static final String TENANT_NAME = "tenantName";
     private static final String XM_ENTITY_DEFINITION = "xmEntityDefinition";
+    private static final String NO_ROLE = "";
+    private static final Pattern PLAIN_PROPERTY_NAME = Pattern.compile("[\\w-]+");
     private final AntPathMatcher matcher = new AntPathMatcher();
 
     private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
     private final ConcurrentHashMap<String, Map<String, TypeSpec>> typesByTenant = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Map<String, String>> typesByTenantByFile = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Map<String, com.github.fge.jsonschema.main.JsonSchema>> dataSpecJsonSchemas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TypeSpecIndex> typeSpecIndexes = new ConcurrentHashMap<>();
+    private final PermittedTypeSpecViews permittedTypeSpecViews = new PermittedTypeSpecViews();
 
     private final TenantConfigRepository tenantConfigRepository;
     private final ApplicationProperties applicationProperties;
@@ -112,6 +113,18 @@ public class XmEntitySpecService implements RefreshableConfiguration {
     private final EntityCustomPrivilegeService entityCustomPrivilegeService;
     private final DynamicPermissionCheckService dynamicPermissionCheckService;
     private final XmEntityTenantConfigService tenantConfigService;
+    private JsonbIndexService jsonbIndexService;
+    private JsonValidationService jsonValidationService;
+
+    @Autowired(required = false)
+    public void setJsonbIndexService(JsonbIndexService jsonbIndexService) {
+        this.jsonbIndexService = jsonbIndexService;
+    }
+
+    @Autowired
+    public void setJsonValidationService(JsonValidationService jsonValidationService) {
+        this.jsonValidationService = jsonValidationService;
+    }
 
     /**
      * Search of all entity Type specifications.
@@ -134,7 +147,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      * @return list of entity Types specifications that not an abstract.
      */
     public List<TypeSpec> findAllNonAbstractTypes() {
-        return getTypeSpecs().values().stream().filter(isNotAbstract()).map(this::filterFunctions).collect(Collectors.toList());
+        return getTypeSpecIndex().getNonAbstractTypes().stream().map(this::filterFunctions).collect(Collectors.toList());
     }
 
     public static Predicate<TypeSpec> isApp() {
@@ -157,6 +170,9 @@ public class XmEntitySpecService implements RefreshableConfiguration {
             updateByFileState(updatedKey, config, tenant);
             Map<String, TypeSpec> tenantEntitySpec = updateByTenantState(tenant);
             entityCustomPrivilegeService.updateCustomPermission(tenantEntitySpec, tenant);
+            if (jsonbIndexService != null) {
+                jsonbIndexService.updateIndexes(tenant, tenantEntitySpec);
+            }
             log.info("Specification was for tenant {} updated from file {}", tenant, updatedKey);
         } catch (Exception e) {
             log.error("Error read xm specification from path " + updatedKey, e);
@@ -177,34 +193,18 @@ public class XmEntitySpecService implements RefreshableConfiguration {
     private Map<String, TypeSpec> updateByTenantState(String tenant) {
         var tenantEntitySpec = new LinkedHashMap<String, TypeSpec>();
         typesByTenantByFile.get(tenant).values().stream().map(this::toTypeSpecsMap).forEach(tenantEntitySpec::putAll);
+        inheritance(tenantEntitySpec, tenant);
+        // specification with invalid unique field fails here and previous specification of tenant is kept
+        processUniqueFields(tenantEntitySpec);
         if (tenantEntitySpec.isEmpty()) {
             typesByTenant.remove(tenant);
         }
         typesByTenant.put(tenant, tenantEntitySpec);
-        inheritance(tenantEntitySpec, tenant);
-        processUniqueFields(tenantEntitySpec);
-
-        var dataSchemas = new HashMap<String, com.github.fge.jsonschema.main.JsonSchema>();
-        JsonSchemaFactory jsonSchemaFactory = JsonSchemaFactory.byDefault();
-        for (TypeSpec typeSpec : tenantEntitySpec.values()) {
-            addJsonSchema(dataSchemas, jsonSchemaFactory, typeSpec);
-        }
-        dataSpecJsonSchemas.put(tenant, dataSchemas);
+        typeSpecIndexes.put(tenant, TypeSpecIndex.of(tenantEntitySpec));
+        permittedTypeSpecViews.evict(tenant);
         return tenantEntitySpec;
     }
 
-    private void addJsonSchema(HashMap<String, com.github.fge.jsonschema.main.JsonSchema> dataSchemas,
-                               JsonSchemaFactory jsonSchemaFactory, TypeSpec typeSpec) {
-        if (StringUtils.isNotBlank(typeSpec.getDataSpec())) {
-            try {
-                var jsonSchema = jsonSchemaFactory.getJsonSchema(JsonLoader.fromString(typeSpec.getDataSpec()));
-                dataSchemas.put(typeSpec.getKey(), jsonSchema);
-            } catch (IOException | ProcessingException e) {
-                log.error("Error processing data spec", e);
-            }
-        }
-    }
-
     @SneakyThrows
     private void updateByFileState(String updatedKey, String config, String tenant) {
         var byFiles = typesByTenantByFile.computeIfAbsent(tenant, key -> new LinkedHashMap<>());
@@ -255,14 +255,40 @@ public class XmEntitySpecService implements RefreshableConfiguration {
         return nullSafe(typesByTenant.get(tenantKeyValue));
     }
 
+    /**
+     * Precompiled lookup index of the current tenant specifications.
+     * @return index, built on the last specification refresh
+     */
+    protected TypeSpecIndex getTypeSpecIndex() {
+        String tenantKeyValue = getTenantKeyValue();
+        if (!typesByTenant.containsKey(tenantKeyValue)) {
+            log.error("Tenant configuration {} not found", tenantKeyValue);
+            throw new IllegalArgumentException("Tenant configuration not found");
+        }
+        return typeSpecIndexes.getOrDefault(tenantKeyValue, TypeSpecIndex.empty());
+    }
+
     @LoggingAspectConfig(resultDetails = false)
     public Optional<TypeSpec> getTypeSpecByKey(String key) {
         return ofNullable(getTypeSpecs().get(key)).map(this::filterFunctions);
     }
 
+    /**
+     * @param key type key
+     * @return compiled schema of the type data spec, empty if the type has no valid data spec
+     * @deprecated data is validated by {@link JsonValidationService}, schemas are compiled and cached by it
+     */
+    @Deprecated
     @LoggingAspectConfig(resultDetails = false)
     public Optional<com.github.fge.jsonschema.main.JsonSchema> getDataJsonSchemaByKey(String key) {
-        return ofNullable(dataSpecJsonSchemas.get(getTenantKeyValue())).map(it -> it.get(key));
+        Optional<String> dataSpec = getTypeSpecByKeyWithoutFunctionFilter(key).map(TypeSpec::getDataSpec)
+                                                                              .filter(StringUtils::isNotBlank);
+        try {
+            return dataSpec.map(jsonValidationService::getJsonSchema);
+        } catch (Exception e) {
+            log.error("Error processing data spec", e);
+            return Optional.empty();
+        }
     }
 
     @LoggingAspectConfig(resultDetails = false)
@@ -302,11 +328,9 @@ public class XmEntitySpecService implements RefreshableConfiguration {
         if (StringUtils.isEmpty(prefix)) {
             return findAllNonAbstractTypes();
         }
-        return findAllNonAbstractTypes().stream().filter(bySpecTypesPrefix(prefix)).collect(Collectors.toList());
-    }
-
-    private Predicate<TypeSpec> bySpecTypesPrefix(String prefix) {
-        return t -> t.getKey().equals(prefix) || t.getKey().startsWith(prefix + TYPE_SEPARATOR);
+        return getTypeSpecIndex().findNonAbstractTypesByPrefix(prefix).stream()
+            .map(this::filterFunctions)
+            .collect(Collectors.toList());
     }
 
     /**
@@ -318,8 +342,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @LoggingAspectConfig(resultDetails = false)
     public Optional<AttachmentSpec> findAttachment(String key, String attachmentKey) {
-        return getTypeSpecs().get(key).getAttachments().stream().filter(l -> l.getKey().equals(attachmentKey))
-            .findFirst();
+        return getTypeSpecIndex().findAttachment(key, attachmentKey);
     }
 
     /**
@@ -331,7 +354,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @LoggingAspectConfig(resultDetails = false)
     public Optional<LinkSpec> findLink(String key, String linkKey) {
-        return getTypeSpecs().get(key).getLinks().stream().filter(l -> l.getKey().equals(linkKey)).findFirst();
+        return getTypeSpecIndex().findLink(key, linkKey);
     }
 
     /**
@@ -343,8 +366,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @LoggingAspectConfig(resultDetails = false)
     public Optional<LocationSpec> findLocation(String key, String locationKey) {
-        return getTypeSpecs().get(key).getLocations().stream().filter(l -> l.getKey().equals(locationKey))
-            .findFirst();
+        return getTypeSpecIndex().findLocation(key, locationKey);
     }
 
     /**
@@ -356,7 +378,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @LoggingAspectConfig(resultDetails = false)
     public Optional<RatingSpec> findRating(String key, String ratingKey) {
-        return getTypeSpecs().get(key).getRatings().stream().filter(l -> l.getKey().equals(ratingKey)).findFirst();
+        return getTypeSpecIndex().findRating(key, ratingKey);
     }
 
     /**
@@ -368,19 +390,12 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @LoggingAspectConfig(resultDetails = false)
     public Optional<StateSpec> findState(String key, String stateKey) {
-        return getTypeSpecs().get(key).getStates().stream().filter(s -> s.getKey().equals(stateKey)).findFirst();
+        return getTypeSpecIndex().findState(key, stateKey);
     }
 
     @IgnoreLogginAspect
     public Optional<FunctionSpec> findFunction(String functionKey) {
-        for (TypeSpec ts : getTypeSpecs().values()) {
-            for (FunctionSpec fs : nullSafe(ts.getFunctions())) {
-                if (fs.getKey().equals(functionKey)) {
-                    return Optional.of(fs);
-                }
-            }
-        }
-        return Optional.empty();
+        return getTypeSpecIndex().findFunction(functionKey);
     }
 
     @IgnoreLogginAspect
@@ -402,17 +417,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @IgnoreLogginAspect
     public Optional<EventSpec> findEvent(String eventTypeKey) {
-        List<EventSpec> eventSpecs = Stream.ofNullable(getTypeSpecs())
-            .map(Map::values)
-            .flatMap(Collection::stream)
-            .map(TypeSpec::getCalendars)
-            .filter(Objects::nonNull)
-            .flatMap(Collection::stream)
-            .map(CalendarSpec::getEvents)
-            .filter(Objects::nonNull)
-            .flatMap(Collection::stream)
-            .filter(eventSpec -> eventTypeKey.equals(eventSpec.getKey()))
-            .collect(Collectors.toList());
+        List<EventSpec> eventSpecs = getTypeSpecIndex().findEvents(eventTypeKey);
         if (eventSpecs.size() > 1) {
             throw new IllegalStateException("Found more than one Event specifications by key:" + eventTypeKey);
         }
@@ -469,7 +474,8 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      * @return entity next States if present
      */
     public List<StateSpec> nextStates(String key, String stateKey) {
-        return next(key, stateKey).stream().map(n -> findState(key, n.getStateKey()).get())
+        TypeSpecIndex typeSpecIndex = getTypeSpecIndex();
+        return next(key, stateKey).stream().map(n -> typeSpecIndex.findState(key, n.getStateKey()).get())
             .collect(Collectors.toList());
     }
 
@@ -482,7 +488,7 @@ public class XmEntitySpecService implements RefreshableConfiguration {
      */
     @LoggingAspectConfig(resultDetails = false)
     public Optional<TagSpec> findTag(String key, String tagKey) {
-        return getTypeSpecs().get(key).getTags().stream().filter(l -> l.getKey().equals(tagKey)).findFirst();
+        return getTypeSpecIndex().findTag(key, tagKey);
     }
 
     /**
@@ -524,14 +530,19 @@ public class XmEntitySpecService implements RefreshableConfiguration {
 
             JsonNode node = JsonLoader.fromString(typeSpec.getDataSpec());
             Set<UniqueFieldSpec> uniqueFields = Sets.newHashSet();
-            processNode(node, "$", uniqueFields);
+            processNode(typeSpec.getKey(), node, "$", uniqueFields);
             typeSpec.setUniqueFields(uniqueFields);
         }
     }
 
-    private void processNode(JsonNode node, String jsonPath, Set<UniqueFieldSpec> uniqueFields) {
+    private void processNode(String typeKey, JsonNode node, String jsonPath, Set<UniqueFieldSpec> uniqueFields) {
         if (node.has("unique") && node.get("unique").asBoolean()) {
-            uniqueFields.add(new UniqueFieldSpec(jsonPath));
+            try {
+                uniqueFields.add(new UniqueFieldSpec(jsonPath));
+            } catch (InvalidPathException e) {
+                throw new IllegalStateException("Invalid json path " + jsonPath + " of unique field in type "
+                                                + typeKey, e);
+            }
         }
 
         if (!isObject(node)) {
@@ -539,7 +550,19 @@ public class XmEntitySpecService implements RefreshableConfiguration {
         }
 
         JsonNode properties = node.get("properties");
-        properties.fieldNames().forEachRemaining(name -> processNode(properties.get(name), jsonPath + "." + name, uniqueFields));
+        properties.fieldNames().forEachRemaining(
+            name -> processNode(typeKey, properties.get(name), childJsonPath(jsonPath, name), uniqueFields));
+    }
+
+    /**
+     * Plain property names keep dot notation, so paths of stored unique fields do not change,
+     * any other name is quoted in bracket notation.
+     */
+    private static String childJsonPath(String jsonPath, String name) {
+        if (PLAIN_PROPERTY_NAME.matcher(name).matches()) {
+            return jsonPath + "." + name;
+        }
+        return jsonPath + "['" + name.replace("\\", "\\\\").replace("'", "\\'") + "']";
     }
 
     private boolean isObject(JsonNode schemaNode) {
@@ -673,7 +696,29 @@ public class XmEntitySpecService implements RefreshableConfiguration {
             parameters : union(parameters, parentParameters);
     }
 
+    /**
+     * Copy of type specification with functions permitted for current role. Filtered views are cached until
+     * specification or permissions refresh, callers get a copy of the view, so cached specs are not modified.
+     */
     private TypeSpec filterFunctions(TypeSpec spec) {
+        if (!dynamicPermissionCheckService.isDynamicFunctionPermissionEnabled()) {
+            return spec.toBuilder().build();
+        }
+
+        String tenant = getTenantKeyValue();
+        TypeSpecIndex index = typeSpecIndexes.get(tenant);
+        if (index == null || index.getTypes().get(spec.getKey()) != spec) {
+            // specification was refreshed concurrently, do not cache view of outdated spec
+            return filterFunctionsByPermission(spec);
+        }
+
+        Set<String> permissions = dynamicPermissionCheckService.getRoleFunctionPermissions();
+        String role = SecurityUtils.getCurrentUserRole().orElse(NO_ROLE);
+        return permittedTypeSpecViews.getView(tenant, role, index, permissions, spec, this::filterFunctionsByPermission)
+                                     .toBuilder().build();
+    }
+
+    private TypeSpec filterFunctionsByPermission(TypeSpec spec) {
         TypeSpec clone = spec.toBuilder().build();
         return dynamicPermissionCheckService.filterInnerListByPermission(clone,
             clone::getFunctions,
@@ -0,0 +1,30 @@
+package com.icthh.xm.ms.entity.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * DTO for metadata of the attachment content to be streamed.
+ */
+@Getter
+@ToString
+@Builder
+public class AttachmentContent {
+
+    private final Long contentId;
+
+    private final String name;
+
+    private final String contentType;
+
+    /**
+     * Size of the stored value in bytes.
+     */
+    private final long size;
+
+    /**
+     * Sha256 hex of the value, null if it was not computed.
+     */
+    private final String checksum;
+}
@@ -0,0 +1,40 @@
+package com.icthh.xm.ms.entity.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * DTO for state of the asynchronous function execution.
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class FunctionJob {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+
+    private final String functionKey;
+
+    private final State state;
+
+    private final Long functionContextId;
+
+    private final Instant createDate;
+
+    private final Instant startDate;
+
+    private final Instant endDate;
+
+    private final String error;
+
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+}
@@ -15,8 +15,8 @@ public class ImportDto {
 
     private Set<XmEntity> entities = new HashSet<>();
     private List<LinkExportDto> links = new ArrayList<>();
-    private List<AttachmentExportDto> attachments = new ArrayList<>();
     private List<Content> contents = new ArrayList<>();
+    private List<AttachmentExportDto> attachments = new ArrayList<>();
     private List<CalendarExportDto> calendars = new ArrayList<>();
     private List<EventExportDto> events = new ArrayList<>();
     private List<CommentExportDto> comments = new ArrayList<>();
@@ -0,0 +1,32 @@
+package com.icthh.xm.ms.entity.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * DTO for progress of elasticsearch index rebuild of the tenant.
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class IndexRebuildStatus {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED, INTERRUPTED
+    }
+
+    private final String index;
+
+    private final State state;
+
+    private final long indexed;
+
+    private final Instant startDate;
+
+    private final Instant endDate;
+
+    private final String error;
+}
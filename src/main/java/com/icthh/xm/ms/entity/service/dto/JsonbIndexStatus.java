@@ -0,0 +1,60 @@
+package com.icthh.xm.ms.entity.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * DTO for plan and progress of the entity data indexes update of the tenant.
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class JsonbIndexStatus {
+
+    public enum State {
+        PENDING, RUNNING, COMPLETED, FAILED, UNSUPPORTED
+    }
+
+    private final State state;
+
+    private final List<Index> indexes;
+
+    private final Instant startDate;
+
+    private final Instant endDate;
+
+    private final String error;
+
+    @Getter
+    @ToString
+    @Builder(toBuilder = true)
+    public static class Index {
+
+        public enum Operation {
+            CREATE, DROP
+        }
+
+        public enum State {
+            PLANNED, EXISTS, DONE, FAILED
+        }
+
+        private final String name;
+
+        /**
+         * Type key of the spec which defines the index, null for the index to drop.
+         */
+        private final String typeKey;
+
+        private final Operation operation;
+
+        private final String sql;
+
+        private final State state;
+
+        private final String error;
+    }
+}
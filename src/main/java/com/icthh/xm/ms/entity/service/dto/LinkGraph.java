@@ -0,0 +1,47 @@
+package com.icthh.xm.ms.entity.service.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO for entities reachable by links from the start entity: nodes with projected fields and links between them.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class LinkGraph {
+
+    public enum Direction {
+        OUTGOING, INCOMING, BOTH
+    }
+
+    /**
+     * Entity id and requested fields of each node, start entity first.
+     */
+    private final List<Map<String, Object>> nodes;
+
+    private final List<Edge> edges;
+
+    /**
+     * True if traversal was stopped by the size limit.
+     */
+    private final boolean truncated;
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Edge {
+
+        private final Long id;
+
+        private final String typeKey;
+
+        private final Long source;
+
+        private final Long target;
+    }
+}
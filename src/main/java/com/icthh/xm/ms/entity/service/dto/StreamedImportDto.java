@@ -0,0 +1,111 @@
+package com.icthh.xm.ms.entity.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import lombok.SneakyThrows;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Import which is not read yet, default import parses its json stream section by section.
+ * Whole json is read into the dto when any of its values is requested, e.g. by tenant override of import LEP.
+ */
+public class StreamedImportDto extends ImportDto {
+
+    private final InputStream inputStream;
+    private final ObjectMapper objectMapper;
+    private boolean read;
+
+    public StreamedImportDto(InputStream inputStream, ObjectMapper objectMapper) {
+        this.inputStream = inputStream;
+        this.objectMapper = objectMapper;
+    }
+
+    @JsonIgnore
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @JsonIgnore
+    public boolean isRead() {
+        return read;
+    }
+
+    @SneakyThrows
+    private void read() {
+        if (!read) {
+            read = true;
+            BeanUtils.copyProperties(objectMapper.readValue(inputStream, ImportDto.class), this);
+        }
+    }
+
+    @Override
+    public Set<XmEntity> getEntities() {
+        read();
+        return super.getEntities();
+    }
+
+    @Override
+    public List<LinkExportDto> getLinks() {
+        read();
+        return super.getLinks();
+    }
+
+    @Override
+    public List<Content> getContents() {
+        read();
+        return super.getContents();
+    }
+
+    @Override
+    public List<AttachmentExportDto> getAttachments() {
+        read();
+        return super.getAttachments();
+    }
+
+    @Override
+    public List<CalendarExportDto> getCalendars() {
+        read();
+        return super.getCalendars();
+    }
+
+    @Override
+    public List<EventExportDto> getEvents() {
+        read();
+        return super.getEvents();
+    }
+
+    @Override
+    public List<CommentExportDto> getComments() {
+        read();
+        return super.getComments();
+    }
+
+    @Override
+    public List<TagsExportDto> getTags() {
+        read();
+        return super.getTags();
+    }
+
+    @Override
+    public List<LocationExportDto> getLocations() {
+        read();
+        return super.getLocations();
+    }
+
+    @Override
+    public List<RatingExportDto> getRatings() {
+        read();
+        return super.getRatings();
+    }
+
+    @Override
+    public List<VoteExportDto> getVotes() {
+        read();
+        return super.getVotes();
+    }
+}
@@ -0,0 +1,186 @@
+package com.icthh.xm.ms.entity.service.impl;
+
+import static com.icthh.xm.ms.entity.domain.spec.LinkSpec.NEW_BUILDER_TYPE;
+import static com.icthh.xm.ms.entity.domain.spec.LinkSpec.SEARCH_BUILDER_TYPE;
+import static com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckService.FeatureContext.LINK_DELETE;
+
+import com.google.common.collect.Lists;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import com.icthh.xm.ms.entity.repository.EventRepository;
+import com.icthh.xm.ms.entity.repository.LinkRepository;
+import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckService;
+import com.icthh.xm.ms.entity.service.XmEntitySpecService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+
+/**
+ * Deletes XmEntity with entities linked by links of {@code NEW} builder type.
+ *
+ * Linked entity is deleted in cascade if all its source links are from deleted entities. The deleted subgraph is
+ * collected level by level with one query of links per level, then links of all deleted entities are removed and
+ * event references are cleared by batched statements. Entities are removed in batches by the entity manager, so
+ * their dependents and elasticsearch index are handled as for a single entity.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class XmEntityCascadeDeleter {
+
+    /**
+     * Max number of ids in one IN condition.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final XmEntitySpecService xmEntitySpecService;
+    private final XmEntityRepositoryInternal xmEntityRepository;
+    private final LinkRepository linkRepository;
+    private final EventRepository eventRepository;
+    private final DynamicPermissionCheckService permissionCheckService;
+    private final EntityManager entityManager;
+
+    /**
+     * Delete the entity with its cascade deletable linked entities.
+     *
+     * @param xmEntity the entity to delete
+     */
+    public void delete(XmEntity xmEntity) {
+        Set<String> linkTypeKeys = new HashSet<>();
+        List<Long> linkedIds = collectLinkedEntities(xmEntity.getId(), linkTypeKeys);
+        if (permissionCheckService.isDynamicLinkDeletePermissionEnabled()) {
+            linkTypeKeys.forEach(typeKey -> permissionCheckService.checkContextPermission(LINK_DELETE, "LINK.DELETE",
+                                                                                          typeKey));
+        }
+
+        List<Long> entityIds = new ArrayList<>(linkedIds.size() + 1);
+        entityIds.add(xmEntity.getId());
+        entityIds.addAll(linkedIds);
+        log.info("Delete entity {} with {} linked entities", xmEntity.getId(), linkedIds.size());
+
+        entityManager.flush();
+        for (List<Long> ids : Lists.partition(entityIds, BATCH_SIZE)) {
+            linkRepository.deleteBySourceIdInOrTargetIdIn(ids);
+            eventRepository.clearEventDataRefByIdIn(ids);
+        }
+        for (List<Long> ids : Lists.partition(linkedIds, BATCH_SIZE)) {
+            List<XmEntity> entities = xmEntityRepository.findAllById(ids);
+            entities.forEach(XmEntityCascadeDeleter::clearDeletedLinks);
+            xmEntityRepository.deleteAll(entities);
+        }
+        clearDeletedLinks(xmEntity);
+        xmEntityRepository.deleteById(xmEntity.getId());
+    }
+
+    /**
+     * Breadth-first search of entities linked in cascade, cycles are visited once. Entity linked from an entity
+     * out of the found ones is kept with all entities linked from it, so entities linked by several deleted
+     * entities (e.g. by both sides of a diamond) are deleted.
+     *
+     * @param rootId       the deleted entity id
+     * @param linkTypeKeys type keys of links from deleted entities, collected by the search
+     * @return ids of the linked entities to be deleted
+     */
+    private List<Long> collectLinkedEntities(Long rootId, Set<String> linkTypeKeys) {
+        Set<Long> found = new LinkedHashSet<>();
+        found.add(rootId);
+        // source id to ids of found entities linked from the source by links of any type
+        Map<Long, List<Long>> targetsBySource = new HashMap<>();
+        Map<Long, Set<String>> typeKeysBySource = new HashMap<>();
+        Map<String, Map<String, String>> builderTypes = new HashMap<>();
+        List<Long> level = Collections.singletonList(rootId);
+
+        while (!level.isEmpty()) {
+            List<Long> nextLevel = new ArrayList<>();
+            for (Object[] row : findInBatches(level, linkRepository::findTypeKeysBySourceIdIn)) {
+                String typeKey = (String) row[0];
+                Long sourceId = (Long) row[1];
+                Long targetId = (Long) row[3];
+                typeKeysBySource.computeIfAbsent(sourceId, id -> new HashSet<>()).add(typeKey);
+
+                String builderType = builderTypes.computeIfAbsent((String) row[2], this::getLinkBuilderTypes)
+                                                 .get(typeKey);
+                if (NEW_BUILDER_TYPE.equalsIgnoreCase(builderType)) {
+                    if (found.add(targetId)) {
+                        nextLevel.add(targetId);
+                    }
+                } else if (!SEARCH_BUILDER_TYPE.equals(builderType)) {
+                    log.warn("Unknown link builder type |{}| for link type {}", builderType, typeKey);
+                }
+            }
+            for (Object[] row : findInBatches(nextLevel, linkRepository::findSourceIdsByTargetIdIn)) {
+                targetsBySource.computeIfAbsent((Long) row[1], id -> new ArrayList<>()).add((Long) row[0]);
+            }
+            level = nextLevel;
+        }
+
+        Deque<Long> kept = new ArrayDeque<>();
+        targetsBySource.forEach((sourceId, targetIds) -> {
+            if (!found.contains(sourceId)) {
+                kept.addAll(targetIds);
+            }
+        });
+        Set<Long> shared = new LinkedHashSet<>();
+        while (!kept.isEmpty()) {
+            Long id = kept.poll();
+            if (shared.add(id)) {
+                kept.addAll(targetsBySource.getOrDefault(id, Collections.emptyList()));
+            }
+        }
+        if (!shared.isEmpty()) {
+            log.warn("Entities {} have links from other entity(ies), "
+                     + "so deletion of these entities will be ignored in cascade deletion.", shared);
+        }
+
+        found.removeAll(shared);
+        found.forEach(id -> linkTypeKeys.addAll(typeKeysBySource.getOrDefault(id, Collections.emptySet())));
+        found.remove(rootId);
+        return new ArrayList<>(found);
+    }
+
+    private Map<String, String> getLinkBuilderTypes(String entityTypeKey) {
+        Map<String, String> builderTypes = new HashMap<>();
+        xmEntitySpecService.getTypeSpecByKey(entityTypeKey)
+                           .map(TypeSpec::getLinks)
+                           .ifPresent(links -> links.forEach(link -> builderTypes.put(link.getKey(),
+                                                                                      link.getBuilderType())));
+        return builderTypes;
+    }
+
+    private static List<Object[]> findInBatches(Collection<Long> ids,
+                                                Function<List<Long>, List<Object[]>> query) {
+        List<Object[]> rows = new ArrayList<>();
+        for (List<Long> batch : Lists.partition(new ArrayList<>(ids), BATCH_SIZE)) {
+            rows.addAll(query.apply(batch));
+        }
+        return rows;
+    }
+
+    /**
+     * Links are already deleted by the statement, loaded ones must not be removed by the entity manager again.
+     */
+    private static void clearDeletedLinks(XmEntity xmEntity) {
+        if (xmEntity.getTargets() != null && Hibernate.isInitialized(xmEntity.getTargets())) {
+            xmEntity.getTargets().clear();
+        }
+        if (xmEntity.getSources() != null && Hibernate.isInitialized(xmEntity.getSources())) {
+            xmEntity.getSources().clear();
+        }
+    }
+}
@@ -1,22 +1,20 @@
 package com.icthh.xm.ms.entity.service.impl;
 
-import static com.icthh.xm.ms.entity.domain.spec.LinkSpec.NEW_BUILDER_TYPE;
-import static com.icthh.xm.ms.entity.domain.spec.LinkSpec.SEARCH_BUILDER_TYPE;
 import static com.icthh.xm.ms.entity.util.CustomCollectionUtils.nullSafe;
-import static com.jayway.jsonpath.Configuration.defaultConfiguration;
-import static com.jayway.jsonpath.Option.SUPPRESS_EXCEPTIONS;
 import static java.lang.Boolean.TRUE;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static java.util.Optional.ofNullable;
-import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.collections.MapUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNoneBlank;
 import static org.springframework.beans.BeanUtils.isSimpleValueType;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.commons.exceptions.EntityNotFoundException;
 import com.icthh.xm.commons.exceptions.ErrorConstants;
@@ -44,7 +42,6 @@ import com.icthh.xm.ms.entity.domain.converter.EntityToCsvConverterUtils;
 import com.icthh.xm.ms.entity.domain.converter.EntityToExcelConverterUtils;
 import com.icthh.xm.ms.entity.domain.ext.IdOrKey;
 import com.icthh.xm.ms.entity.domain.spec.AttachmentSpec;
-import com.icthh.xm.ms.entity.domain.spec.LinkSpec;
 import com.icthh.xm.ms.entity.domain.spec.StateSpec;
 import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
 import com.icthh.xm.ms.entity.domain.spec.UniqueFieldSpec;
@@ -57,11 +54,12 @@ import com.icthh.xm.ms.entity.projection.LinkProjection;
 import com.icthh.xm.ms.entity.projection.XmEntityId;
 import com.icthh.xm.ms.entity.projection.XmEntityIdKeyTypeKey;
 import com.icthh.xm.ms.entity.projection.XmEntityStateProjection;
-import com.icthh.xm.ms.entity.repository.EventRepository;
 import com.icthh.xm.ms.entity.repository.SpringXmEntityRepository;
 import com.icthh.xm.ms.entity.repository.UniqueFieldRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityPermittedRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
 import com.icthh.xm.ms.entity.repository.search.XmEntityPermittedSearchRepository;
 import com.icthh.xm.ms.entity.service.AttachmentService;
 import com.icthh.xm.ms.entity.service.LifecycleLepStrategy;
@@ -73,21 +71,29 @@ import com.icthh.xm.ms.entity.service.StorageService;
 import com.icthh.xm.ms.entity.service.XmEntityService;
 import com.icthh.xm.ms.entity.service.XmEntitySpecService;
 import com.icthh.xm.ms.entity.service.XmEntityTemplatesSpecService;
+import com.icthh.xm.ms.entity.service.dto.LinkGraph;
 import com.icthh.xm.ms.entity.service.dto.LinkSourceDto;
 import com.icthh.xm.ms.entity.service.dto.SearchDto;
-import com.jayway.jsonpath.DocumentContext;
+import com.icthh.xm.ms.entity.util.JsonPathUtils;
 import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
@@ -98,10 +104,10 @@ import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpEntity;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
@@ -134,7 +140,15 @@ public class XmEntityServiceImpl implements XmEntityService {
     private final SpringXmEntityRepository springXmEntityRepository;
     private final TypeKeyWithExtends typeKeyWithExtends;
     private final SimpleTemplateProcessor simpleTemplateProcessors;
-    private final EventRepository eventRepository;
+    private final XmEntityCascadeDeleter cascadeDeleter;
+
+    private static final int BULK_SAVE_CHUNK_SIZE = 50;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final ThreadLocal<OutputStream> EXPORT_OUTPUT = new ThreadLocal<>();
+    private static final int SEARCH_STREAM_FETCH_SIZE = 500;
+    private static final String NDJSON_SEPARATOR = "\n";
+    private static final String UNIQUE_VALUE = "value";
+    private static final JsonPath UNIQUE_VALUE_PATH = JsonPath.compile("$." + UNIQUE_VALUE);
 
     private XmEntityServiceImpl self;
 
@@ -213,6 +227,50 @@ public class XmEntityServiceImpl implements XmEntityService {
         return xmEntityRepository.save(xmEntity);
     }
 
+    /**
+     * Save a list of xmEntities.
+     * Every entity is saved through save LEP by xmEntity type, the same as {@link #save(XmEntity)}.
+     * Entities are saved by chunks, existing entities of a chunk are prefetched with their unique fields
+     * by one query, statements are flushed in JDBC batches.
+     * Entities of each chunk are detached after it is flushed, so persistence context does not grow
+     * with the number of saved entities, entities loaded before the call stay managed.
+     *
+     * @param xmEntities the entities to save
+     * @return the persisted entities in the same order
+     */
+    @Override
+    @LoggingAspectConfig(inputExcludeParams = "xmEntities", resultDetails = false)
+    public List<XmEntity> saveAll(List<XmEntity> xmEntities) {
+        log.debug("Request to save {} XmEntities", xmEntities.size());
+
+        List<XmEntity> result = new ArrayList<>(xmEntities.size());
+        for (int from = 0; from < xmEntities.size(); from += BULK_SAVE_CHUNK_SIZE) {
+            List<XmEntity> chunk = xmEntities.subList(from, Math.min(from + BULK_SAVE_CHUNK_SIZE,
+                                                                     xmEntities.size()));
+            List<XmEntity> chunkEntities = new ArrayList<>(prefetchExistingEntities(chunk));
+            for (XmEntity xmEntity : chunk) {
+                XmEntity saved = self.save(xmEntity);
+                result.add(saved);
+                chunkEntities.add(saved);
+            }
+            xmEntityRepository.flush();
+            chunkEntities.stream().filter(Objects::nonNull).forEach(xmEntityRepository::detach);
+        }
+        return result;
+    }
+
+    /**
+     * Loads existing entities with their unique fields into persistence context by one query,
+     * so {@link #saveXmEntity(XmEntity)} does not go to database for each of them.
+     */
+    private List<XmEntity> prefetchExistingEntities(List<XmEntity> xmEntities) {
+        Set<Long> ids = xmEntities.stream()
+            .map(XmEntity::getId)
+            .filter(Objects::nonNull)
+            .collect(toSet());
+        return ids.isEmpty() ? List.of() : springXmEntityRepository.findAllWithUniqueFieldsByIdIn(ids);
+    }
+
     private void processName(XmEntity xmEntity) {
         xmEntitySpecService
             .getTypeSpecByKey(xmEntity.getTypeKey())
@@ -229,32 +287,40 @@ public class XmEntityServiceImpl implements XmEntityService {
         }
     }
 
-    @SneakyThrows
+    /**
+     * Stored unique fields which values are not changed are kept, other ones are removed at flush.
+     * Update does not run separate delete statement, which would flush pending JDBC batch.
+     */
     private void processUniqueField(XmEntity xmEntity, Optional<XmEntity> oldEntity) {
-        oldEntity.ifPresent(it -> it.getUniqueFields().clear());
-        oldEntity.ifPresent(uniqueFieldRepository::deleteByXmEntity);
+        Map<UniqueField, UniqueField> storedFields = new HashMap<>();
+        oldEntity.ifPresent(it -> {
+            it.getUniqueFields().forEach(field -> storedFields.put(field, field));
+            it.getUniqueFields().clear();
+        });
         xmEntity.getUniqueFields().clear();
 
-        if (isEmpty(xmEntity.getData())) {
-            return;
+        for (UniqueField uniqueField : readUniqueFields(xmEntity)) {
+            UniqueField storedField = storedFields.remove(uniqueField);
+            xmEntity.getUniqueFields().add(storedField != null ? storedField : uniqueField);
         }
+        storedFields.values().forEach(uniqueFieldRepository::delete);
+    }
 
-        String json = objectMapper.writeValueAsString(xmEntity.getData());
+    private Set<UniqueField> readUniqueFields(XmEntity xmEntity) {
+        if (isEmpty(xmEntity.getData())) {
+            return Set.of();
+        }
 
         Set<UniqueFieldSpec> uniqueFieldSpecs = xmEntitySpecService
             .getTypeSpecByKey(xmEntity.getTypeKey())
             .map(TypeSpec::getUniqueFields)
             .orElseGet(Set::of);
 
-        if (uniqueFieldSpecs.isEmpty()) {
-            return;
-        }
-
-        DocumentContext document = JsonPath.using(defaultConfiguration().addOptions(SUPPRESS_EXCEPTIONS)).parse(json);
-
+        Set<UniqueField> uniqueFields = new HashSet<>();
         for (UniqueFieldSpec uniqueFieldSpec : uniqueFieldSpecs) {
             String jsonPath = uniqueFieldSpec.getJsonPath();
-            String value = convertToString(document.read(jsonPath));
+            String value = convertToString(toJsonValue(JsonPathUtils.read(uniqueFieldSpec.getCompiledJsonPath(),
+                                                                          xmEntity.getData())));
 
             if (isNoneBlank(value)) {
                 UniqueField uniqueField = UniqueField.builder()
@@ -263,9 +329,24 @@ public class XmEntityServiceImpl implements XmEntityService {
                     .fieldValue(value)
                     .xmEntity(xmEntity)
                     .build();
-                xmEntity.getUniqueFields().add(uniqueField);
+                uniqueFields.add(uniqueField);
             }
         }
+        return uniqueFields;
+    }
+
+    /**
+     * Unique values are stored as they are read from data serialized to json, so values which json changes,
+     * e.g. decimals and dates, are passed through json as well.
+     */
+    @SneakyThrows
+    private Object toJsonValue(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean
+            || value instanceof Integer || value instanceof Long) {
+            return value;
+        }
+        String json = objectMapper.writeValueAsString(singletonMap(UNIQUE_VALUE, value));
+        return UNIQUE_VALUE_PATH.read(json, JsonPathUtils.CONFIGURATION);
     }
 
     @SneakyThrows
@@ -302,6 +383,26 @@ public class XmEntityServiceImpl implements XmEntityService {
         }
     }
 
+    /**
+     * Get all the xmEntities, cursor mode.
+     *
+     * @param pageable the cursor pagination information
+     * @return the page of entities without total count
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @FindWithPermission("XMENTITY.GET_LIST")
+    @PrivilegeDescription("Privilege to get all the xmEntities")
+    public CursorPage<XmEntity> findAll(CursorPageable pageable, String typeKey, String privilegeKey) {
+        log.debug("Request to get XmEntities after cursor");
+        if (StringUtils.isNoneBlank(typeKey)) {
+            Set<String> typeKeys = getTypeKeyHierarchy(typeKey);
+            return xmEntityPermittedRepository.findAllByTypeKeyIn(pageable, typeKeys, privilegeKey);
+        } else {
+            return xmEntityPermittedRepository.findAll(pageable, privilegeKey);
+        }
+    }
+
     @Override
     public Set<String> getTypeKeyHierarchy(String typeKey) {
         Set<String> typeKeys = xmEntitySpecService.findNonAbstractTypesByPrefix(typeKey).stream()
@@ -338,6 +439,15 @@ public class XmEntityServiceImpl implements XmEntityService {
         return xmEntityPermittedRepository.findAllByIdsWithEmbed(pageable, ids, embed, privilegeKey);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    @FindWithPermission("XMENTITY.GET_LIST")
+    @PrivilegeDescription("Privilege to get all the xmEntities")
+    public CursorPage<XmEntity> findByIds(CursorPageable pageable, Set<Long> ids, Set<String> embed,
+                                          String privilegeKey) {
+        return xmEntityPermittedRepository.findAllByIdsWithEmbed(pageable, ids, embed, privilegeKey);
+    }
+
     /**
      * Get one xmEntity by id or key.
      *
@@ -444,43 +554,7 @@ public class XmEntityServiceImpl implements XmEntityService {
     }
 
     private void deleteXmEntity(XmEntity xmEntity) {
-
-        Map<String, String> linkSpec = xmEntitySpecService.getTypeSpecByKey(xmEntity.getTypeKey())
-            .map(TypeSpec::getLinks)
-            .orElse(emptyList())
-            .stream()
-            .collect(toMap(LinkSpec::getKey, LinkSpec::getBuilderType));
-
-        Iterator<Link> iterator = nullSafe(xmEntity.getTargets()).iterator();
-        while (iterator.hasNext()) {
-
-            Link target = iterator.next();
-            iterator.remove();
-            linkService.delete(target.getId());
-            if (NEW_BUILDER_TYPE.equalsIgnoreCase(linkSpec.get(target.getTypeKey()))) {
-                deleteNewLink(target);
-            } else if (!SEARCH_BUILDER_TYPE.equals(linkSpec.get(target.getTypeKey()))) {
-                log.warn("Unknown link builder type |{}| for link type {}",
-                    linkSpec.get(target.getTypeKey()), target.getTypeKey());
-            }
-        }
-        eventRepository.findByEventDataRef(xmEntity).ifPresent(event -> event.setEventDataRef(null));
-        xmEntityRepository.deleteById(xmEntity.getId());
-    }
-
-
-    private void deleteNewLink(Link linkToDelete) {
-        XmEntity entity = linkToDelete.getTarget();
-        entity.getSources().remove(linkToDelete);
-
-        for (Link sourceLink : nullSafe(entity.getSources())) {
-            if (!sourceLink.linkFromSameEntity(linkToDelete)) {
-                log.warn("Entity {} has links from other entity(ies), "
-                    + "so deletion of this entity will be ignored in cascade deletion.", entity);
-                return;
-            }
-        }
-        deleteXmEntity(entity);
+        cascadeDeleter.delete(xmEntity);
     }
 
     /**
@@ -499,6 +573,14 @@ public class XmEntityServiceImpl implements XmEntityService {
         return xmEntityPermittedSearchRepository.search(query, pageable, XmEntity.class, privilegeKey);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    @FindWithPermission("XMENTITY.SEARCH")
+    @PrivilegeDescription("Privilege to search for the xmEntity corresponding to the query")
+    public CursorPage<XmEntity> search(String query, CursorPageable pageable, String privilegeKey) {
+        return xmEntityPermittedSearchRepository.searchForCursorPage(query, pageable, privilegeKey);
+    }
+
     @LogicExtensionPoint("SearchV2")
     @Override
     @Transactional(readOnly = true)
@@ -534,6 +616,43 @@ public class XmEntityServiceImpl implements XmEntityService {
                                                         privilegeKey);
     }
 
+    /**
+     * Search all permitted entities as a lazy stream. Hits are requested from elasticsearch page by page
+     * while the stream is consumed, only one page is held in memory. Stream does not need database,
+     * so it is not bound to a transaction that would hold connection while client reads the result.
+     */
+    @LogicExtensionPoint("SearchStream")
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @FindWithPermission("XMENTITY.SEARCH")
+    @PrivilegeDescription("Privilege to search for the xmEntity corresponding to the query")
+    public Stream<XmEntity> searchStream(String query, String privilegeKey) {
+        return xmEntityPermittedSearchRepository.searchForStream(query, SEARCH_STREAM_FETCH_SIZE, privilegeKey);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void searchToStream(String query, OutputStream outputStream) {
+        int count = 0;
+        try (Stream<XmEntity> xmEntities = self.searchStream(query, null);
+             SequenceWriter writer = objectMapper.writerFor(XmEntity.class)
+                                                 .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                                                 .withRootValueSeparator(NDJSON_SEPARATOR)
+                                                 .writeValues(outputStream)) {
+            Iterator<XmEntity> iterator = xmEntities.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                // client gets every page as soon as it is read, blocking write holds the next request
+                if (++count % SEARCH_STREAM_FETCH_SIZE == 0) {
+                    writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Exception while writing search result", e);
+        }
+        log.debug("Streamed {} xmEntities by query {}", count, query);
+    }
+
     @LogicExtensionPoint("SearchXmEntitiesToLink")
     @Override
     @Transactional(readOnly = true)
@@ -627,6 +746,22 @@ public class XmEntityServiceImpl implements XmEntityService {
             .map(LinkSourceDto::new);
     }
 
+    @Override
+    public CursorPage<LinkSourceDto> getLinkSourcesInverted(final CursorPageable pageable, final IdOrKey idOrKey,
+                                                            final Set<String> typeKey,
+                                                            final String privilegeKey) {
+        XmEntity source = toSourceXmEntity(idOrKey);
+        return linkService.findSourceByTargetIdAndTypeKey(pageable, source.getId(), typeKey, privilegeKey)
+            .map(LinkSourceDto::new);
+    }
+
+    @Override
+    public LinkGraph getLinkGraph(IdOrKey idOrKey, Set<String> typeKeys, LinkGraph.Direction direction, int depth,
+                                  List<String> fields, Integer limit, String privilegeKey) {
+        Long startId = getXmEntityIdKeyTypeKey(idOrKey).getId();
+        return linkService.findGraph(startId, typeKeys, direction, depth, fields, limit, privilegeKey);
+    }
+
     @LogicExtensionPoint("SaveLinkTarget")
     @Override
     public Link saveLinkTarget(IdOrKey idOrKey, Link link, MultipartFile file) {
@@ -789,26 +924,72 @@ public class XmEntityServiceImpl implements XmEntityService {
     @LogicExtensionPoint("Export")
     @Override
     public byte[] exportEntities(String fileFormat, String typeKey) {
+        OutputStream exportOutput = EXPORT_OUTPUT.get();
+        if (exportOutput != null) {
+            writeExport(fileFormat, typeKey, exportOutput);
+            return null;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeExport(fileFormat, typeKey, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Export all xmEntities by typeKey in specific file format directly to the output stream.
+     * Export goes through {@code Export} LEP, its default implementation writes entities read from database
+     * cursor to the stream, so memory usage does not depend on the number of exported entities.
+     * Bytes returned by tenant override of the LEP are written to the stream.
+     */
+    @SneakyThrows
+    @Transactional(readOnly = true)
+    @Override
+    public void exportEntities(String fileFormat, String typeKey, OutputStream outputStream) {
+        byte[] content;
+        EXPORT_OUTPUT.set(outputStream);
+        try {
+            content = self.exportEntities(fileFormat, typeKey);
+        } finally {
+            EXPORT_OUTPUT.remove();
+        }
+        if (content != null) {
+            outputStream.write(content);
+        }
+    }
+
+    private void writeExport(String fileFormat, String typeKey, OutputStream outputStream) {
+        FileFormatEnum format = FileFormatEnum.valueOf(fileFormat.toUpperCase());
         Set<String> typeKeys = xmEntitySpecService.findNonAbstractTypesByPrefix(typeKey).stream()
             .map(TypeSpec::getKey).collect(toSet());
-        List<XmEntity> xmEntities = xmEntityRepository.findAllByTypeKeyIn(
-            PageRequest.of(0, Integer.MAX_VALUE), typeKeys).getContent();
+        Specification<XmEntity> byTypeKeys = (root, query, cb) ->
+            typeKeys.isEmpty() ? cb.disjunction() : root.get("typeKey").in(typeKeys);
 
+        // pending changes must reach database before persistence context is cleared
+        xmEntityRepository.flush();
         ModelMapper modelMapper = new ModelMapper();
-
-        List<SimpleExportXmEntityDto> simpleEntities = xmEntities.stream()
-            .map(entity -> modelMapper.map(entity, SimpleExportXmEntityDto.class))
-            .collect(Collectors.toList());
-        switch (FileFormatEnum.valueOf(fileFormat.toUpperCase())) {
-            case CSV:
-                return EntityToCsvConverterUtils.toCsv(simpleEntities,
-                    SimpleExportXmEntityDto.class);
-            case XLSX:
-                return EntityToExcelConverterUtils.toExcel(simpleEntities, typeKey);
-            default:
-                throw new BusinessException(ErrorConstants.ERR_VALIDATION, String.format(
-                    "Converter doesn't support '%s' file format", fileFormat));
+        AtomicInteger count = new AtomicInteger();
+        try (Stream<XmEntity> xmEntities = xmEntityRepository.streamAllOrderedById(byTypeKeys, null,
+                                                                                  EXPORT_FETCH_SIZE)) {
+            Iterator<SimpleExportXmEntityDto> simpleEntities = xmEntities.map(entity -> {
+                SimpleExportXmEntityDto simpleEntity = modelMapper.map(entity, SimpleExportXmEntityDto.class);
+                if (count.incrementAndGet() % EXPORT_FETCH_SIZE == 0) {
+                    xmEntityRepository.clear();
+                }
+                return simpleEntity;
+            }).iterator();
+
+            switch (format) {
+                case CSV:
+                    EntityToCsvConverterUtils.writeCsv(simpleEntities, SimpleExportXmEntityDto.class, outputStream);
+                    break;
+                case XLSX:
+                    EntityToExcelConverterUtils.writeExcel(simpleEntities, typeKey, outputStream);
+                    break;
+                default:
+                    throw new BusinessException(ErrorConstants.ERR_VALIDATION, String.format(
+                        "Converter doesn't support '%s' file format", fileFormat));
+            }
         }
+        log.info("Exported {} entities of type {} to {}", count.get(), typeKey, format);
     }
 
     @Transactional(readOnly = true)
@@ -76,7 +76,7 @@ public class CustomMetricsConfiguration implements RefreshableConfiguration {
     }
 
     private Function<CustomMetric, Gauge<?>> toMetric(String tenantKey) {
-        return (metric) -> () -> customMetricsService.getMetric(metric.getName(), metric, tenantKey);
+        return (metric) -> () -> customMetricsService.getMetric(metric.getName(), tenantKey);
     }
 
     public boolean isListeningConfiguration(final String updatedKey) {
@@ -93,6 +93,7 @@ public class CustomMetricsConfiguration implements RefreshableConfiguration {
     public static class CustomMetric {
         private String name;
         private Integer updatePeriodSeconds;
+        private Integer timeoutSeconds;
     }
 
 }
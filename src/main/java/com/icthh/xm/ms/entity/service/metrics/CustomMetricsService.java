@@ -11,7 +11,7 @@ import com.icthh.xm.commons.logging.util.MdcUtils;
 import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.lep.api.LepManager;
-import com.icthh.xm.ms.entity.service.metrics.CustomMetricsConfiguration.CustomMetric;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
@@ -36,28 +36,48 @@ public class CustomMetricsService {
     private final XmAuthenticationContextHolder authContextHolder;
     private final LepManager lepManager;
 
-    public Object getMetric(String name, CustomMetric config, String tenantKey) {
-        return runInTenantContext(tenantKey, () -> {
-            if (config.getUpdatePeriodSeconds() == null) {
-                return self.metricByName(name);
-            }
-            return metricsCache.getOrDefault(tenantKey, emptyMap()).get(name);
-        });
+    /**
+     * Last computed value of the metric, the scrape never runs LEP.
+     *
+     * @param name      the metric name
+     * @param tenantKey the tenant key
+     * @return metric value or {@code null} if it was not computed yet
+     */
+    public Object getMetric(String name, String tenantKey) {
+        return metricsCache.getOrDefault(tenantKey, emptyMap()).get(name);
     }
 
+    /**
+     * Computes metric by LEP in tenant context and keeps the value, errors are thrown to the caller.
+     *
+     * @param metricName the metric name
+     * @param tenant     the tenant key
+     */
     public void updateMetric(String metricName, String tenant) {
         try {
             MdcUtils.putRid(MdcUtils.generateRid() + ":" + tenant);
             Object metricValue = runInTenantContext(tenant, () -> self.metricByName(metricName));
             Map<String, Object> metrics = metricsCache.computeIfAbsent(tenant, (key) -> new ConcurrentHashMap<>());
-            metrics.put(metricName, metricValue);
-        } catch (Throwable e) {
-            log.error("Error update metric", e);
+            if (metricValue == null) {
+                metrics.remove(metricName);
+            } else {
+                metrics.put(metricName, metricValue);
+            }
         } finally {
             MdcUtils.clear();
         }
     }
 
+    /**
+     * Drops values of the tenant metrics which are not configured anymore.
+     *
+     * @param tenant      the tenant key
+     * @param metricNames names of configured metrics
+     */
+    public void retainMetrics(String tenant, Collection<String> metricNames) {
+        metricsCache.getOrDefault(tenant, emptyMap()).keySet().retainAll(metricNames);
+    }
+
     private Object runInTenantContext(String tenant, Supplier<Object> operation) {
         return tenantContextHolder.getPrivilegedContext().execute(buildTenant(tenant), () -> {
             try {
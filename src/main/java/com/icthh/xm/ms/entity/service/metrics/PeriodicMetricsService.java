@@ -1,48 +1,198 @@
 package com.icthh.xm.ms.entity.service.metrics;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.service.metrics.CustomMetricsConfiguration.CustomMetric;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+/**
+ * Computes custom metrics in background, gauges only read the last computed value.
+ *
+ * The scheduler thread only marks metrics as due, computations run on the worker pool of
+ * {@code application.periodic-metric-pool-size}. Every tenant computes one metric at a time and is put back to the
+ * end of the worker queue after it, so the tenants take turns and a slow tenant occupies one worker at most.
+ * A computation is interrupted after its timeout, the metric keeps its previous value until the next success.
+ */
 @Slf4j
 @Component
 public class PeriodicMetricsService {
 
-    private final Map<String, Map<String, ScheduledFuture>> metricsTasksByTenant = new ConcurrentHashMap<>();
-    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+    private static final String METRICS_PREFIX = "custom.metrics.computation.";
+
+    private final Map<String, TenantMetrics> metricsByTenant = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("custom-metrics-scheduler-"));
+    private final ExecutorService workers;
     private final CustomMetricsService customMetricsService;
+    private final MetricRegistry metricRegistry;
+    private final ApplicationProperties.CustomMetrics config;
 
-    public PeriodicMetricsService(CustomMetricsService customMetricsService, ApplicationProperties applicationProperties) {
+    public PeriodicMetricsService(CustomMetricsService customMetricsService,
+                                  ApplicationProperties applicationProperties,
+                                  MetricRegistry metricRegistry) {
         this.customMetricsService = customMetricsService;
-        taskScheduler.initialize();
-        taskScheduler.setPoolSize(applicationProperties.getPeriodicMetricPoolSize());
+        this.metricRegistry = metricRegistry;
+        this.config = applicationProperties.getCustomMetrics();
+        this.workers = Executors.newFixedThreadPool(applicationProperties.getPeriodicMetricPoolSize(),
+                                                    new CustomizableThreadFactory("custom-metrics-"));
     }
 
     public void scheduleCustomMetric(List<CustomMetric> customMetrics, String tenantKey) {
-        metricsTasksByTenant.computeIfAbsent(tenantKey, (key) -> new ConcurrentHashMap<>());
-        Map<String, ScheduledFuture> scheduledTasks = metricsTasksByTenant.get(tenantKey);
-        scheduledTasks.values().forEach(it -> it.cancel(false));
+        TenantMetrics previous = metricsByTenant.remove(tenantKey);
+        if (previous != null) {
+            previous.cancel();
+        }
+        String metricsName = METRICS_PREFIX + tenantKey.toLowerCase();
+        metricRegistry.removeMatching((name, metric) -> name.startsWith(metricsName + "."));
 
-        Map<String, ScheduledFuture> tasks = new HashMap<>();
-        customMetrics.stream().filter(it -> it.getUpdatePeriodSeconds() != null && it.getUpdatePeriodSeconds() > 0)
-                     .forEach(customMetric -> schedulerCustomMetric(tenantKey, tasks, customMetric));
+        TenantMetrics tenantMetrics = new TenantMetrics(tenantKey);
+        customMetrics.forEach(tenantMetrics::schedule);
+        metricsByTenant.put(tenantKey, tenantMetrics);
+        customMetricsService.retainMetrics(tenantKey, tenantMetrics.tasks.keySet());
+    }
 
-        metricsTasksByTenant.put(tenantKey, tasks);
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
     }
 
-    private void schedulerCustomMetric(String tenantKey, Map<String, ScheduledFuture> tasks,
-                                       CustomMetric customMetric) {
-        Runnable task = () -> customMetricsService.updateMetric(customMetric.getName(), tenantKey);
-        Integer period = customMetric.getUpdatePeriodSeconds();
-        ScheduledFuture<?> future = taskScheduler.scheduleAtFixedRate(task, period * 1000);
-        tasks.put(customMetric.getName(), future);
+    private int getUpdatePeriodSeconds(CustomMetric metric) {
+        Integer period = metric.getUpdatePeriodSeconds();
+        return period != null && period > 0 ? period : config.getDefaultUpdatePeriodSeconds();
+    }
+
+    private int getTimeoutSeconds(CustomMetric metric) {
+        Integer timeout = metric.getTimeoutSeconds();
+        return timeout != null && timeout > 0 ? timeout : config.getTimeoutSeconds();
+    }
+
+    @RequiredArgsConstructor
+    private class TenantMetrics {
+
+        private final String tenantKey;
+        private final Map<String, ScheduledFuture<?>> tasks = new HashMap<>();
+        private final Queue<CustomMetric> due = new ConcurrentLinkedQueue<>();
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        void schedule(CustomMetric metric) {
+            int period = getUpdatePeriodSeconds(metric);
+            tasks.put(metric.getName(), scheduler.scheduleAtFixedRate(() -> enqueue(metric), 0, period,
+                                                                      TimeUnit.SECONDS));
+        }
+
+        void cancel() {
+            cancelled = true;
+            tasks.values().forEach(task -> task.cancel(false));
+        }
+
+        private void enqueue(CustomMetric metric) {
+            // metric which is still waiting or computing is not queued twice
+            if (pending.add(metric.getName())) {
+                due.add(metric);
+                submit();
+            } else {
+                metricRegistry.meter(metricName(metric, "skipped")).mark();
+            }
+        }
+
+        private void submit() {
+            if (!cancelled && !due.isEmpty() && running.compareAndSet(false, true)) {
+                try {
+                    workers.execute(this::computeNext);
+                } catch (RuntimeException e) {
+                    running.set(false);
+                    log.error("Metric computation of tenant {} was not submitted", tenantKey, e);
+                }
+            }
+        }
+
+        private void computeNext() {
+            CustomMetric metric = due.poll();
+            try {
+                if (metric != null && !cancelled) {
+                    compute(metric);
+                }
+            } finally {
+                if (metric != null) {
+                    pending.remove(metric.getName());
+                }
+                running.set(false);
+                submit();
+            }
+        }
+
+        private void compute(CustomMetric metric) {
+            Computation computation = new Computation(Thread.currentThread());
+            ScheduledFuture<?> timeout = scheduler.schedule(computation::timeout, getTimeoutSeconds(metric),
+                                                            TimeUnit.SECONDS);
+            Timer.Context time = metricRegistry.timer(metricName(metric, "duration")).time();
+            try {
+                customMetricsService.updateMetric(metric.getName(), tenantKey);
+            } catch (Throwable e) {
+                if (computation.finish()) {
+                    metricRegistry.meter(metricName(metric, "timeouts")).mark();
+                    log.error("Metric {} of tenant {} was not computed in {} seconds, previous value is kept",
+                              metric.getName(), tenantKey, getTimeoutSeconds(metric));
+                } else {
+                    metricRegistry.meter(metricName(metric, "failures")).mark();
+                    log.error("Metric {} of tenant {} was not computed, previous value is kept",
+                              metric.getName(), tenantKey, e);
+                }
+            } finally {
+                computation.finish();
+                timeout.cancel(false);
+                time.stop();
+                // interrupt of timed out computation must not leak to the next one
+                Thread.interrupted();
+            }
+        }
+
+        private String metricName(CustomMetric metric, String suffix) {
+            return METRICS_PREFIX + tenantKey.toLowerCase() + "." + metric.getName() + "." + suffix;
+        }
     }
 
+    @RequiredArgsConstructor
+    private static class Computation {
+
+        private final Thread worker;
+        private boolean finished;
+        private boolean timedOut;
+
+        synchronized void timeout() {
+            if (!finished) {
+                timedOut = true;
+                worker.interrupt();
+            }
+        }
+
+        /**
+         * @return true if the computation was timed out
+         */
+        synchronized boolean finish() {
+            finished = true;
+            return timedOut;
+        }
+    }
 }
@@ -8,22 +8,42 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 public class ImageResizeUtil {
 
+    /**
+     * Source image is decoded at least this times larger than the new size, so resampling keeps the quality.
+     */
+    private static final int SUBSAMPLING_MARGIN = 2;
+
     private ImageResizeUtil() {
 
     }
 
     public static InputStream resize(InputStream is, int newSize) throws IOException {
-        BufferedImage sourceImage = ImageIO.read(is);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        resize(is, newSize, baos);
+        return new ByteArrayInputStream(baos.toByteArray());
+    }
 
-        if (sourceImage == null) {
-            throw new BusinessException("Source image is null");
-        }
+    /**
+     * Resize the image to png, the source is decoded with subsampling, so memory is bounded by the new size
+     * instead of the source image size.
+     *
+     * @param is      the source image stream
+     * @param newSize size of the larger side of the resized image
+     * @param output  the output stream of png image, not closed
+     */
+    public static void resize(InputStream is, int newSize, OutputStream output) throws IOException {
+        BufferedImage sourceImage = read(is, newSize);
 
         Integer newHeight;
         Integer newWidth;
@@ -51,10 +71,29 @@ public class ImageResizeUtil {
         }
 
         BufferedImage scaledImage = scale(sourceImage, newHeight, newWidth);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(scaledImage, "png", baos);
+        ImageIO.write(scaledImage, "png", output);
+    }
 
-        return new ByteArrayInputStream(baos.toByteArray());
+    private static BufferedImage read(InputStream is, int newSize) throws IOException {
+        // image input stream is cached in a temporary file, not in memory
+        try (ImageInputStream input = ImageIO.createImageInputStream(is)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new BusinessException("Source image is null");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceSize = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, sourceSize / Math.max(1, newSize * SUBSAMPLING_MARGIN));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
     }
 
     private static BufferedImage scale(BufferedImage sourceImage, Integer newHeight, Integer newWidth) {
@@ -0,0 +1,28 @@
+package com.icthh.xm.ms.entity.util;
+
+import static com.jayway.jsonpath.Option.SUPPRESS_EXCEPTIONS;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public final class JsonPathUtils {
+
+    /**
+     * Shared configuration, missing paths are read as null.
+     */
+    public static final Configuration CONFIGURATION = Configuration.defaultConfiguration()
+                                                                   .addOptions(SUPPRESS_EXCEPTIONS);
+
+    /**
+     * Reads compiled path straight from the java object tree, i.e. maps and lists as entity data is,
+     * without serialization to json string.
+     * @param jsonPath compiled path
+     * @param document map or list document
+     * @return value of the path, null when path is not present
+     */
+    public static <T> T read(JsonPath jsonPath, Object document) {
+        return jsonPath.read(document, CONFIGURATION);
+    }
+}
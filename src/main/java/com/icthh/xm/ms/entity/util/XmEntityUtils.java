@@ -4,10 +4,14 @@ import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.ms.entity.domain.Link;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import lombok.experimental.UtilityClass;
+import org.hibernate.Hibernate;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
@@ -16,6 +20,30 @@ import java.util.stream.Stream;
 @UtilityClass
 public class XmEntityUtils {
 
+    private static final List<Function<XmEntity, Set<?>>> INDEXED_RELATIONSHIPS = List.of(
+        XmEntity::getAttachments,
+        XmEntity::getCalendars,
+        XmEntity::getLocations,
+        XmEntity::getRatings,
+        XmEntity::getTags,
+        XmEntity::getComments,
+        XmEntity::getSources,
+        XmEntity::getTargets,
+        XmEntity::getFunctionContexts
+    );
+
+    /**
+     * Eagerly loads relationships which are serialized to elasticsearch index,
+     * uninitialized collection is written to the index as null.
+     *
+     * @param xmEntity the managed entity
+     * @return the same entity
+     */
+    public static XmEntity initIndexedRelationships(XmEntity xmEntity) {
+        INDEXED_RELATIONSHIPS.forEach(relationship -> Hibernate.initialize(relationship.apply(xmEntity)));
+        return xmEntity;
+    }
+
     public static XmEntity getRequiredLinkedTarget(XmEntity xmEntity, String linkTypeKey, String linkTargetTypeKey) {
         Optional<Link> firstLink = findFirstLink(xmEntity, linkTypeKey);
         if (!firstLink.isPresent()) {
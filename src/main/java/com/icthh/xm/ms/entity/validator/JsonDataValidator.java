@@ -5,22 +5,17 @@ import static com.icthh.xm.ms.entity.config.Constants.REGEX_EOL;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.StreamSupport.stream;
 import static org.apache.commons.collections.MapUtils.isEmpty;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.github.fge.jackson.JsonLoader;
-import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.report.ProcessingMessage;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
-import com.github.fge.jsonschema.main.JsonSchema;
-import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
 import com.icthh.xm.ms.entity.service.JsonValidationService;
 import com.icthh.xm.ms.entity.service.XmEntitySpecService;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import javax.validation.ConstraintValidator;
@@ -28,7 +23,6 @@ import javax.validation.ConstraintValidatorContext;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -47,9 +41,8 @@ public class JsonDataValidator implements ConstraintValidator<JsonData, XmEntity
     @Override
     public boolean isValid(XmEntity value, ConstraintValidatorContext context) {
         TypeSpec typeSpecification = xmEntitySpecService.getTypeSpecByKey(value.getTypeKey()).orElse(null);
-        JsonSchema jsonSchema = xmEntitySpecService.getDataJsonSchemaByKey(value.getTypeKey()).orElse(null);
 
-        if (!present(typeSpecification) || dataAndSpecificationEmpty(value, jsonSchema)) {
+        if (!present(typeSpecification) || dataAndSpecificationEmpty(value, typeSpecification)) {
             return true;
         }
 
@@ -58,7 +51,7 @@ public class JsonDataValidator implements ConstraintValidator<JsonData, XmEntity
             return false;
         }
 
-        return validate(value.getData(), jsonSchema, context);
+        return validate(value.getData(), typeSpecification.getDataSpec(), context);
     }
 
     private static boolean present(Object object) {
@@ -66,15 +59,15 @@ public class JsonDataValidator implements ConstraintValidator<JsonData, XmEntity
     }
 
     private static boolean dataWithoutSpecification(XmEntity value, TypeSpec typeSpec) {
-        return typeSpec.getDataSpec() == null && !isEmpty(value.getData());
+        return isBlank(typeSpec.getDataSpec()) && !isEmpty(value.getData());
     }
 
-    private static boolean dataAndSpecificationEmpty(XmEntity value, JsonSchema jsonSchema) {
-        return isEmpty(value.getData()) && jsonSchema == null;
+    private static boolean dataAndSpecificationEmpty(XmEntity value, TypeSpec typeSpec) {
+        return isEmpty(value.getData()) && isBlank(typeSpec.getDataSpec());
     }
 
     @SneakyThrows
-    private boolean validate(Map<String, Object> data, JsonSchema jsonSchema, ConstraintValidatorContext context) {
+    private boolean validate(Map<String, Object> data, String jsonSchema, ConstraintValidatorContext context) {
 
         final ProcessingReport report = jsonValidationService.validateJson(data, jsonSchema);
         boolean isSuccess = report.isSuccess();
@@ -14,7 +14,13 @@ import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
 
+/**
+ * Wraps request and response to cache their bodies. Response body of asynchronous request is written by async
+ * dispatch, so the filter is applied to it too and the body is copied to the response after the last dispatch.
+ * Streamed responses should be excluded by requestCacheIgnoredPathPatternList, as cached body is kept in memory.
+ */
 @RequiredArgsConstructor
 @Component
 @Order(1)
@@ -32,19 +38,32 @@ public class ContentCachingWrappingFilter extends OncePerRequestFilter {
             return;
         }
 
-        Integer cacheLimit = applicationProperties.getRequestCacheLimit();
-        ContentCachingRequestWrapper requestWrapper = cacheLimit != null ?
-                                                      new ContentCachingRequestWrapper(request, cacheLimit) :
-                                                      new ContentCachingRequestWrapper(request);
+        HttpServletRequest requestToUse = request;
+        if (!isAsyncDispatch(request) && !(request instanceof ContentCachingRequestWrapper)) {
+            Integer cacheLimit = applicationProperties.getRequestCacheLimit();
+            requestToUse = cacheLimit != null ? new ContentCachingRequestWrapper(request, cacheLimit) :
+                           new ContentCachingRequestWrapper(request);
+        }
 
-        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        ContentCachingResponseWrapper responseWrapper =
+            WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (responseWrapper == null) {
+            responseWrapper = new ContentCachingResponseWrapper(response);
+        }
         try {
-            filterChain.doFilter(requestWrapper, responseWrapper);
+            filterChain.doFilter(requestToUse, responseWrapper);
         } finally {
-            responseWrapper.copyBodyToResponse();
+            if (!isAsyncStarted(requestToUse)) {
+                responseWrapper.copyBodyToResponse();
+            }
         }
     }
 
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
     private boolean isIgnoredRequest(HttpServletRequest request) {
         String path = request.getServletPath();
         List<String> ignoredPatterns = applicationProperties.getRequestCacheIgnoredPathPatternList();
@@ -0,0 +1,161 @@
+package com.icthh.xm.ms.entity.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
+import com.icthh.xm.ms.entity.domain.Attachment;
+import com.icthh.xm.ms.entity.service.AttachmentContentService;
+import com.icthh.xm.ms.entity.service.dto.AttachmentContent;
+import com.icthh.xm.ms.entity.web.rest.util.HeaderUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * REST controller for binary content of Attachment, the content is streamed in both directions.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class AttachmentContentResource {
+
+    private static final String ENTITY_NAME = "attachment";
+    private static final String BYTES = "bytes";
+
+    private final AttachmentContentService attachmentContentService;
+
+    /**
+     * POST  /attachments/:id/content : Replace content of the attachment by the uploaded file.
+     *
+     * @param id   the id of the attachment
+     * @param file the multipart file
+     * @return the ResponseEntity with status 200 (OK) and with body the updated attachment without content
+     */
+    @PostMapping("/attachments/{id}/content")
+    @Timed
+    @PreAuthorize("hasPermission({'id': #id, 'file': #file}, 'attachment', 'ATTACHMENT.CONTENT.UPDATE')")
+    @PrivilegeDescription("Privilege to upload binary content of the attachment")
+    public ResponseEntity<Attachment> uploadContent(@PathVariable Long id,
+                                                    @RequestParam("file") MultipartFile file) throws IOException {
+        Attachment result = attachmentContentService.updateContent(id, file, file.getSize(), file.getContentType());
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, id.toString()))
+            .body(result);
+    }
+
+    /**
+     * PUT  /attachments/:id/content/:checksum : Replace content of the attachment by already stored content
+     * with the checksum, so the file is not uploaded.
+     *
+     * @param id       the id of the attachment
+     * @param checksum sha256 checksum of the file
+     * @return the ResponseEntity with status 200 (OK) and with body the updated attachment without content,
+     * or with status 404 (Not Found) if no attachment readable by the user has content with the checksum
+     * and the file has to be uploaded
+     */
+    @PutMapping("/attachments/{id}/content/{checksum}")
+    @Timed
+    @PreAuthorize("hasPermission({'id': #id, 'checksum': #checksum}, 'attachment', 'ATTACHMENT.CONTENT.UPDATE')")
+    @PrivilegeDescription("Privilege to upload binary content of the attachment")
+    public ResponseEntity<Attachment> linkContent(@PathVariable Long id, @PathVariable String checksum) {
+        Attachment result = attachmentContentService.linkContent(id, checksum);
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, id.toString()))
+            .body(result);
+    }
+
+    /**
+     * GET  /attachments/:id/content : download content of the attachment.
+     * Single byte range and conditional requests by the content checksum as ETag are supported.
+     *
+     * @param id the id of the attachment
+     * @return content bytes with status 200 (OK), 206 (Partial Content) for the range, 304 (Not Modified) or
+     * 416 (Range Not Satisfiable)
+     */
+    @GetMapping("/attachments/{id}/content")
+    @Timed
+    @PreAuthorize("hasPermission({'id': #id}, 'attachment', 'ATTACHMENT.CONTENT.GET')")
+    @PrivilegeDescription("Privilege to download binary content of the attachment")
+    public void downloadContent(@PathVariable Long id,
+                                @RequestHeader HttpHeaders headers,
+                                HttpServletResponse response) throws IOException {
+        AttachmentContent content = attachmentContentService.getContent(id);
+        String etag = content.getChecksum() == null ? null : "\"" + content.getChecksum() + "\"";
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            List<String> ifNoneMatch = headers.getIfNoneMatch();
+            if (ifNoneMatch.contains(etag) || ifNoneMatch.contains("*")) {
+                response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                return;
+            }
+        }
+
+        long size = content.getSize();
+        long start = 0;
+        long length = size;
+        HttpRange range = getRange(headers, etag);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(size);
+                length = range.getRangeEnd(size) - start + 1;
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + size);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                               BYTES + " " + start + "-" + (start + length - 1) + "/" + size);
+        }
+
+        response.setContentType(StringUtils.defaultIfBlank(content.getContentType(),
+                                                           MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        response.setContentLengthLong(length);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+            .filename(content.getName(), StandardCharsets.UTF_8).build().toString());
+        attachmentContentService.writeContent(content.getContentId(), start, length, response.getOutputStream());
+        response.flushBuffer();
+    }
+
+    /**
+     * @return the requested single range, null for the whole content
+     */
+    private static HttpRange getRange(HttpHeaders headers, String etag) {
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            // the content was changed, the whole content is sent
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(headers.getFirst(HttpHeaders.RANGE));
+        } catch (IllegalArgumentException e) {
+            log.warn("Range header is ignored: {}", e.getMessage());
+            ranges = Collections.emptyList();
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+}
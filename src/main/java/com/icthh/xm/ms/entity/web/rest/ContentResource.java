@@ -66,7 +66,7 @@ public class ContentResource {
             throw new BusinessException(ErrorConstants.ERR_BUSINESS_IDEXISTS,
                                         "A new content cannot already have an ID");
         }
-        Content result = contentRepository.save(content);
+        Content result = contentService.create(content);
         return ResponseEntity.created(new URI("/api/contents/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -90,7 +90,7 @@ public class ContentResource {
             //in order to call method with permissions check
             return this.contentResource.createContent(content);
         }
-        Content result = contentRepository.save(content);
+        Content result = contentService.update(content);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, content.getId().toString()))
             .body(result);
@@ -3,10 +3,13 @@ package com.icthh.xm.ms.entity.web.rest;
 import com.codahale.metrics.annotation.Timed;
 import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
 import com.icthh.xm.ms.entity.service.ElasticsearchIndexService;
+import com.icthh.xm.ms.entity.service.dto.IndexRebuildStatus;
+import io.github.jhipster.web.util.ResponseUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -23,7 +26,7 @@ public class ElasticsearchIndexResource {
     private final ElasticsearchIndexService elasticsearchIndexService;
 
     /**
-     * POST  /elasticsearch/index -> Reindex all Elasticsearch documents
+     * POST  /elasticsearch/index -> Reindex all Elasticsearch documents, existing index is rebuilt without downtime
      */
     @PostMapping("/elasticsearch/index")
     @Timed
@@ -33,4 +36,15 @@ public class ElasticsearchIndexResource {
         elasticsearchIndexService.reindexAllAsync();
         return ResponseEntity.accepted().build();
     }
+
+    /**
+     * GET  /elasticsearch/index/rebuild -> get progress of the Elasticsearch index rebuild
+     */
+    @GetMapping("/elasticsearch/index/rebuild")
+    @Timed
+    @PreAuthorize("hasPermission(null, 'ELASTICSEARCH.INDEX.REBUILD.GET')")
+    @PrivilegeDescription("Privilege to get progress of the Elasticsearch index rebuild")
+    public ResponseEntity<IndexRebuildStatus> getRebuildStatus() {
+        return ResponseUtil.wrapOrNotFound(elasticsearchIndexService.getRebuildStatus());
+    }
 }
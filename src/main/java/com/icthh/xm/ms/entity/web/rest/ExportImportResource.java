@@ -6,8 +6,10 @@ import com.icthh.xm.commons.logging.LoggingAspectConfig;
 import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
 import com.icthh.xm.ms.entity.service.ExportImportService;
 import com.icthh.xm.ms.entity.service.dto.ExportDto;
-import com.icthh.xm.ms.entity.service.dto.ImportDto;
+import java.io.IOException;
 import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -33,23 +35,24 @@ public class ExportImportResource {
     @PreAuthorize("hasPermission({'exportDto': #exportDto}, 'XMENTITY.EXPORT')")
     @PrivilegeDescription("Privilege to export xmEntities by export specification")
     @PostMapping("/export/xm-entities")
-    public ResponseEntity<byte[]> exportXmEntities(@RequestBody Set<ExportDto> exportDto) {
-        byte[] media = exportImportService.exportEntities(exportDto);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setCacheControl(CacheControl.noCache().getHeaderValue());
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.set("Content-Disposition", "attachment; filename=export.json");
-        return ResponseEntity.ok().contentLength(media.length).headers(headers).body(media);
+    public void exportXmEntities(@RequestBody Set<ExportDto> exportDto, HttpServletResponse response)
+        throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=export.json");
+        exportImportService.exportEntities(exportDto, response.getOutputStream());
+        response.flushBuffer();
     }
 
     @Timed
-    @PreAuthorize("hasPermission({'importDto': #importDto}, 'XMENTITY.IMPORT')")
+    @PreAuthorize("hasPermission({'importDto': {'contentType': #request.contentType, "
+        + "'contentLength': #request.contentLengthLong}}, 'XMENTITY.IMPORT')")
     @PrivilegeDescription("Privilege to import xmEntities by import specification")
-    @LoggingAspectConfig(inputExcludeParams = "importDto")
+    @LoggingAspectConfig(inputExcludeParams = "request")
     @PostMapping("/import/xm-entities")
-    public ResponseEntity<Void> importXmEntities(@RequestBody ImportDto importDto) {
+    public ResponseEntity<Void> importXmEntities(HttpServletRequest request) {
         try {
-            exportImportService.importEntities(importDto);
+            exportImportService.importEntities(request.getInputStream());
         } catch (Throwable e) {
             throw new BusinessException("error.import.xmentity", collectErrorMessage(e));
         }
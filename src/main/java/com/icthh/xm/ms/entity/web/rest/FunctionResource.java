@@ -7,8 +7,13 @@ import static org.springframework.web.servlet.HandlerMapping.PATH_WITHIN_HANDLER
 import com.codahale.metrics.annotation.Timed;
 import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
 import com.icthh.xm.ms.entity.domain.FunctionContext;
+import com.icthh.xm.ms.entity.domain.FunctionJobRecord;
+import com.icthh.xm.ms.entity.service.FunctionJobService;
 import com.icthh.xm.ms.entity.service.FunctionService;
+import com.icthh.xm.ms.entity.service.dto.FunctionJob;
 import com.icthh.xm.ms.entity.web.rest.util.HeaderUtil;
+import io.github.jhipster.web.util.ResponseUtil;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +23,7 @@ import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -32,6 +38,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * The {@link FunctionResource} class.
@@ -44,11 +51,14 @@ public class FunctionResource {
     private static final String UPLOAD = "/upload";
 
     private final FunctionService functionService;
+    private final FunctionJobService functionJobService;
 
     private FunctionResource self;
 
-    public FunctionResource(@Qualifier("functionService") FunctionService functionService) {
+    public FunctionResource(@Qualifier("functionService") FunctionService functionService,
+                            FunctionJobService functionJobService) {
         this.functionService = functionService;
+        this.functionJobService = functionJobService;
     }
 
     @Autowired
@@ -63,7 +73,7 @@ public class FunctionResource {
     public ResponseEntity<Object> callGetFunction(@PathVariable("functionKey") String functionKey,
                                                            @RequestParam(required = false) Map<String, Object> functionInput) {
         FunctionContext result = functionService.execute(functionKey, functionInput);
-        return ResponseEntity.ok().body(result.functionResult());
+        return ResponseEntity.ok().body(toResponseBody(result));
     }
 
     @Timed
@@ -73,7 +83,7 @@ public class FunctionResource {
     public ResponseEntity<Object> callPutFunction(@PathVariable("functionKey") String functionKey,
                                                            @RequestBody(required = false) Map<String, Object> functionInput) {
         FunctionContext result = functionService.execute(functionKey, functionInput);
-        return ResponseEntity.ok().body(result.functionResult());
+        return ResponseEntity.ok().body(toResponseBody(result));
     }
 
     /**
@@ -93,7 +103,56 @@ public class FunctionResource {
         FunctionContext result = functionService.execute(functionKey, functionInput);
         return ResponseEntity.created(URI.create("/api/function-contexts/" + Objects.toString(result.getId(), "")))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME_FUNCTION_CONTEXT, String.valueOf(result.getId())))
-            .body(result.functionResult());
+            .body(toResponseBody(result));
+    }
+
+    /**
+     * POST  /functions/{functionKey}/async : Queue execution of a function by key (key in entity specification).
+     *
+     * @param functionKey   the function key to execute
+     * @param functionInput function input data context
+     * @return the ResponseEntity with status 202 (Accepted) and with body the queued job
+     */
+    @Timed
+    @PostMapping("/functions/{functionKey:.+}/async")
+    @PreAuthorize("hasPermission({'functionKey': #functionKey}, 'FUNCTION.CALL')")
+    @PrivilegeDescription("Privilege to execute a function by key (key in entity specification)")
+    public ResponseEntity<FunctionJob> callFunctionAsync(@PathVariable("functionKey") String functionKey,
+                                                         @RequestBody(required = false) Map<String, Object> functionInput) {
+        FunctionJob job = functionJobService.submit(functionKey, functionInput);
+        return ResponseEntity.accepted().location(URI.create("/api/functions/jobs/" + job.getId())).body(job);
+    }
+
+    /**
+     * GET  /functions/jobs/{jobId} : Get state of the asynchronous function execution.
+     *
+     * @param jobId the job id
+     * @return the ResponseEntity with status 200 (OK) and with body the job, or with status 404 (Not Found)
+     */
+    @Timed
+    @GetMapping("/functions/jobs/{jobId}")
+    @PreAuthorize("hasPermission({'jobId': #jobId}, 'FUNCTION.JOB.GET')")
+    @PrivilegeDescription("Privilege to get state of the asynchronous function execution")
+    public ResponseEntity<FunctionJob> getFunctionJob(@PathVariable("jobId") String jobId) {
+        return ResponseUtil.wrapOrNotFound(functionJobService.findJob(jobId));
+    }
+
+    /**
+     * GET  /functions/jobs/{jobId}/result : Get result of the completed asynchronous function execution.
+     *
+     * Result is written to the response stream by the MVC async executor, not by the servlet thread.
+     *
+     * @param jobId the job id
+     * @return the ResponseEntity with status 200 (OK) and with body the function result,
+     * or with status 404 (Not Found) if the job is unknown or not completed
+     */
+    @Timed
+    @GetMapping("/functions/jobs/{jobId}/result")
+    @PreAuthorize("hasPermission({'jobId': #jobId}, 'FUNCTION.JOB.GET')")
+    @PrivilegeDescription("Privilege to get result of the asynchronous function execution")
+    public ResponseEntity<StreamingResponseBody> getFunctionJobResult(@PathVariable("jobId") String jobId) {
+        return functionJobService.findResult(jobId).map(FunctionResource::toStreamingResponse)
+                                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
@@ -112,7 +171,7 @@ public class FunctionResource {
         FunctionContext result = functionService.executeAnonymous(functionKey, functionInput);
         return ResponseEntity.created(URI.create("/api/function-contexts/" + Objects.toString(result.getId(), "")))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME_FUNCTION_CONTEXT, String.valueOf(result.getId())))
-            .body(result.functionResult());
+            .body(toResponseBody(result));
     }
 
     /**
@@ -176,7 +235,20 @@ public class FunctionResource {
         String functionKey = getFunctionKey(request);
         functionKey = functionKey.substring(0, functionKey.length() - UPLOAD.length());
         FunctionContext result = functionService.execute(functionKey, functionInput);
-        return ResponseEntity.ok().body(result.functionResult());
+        return ResponseEntity.ok().body(toResponseBody(result));
+    }
+
+    /**
+     * Input stream result is copied to the response as is, without loading it into memory.
+     */
+    private static Object toResponseBody(FunctionContext result) {
+        Object body = result.functionResult();
+        return body instanceof InputStream ? new InputStreamResource((InputStream) body) : body;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> toStreamingResponse(FunctionJobRecord job) {
+        StreamingResponseBody body = outputStream -> outputStream.write(job.getResult());
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(job.getResultContentType())).body(body);
     }
 
     public static String getFunctionKey(HttpServletRequest request) {
@@ -0,0 +1,35 @@
+package com.icthh.xm.ms.entity.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import com.icthh.xm.commons.permission.annotation.PrivilegeDescription;
+import com.icthh.xm.ms.entity.service.JsonbIndexService;
+import com.icthh.xm.ms.entity.service.dto.JsonbIndexStatus;
+import io.github.jhipster.web.util.ResponseUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for indexes of entity data defined by type specs.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class JsonbIndexResource {
+
+    private final JsonbIndexService jsonbIndexService;
+
+    /**
+     * GET  /jsonb-indexes -> get plan and progress of the last entity data indexes update
+     */
+    @GetMapping("/jsonb-indexes")
+    @Timed
+    @PreAuthorize("hasPermission(null, 'XMENTITY.JSONB.INDEX.GET')")
+    @PrivilegeDescription("Privilege to get progress of the entity data indexes update")
+    public ResponseEntity<JsonbIndexStatus> getStatus() {
+        return ResponseUtil.wrapOrNotFound(jsonbIndexService.getStatus());
+    }
+}
@@ -16,11 +16,14 @@ import com.icthh.xm.ms.entity.domain.Profile;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.ext.IdOrKey;
 import com.icthh.xm.ms.entity.domain.template.TemplateParamsHolder;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
 import com.icthh.xm.ms.entity.repository.kafka.ProfileEventProducer;
 import com.icthh.xm.ms.entity.service.FunctionService;
 import com.icthh.xm.ms.entity.service.ProfileService;
 import com.icthh.xm.ms.entity.service.TenantService;
 import com.icthh.xm.ms.entity.service.XmEntityService;
+import com.icthh.xm.ms.entity.service.dto.LinkGraph;
 import com.icthh.xm.ms.entity.service.dto.LinkSourceDto;
 import com.icthh.xm.ms.entity.service.dto.SearchDto;
 import com.icthh.xm.ms.entity.util.XmHttpEntityUtils;
@@ -33,6 +36,7 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -62,7 +66,9 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validator;
 
 /**
  * REST controller for managing XmEntity.
@@ -73,6 +79,7 @@ public class XmEntityResource {
 
     private static final String ENTITY_NAME = "xmEntity";
     private static final String TENANT_USED_CODE = "xm.xmEntity.tenant.error.alreadyUsed";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
 
     private final XmEntityService xmEntityService;
 
@@ -84,6 +91,8 @@ public class XmEntityResource {
 
     private final TenantService tenantService;
 
+    private final Validator validator;
+
     private final XmEntityResource xmEntityResource;
 
     public XmEntityResource(
@@ -92,12 +101,14 @@ public class XmEntityResource {
         ProfileEventProducer profileEventProducer,
         FunctionService functionService,
         TenantService tenantService,
+        Validator validator,
         @Lazy XmEntityResource xmEntityResource) {
         this.xmEntityService = xmEntityService;
         this.profileService = profileService;
         this.profileEventProducer = profileEventProducer;
         this.functionService = functionService;
         this.tenantService = tenantService;
+        this.validator = validator;
         this.xmEntityResource = xmEntityResource;
     }
 
@@ -130,6 +141,45 @@ public class XmEntityResource {
             .body(result);
     }
 
+    /**
+     * POST /xm-entities/bulk : Create or update a list of xmEntities in one transaction.
+     *
+     * @param xmEntities the xmEntities to create or update, entity without ID is created
+     * @return the ResponseEntity with status 200 (OK) and with body the saved xmEntities in request order
+     */
+    @PostMapping("/xm-entities/bulk")
+    @Timed
+    @PreAuthorize("hasPermission({'xmEntities': #xmEntities}, 'XMENTITY.CREATE.BULK')")
+    @PrivilegeDescription("Privilege to create or update a list of xmEntities")
+    public ResponseEntity<List<XmEntity>> saveXmEntities(@RequestBody List<XmEntity> xmEntities) {
+        validateXmEntities(xmEntities);
+        if (xmEntities.stream().anyMatch(xmEntity -> Constants.TENANT_TYPE_KEY.equals(xmEntity.getTypeKey()))) {
+            throw new BusinessException(ErrorConstants.ERR_VALIDATION, "Tenant can not be saved in bulk");
+        }
+        List<XmEntity> result = xmEntityService.saveAll(xmEntities);
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, String.valueOf(result.size())))
+            .body(result);
+    }
+
+    /**
+     * Validates every element, {@code @Valid} on a list parameter does not cascade to the elements.
+     */
+    private void validateXmEntities(List<XmEntity> xmEntities) {
+        for (int i = 0; i < xmEntities.size(); i++) {
+            String path = "xmEntities[" + i + "]";
+            XmEntity xmEntity = xmEntities.get(i);
+            if (xmEntity == null) {
+                throw new BusinessException(ErrorConstants.ERR_VALIDATION, path + ": must not be null");
+            }
+            validator.validate(xmEntity).stream().findFirst().ifPresent(violation -> {
+                String property = violation.getPropertyPath().toString();
+                throw new BusinessException(ErrorConstants.ERR_VALIDATION,
+                    (property.isEmpty() ? path : path + "." + property) + ": " + violation.getMessage());
+            });
+        }
+    }
+
     /**
      * PUT /xm-entities : Updates an existing xmEntity.
      *
@@ -172,6 +222,26 @@ public class XmEntityResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /xm-entities?after= : get xmEntities in the cursor mode, selected by presence of the after parameter.
+     * Page starts after the token from the next Link header, empty token is the first page. No total count.
+     *
+     * @param after the token of the previous page last row
+     * @param size  the page size
+     * @param sort  the sort, only the first order is used
+     * @return the ResponseEntity with status 200 (OK) and the list of xmEntities in body
+     */
+    @GetMapping(value = "/xm-entities", params = "after")
+    @Timed
+    public ResponseEntity<List<XmEntity>> getXmEntitiesAfter(@RequestParam(required = false) String after,
+                                                             @RequestParam(defaultValue = "20") int size,
+                                                             @ApiParam Sort sort,
+                                                             @RequestParam(required = false) String typeKey) {
+        CursorPage<XmEntity> page = xmEntityService.findAll(new CursorPageable(after, size, sort), typeKey, null);
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(typeKey, page, "/api/xm-entities");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     @GetMapping("/xm-entities-by-ids")
     @Timed
     public ResponseEntity<List<XmEntity>> getXmEntitiesByIds(@ApiParam Pageable pageable,
@@ -182,6 +252,19 @@ public class XmEntityResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/xm-entities-by-ids", params = "after")
+    @Timed
+    public ResponseEntity<List<XmEntity>> getXmEntitiesByIdsAfter(@RequestParam(required = false) String after,
+                                                                  @RequestParam(defaultValue = "20") int size,
+                                                                  @ApiParam Sort sort,
+                                                                  @RequestParam Set<Long> ids,
+                                                                  @RequestParam(required = false) Set<String> embed) {
+        CursorPage<XmEntity> page = xmEntityService.findByIds(new CursorPageable(after, size, sort), ids, embed, null);
+        HttpHeaders headers = PaginationUtil.generateByIdsCursorPaginationHttpHeaders(ids, embed, page,
+                                                                                      "/api/xm-entities-by-ids");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /xm-entities/:id : get the "id" xmEntity.
      *
@@ -240,6 +323,40 @@ public class XmEntityResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/_search/xm-entities", params = "after")
+    @Timed
+    @PreAuthorize("hasPermission({'query': #query}, 'XMENTITY.SEARCH.QUERY')")
+    @PrivilegeDescription("Privilege to search for the xmEntity corresponding to the query")
+    public ResponseEntity<List<XmEntity>> searchXmEntitiesAfter(
+            @RequestParam String query,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            @ApiParam Sort sort) {
+        CursorPage<XmEntity> page = xmEntityService.search(query, new CursorPageable(after, size, sort), null);
+        HttpHeaders headers = PaginationUtil
+            .generateSearchCursorPaginationHttpHeaders(query, page,
+                "/api/_search/xm-entities");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /_search/xm-entities/stream : search all xmEntities by query without paging.
+     * Entities are written as newline delimited json while they are read from elasticsearch page by page.
+     *
+     * @param query    the query of the xmEntity search
+     * @param response the response to write entities to
+     */
+    @GetMapping(value = "/_search/xm-entities/stream", produces = NDJSON_VALUE)
+    @Timed
+    @PreAuthorize("hasPermission({'query': #query}, 'XMENTITY.SEARCH.QUERY')")
+    @PrivilegeDescription("Privilege to search for the xmEntity corresponding to the query")
+    public void searchXmEntitiesToStream(@RequestParam String query, HttpServletResponse response)
+        throws IOException {
+        response.setContentType(NDJSON_VALUE);
+        xmEntityService.searchToStream(query, response.getOutputStream());
+        response.flushBuffer();
+    }
+
     @GetMapping("/_search/v2/xm-entities")
     @Timed
     @PreAuthorize("hasPermission({'query': #query}, 'XMENTITY.SEARCH.QUERY')")
@@ -457,6 +574,43 @@ public class XmEntityResource {
 
     }
 
+    @GetMapping(value = "/v2/xm-entities/{idOrKey}/links/sources", params = "after")
+    @Timed
+    public ResponseEntity<List<LinkSourceDto>> getLinkSourcesInvertedAfter(@PathVariable String idOrKey,
+                                                                           @RequestParam(required = false)
+                                                                               Set<String> typeKeys,
+                                                                           @RequestParam(required = false)
+                                                                               String after,
+                                                                           @RequestParam(defaultValue = "20")
+                                                                               int size,
+                                                                           @ApiParam Sort sort) {
+
+        CursorPage<LinkSourceDto> page = xmEntityService.getLinkSourcesInverted(new CursorPageable(after, size, sort),
+                                                                                IdOrKey.of(idOrKey),
+                                                                                typeKeys,
+                                                                                null);
+
+        HttpHeaders headers = PaginationUtil.generateByTypeKeysCursorPaginationHttpHeaders(typeKeys, page,
+                                                                                           "/api/v2/xm-entities/"
+                                                                                           + idOrKey
+                                                                                           + "/links/sources");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/xm-entities/{idOrKey}/links/graph")
+    @Timed
+    public ResponseEntity<LinkGraph> getLinkGraph(@PathVariable String idOrKey,
+                                                  @RequestParam(required = false) Set<String> typeKeys,
+                                                  @RequestParam(defaultValue = "OUTGOING")
+                                                      LinkGraph.Direction direction,
+                                                  @RequestParam(defaultValue = "1") int depth,
+                                                  @RequestParam(defaultValue = "key,typeKey,name")
+                                                      List<String> fields,
+                                                  @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(xmEntityService.getLinkGraph(IdOrKey.of(idOrKey), typeKeys, direction, depth,
+                                                              fields, limit, null));
+    }
+
     /**
      * @deprecated use {@link #updateXmEntityState(java.lang.String, java.lang.String, java.util.Map)} instead
      */
@@ -560,22 +714,24 @@ public class XmEntityResource {
 
     /**
      * GET  /xm-entities/export : export all xmEntities by typeKey in specific file format.
+     * File is written to the response while entities are read from database.
      * @param fileFormat the file format
      * @param typeKey the entity type key
-     * @return file with entities
+     * @param response the response to write file with entities to
      */
     @Timed
     @GetMapping("/xm-entities/export")
     @PreAuthorize("hasPermission({'fileFormat':#fileFormat, 'typeKey':#typeKey}, 'XMENTITY.EXPORT.FILE')")
     @PrivilegeDescription("Privilege to export all xmEntities by typeKey in specific file format")
-    public ResponseEntity<byte[]> exportEntities(
+    public void exportEntities(
                     @ApiParam(name = "fileFormat", value = "Specify file format to download(csv, xlsx, etc)")
                     @RequestParam String fileFormat,
-                    @RequestParam String typeKey) throws IOException {
-        byte[] media = xmEntityService.exportEntities(fileFormat, typeKey);
-
-        return ResponseEntity.ok().contentLength(media.length)
-                        .headers(HeaderUtil.createDownloadEntityHeaders(typeKey, fileFormat)).body(media);
+                    @RequestParam String typeKey,
+                    HttpServletResponse response) throws IOException {
+        HeaderUtil.createDownloadEntityHeaders(typeKey, fileFormat)
+                  .forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        xmEntityService.exportEntities(fileFormat, typeKey, response.getOutputStream());
+        response.flushBuffer();
     }
 
     private void produceEvent(XmEntity entity, String eventType) {
@@ -586,8 +742,7 @@ public class XmEntityResource {
         if (profile == null) {
             return;
         }
-        String content = this.profileEventProducer.createEventJson(profile, eventType);
-        this.profileEventProducer.send(content);
+        this.profileEventProducer.send(profile, eventType);
     }
 
     private ResponseEntity<Object> executeFunction(String idOrKey,
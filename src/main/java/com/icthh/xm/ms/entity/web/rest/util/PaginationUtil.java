@@ -5,10 +5,12 @@ import static java.util.stream.Collectors.joining;
 import static org.apache.commons.lang.StringUtils.EMPTY;
 
 import com.icthh.xm.ms.entity.domain.template.TemplateParamsHolder;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
 import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -33,6 +35,7 @@ public final class PaginationUtil {
     private static final String TEMPLATE_GET_PARAM = "&template=";
     private static final String IDS_GET_PARAM = "&ids=";
     private static final String EMBED_GET_PARAM = "&embed=";
+    private static final String TYPEKEYS_GET_PARAM = "&typeKeys=";
 
     public static HttpHeaders generatePaginationHttpHeaders(Page page, String baseUrl) {
         return generatePagination(EMPTY, page, baseUrl);
@@ -95,6 +98,61 @@ public final class PaginationUtil {
         return generatePagination(queryString, page, baseUrl);
     }
 
+    /**
+     * Headers of the cursor mode: only the next link, there is no total count, last and previous page.
+     */
+    @SneakyThrows
+    public static HttpHeaders generateCursorPaginationHttpHeaders(String typeKey, CursorPage page, String baseUrl) {
+        String queryString = StringUtils.isEmpty(typeKey)
+                             ? EMPTY
+                             : TYPEKEY_GET_PARAM + URLEncoder.encode(typeKey, "UTF-8");
+
+        return generateCursorPagination(queryString, page, baseUrl);
+    }
+
+    @SneakyThrows
+    public static HttpHeaders generateByTypeKeysCursorPaginationHttpHeaders(Set<String> typeKeys, CursorPage page,
+                                                                            String baseUrl) {
+        String queryString = typeKeys == null || typeKeys.isEmpty()
+                             ? EMPTY
+                             : TYPEKEYS_GET_PARAM + URLEncoder.encode(StringUtils.join(typeKeys, ","), "UTF-8");
+
+        return generateCursorPagination(queryString, page, baseUrl);
+    }
+
+    @SneakyThrows
+    public static HttpHeaders generateByIdsCursorPaginationHttpHeaders(Set<Long> ids, Set<String> embed,
+                                                                       CursorPage page, String baseUrl) {
+        String escapedIds = URLEncoder.encode(Objects.toString(StringUtils.join(ids, ","), EMPTY), "UTF-8");
+        String escapedEmbed = URLEncoder.encode(Objects.toString(StringUtils.join(embed, ","), EMPTY), "UTF-8");
+
+        String queryString = IDS_GET_PARAM + escapedIds + EMBED_GET_PARAM + escapedEmbed;
+
+        return generateCursorPagination(queryString, page, baseUrl);
+    }
+
+    @SneakyThrows
+    public static HttpHeaders generateSearchCursorPaginationHttpHeaders(String query, CursorPage page,
+                                                                        String baseUrl) {
+        String escapedQuery = URLEncoder.encode(Objects.toString(query, EMPTY), "UTF-8");
+
+        return generateCursorPagination(QUERY_GET_PARAM + escapedQuery, page, baseUrl);
+    }
+
+    private static HttpHeaders generateCursorPagination(String query, CursorPage page, String baseUrl) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.hasNext()) {
+            Sort.Order order = page.getPageable().getOrder();
+            String uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .queryParam("after", page.getNext())
+                .queryParam("size", page.getPageable().getSize())
+                .queryParam("sort", order.getProperty() + "," + order.getDirection().name().toLowerCase())
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + uri + query + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
     private static HttpHeaders generatePagination(String query, Page page, String baseUrl) {
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-Total-Count", Long.toString(page.getTotalElements()));
@@ -7,6 +7,7 @@ import com.icthh.xm.ms.entity.config.tenant.WebappTenantOverrideConfiguration;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.StopWatch;
+import org.elasticsearch.client.IndicesAdminClient;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
@@ -63,6 +64,16 @@ public abstract class AbstractSpringBootTest {
 
         StopWatch stopWatch = StopWatch.createStarted();
 
+        // index rebuild leaves live index name as alias of versioned index
+        String index = elasticsearchTemplate.getPersistentEntityFor(XmEntity.class).getIndexName();
+        IndicesAdminClient indices = elasticsearchTemplate.getClient().admin().indices();
+        if (indices.prepareAliasesExist(index).get().exists()) {
+            indices.prepareGetAliases(index).get().getAliases().forEach(aliases -> {
+                if (!aliases.value.isEmpty()) {
+                    elasticsearchTemplate.deleteIndex(aliases.key);
+                }
+            });
+        }
         elasticsearchTemplate.deleteIndex(XmEntity.class);
         elasticsearchTemplate.createIndex(XmEntity.class);
         elasticsearchTemplate.putMapping(XmEntity.class);
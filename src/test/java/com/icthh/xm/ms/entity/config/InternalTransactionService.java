@@ -1,5 +1,6 @@
 package com.icthh.xm.ms.entity.config;
 
+import com.icthh.xm.ms.entity.service.ElasticOutboxDispatcher;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -15,11 +16,17 @@ public class InternalTransactionService {
     @Lazy
     private InternalTransactionService self;
 
+    @Autowired
+    private ElasticOutboxDispatcher elasticOutboxDispatcher;
+
     @SneakyThrows
     public <T> T inNestedTransaction(Task<T> task, Runnable setupMethod) {
         FutureTask<T> futureTask = new FutureTask<T>(() -> {
             setupMethod.run();
-            return self.inTransaction(task);
+            T result = self.inTransaction(task);
+            // apply committed changes to elasticsearch index
+            elasticOutboxDispatcher.dispatch();
+            return result;
         });
         Thread t = new Thread(futureTask);
         t.start();
@@ -12,12 +12,16 @@ import com.github.dockerjava.api.model.PortBinding;
 import com.github.dockerjava.api.model.Ports;
 import com.icthh.xm.ms.entity.AbstractUnitTest;
 import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.ClassRule;
@@ -73,5 +77,28 @@ public class AmazonS3TemplateUnitTest extends AbstractUnitTest {
         Assert.assertEquals(content, value);
     }
 
+    @Test
+    public void saveAsyncByPartsAndLoadByLink() throws Exception {
+        ApplicationProperties.Amazon.S3 s3 = applicationProperties.getAmazon().getS3();
+        s3.setBucket("test-bucket-for-async");
+        s3.setMultipartUploadThreshold(5 * 1024 * 1024);
+        s3.setMinimumUploadPartSize(5 * 1024 * 1024);
+        s3Template.createBucketIfNotExist("test-", "bucket_for_ASYNC");
+
+        byte[] content = new byte[6 * 1024 * 1024];
+        new Random().nextBytes(content);
+        File file = File.createTempFile("upload-", ".bin");
+        try {
+            FileUtils.writeByteArrayToFile(file, content);
+            String key = s3Template.saveAsync("asynckey", file, "application/octet-stream").get(1, TimeUnit.MINUTES);
+            Assert.assertEquals("asynckey", key);
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+
+        URL expirableLink = s3Template.createExpirableLink("test-bucket-for-async", "asynckey", 100500L);
+        Assert.assertArrayEquals(content, IOUtils.toByteArray(expirableLink));
+    }
+
 
 }
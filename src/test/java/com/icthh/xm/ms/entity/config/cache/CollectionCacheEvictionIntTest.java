@@ -0,0 +1,106 @@
+package com.icthh.xm.ms.entity.config.cache;
+
+import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.domain.Tag;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.TagRepository;
+import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import com.icthh.xm.ms.entity.service.SeparateTransactionExecutor;
+import com.icthh.xm.ms.entity.web.rest.XmEntityResourceIntTest;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Cached collections of XmEntity with children saved by their own repositories, every step is a separate
+ * transaction as in requests.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+public class CollectionCacheEvictionIntTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private TenantContextHolder tenantContextHolder;
+
+    @Autowired
+    private SeparateTransactionExecutor transactionExecutor;
+
+    @Autowired
+    private XmEntityRepositoryInternal xmEntityRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long xmEntityId;
+
+    @Before
+    public void setup() {
+        TenantContextUtils.setTenant(tenantContextHolder, "RESINTTEST");
+    }
+
+    @After
+    public void tearDown() {
+        if (xmEntityId != null) {
+            transactionExecutor.doInSeparateTransaction(() -> {
+                xmEntityRepository.deleteById(xmEntityId);
+                return xmEntityId;
+            });
+        }
+        tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+    }
+
+    @Test
+    public void collectionIsEvictedWhenChildIsSavedByRepository() {
+        xmEntityId = transactionExecutor.doInSeparateTransaction(
+            () -> xmEntityRepository.save(XmEntityResourceIntTest.createEntity().key(randomUUID().toString()))
+                                    .getId());
+        saveTag("first");
+        findTagNames();
+        long hits = getStatistics().getSecondLevelCacheHitCount();
+        assertThat(findTagNames()).containsExactly("first");
+        assertThat(getStatistics().getSecondLevelCacheHitCount()).isGreaterThan(hits);
+
+        saveTag("second");
+
+        assertThat(findTagNames()).containsExactlyInAnyOrder("first", "second");
+    }
+
+    private void saveTag(String name) {
+        transactionExecutor.doInSeparateTransaction(() -> tagRepository.save(
+            new Tag().typeKey("TEST").name(name).startDate(Instant.now())
+                     .xmEntity(entityManager.getReference(XmEntity.class, xmEntityId))));
+    }
+
+    private Set<String> findTagNames() {
+        return transactionExecutor.doInSeparateTransaction(
+            () -> entityManager.find(XmEntity.class, xmEntityId).getTags().stream().map(Tag::getName)
+                               .collect(toSet()));
+    }
+
+    /**
+     * Statistics are generated in tests, the tenant is a part of cache keys, so regions are not checked by ids.
+     */
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,112 @@
+package com.icthh.xm.ms.entity.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
+import com.icthh.xm.ms.entity.repository.kafka.CacheEvictionProducer;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocalCacheRegionFactoryUnitTest extends AbstractUnitTest {
+
+    private static final String REGION = "com.icthh.xm.ms.entity.domain.XmEntity";
+
+    @Mock
+    private CacheEvictionProducer cacheEvictionProducer;
+    @Mock
+    private DomainDataRegionConfig regionConfig;
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private LocalCacheRegionFactory factory;
+    private DomainDataStorageAccess storage;
+
+    @Before
+    public void before() {
+        when(regionConfig.getRegionName()).thenReturn(REGION);
+        factory = new LocalCacheRegionFactory(applicationProperties, metricRegistry, cacheEvictionProducer);
+        storage = factory.createDomainDataStorageAccess(regionConfig, null);
+    }
+
+    @Test
+    public void tenantsDoNotShareEntries() {
+        storage.putIntoCache(new TenantCacheKey("XM", REGION, 1L), "xm", null);
+
+        assertThat(storage.getFromCache(new TenantCacheKey("XM", REGION, 1L), null)).isEqualTo("xm");
+        assertThat(storage.getFromCache(new TenantCacheKey("DEMO", REGION, 1L), null)).isNull();
+        assertThat(gauge("hits")).isEqualTo(1L);
+        assertThat(gauge("misses")).isEqualTo(1L);
+        assertThat(gauge("size")).isEqualTo(1L);
+    }
+
+    @Test
+    public void removedEntryIsReportedToOtherNodes() {
+        TenantCacheKey key = new TenantCacheKey("XM", REGION, 1L);
+        storage.putIntoCache(key, "xm", null);
+
+        storage.removeFromCache(key, null);
+        storage.clearCache(null);
+
+        assertThat(storage.contains(key)).isFalse();
+        verify(cacheEvictionProducer).evicted(REGION, key);
+        verify(cacheEvictionProducer).evicted(eq(REGION), isNull());
+    }
+
+    @Test
+    public void evictionOfOtherNodeIsApplied() {
+        when(cacheEvictionProducer.getAppName()).thenReturn("entity");
+        when(cacheEvictionProducer.getNodeId()).thenReturn("this-node");
+        storage.putIntoCache(new TenantCacheKey("XM", REGION, 1L), "xm", null);
+        storage.putIntoCache(new TenantCacheKey("XM", REGION, 2L), "xm", null);
+
+        factory.evictFromOtherNode(event("other-node", List.of(Map.of("tenant", "XM", "name", REGION, "id", 1))));
+
+        assertThat(storage.contains(new TenantCacheKey("XM", REGION, 1L))).isFalse();
+        assertThat(storage.contains(new TenantCacheKey("XM", REGION, 2L))).isTrue();
+        verify(cacheEvictionProducer, never()).evicted(any(), any());
+    }
+
+    @Test
+    public void ownEvictionIsIgnored() {
+        when(cacheEvictionProducer.getAppName()).thenReturn("entity");
+        when(cacheEvictionProducer.getNodeId()).thenReturn("this-node");
+        storage.putIntoCache(new TenantCacheKey("XM", REGION, 1L), "xm", null);
+
+        factory.evictFromOtherNode(event("this-node", List.of(Map.of("tenant", "XM", "name", REGION, "id", 1))));
+
+        assertThat(storage.contains(new TenantCacheKey("XM", REGION, 1L))).isTrue();
+    }
+
+    private static SystemEvent event(String node, List<Map<String, Object>> keys) {
+        SystemEvent event = new SystemEvent();
+        event.setEventType(CacheEvictionProducer.EVENT_TYPE);
+        event.setMessageSource("entity");
+        event.setData(Map.of(CacheEvictionProducer.NODE, node, CacheEvictionProducer.REGIONS, Map.of(REGION, keys)));
+        return event;
+    }
+
+    private Object gauge(String name) {
+        Gauge<?> gauge = metricRegistry.getGauges().get("hibernate.cache." + REGION + "." + name);
+        return gauge.getValue();
+    }
+}
@@ -14,6 +14,7 @@ import com.icthh.xm.ms.entity.AbstractSpringBootTest;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.XmEntity_;
 import com.icthh.xm.ms.entity.repository.XmEntityRepository;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import javax.persistence.criteria.CriteriaQuery;
@@ -555,6 +556,101 @@ public class JsonbCriteriaBuilderIntTest extends AbstractSpringBootTest {
         assertEquals(entities.get(0).getId(), secondEntity.getId());
     }
 
+    @Test
+    public void numericRangeJsonbTest() {
+        XmEntity firstEntity = entityRepository.save(createEntity(Map.of(FIRST_DATA_KEY, 9)));
+        XmEntity secondEntity = entityRepository.save(createEntity(Map.of(FIRST_DATA_KEY, 10.5)));
+        entityRepository.saveAll(List.of(createEntity(Map.of(FIRST_DATA_KEY, "100")), createEntity(Map.of())));
+
+        List<XmEntity> entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.numericGreaterThan(root, "$.firstDataKey", 10);
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), secondEntity.getId());
+
+        entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.numericBetween(root, "$.firstDataKey", 1, 9);
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), firstEntity.getId());
+    }
+
+    @Test
+    public void timestampRangeJsonbTest() {
+        XmEntity firstEntity = entityRepository.save(
+            createEntity(Map.of(FIRST_DATA_KEY, "2021-01-02T10:00:00Z")));
+        XmEntity secondEntity = entityRepository.save(
+            createEntity(Map.of(FIRST_DATA_KEY, "2021-01-10T10:00:00+02:00")));
+
+        List<XmEntity> entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.timestampGreaterThan(root, "$.firstDataKey",
+                                                             Instant.parse("2021-01-05T00:00:00Z"));
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), secondEntity.getId());
+
+        entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.timestampLessThanOrEqualTo(root, "$.firstDataKey",
+                                                                   Instant.parse("2021-01-02T10:00:00Z"));
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), firstEntity.getId());
+    }
+
+    @Test
+    public void booleanJsonbTest() {
+        XmEntity firstEntity = entityRepository.save(createEntity(Map.of(FIRST_DATA_KEY, true)));
+        entityRepository.saveAll(List.of(createEntity(Map.of(FIRST_DATA_KEY, false)),
+                                         createEntity(Map.of(FIRST_DATA_KEY, "true"))));
+
+        List<XmEntity> entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.isTrue(root, "$.firstDataKey");
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), firstEntity.getId());
+    }
+
+    @Test
+    public void containsJsonbTest() {
+        XmEntity firstEntity = entityRepository.save(
+            createEntity(Map.of(FIRST_DATA_KEY, Map.of(SECOND_DATA_KEY, FIRST_DATA_VALUE), "other", 1)));
+        entityRepository.save(createEntity(Map.of(FIRST_DATA_KEY, Map.of(SECOND_DATA_KEY, SECOND_DATA_VALUE))));
+
+        List<XmEntity> entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.contains(root,
+                                                 Map.of(FIRST_DATA_KEY, Map.of(SECOND_DATA_KEY, FIRST_DATA_VALUE)));
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), firstEntity.getId());
+    }
+
+    @Test
+    public void existsJsonbTest() {
+        XmEntity firstEntity = entityRepository.save(
+            createEntity(Map.of(FIRST_DATA_KEY, Map.of(SECOND_DATA_KEY, FIRST_DATA_VALUE))));
+        entityRepository.save(createEntity(Map.of(FIRST_DATA_KEY, FIRST_DATA_VALUE)));
+
+        List<XmEntity> entities = entityRepository.findAll(Specification.where((root, query, cb) -> {
+            JsonbCriteriaBuilder jsonbCriteriaBuilder = new JsonbCriteriaBuilder(cb);
+            return jsonbCriteriaBuilder.exists(root, "$.firstDataKey.secondDataKey");
+        }));
+
+        assertEquals(entities.size(), 1);
+        assertEquals(entities.get(0).getId(), firstEntity.getId());
+    }
+
     public static XmEntity createEntity(Map<String, Object> data) {
         return new XmEntity()
             .typeKey("TYPE1")
@@ -11,6 +11,7 @@ import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
 import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
 import com.icthh.xm.ms.entity.security.access.DynamicPermissionCheckService;
 import com.icthh.xm.ms.entity.service.privileges.custom.EntityCustomPrivilegeService;
+import com.icthh.xm.ms.entity.service.TypeSpecIndex;
 import com.icthh.xm.ms.entity.service.XmEntitySpecService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
@@ -47,11 +48,21 @@ public class LocalXmEntitySpecService extends XmEntitySpecService {
 
     @Override
     protected Map<String, TypeSpec> getTypeSpecs() {
+        refreshTenantSpec();
+        return super.getTypeSpecs();
+    }
+
+    @Override
+    protected TypeSpecIndex getTypeSpecIndex() {
+        refreshTenantSpec();
+        return super.getTypeSpecIndex();
+    }
+
+    private void refreshTenantSpec() {
         String tenantName = getRequiredTenantKeyValue(tenantContextHolder);
         String config = getXmEntitySpec(tenantName);
         String key = applicationProperties.getSpecificationPathPattern().replace("{tenantName}", tenantName);
         this.onRefresh(key, config);
-        return super.getTypeSpecs();
     }
 
 }
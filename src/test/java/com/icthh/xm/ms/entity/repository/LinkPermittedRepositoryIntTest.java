@@ -0,0 +1,161 @@
+package com.icthh.xm.ms.entity.repository;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.icthh.xm.commons.permission.service.PermissionCheckService;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.domain.Link;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPage;
+import com.icthh.xm.ms.entity.repository.cursor.CursorPageable;
+import com.icthh.xm.ms.entity.web.rest.XmEntityResourceIntTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.transaction.BeforeTransaction;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+
+public class LinkPermittedRepositoryIntTest extends AbstractSpringBootTest {
+
+    private static final String HIDDEN_KEY = "HIDDEN-" + UUID.randomUUID();
+
+    @Autowired
+    private TenantContextHolder tenantContextHolder;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private EntityManager em;
+
+    private LinkPermittedRepository permittedRepository;
+
+    @BeforeTransaction
+    public void beforeTransaction() {
+        TenantContextUtils.setTenant(tenantContextHolder, "RESINTTEST");
+    }
+
+    @Before
+    public void setup() {
+        PermissionCheckService permissionCheckService = mock(PermissionCheckService.class);
+        when(permissionCheckService.createCondition(any(), eq("XMENTITY.GET_LIST"), any()))
+            .thenReturn("returnObject.key <> '" + HIDDEN_KEY + "'");
+        permittedRepository = new LinkPermittedRepository(permissionCheckService);
+        beanFactory.autowireBean(permittedRepository);
+    }
+
+    @After
+    public void tearDown() {
+        tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+    }
+
+    @Test
+    @Transactional
+    public void graphNodesAreFilteredByPermissionCondition() {
+        XmEntity visible = persistEntity(UUID.randomUUID().toString());
+        XmEntity hidden = persistEntity(HIDDEN_KEY);
+
+        List<Object[]> rows = permittedRepository.findGraphNodes(asList(visible.getId(), hidden.getId()),
+                                                                 asList("key", "name"), "XMENTITY.GET_LIST");
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)).containsExactly(visible.getId(), visible.getKey(), visible.getName());
+    }
+
+    @Test
+    @Transactional
+    public void graphNodesAreNotFilteredWithoutPrivilegeKey() {
+        XmEntity hidden = persistEntity(HIDDEN_KEY);
+
+        List<Object[]> rows = permittedRepository.findGraphNodes(singletonList(hidden.getId()),
+                                                                 singletonList("key"), null);
+
+        assertThat(rows).hasSize(1);
+    }
+
+    @Test
+    @Transactional
+    public void linksArePagedByIdAfterCursor() {
+        XmEntity target = persistEntity(UUID.randomUUID().toString());
+        List<Long> expected = persistLinks(target).stream().map(Link::getId).sorted().collect(toList());
+
+        List<Link> actual = findAllPages(target, Sort.by("id"));
+
+        assertThat(actual).extracting(Link::getId).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @Transactional
+    public void linksArePagedByStartDateAndIdAfterCursor() {
+        XmEntity target = persistEntity(UUID.randomUUID().toString());
+        List<Long> expected = persistLinks(target).stream()
+                                                  .sorted(Comparator.comparing(Link::getStartDate)
+                                                                    .thenComparing(Link::getId).reversed())
+                                                  .map(Link::getId)
+                                                  .collect(toList());
+
+        List<Link> actual = findAllPages(target, Sort.by(Sort.Order.desc("startDate")));
+
+        assertThat(actual).extracting(Link::getId).containsExactlyElementsOf(expected);
+    }
+
+    /**
+     * Walks pages of two links by the next token, every page but the last one has the token.
+     */
+    private List<Link> findAllPages(XmEntity target, Sort sort) {
+        List<Link> links = new ArrayList<>();
+        CursorPage<Link> page = permittedRepository.findAllByTargetIdAndTypeKeyIn(CursorPageable.first(2, sort),
+                                                                                   target.getId(), null, null);
+        links.addAll(page.getContent());
+        while (page.hasNext()) {
+            assertThat(page.getContent()).hasSize(2);
+            page = permittedRepository.findAllByTargetIdAndTypeKeyIn(new CursorPageable(page.getNext(), 2, sort),
+                                                                     target.getId(), null, null);
+            links.addAll(page.getContent());
+        }
+        return links;
+    }
+
+    /**
+     * Five links to the target, two pairs of them have the same start date.
+     */
+    private List<Link> persistLinks(XmEntity target) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Link> links = new ArrayList<>();
+        for (Instant startDate : asList(now, now.minusSeconds(60), now, now.minusSeconds(60), now.plusSeconds(60))) {
+            Link link = new Link().typeKey("TEST_LINK").startDate(startDate)
+                                  .source(persistEntity(UUID.randomUUID().toString())).target(target);
+            em.persist(link);
+            links.add(link);
+        }
+        em.flush();
+        return links;
+    }
+
+    private XmEntity persistEntity(String key) {
+        XmEntity entity = XmEntityResourceIntTest.createEntity().key(key);
+        em.persist(entity);
+        em.flush();
+        return entity;
+    }
+}
@@ -1,15 +1,25 @@
 package com.icthh.xm.ms.entity.repository.backend;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.icthh.xm.commons.exceptions.BusinessException;
 import com.icthh.xm.ms.entity.AbstractUnitTest;
 import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.amazon.AmazonS3Template;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -33,20 +43,85 @@ public class StorageRepositoryUnitTest extends AbstractUnitTest {
     @Before
     public void before() {
         MockitoAnnotations.initMocks(this);
-        storageRepository = new StorageRepository(applicationProperties, amazonS3Template);
-    }
-
-    @Test
-    public void testStore() throws IOException {
         when(applicationProperties.getAmazon()).thenReturn(amazon);
         when(amazon.getAws()).thenReturn(aws);
-        when(aws.getTemplate()).thenReturn("template");
+        when(aws.getTemplate()).thenReturn("template/%s/");
         when(amazon.getS3()).thenReturn(s3);
         when(s3.getBucket()).thenReturn("bucket");
-        storageRepository.store(new MockMultipartFile("test.jpg", "mytest.jpg", "application/json", "trulala".getBytes()), 7);
+        when(s3.getRenditionCacheSize()).thenReturn(10);
+        when(amazonS3Template.saveAsync(any(), any(File.class), any()))
+            .thenReturn(CompletableFuture.completedFuture("etag"));
+        storageRepository = new StorageRepository(applicationProperties, amazonS3Template);
+    }
+
+    @Test
+    public void testStore() {
+        String url = storageRepository.store(new MockMultipartFile("test.jpg", "mytest.jpg", "application/json",
+            "trulala".getBytes()), 7);
+
+        assertThat(url).startsWith("template/bucket/").endsWith(".jpg");
+        verify(amazonS3Template).saveAsync(any(), any(File.class), eq("application/json"));
+        verifyNoMoreInteractions(amazonS3Template);
+    }
+
+    @Test
+    public void testStoreReturnsUrlBeforeUploadCompleted() {
+        when(s3.isAsyncUpload()).thenReturn(true);
+        when(amazonS3Template.saveAsync(any(), any(File.class), any())).thenReturn(new CompletableFuture<>());
+
+        String url = storageRepository.store(new MockMultipartFile("test.txt", "mytest.txt", "text/plain",
+            "trulala".getBytes()), null);
+
+        assertThat(url).startsWith("template/bucket/").endsWith(".txt");
+        verify(amazonS3Template).saveAsync(any(), any(File.class), eq("text/plain"));
+    }
+
+    @Test(expected = BusinessException.class)
+    public void testStoreFailedUpload() {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("Upload failed"));
+        when(amazonS3Template.saveAsync(any(), any(File.class), any())).thenReturn(failed);
+
+        storageRepository.store(new MockMultipartFile("test.txt", "mytest.txt", "text/plain",
+            "trulala".getBytes()), null);
+    }
+
+    @Test
+    public void testStoreRenditionOnce() throws IOException {
+        byte[] image = createImage(200, 100);
+
+        String first = storageRepository.store(new MockMultipartFile("test.png", "a.png", "image/png", image), 50);
+        String second = storageRepository.store(new MockMultipartFile("test.png", "b.png", "image/png", image), 50);
+        String other = storageRepository.store(new MockMultipartFile("test.png", "c.png", "image/png", image), 20);
+
+        assertThat(first).isEqualTo(second).endsWith("-50.png");
+        assertThat(other).endsWith("-20.png");
+        verify(amazonS3Template, times(1)).saveAsync(startsWith(first.substring("template/bucket/".length())),
+            any(File.class), eq("image/png"));
+        verify(amazonS3Template, times(2)).saveAsync(any(), any(File.class), eq("image/png"));
+    }
+
+    @Test
+    public void testStoreRenditionAgainAfterFailedUpload() throws IOException {
+        byte[] image = createImage(100, 100);
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("Upload failed"));
+        when(amazonS3Template.saveAsync(any(), any(File.class), any()))
+            .thenReturn(failed)
+            .thenReturn(CompletableFuture.completedFuture("etag"));
+
+        assertThatThrownBy(() -> storageRepository.store(
+            new MockMultipartFile("test.png", "test.png", "image/png", image), 50))
+            .isInstanceOf(BusinessException.class);
+        String url = storageRepository.store(new MockMultipartFile("test.png", "test.png", "image/png", image), 50);
+
+        assertThat(url).endsWith("-50.png");
+        verify(amazonS3Template, times(2)).saveAsync(any(), any(File.class), eq("image/png"));
+    }
 
-        verify(applicationProperties, times(2)).getAmazon();
-        verify(amazonS3Template).save(any(), any());
-        verifyNoMoreInteractions(applicationProperties, amazonS3Template);
+    private static byte[] createImage(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+        return output.toByteArray();
     }
 }
@@ -0,0 +1,64 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.XmEntityPermittedRepository;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class CursorIteratorUnitTest extends AbstractUnitTest {
+
+    private final CursorSortProperties<XmEntity> sortProperties = XmEntityPermittedRepository.CURSOR_SORT;
+    private final List<XmEntity> rows = LongStream.rangeClosed(1, 7).mapToObj(CursorIteratorUnitTest::entity)
+                                                  .collect(Collectors.toList());
+    private final List<CursorPageable> requests = new ArrayList<>();
+
+    @Test
+    public void iteratesAllRowsPageByPage() {
+        List<Long> ids = new CursorIterator<>(this::loadPage, 3, Sort.by("id")).stream()
+                                                                            .map(XmEntity::getId)
+                                                                            .collect(Collectors.toList());
+
+        assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(requests).hasSize(3);
+        assertThat(requests.get(0).isFirst()).isTrue();
+    }
+
+    @Test
+    public void nextPageIsRequestedOnlyWhenPreviousIsConsumed() {
+        Iterator<XmEntity> iterator = new CursorIterator<>(this::loadPage, 3, Sort.by("id"));
+        assertThat(requests).isEmpty();
+
+        for (int i = 0; i < 3; i++) {
+            iterator.next();
+        }
+        assertThat(requests).hasSize(1);
+
+        iterator.next();
+        assertThat(requests).hasSize(2);
+    }
+
+    private CursorPage<XmEntity> loadPage(CursorPageable pageable) {
+        requests.add(pageable);
+        CursorPosition position = sortProperties.resolve(pageable);
+        List<XmEntity> page = rows.stream()
+                                  .filter(row -> position.isFirst() || row.getId() > position.getId())
+                                  .limit(pageable.getSize() + 1)
+                                  .collect(Collectors.toList());
+        return sortProperties.toPage(page, pageable);
+    }
+
+    private static XmEntity entity(long id) {
+        XmEntity entity = new XmEntity();
+        entity.setId(id);
+        return entity;
+    }
+}
@@ -0,0 +1,84 @@
+package com.icthh.xm.ms.entity.repository.cursor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.icthh.xm.commons.exceptions.BusinessException;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.XmEntityPermittedRepository;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+import java.util.List;
+
+public class CursorSortPropertiesUnitTest extends AbstractUnitTest {
+
+    private final CursorSortProperties<XmEntity> sortProperties = XmEntityPermittedRepository.CURSOR_SORT;
+
+    @Test
+    public void lastPageHasNoNextToken() {
+        CursorPageable pageable = CursorPageable.first(2, Sort.unsorted());
+
+        CursorPage<XmEntity> page = sortProperties.toPage(List.of(entity(1L, "2020-01-01T00:00:00Z")), pageable);
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    public void nextTokenPointsToLastRowOfPage() {
+        Sort sort = Sort.by(Sort.Direction.DESC, "startDate");
+        CursorPageable pageable = CursorPageable.first(2, sort);
+
+        CursorPage<XmEntity> page = sortProperties.toPage(List.of(entity(3L, "2020-01-03T00:00:00Z"),
+                                                                  entity(2L, "2020-01-02T00:00:00Z"),
+                                                                  entity(1L, "2020-01-01T00:00:00Z")), pageable);
+
+        assertThat(page.getContent()).extracting(XmEntity::getId).containsExactly(3L, 2L);
+        assertThat(page.getNext()).matches("[A-Za-z0-9_-]+");
+
+        CursorPosition position = sortProperties.resolve(new CursorPageable(page.getNext(), 2, sort));
+        assertThat(position.getProperty()).isEqualTo("startDate");
+        assertThat(position.isAscending()).isFalse();
+        assertThat(position.getValue()).isEqualTo(Instant.parse("2020-01-02T00:00:00Z"));
+        assertThat(position.getId()).isEqualTo(2L);
+    }
+
+    @Test
+    public void firstPageIsOrderedByIdByDefault() {
+        CursorPosition position = sortProperties.resolve(new CursorPageable("", 10, Sort.unsorted()));
+
+        assertThat(position.isFirst()).isTrue();
+        assertThat(position.isIdOrder()).isTrue();
+        assertThat(position.isAscending()).isTrue();
+    }
+
+    @Test
+    public void tokenOfAnotherSortIsRejected() {
+        CursorPage<XmEntity> page = sortProperties.toPage(List.of(entity(1L, "2020-01-01T00:00:00Z"),
+                                                                  entity(2L, "2020-01-02T00:00:00Z")),
+                                                          CursorPageable.first(1, Sort.by("startDate")));
+
+        assertThatThrownBy(() -> sortProperties.resolve(new CursorPageable(page.getNext(), 1, Sort.by("updateDate"))))
+            .isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    public void notSupportedSortAndBrokenTokenAreRejected() {
+        assertThatThrownBy(() -> sortProperties.resolve(CursorPageable.first(1, Sort.by("description"))))
+            .isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> sortProperties.resolve(new CursorPageable("not a token", 1, Sort.unsorted())))
+            .isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> new CursorPageable(null, CursorPageable.MAX_SIZE + 1, Sort.unsorted()))
+            .isInstanceOf(BusinessException.class);
+    }
+
+    private static XmEntity entity(Long id, String startDate) {
+        XmEntity entity = new XmEntity();
+        entity.setId(id);
+        entity.setStartDate(Instant.parse(startDate));
+        return entity;
+    }
+}
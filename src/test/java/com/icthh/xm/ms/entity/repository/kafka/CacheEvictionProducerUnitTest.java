@@ -0,0 +1,107 @@
+package com.icthh.xm.ms.entity.repository.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.cache.TenantCacheKey;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CacheEvictionProducerUnitTest extends AbstractUnitTest {
+
+    private static final String TOPIC = "system_topic";
+    private static final String REGION = "com.icthh.xm.ms.entity.domain.XmEntity";
+
+    @Mock
+    private KafkaTemplate<String, String> template;
+
+    private CacheEvictionProducer producer;
+
+    @Before
+    public void before() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setKafkaEnabled(true);
+        applicationProperties.setKafkaSystemTopic(TOPIC);
+        producer = new CacheEvictionProducer(template, applicationProperties);
+        ReflectionTestUtils.setField(producer, "appName", "entity");
+    }
+
+    @After
+    public void after() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void evictionsOfTransactionAreSentOnceAfterCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+
+        producer.evicted(REGION, new TenantCacheKey("XM", REGION, 1L));
+        producer.evicted(REGION, new TenantCacheKey("XM", REGION, 1L));
+        producer.evicted(REGION + ".attachments", new TenantCacheKey("XM", REGION + ".attachments", 1L));
+        verify(template, never()).send(anyString(), anyString());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(template).send(eq(TOPIC), content.capture());
+        SystemEvent event = new ObjectMapper().readValue(content.getValue(), SystemEvent.class);
+        assertThat(event.getEventType()).isEqualTo(CacheEvictionProducer.EVENT_TYPE);
+        assertThat(event.getMessageSource()).isEqualTo("entity");
+        assertThat(event.getDataMap().get(CacheEvictionProducer.NODE)).isEqualTo(producer.getNodeId());
+        Map<String, List<?>> regions = (Map<String, List<?>>) event.getDataMap().get(CacheEvictionProducer.REGIONS);
+        assertThat(regions.get(REGION)).hasSize(1);
+        assertThat(regions.get(REGION + ".attachments")).hasSize(1);
+        assertThat(TransactionSynchronizationManager.getResource(producer)).isNull();
+    }
+
+    @Test
+    public void evictionsOfRolledBackTransactionAreNotSent() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        producer.evicted(REGION, new TenantCacheKey("XM", REGION, 1L));
+        TransactionSynchronizationManager.getSynchronizations()
+                                         .forEach(sync -> sync.afterCompletion(
+                                             TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(template, never()).send(anyString(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void regionIsEvictedWhenKeyIsNotPlain() throws Exception {
+        producer.evicted(REGION, new TenantCacheKey("XM", REGION, 1L));
+        producer.evicted(REGION, new Object());
+
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(template, times(2)).send(eq(TOPIC), content.capture());
+        SystemEvent event = new ObjectMapper().readValue(content.getValue(), SystemEvent.class);
+        Map<String, Object> regions = (Map<String, Object>) event.getDataMap().get(CacheEvictionProducer.REGIONS);
+        assertThat(regions).containsEntry(REGION, null);
+    }
+}
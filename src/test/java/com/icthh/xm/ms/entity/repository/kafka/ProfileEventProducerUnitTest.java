@@ -0,0 +1,165 @@
+package com.icthh.xm.ms.entity.repository.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.commons.security.XmAuthenticationContext;
+import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
+import com.icthh.xm.commons.tenant.TenantContext;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantKey;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.domain.Profile;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProfileEventProducerUnitTest extends AbstractUnitTest {
+
+    private static final String TOPIC = "system_queue";
+    private static final String USER_KEY = "f81d3142-a259-4ff8-99e4-be533d68ca99";
+
+    @Mock
+    private KafkaTemplate<String, byte[]> template;
+    @Mock
+    private TenantContextHolder tenantContextHolder;
+    @Mock
+    private TenantContext tenantContext;
+    @Mock
+    private XmAuthenticationContextHolder authContextHolder;
+    @Mock
+    private XmAuthenticationContext authContext;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final SettableListenableFuture<SendResult<String, byte[]>> result = new SettableListenableFuture<>();
+    private ProfileEventProducer producer;
+
+    @Before
+    public void before() {
+        when(tenantContext.getTenantKey()).thenReturn(Optional.of(TenantKey.valueOf("XM")));
+        when(tenantContextHolder.getContext()).thenReturn(tenantContext);
+        when(authContext.getRequiredLogin()).thenReturn("admin");
+        when(authContextHolder.getContext()).thenReturn(authContext);
+        when(template.send(any(ProducerRecord.class))).thenReturn(result);
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setKafkaEnabled(true);
+        applicationProperties.setKafkaSystemQueue(TOPIC);
+        producer = new ProfileEventProducer(template, applicationProperties, tenantContextHolder, authContextHolder,
+                                            metricRegistry);
+        ReflectionTestUtils.setField(producer, "appName", "entity");
+    }
+
+    @After
+    public void after() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void profileEventIsKeyedByTenantAndUser() throws Exception {
+        producer.send(profile(), "UPDATE_PROFILE");
+
+        ArgumentCaptor<ProducerRecord<String, byte[]>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(template).send(record.capture());
+        assertThat(record.getValue().topic()).isEqualTo(TOPIC);
+        assertThat(record.getValue().key()).isEqualTo("XM:" + USER_KEY);
+        SystemEvent event = new ObjectMapper().readValue(record.getValue().value(), SystemEvent.class);
+        assertThat(event.getEventType()).isEqualTo("UPDATE_PROFILE");
+        assertThat(event.getTenantKey()).isEqualTo("XM");
+        assertThat(event.getDataMap().get("userKey")).isEqualTo(USER_KEY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void eventContentIsKeyedAsProfileEvent() {
+        producer.send(producer.createEventJson(profile(), "UPDATE_PROFILE"));
+
+        ArgumentCaptor<ProducerRecord<String, byte[]>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(template).send(record.capture());
+        assertThat(record.getValue().key()).isEqualTo("XM:" + USER_KEY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void eventContentWithoutUserKeyIsKeyedByCurrentUser() {
+        when(authContext.getUserKey()).thenReturn(Optional.of("current-user"));
+
+        producer.send(producer.createEventJson(Map.of("id", 1L), "ACCOUNT_CHANGED"));
+
+        ArgumentCaptor<ProducerRecord<String, byte[]>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(template).send(record.capture());
+        assertThat(record.getValue().key()).isEqualTo("XM:current-user");
+    }
+
+    @Test
+    public void deliveryIsTrackedByCallbacks() {
+        producer.send(profile(), "UPDATE_PROFILE");
+        assertThat(metricRegistry.meter("profile.event.sent").getCount()).isZero();
+
+        result.setException(new IllegalStateException("broker is not available"));
+
+        assertThat(metricRegistry.meter("profile.event.failed").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter("profile.event.sent").getCount()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void transactionalEventsAreSentAfterCommit() {
+        when(template.isTransactional()).thenReturn(true);
+        when(template.executeInTransaction(any())).thenAnswer(
+            invocation -> ((KafkaOperations.OperationsCallback<String, byte[], ?>) invocation.getArgument(0))
+                .doInOperations(template));
+        TransactionSynchronizationManager.initSynchronization();
+
+        producer.send(profile(), "CREATE_PROFILE");
+        producer.send(profile(), "UPDATE_PROFILE");
+        verify(template, never()).send(any(ProducerRecord.class));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        verify(template).executeInTransaction(any());
+        verify(template, times(2)).send(any(ProducerRecord.class));
+        assertThat(TransactionSynchronizationManager.getResource(producer)).isNull();
+    }
+
+    private static Profile profile() {
+        XmEntity entity = new XmEntity();
+        entity.setId(1L);
+        entity.setKey("ACCOUNT-1");
+        Profile profile = new Profile();
+        profile.setUserKey(USER_KEY);
+        profile.setXmentity(entity);
+        return profile;
+    }
+}
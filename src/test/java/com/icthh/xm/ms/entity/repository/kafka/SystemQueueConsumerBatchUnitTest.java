@@ -0,0 +1,107 @@
+package com.icthh.xm.ms.entity.repository.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.codahale.metrics.MetricRegistry;
+import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.lep.api.LepManager;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.domain.kafka.SystemEvent;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SystemQueueConsumerBatchUnitTest extends AbstractUnitTest {
+
+    private static final String TOPIC = "system_queue";
+
+    private SystemQueueConsumer consumer;
+    private SystemConsumerService systemConsumerService;
+    private LepManager lepManager;
+    private MetricRegistry metricRegistry;
+    private Consumer<?, ?> kafkaConsumer;
+    private final Map<String, List<String>> processed = new ConcurrentHashMap<>();
+
+    @Before
+    public void before() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRetry().setMaxAttempts(2);
+        applicationProperties.getRetry().setDelay(1);
+        applicationProperties.getRetry().setMultiplier(1);
+        applicationProperties.getSystemQueue().setThreads(2);
+
+        systemConsumerService = mock(SystemConsumerService.class);
+        lepManager = mock(LepManager.class);
+        metricRegistry = new MetricRegistry();
+        kafkaConsumer = mock(Consumer.class);
+        consumer = new SystemQueueConsumer(mock(TenantContextHolder.class, RETURNS_DEEP_STUBS),
+                                           mock(XmAuthenticationContextHolder.class), systemConsumerService,
+                                           lepManager, applicationProperties, metricRegistry);
+
+        doAnswer(invocation -> {
+            SystemEvent event = invocation.getArgument(0);
+            if ("FAILED".equals(event.getEventType())) {
+                throw new IllegalStateException("event failed");
+            }
+            processed.computeIfAbsent(event.getTenantKey(), key -> new CopyOnWriteArrayList<>())
+                     .add(event.getEventId());
+            return null;
+        }).when(systemConsumerService).acceptSystemEvent(any());
+    }
+
+    @After
+    public void after() {
+        consumer.shutdown();
+    }
+
+    @Test
+    public void processesEventsOfEachTenantInOrder() {
+        consumer.consumeEvents(Arrays.asList(record("A", "1"), record("B", "2"), record("A", "3"),
+                                             record("B", "4"), record("A", "5")), kafkaConsumer);
+
+        assertThat(processed.get("A")).containsExactly("1", "3", "5");
+        assertThat(processed.get("B")).containsExactly("2", "4");
+        verify(lepManager, times(2)).beginThreadContext(any());
+        assertThat(metricRegistry.meter("system.queue.events").getCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void skipsIncorrectAndFailedEvents() {
+        consumer.consumeEvents(Arrays.asList(new ConsumerRecord<>(TOPIC, 0, 0, null, "not a json"),
+                                             record("", "1"),
+                                             record("A", "2", "FAILED"),
+                                             record("A", "3")), kafkaConsumer);
+
+        assertThat(processed).containsOnlyKeys("A");
+        assertThat(processed.get("A")).containsExactly("3");
+        // failed event is retried by application.retry.max-attempts
+        verify(systemConsumerService, times(3)).acceptSystemEvent(any());
+        assertThat(metricRegistry.meter("system.queue.failures").getCount()).isEqualTo(1);
+    }
+
+    private static ConsumerRecord<String, String> record(String tenantKey, String eventId) {
+        return record(tenantKey, eventId, "UPDATE_PROFILE");
+    }
+
+    private static ConsumerRecord<String, String> record(String tenantKey, String eventId, String eventType) {
+        String value = "{\"eventId\":\"" + eventId + "\",\"tenantKey\":\"" + tenantKey
+                       + "\",\"eventType\":\"" + eventType + "\"}";
+        return new ConsumerRecord<>(TOPIC, 0, Long.parseLong(eventId), null, value);
+    }
+}
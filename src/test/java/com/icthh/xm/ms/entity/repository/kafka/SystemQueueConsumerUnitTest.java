@@ -6,11 +6,13 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.codahale.metrics.MetricRegistry;
 import com.icthh.xm.lep.api.LepManager;
 import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
 import com.icthh.xm.ms.entity.EntityApp;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.SecurityBeanOverrideConfiguration;
 import com.icthh.xm.ms.entity.config.tenant.WebappTenantOverrideConfiguration;
 import com.icthh.xm.ms.entity.domain.Profile;
@@ -110,12 +112,16 @@ public class SystemQueueConsumerUnitTest {
     @Autowired
     private LepManager lepManager;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Before
     public void init() {
         TenantContextUtils.setTenant(tenantContextHolder, "TEST");
 
         profileService = mock(ProfileService.class);
-        consumer = new SystemQueueConsumer(tenantContextHolder, authContextHolder, systemConsumerService, lepManager);
+        consumer = new SystemQueueConsumer(tenantContextHolder, authContextHolder, systemConsumerService, lepManager,
+                                           applicationProperties, new MetricRegistry());
     }
 
     @After
@@ -0,0 +1,75 @@
+package com.icthh.xm.ms.entity.repository.search.translator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchPhraseQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.icthh.xm.commons.permission.access.subject.Subject;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryStringQueryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+public class SpelToElasticQueryTranslatorUnitTest extends AbstractUnitTest {
+
+    private SpelToElasticQueryTranslator translator;
+    private Subject subject;
+
+    @Before
+    public void before() {
+        translator = new SpelToElasticQueryTranslator(new SpelToElasticTranslator());
+        subject = mock(Subject.class);
+        when(subject.getLogin()).thenReturn("admin");
+    }
+
+    @Test
+    public void compilesLogicalOperatorsAndComparisons() {
+        QueryBuilder query = translator.translate("#returnObject.typeKey == 'ACCOUNT' "
+                                                  + "&& (#returnObject.data.level > 2 || !(#returnObject.stateKey != 'ACTIVE'))",
+                                                  subject);
+
+        QueryBuilder expected = boolQuery()
+            .filter(matchPhraseQuery("typeKey", "ACCOUNT"))
+            .filter(boolQuery()
+                        .should(rangeQuery("data.level").gt(2))
+                        .should(boolQuery().mustNot(boolQuery().mustNot(matchPhraseQuery("stateKey", "ACTIVE"))))
+                        .minimumShouldMatch(1));
+        assertThat(query).isEqualTo(expected);
+    }
+
+    @Test
+    public void bindsSubjectOnEveryCall() {
+        String spel = "#returnObject.createdBy == #subject.login";
+        assertThat(translator.translate(spel, subject)).isEqualTo(matchPhraseQuery("createdBy", "admin"));
+
+        when(subject.getLogin()).thenReturn("user");
+        assertThat(translator.translate(spel, subject)).isEqualTo(matchPhraseQuery("createdBy", "user"));
+        assertThat(compiledConditions()).hasSize(1);
+    }
+
+    @Test
+    public void literalOnTheLeftSideIsSwapped() {
+        assertThat(translator.translate("10 <= #returnObject.id", subject)).isEqualTo(rangeQuery("id").gte(10));
+    }
+
+    @Test
+    public void notSupportedExpressionFallsBackToQueryString() {
+        QueryBuilder query = translator.translate("#returnObject.key.startsWith('ACC') && #returnObject.id == 1",
+                                                  subject);
+
+        assertThat(query).isInstanceOf(QueryStringQueryBuilder.class);
+        assertThat(translator.translate(" ", subject)).isNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> compiledConditions() {
+        return (Map<String, Object>) ReflectionTestUtils.getField(translator, "conditions");
+    }
+}
@@ -13,6 +13,7 @@ import com.icthh.xm.ms.entity.repository.AttachmentRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepository;
 import com.icthh.xm.ms.entity.repository.search.PermittedSearchRepository;
 import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -40,6 +41,7 @@ public class AttachmentServiceImplUnitTest  extends AbstractUnitTest {
     private StartUpdateDateGenerationStrategy startUpdateDateGenerationStrategy;
     private XmEntityRepository xmEntityRepository;
     private XmEntitySpecService xmEntitySpecService;
+    private ContentService contentService;
 
     @Rule
     public final ExpectedException exception = ExpectedException.none();
@@ -52,9 +54,10 @@ public class AttachmentServiceImplUnitTest  extends AbstractUnitTest {
         startUpdateDateGenerationStrategy = Mockito.mock(StartUpdateDateGenerationStrategy.class);
         xmEntityRepository = Mockito.mock(XmEntityRepository.class);
         xmEntitySpecService = Mockito.mock(XmEntitySpecService.class);
+        contentService = Mockito.mock(ContentService.class);
         attachmentService = new AttachmentService(
             attachmentRepository, permittedRepository, permittedSearchRepository, startUpdateDateGenerationStrategy,
-            xmEntityRepository, xmEntitySpecService
+            xmEntityRepository, xmEntitySpecService, contentService
         );
     }
 
@@ -265,4 +268,32 @@ public class AttachmentServiceImplUnitTest  extends AbstractUnitTest {
         verify(attachmentRepository, Mockito.times(1)).deleteById(1L);
     }
 
+    @Test
+    public void shouldShareStoredContent() {
+        XmEntity e = new XmEntity();
+        e.setTypeKey("T");
+        e.setId(1L);
+
+        byte[] value = "A".getBytes();
+        Attachment a = new Attachment();
+        a.setTypeKey("A.T");
+        a.setId(5L);
+        a.setContent(new Content().value(value));
+        a.setXmEntity(e);
+
+        Content stored = new Content();
+        stored.setId(8L);
+        String checksum = DigestUtils.sha256Hex(value);
+
+        when(xmEntityRepository.findById(1L)).thenReturn(Optional.of(e));
+        when(xmEntitySpecService.findAttachment("T", "A.T")).thenReturn(Optional.of(new AttachmentSpec()));
+        when(contentService.store(checksum, value)).thenReturn(stored);
+        when(attachmentRepository.save(any())).then(invocation -> invocation.getArgument(0));
+
+        Attachment result = attachmentService.save(a);
+
+        assertThat(result.getContent()).isSameAs(stored);
+        assertThat(result.getContentChecksum()).isEqualTo(checksum);
+    }
+
 }
@@ -0,0 +1,133 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.commons.tenant.internal.DefaultTenantContextHolder;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.IndexConfiguration;
+import com.icthh.xm.ms.entity.config.MappingConfiguration;
+import com.icthh.xm.ms.entity.domain.ReindexCheckpoint;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ReindexCheckpointRepository;
+import com.icthh.xm.ms.entity.service.SeparateTransactionExecutor.Task;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElasticIndexRebuildManagerUnitTest extends AbstractUnitTest {
+
+    private static final String MARKER_PREFIX = "REBUILD:xm_xmentity_";
+
+    @InjectMocks
+    private ElasticIndexRebuildManager manager;
+    @Mock
+    private ElasticsearchTemplate elasticsearchTemplate;
+    @Spy
+    private TenantContextHolder tenantContextHolder = new DefaultTenantContextHolder();
+    @Mock
+    private IndexConfiguration indexConfiguration;
+    @Mock
+    private MappingConfiguration mappingConfiguration;
+    @Mock
+    private ReindexCheckpointRepository reindexCheckpointRepository;
+    @Mock
+    private SeparateTransactionExecutor separateTransactionExecutor;
+    @Mock
+    private ElasticsearchPersistentEntity<?> persistentEntity;
+
+    @Before
+    public void before() {
+        TenantContextUtils.setTenant(tenantContextHolder, "XM");
+        doReturn(persistentEntity).when(elasticsearchTemplate).getPersistentEntityFor(XmEntity.class);
+        when(persistentEntity.getIndexName()).thenReturn("xm_xmentity");
+    }
+
+    @After
+    public void after() {
+        tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+    }
+
+    @Test
+    public void startReplacesRebuildMarker() {
+        runSeparateTransactions();
+        List<ReindexCheckpoint> oldMarkers = List.of(marker("xm_xmentity_1000"));
+        when(reindexCheckpointRepository.findAllByScopeStartingWith(MARKER_PREFIX)).thenReturn(oldMarkers);
+
+        manager.start("xm_xmentity_2000", 0L);
+
+        ArgumentCaptor<ReindexCheckpoint> saved = ArgumentCaptor.forClass(ReindexCheckpoint.class);
+        verify(reindexCheckpointRepository).deleteAll(oldMarkers);
+        verify(reindexCheckpointRepository).save(saved.capture());
+        assertThat(saved.getValue().getScope()).isEqualTo(MARKER_PREFIX + "2000");
+    }
+
+    @Test
+    public void changesAreWrittenToIndexOfRebuildStartedByAnotherInstance() {
+        when(reindexCheckpointRepository.findFirstByScopeStartingWithOrderByUpdateDateDesc(MARKER_PREFIX))
+            .thenReturn(Optional.of(marker("xm_xmentity_1000")));
+        when(persistentEntity.getIndexType()).thenReturn("xmentity");
+        XmEntity entity = new XmEntity();
+        entity.setId(1L);
+
+        manager.saveToRebuildIndex(List.of(entity));
+        manager.deleteFromRebuildIndex(List.of(entity));
+
+        verify(elasticsearchTemplate).bulkIndex(anyList());
+        verify(elasticsearchTemplate).delete("xm_xmentity_1000", "xmentity", "1");
+    }
+
+    @Test
+    public void changesAreNotWrittenWithoutRebuildMarker() {
+        when(reindexCheckpointRepository.findFirstByScopeStartingWithOrderByUpdateDateDesc(MARKER_PREFIX))
+            .thenReturn(Optional.empty());
+        XmEntity entity = new XmEntity();
+        entity.setId(1L);
+
+        manager.saveToRebuildIndex(List.of(entity));
+        manager.deleteFromRebuildIndex(List.of(entity));
+
+        verify(elasticsearchTemplate, never()).bulkIndex(anyList());
+        verify(elasticsearchTemplate, never()).delete(any(String.class), any(String.class), any(String.class));
+    }
+
+    @Test
+    public void completeRemovesRebuildMarker() {
+        runSeparateTransactions();
+        ReindexCheckpoint marker = marker("xm_xmentity_1000");
+        when(reindexCheckpointRepository.findFirstByScopeStartingWithOrderByUpdateDateDesc(MARKER_PREFIX))
+            .thenReturn(Optional.of(marker));
+
+        manager.complete();
+
+        verify(reindexCheckpointRepository).delete(marker);
+    }
+
+    private void runSeparateTransactions() {
+        when(separateTransactionExecutor.doInSeparateTransaction(any(Task.class)))
+            .thenAnswer(invocation -> invocation.<Task<?>>getArgument(0).doWork());
+    }
+
+    private static ReindexCheckpoint marker(String index) {
+        return new ReindexCheckpoint("REBUILD:" + index, 0L, 0L, Instant.now());
+    }
+}
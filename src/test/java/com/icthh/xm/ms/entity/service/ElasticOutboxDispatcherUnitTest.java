@@ -0,0 +1,131 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import com.icthh.xm.commons.config.client.repository.TenantListRepository;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.commons.tenant.internal.DefaultTenantContextHolder;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent;
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent.Operation;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ElasticOutboxEventRepository;
+import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
+import com.icthh.xm.ms.entity.service.SeparateTransactionExecutor.Task;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElasticOutboxDispatcherUnitTest extends AbstractUnitTest {
+
+    @Mock
+    private ElasticOutboxEventRepository elasticOutboxEventRepository;
+    @Mock
+    private XmEntityRepositoryInternal xmEntityRepository;
+    @Mock
+    private XmEntitySearchRepository xmEntitySearchRepository;
+    @Mock
+    private ElasticIndexRebuildManager elasticIndexRebuildManager;
+    @Mock
+    private SeparateTransactionExecutor separateTransactionExecutor;
+    @Mock
+    private TenantListRepository tenantListRepository;
+
+    private TenantContextHolder tenantContextHolder = new DefaultTenantContextHolder();
+    private ApplicationProperties applicationProperties = new ApplicationProperties();
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private ElasticOutboxDispatcher dispatcher;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() {
+        TenantContextUtils.setTenant(tenantContextHolder, "XM");
+        applicationProperties.getElasticOutbox().setRetryDelay(60000);
+        when(separateTransactionExecutor.doInSeparateTransaction(any(Task.class)))
+            .then(invocation -> invocation.<Task<?>>getArgument(0).doWork());
+        dispatcher = new ElasticOutboxDispatcher(elasticOutboxEventRepository, xmEntityRepository,
+                                                 xmEntitySearchRepository, elasticIndexRebuildManager,
+                                                 separateTransactionExecutor, tenantContextHolder,
+                                                 tenantListRepository, applicationProperties, metricRegistry);
+    }
+
+    @After
+    public void after() {
+        tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void dispatchAppliesLastOperationOfEntity() {
+        List<ElasticOutboxEvent> events = List.of(event(1L, 1L, Operation.SAVE),
+                                                  event(2L, 2L, Operation.SAVE),
+                                                  event(3L, 1L, Operation.SAVE),
+                                                  event(4L, 2L, Operation.DELETE));
+        XmEntity entity = xmEntity(1L);
+        when(elasticOutboxEventRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(events);
+        when(xmEntityRepository.findAllById(List.of(1L))).thenReturn(List.of(entity));
+
+        int dispatched = dispatcher.dispatch();
+
+        assertThat(dispatched).isEqualTo(4);
+        verify(xmEntitySearchRepository).saveAll(List.of(entity));
+        verify(elasticIndexRebuildManager).saveToRebuildIndex(List.of(entity));
+        ArgumentCaptor<List> deleted = ArgumentCaptor.forClass(List.class);
+        verify(xmEntitySearchRepository).deleteAll(deleted.capture());
+        assertThat(((List<XmEntity>) deleted.getValue()).stream().map(XmEntity::getId).collect(Collectors.toList()))
+            .containsExactly(2L);
+        verify(elasticOutboxEventRepository).deleteInBatch(events);
+    }
+
+    @Test
+    public void failedDispatchIsRetriedAfterDelay() {
+        List<ElasticOutboxEvent> events = List.of(event(1L, 1L, Operation.SAVE));
+        when(elasticOutboxEventRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(events);
+        when(xmEntityRepository.findAllById(List.of(1L))).thenReturn(List.of(xmEntity(1L)));
+        when(xmEntitySearchRepository.saveAll(anyList())).thenThrow(new IllegalStateException("elastic is down"));
+
+        assertThat(dispatcher.dispatch()).isZero();
+        assertThat(dispatcher.dispatch()).isZero();
+
+        verify(xmEntityRepository).findAllById(List.of(1L));
+        verify(elasticOutboxEventRepository, never()).deleteInBatch(anyList());
+        verifyZeroInteractions(elasticIndexRebuildManager);
+        assertThat(metricRegistry.meter("elastic.outbox.failures").getCount()).isEqualTo(1L);
+    }
+
+    private static ElasticOutboxEvent event(Long id, Long entityId, Operation operation) {
+        ElasticOutboxEvent event = new ElasticOutboxEvent();
+        event.setId(id);
+        event.setEntityId(entityId);
+        event.setOperation(operation);
+        event.setCreateDate(Instant.now());
+        return event;
+    }
+
+    private static XmEntity xmEntity(Long id) {
+        XmEntity entity = new XmEntity();
+        entity.setId(id);
+        return entity;
+    }
+}
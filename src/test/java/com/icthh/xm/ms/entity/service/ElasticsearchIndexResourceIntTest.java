@@ -27,6 +27,7 @@ import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
 import com.icthh.xm.lep.api.LepManager;
 import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.IndexConfiguration;
 import com.icthh.xm.ms.entity.config.MappingConfiguration;
 import com.icthh.xm.ms.entity.domain.Attachment;
@@ -36,6 +37,7 @@ import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.ext.IdOrKey;
 import com.icthh.xm.ms.entity.domain.listener.XmEntityElasticSearchListener;
 import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import com.icthh.xm.ms.entity.repository.ReindexCheckpointRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
 import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
 import com.icthh.xm.ms.entity.web.rest.ElasticsearchIndexResource;
@@ -84,6 +86,9 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
     @Autowired
     private XmEntityService xmEntityService;
 
+    @Autowired
+    private ElasticOutboxDispatcher elasticOutboxDispatcher;
+
     @Autowired
     private XmEntityResource xmEntityResource;
 
@@ -135,6 +140,18 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
     @Autowired
     private SeparateTransactionExecutor transactionExecutor;
 
+    @Autowired
+    private ReindexCheckpointRepository reindexCheckpointRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private ElasticIndexRebuildManager elasticIndexRebuildManager;
+
+    @Autowired
+    private ElasticReindexExecutor elasticReindexExecutor;
+
     private ElasticsearchIndexService elasticsearchIndexService;
 
     @Mock
@@ -174,7 +191,12 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
                                                                   tenantContextHolder,
                                                                   mappingConfiguration,
                                                                   indexConfiguration,
-                                                                  executor, entityManager);
+                                                                  executor, entityManager,
+                                                                  reindexCheckpointRepository,
+                                                                  transactionExecutor,
+                                                                  applicationProperties,
+                                                                  elasticIndexRebuildManager,
+                                                                  elasticReindexExecutor);
 
         elasticsearchIndexService.setSelfReference(elasticsearchIndexService);
 
@@ -278,6 +300,7 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
                 .thenReturn(createTypeSpecWith(false));
             return createAndFlush();
         });
+        elasticOutboxDispatcher.dispatch();
 
         mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", id))
                .andExpect(status().isOk())
@@ -297,6 +320,7 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
                 .thenReturn(createTypeSpecWith(true));
             return createAndFlush();
         });
+        elasticOutboxDispatcher.dispatch();
 
         mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", id))
                .andExpect(status().isOk())
@@ -307,6 +331,34 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
         ;
     }
 
+    @SneakyThrows
+    @Test
+    @Transactional
+    public void autoIndexComplexEntityAfterSave() {
+
+        XmEntity saved = transactionExecutor.doInSeparateTransaction(() -> {
+            when(xmEntitySpecServiceMock.getTypeSpecByKeyWithoutFunctionFilter(DEFAULT_TYPE_KEY))
+                .thenReturn(createTypeSpecWith(true));
+            return xmEntityService.save(createEntityComplexIncoming().typeKey(DEFAULT_TYPE_KEY));
+        });
+        Tag tag = saved.getTags().iterator().next();
+        Attachment attachment = saved.getAttachments().iterator().next();
+        Location location = saved.getLocations().iterator().next();
+
+        elasticOutboxDispatcher.dispatch();
+        searchRepository.refresh();
+
+        mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", saved.getId()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.[0].id").value(saved.getId()))
+               .andExpect(jsonPath("$.[0].tags", hasSize(1)))
+               .andExpect(jsonPath("$.[0].tags[0].name").value(tag.getName()))
+               .andExpect(jsonPath("$.[0].attachments", hasSize(1)))
+               .andExpect(jsonPath("$.[0].attachments[0].name").value(attachment.getName()))
+               .andExpect(jsonPath("$.[0].locations", hasSize(1)))
+               .andExpect(jsonPath("$.[0].locations[0].name").value(location.getName()));
+    }
+
     @SneakyThrows
     @Test
     @Transactional
@@ -317,6 +369,7 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
                 .thenReturn(createTypeSpecWith(true, false));
             return createAndFlush();
         });
+        elasticOutboxDispatcher.dispatch();
 
         mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", id))
                .andExpect(status().isOk())
@@ -331,6 +384,7 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
             assertFalse(xmEntityRepositoryInternal.existsById(id));
             return null;
         });
+        elasticOutboxDispatcher.dispatch();
 
         mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", id))
                .andExpect(status().isOk())
@@ -351,6 +405,7 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
                 .thenReturn(createTypeSpecWith(true, true));
             return createAndFlush();
         });
+        elasticOutboxDispatcher.dispatch();
 
         mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", id))
                .andExpect(status().isOk())
@@ -365,6 +420,7 @@ public class ElasticsearchIndexResourceIntTest extends AbstractSpringBootTest {
             assertFalse(xmEntityRepositoryInternal.existsById(id));
             return null;
         });
+        elasticOutboxDispatcher.dispatch();
 
         mockMvc.perform(get("/api/_search/xm-entities?query=id:{id}", id))
                .andExpect(status().isOk())
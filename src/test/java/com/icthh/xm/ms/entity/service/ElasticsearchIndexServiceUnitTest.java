@@ -2,34 +2,51 @@ package com.icthh.xm.ms.entity.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.commons.tenant.internal.DefaultTenantContextHolder;
 import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.IndexConfiguration;
 import com.icthh.xm.ms.entity.config.MappingConfiguration;
+import com.icthh.xm.ms.entity.domain.ReindexCheckpoint;
 import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ReindexCheckpointRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
 import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
+import com.icthh.xm.ms.entity.service.SeparateTransactionExecutor.Task;
 import lombok.SneakyThrows;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.util.ReflectionUtils;
 
 import javax.persistence.EntityManager;
 import java.lang.reflect.Field;
-import java.util.Collections;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ElasticsearchIndexServiceUnitTest extends AbstractUnitTest {
@@ -44,16 +61,33 @@ public class ElasticsearchIndexServiceUnitTest extends AbstractUnitTest {
     private ElasticsearchTemplate elasticsearchTemplate;
     @Mock
     private EntityManager entityManager;
-    @Mock
-    TenantContextHolder tenantContextHolder;
+    @Spy
+    TenantContextHolder tenantContextHolder = new DefaultTenantContextHolder();
     @Mock
     MappingConfiguration mappingConfiguration;
     @Mock
     IndexConfiguration indexConfiguration;
+    @Mock
+    ReindexCheckpointRepository reindexCheckpointRepository;
+    @Mock
+    SeparateTransactionExecutor separateTransactionExecutor;
+    @Spy
+    ApplicationProperties applicationProperties = new ApplicationProperties();
+    @Mock
+    ElasticIndexRebuildManager elasticIndexRebuildManager;
+    @Spy
+    ElasticReindexExecutor reindexExecutor = new ElasticReindexExecutor(new ApplicationProperties());
 
     @Before
     public void before() {
         service.setSelfReference(service);
+        TenantContextUtils.setTenant(tenantContextHolder, "XM");
+    }
+
+    @After
+    public void after() {
+        tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+        reindexExecutor.destroy();
     }
 
     @Test
@@ -65,12 +99,85 @@ public class ElasticsearchIndexServiceUnitTest extends AbstractUnitTest {
         verifyInternal();
     }
 
+    @Test
+    public void reindexAllRebuildsExistingIndex() {
+        XmEntity entity = createEntity(1L);
+        when(elasticIndexRebuildManager.isLiveIndexExists()).thenReturn(true);
+        when(elasticIndexRebuildManager.getIndexVersionPrefix()).thenReturn("xm_xmentity_");
+        when(elasticIndexRebuildManager.createIndexVersion()).thenReturn("xm_xmentity_1000");
+        when(elasticIndexRebuildManager.getIndexVersionDate("xm_xmentity_1000")).thenReturn(Instant.ofEpochMilli(1000));
+        when(xmEntityRepository.streamAllOrderedById(any(), isNull(), eq(1000)))
+            .thenReturn(Stream.of(entity), Stream.empty());
+
+        long reindexed = service.reindexAll();
+
+        assertThat(reindexed).isEqualTo(1L);
+        verify(elasticIndexRebuildManager).start("xm_xmentity_1000", 0L);
+        verify(elasticIndexRebuildManager).index("xm_xmentity_1000", List.of(entity));
+        verify(elasticIndexRebuildManager).swapAlias("xm_xmentity_1000");
+        verify(elasticIndexRebuildManager).complete();
+        verify(elasticsearchTemplate, never()).deleteIndex(XmEntity.class);
+        verify(xmEntitySearchRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    public void reindexAllContinuesInterruptedRebuild() {
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint("ALL:xm_xmentity_1000", 700L, 10L, Instant.now());
+        when(elasticIndexRebuildManager.isLiveIndexExists()).thenReturn(true);
+        when(elasticIndexRebuildManager.getIndexVersionPrefix()).thenReturn("xm_xmentity_");
+        when(elasticIndexRebuildManager.isIndexExists("xm_xmentity_1000")).thenReturn(true);
+        when(elasticIndexRebuildManager.getIndexVersionDate("xm_xmentity_1000")).thenReturn(Instant.ofEpochMilli(1000));
+        when(reindexCheckpointRepository.findFirstByScopeStartingWithOrderByUpdateDateDesc("ALL:xm_xmentity_"))
+            .thenReturn(Optional.of(checkpoint));
+        when(reindexCheckpointRepository.findById("ALL:xm_xmentity_1000")).thenReturn(Optional.of(checkpoint));
+        when(xmEntityRepository.streamAllOrderedById(null, 700L, 1000)).thenReturn(Stream.of(createEntity(701L)));
+        when(xmEntityRepository.streamAllOrderedById(notNull(), isNull(), eq(1000))).thenReturn(Stream.empty());
+
+        long reindexed = service.reindexAll();
+
+        assertThat(reindexed).isEqualTo(1L);
+        verify(elasticIndexRebuildManager, never()).createIndexVersion();
+        verify(elasticIndexRebuildManager).start("xm_xmentity_1000", 10L);
+        verify(elasticIndexRebuildManager).swapAlias("xm_xmentity_1000");
+    }
+
+    @Test
+    public void reindexSendsBulksInParallel() {
+        applicationProperties.getElasticReindex().setBulkSize(2);
+        when(xmEntityRepository.streamAllOrderedById(null, null, 1000))
+            .thenReturn(LongStream.rangeClosed(1, 5).mapToObj(ElasticsearchIndexServiceUnitTest::createEntity));
+
+        long reindexed = service.reindexAll();
+
+        assertThat(reindexed).isEqualTo(5L);
+        verify(xmEntitySearchRepository, times(3)).saveAll(anyList());
+        verify(separateTransactionExecutor, atLeastOnce()).doInSeparateTransaction(any(Task.class));
+    }
+
+    @Test
+    public void typeKeyReindexIsSkippedWhileFullReindexIsRunning() {
+        when(xmEntityRepository.streamAllOrderedById(null, null, 1000)).thenAnswer(invocation -> {
+            long concurrentReindexed = CompletableFuture.supplyAsync(() -> {
+                TenantContextUtils.setTenant(tenantContextHolder, "XM");
+                try {
+                    return service.reindexByTypeKey("TYPE");
+                } finally {
+                    tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+                }
+            }).join();
+            assertThat(concurrentReindexed).isZero();
+            return Stream.of(createEntity(1L));
+        });
+
+        assertThat(service.reindexAll()).isEqualTo(1L);
+        verify(xmEntityRepository, never()).streamAllOrderedById(notNull(), any(), anyInt());
+    }
+
     @SneakyThrows
     private void prepareInternal() {
         Class<XmEntity> entityClass = XmEntity.class;
-        when(xmEntityRepository.count(null)).thenReturn(10L);
-        when(xmEntityRepository.findAll(null, PageRequest.of(0, 100))).thenReturn(
-            new PageImpl<>(Collections.singletonList(createObject(entityClass))));
+        when(xmEntityRepository.streamAllOrderedById(null, null, 1000))
+            .thenReturn(Stream.of(createObject(entityClass)));
     }
 
     @SneakyThrows
@@ -83,14 +190,18 @@ public class ElasticsearchIndexServiceUnitTest extends AbstractUnitTest {
         verify(elasticsearchTemplate).createIndex(entityClass);
         verify(elasticsearchTemplate).putMapping(entityClass);
 
-        verify(xmEntityRepository, times(4)).count(any());
-
         ArgumentCaptor<List> list = ArgumentCaptor.forClass(List.class);
         verify(xmEntitySearchRepository).saveAll(list.capture());
 
         assertThat(list.getValue()).containsExactly(createObject(entityClass));
     }
 
+    private static XmEntity createEntity(long id) {
+        XmEntity entity = new XmEntity();
+        entity.setId(id);
+        return entity;
+    }
+
     @SneakyThrows
     private static <T> T createObject(Class<T> entityClass) {
         T instance = entityClass.newInstance();
@@ -0,0 +1,208 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.domain.Attachment;
+import com.icthh.xm.ms.entity.domain.Comment;
+import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.domain.Link;
+import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.XmEntityRepository;
+import com.icthh.xm.ms.entity.service.dto.AttachmentExportDto;
+import com.icthh.xm.ms.entity.service.dto.CommentExportDto;
+import com.icthh.xm.ms.entity.service.dto.LinkExportDto;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import javax.persistence.EntityManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityImportSessionUnitTest extends AbstractUnitTest {
+
+    @Mock
+    private XmEntityRepository entityRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ContentService contentService;
+
+    private final List<Object> persisted = new ArrayList<>();
+    private long sequence = 1000;
+
+    private EntityImportSession session;
+
+    @Before
+    public void before() {
+        when(entityRepository.save(any(XmEntity.class))).then(invocation -> {
+            XmEntity entity = invocation.getArgument(0);
+            entity.setId(++sequence);
+            return entity;
+        });
+        session = new EntityImportSession(entityRepository, entityManager, contentService);
+    }
+
+    @Test
+    public void commentTreeIsImportedWhateverOrderOfComments() {
+        mockPersist();
+        mockReferences();
+
+        session.importSection(EntityImportSession.ENTITIES, List.of(xmEntity(1L)).iterator());
+        session.importSection(EntityImportSession.COMMENTS, List.of(comment(13L, 12L), comment(12L, 11L),
+                                                                    comment(11L, null), comment(14L, 99L))
+                                                                .iterator());
+        session.finish();
+
+        Map<String, Comment> comments = persisted.stream()
+                                                 .filter(Comment.class::isInstance)
+                                                 .map(Comment.class::cast)
+                                                 .collect(Collectors.toMap(Comment::getMessage, c -> c));
+        assertThat(comments.keySet()).containsExactlyInAnyOrder("11", "12", "13");
+        assertThat(comments.get("11").getComment()).isNull();
+        assertThat(comments.get("12").getComment().getId()).isEqualTo(comments.get("11").getId());
+        assertThat(comments.get("13").getComment().getId()).isEqualTo(comments.get("12").getId());
+        assertThat(comments.get("11").getXmEntity().getId()).isEqualTo(1001L);
+        assertThat(session.getSkipped()).isEqualTo(1L);
+    }
+
+    @Test
+    public void attachmentsWaitForContents() {
+        mockPersist();
+        mockReferences();
+        AttachmentExportDto attachment = new AttachmentExportDto();
+        attachment.setId(20L);
+        attachment.setEntityId(1L);
+        attachment.setContentId(30L);
+        Content content = new Content();
+        content.setId(30L);
+        content.setValue(new byte[] {1});
+
+        session.importSection(EntityImportSession.ENTITIES, List.of(xmEntity(1L)).iterator());
+        session.importSection(EntityImportSession.ATTACHMENTS, List.of(attachment).iterator());
+        assertThat(persisted).isEmpty();
+        session.importSection(EntityImportSession.CONTENTS, List.of(content).iterator());
+        session.finish();
+
+        assertThat(persisted).hasSize(2);
+        Content created = (Content) persisted.get(0);
+        assertThat(created.getChecksum()).isEqualTo(DigestUtils.sha256Hex(content.getValue()));
+        Attachment saved = (Attachment) persisted.get(1);
+        assertThat(saved.getContent().getId()).isEqualTo(created.getId()).isNotEqualTo(30L);
+        assertThat(saved.getXmEntity().getId()).isEqualTo(1001L);
+    }
+
+    @Test
+    public void contentIsSharedByChecksum() {
+        mockPersist();
+        mockReferences();
+        Content stored = new Content();
+        stored.setId(500L);
+        when(contentService.acquire(anyString())).thenReturn(Optional.of(stored));
+        Content content = new Content();
+        content.setId(30L);
+        content.setValue(new byte[] {1});
+
+        session.importSection(EntityImportSession.ENTITIES, List.of(xmEntity(1L)).iterator());
+        session.importSection(EntityImportSession.CONTENTS, List.of(content).iterator());
+        session.importSection(EntityImportSession.ATTACHMENTS, List.of(attachment(20L, 30L), attachment(21L, 30L))
+                                                                   .iterator());
+        session.finish();
+
+        verify(contentService).acquire(DigestUtils.sha256Hex(content.getValue()));
+        assertThat(persisted).noneMatch(Content.class::isInstance);
+        assertThat(persisted).filteredOn(Attachment.class::isInstance)
+                             .extracting(attachment -> ((Attachment) attachment).getContent().getId())
+                             .containsExactly(500L, 500L);
+    }
+
+    @Test
+    public void linkWithoutImportedTargetIsSkipped() {
+        mockPersist();
+        mockReferences();
+        LinkExportDto link = new LinkExportDto();
+        link.setId(40L);
+        link.setSourceId(1L);
+        link.setTargetId(2L);
+
+        session.importSection(EntityImportSession.LINKS, List.of(link).iterator());
+        session.importSection(EntityImportSession.ENTITIES, List.of(xmEntity(1L)).iterator());
+        session.finish();
+
+        assertThat(persisted).noneMatch(Link.class::isInstance);
+        assertThat(session.getImported()).isEqualTo(1L);
+        assertThat(session.getSkipped()).isEqualTo(1L);
+    }
+
+    @Test
+    public void rowsAreFlushedInBatches() {
+        session.importSection(EntityImportSession.ENTITIES,
+                              LongStream.rangeClosed(1, 120).mapToObj(this::xmEntity).iterator());
+        session.finish();
+
+        verify(entityManager, times(3)).flush();
+        verify(entityManager, times(120)).detach(any(XmEntity.class));
+        verify(entityManager, never()).clear();
+        assertThat(session.getImported()).isEqualTo(120L);
+    }
+
+    private void mockPersist() {
+        doAnswer(invocation -> {
+            Object entity = invocation.getArgument(0);
+            ReflectionTestUtils.setField(entity, "id", ++sequence);
+            persisted.add(entity);
+            return null;
+        }).when(entityManager).persist(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockReferences() {
+        when(entityManager.getReference(any(Class.class), anyLong())).then(invocation -> {
+            Object reference = invocation.<Class<?>>getArgument(0).getDeclaredConstructor().newInstance();
+            ReflectionTestUtils.setField(reference, "id", invocation.getArgument(1));
+            return reference;
+        });
+    }
+
+    private static AttachmentExportDto attachment(Long id, Long contentId) {
+        AttachmentExportDto attachment = new AttachmentExportDto();
+        attachment.setId(id);
+        attachment.setEntityId(1L);
+        attachment.setContentId(contentId);
+        return attachment;
+    }
+
+    private XmEntity xmEntity(long id) {
+        XmEntity entity = new XmEntity();
+        entity.setId(id);
+        entity.setTypeKey("TYPE");
+        return entity;
+    }
+
+    private static CommentExportDto comment(Long id, Long parentId) {
+        CommentExportDto comment = new CommentExportDto();
+        comment.setId(id);
+        comment.setCommentId(parentId);
+        comment.setEntityId(1L);
+        comment.setMessage(String.valueOf(id));
+        return comment;
+    }
+}
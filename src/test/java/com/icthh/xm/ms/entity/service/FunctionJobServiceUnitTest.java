@@ -0,0 +1,209 @@
+package com.icthh.xm.ms.entity.service;
+
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icthh.xm.commons.config.client.repository.TenantListRepository;
+import com.icthh.xm.commons.exceptions.BusinessException;
+import com.icthh.xm.commons.security.XmAuthenticationContext;
+import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
+import com.icthh.xm.commons.tenant.PrivilegedTenantContext;
+import com.icthh.xm.commons.tenant.Tenant;
+import com.icthh.xm.commons.tenant.TenantContext;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantKey;
+import com.icthh.xm.lep.api.LepManager;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.domain.FunctionContext;
+import com.icthh.xm.ms.entity.domain.FunctionJobRecord;
+import com.icthh.xm.ms.entity.repository.FunctionJobRepository;
+import com.icthh.xm.ms.entity.service.dto.FunctionJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+public class FunctionJobServiceUnitTest extends AbstractUnitTest {
+
+    private final Map<String, FunctionJobRecord> records = new ConcurrentHashMap<>();
+    private FunctionService functionService;
+    private FunctionJobRepository functionJobRepository;
+    private TenantContextHolder tenantContextHolder;
+    private XmAuthenticationContextHolder authContextHolder;
+    private ApplicationProperties applicationProperties;
+    private FunctionJobService functionJobService;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() {
+        TenantContext tenantContext = mock(TenantContext.class);
+        when(tenantContext.getTenantKey()).thenReturn(Optional.of(TenantKey.valueOf("XM")));
+        PrivilegedTenantContext privilegedContext = mock(PrivilegedTenantContext.class);
+        when(privilegedContext.execute(any(Tenant.class), any(Supplier.class)))
+            .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+        tenantContextHolder = mock(TenantContextHolder.class);
+        when(tenantContextHolder.getContext()).thenReturn(tenantContext);
+        when(tenantContextHolder.getPrivilegedContext()).thenReturn(privilegedContext);
+
+        XmAuthenticationContext authContext = mock(XmAuthenticationContext.class);
+        when(authContext.getUserKey()).thenReturn(Optional.of("user"));
+        authContextHolder = mock(XmAuthenticationContextHolder.class);
+        when(authContextHolder.getContext()).thenReturn(authContext);
+
+        functionJobRepository = mock(FunctionJobRepository.class);
+        when(functionJobRepository.save(any(FunctionJobRecord.class))).thenAnswer(invocation -> {
+            FunctionJobRecord job = invocation.getArgument(0);
+            records.put(job.getId(), job);
+            return job;
+        });
+        when(functionJobRepository.findById(any()))
+            .thenAnswer(invocation -> Optional.ofNullable(records.get(invocation.<String>getArgument(0))));
+
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getFunctionAsync().setThreads(2);
+        applicationProperties.getFunctionAsync().setMaxPerFunction(1);
+
+        functionService = mock(FunctionService.class);
+        functionJobService = createService(mock(TenantListRepository.class));
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        functionJobService.destroy();
+    }
+
+    @Test
+    public void functionIsExecutedInBackground() throws Exception {
+        FunctionContext context = dataResult();
+        context.setId(5L);
+        when(functionService.execute(eq("REPORT"), anyMap())).thenReturn(context);
+
+        FunctionJob job = functionJobService.submit("REPORT", emptyMap());
+
+        assertThat(awaitFinished(job.getId()).getState()).isEqualTo(FunctionJob.State.COMPLETED);
+        assertThat(functionJobService.findJob(job.getId()).get().getFunctionContextId()).isEqualTo(5L);
+        FunctionJobRecord result = functionJobService.findResult(job.getId()).get();
+        assertThat(result.getResultContentType()).isEqualTo("application/json;charset=UTF-8");
+        assertThat(new String(result.getResult(), StandardCharsets.UTF_8)).isEqualTo("\"report\"");
+    }
+
+    @Test
+    public void jobIsVisibleThroughAnotherInstance() throws Exception {
+        when(functionService.execute(eq("REPORT"), anyMap())).thenReturn(dataResult());
+
+        FunctionJob job = functionJobService.submit("REPORT", emptyMap());
+        awaitFinished(job.getId());
+
+        FunctionJobService otherInstance = createService(mock(TenantListRepository.class));
+        try {
+            assertThat(otherInstance.findJob(job.getId()).get().getState()).isEqualTo(FunctionJob.State.COMPLETED);
+            assertThat(otherInstance.findResult(job.getId())).isPresent();
+        } finally {
+            otherInstance.destroy();
+        }
+    }
+
+    @Test
+    public void jobOfAnotherUserIsNotVisible() throws Exception {
+        when(functionService.execute(eq("REPORT"), anyMap())).thenReturn(dataResult());
+
+        FunctionJob job = functionJobService.submit("REPORT", emptyMap());
+        awaitFinished(job.getId());
+        records.get(job.getId()).setUserKey("other");
+
+        assertThat(functionJobService.findJob(job.getId())).isEmpty();
+        assertThat(functionJobService.findResult(job.getId())).isEmpty();
+    }
+
+    @Test
+    public void expiredJobsAreRemovedForEachTenant() {
+        functionJobService.destroy();
+        TenantListRepository tenantListRepository = mock(TenantListRepository.class);
+        when(tenantListRepository.getTenants()).thenReturn(Set.of("xm"));
+        functionJobService = createService(tenantListRepository);
+        applicationProperties.getFunctionAsync().setResultTtlSeconds(60);
+
+        Instant before = Instant.now().minusSeconds(60);
+        functionJobService.removeExpiredJobs();
+
+        ArgumentCaptor<Instant> finishedBefore = ArgumentCaptor.forClass(Instant.class);
+        verify(functionJobRepository).deleteFinishedBefore(finishedBefore.capture());
+        assertThat(finishedBefore.getValue()).isBetween(before, Instant.now().minusSeconds(60));
+    }
+
+    @Test
+    public void failedFunctionIsReportedByJob() throws Exception {
+        when(functionService.execute(eq("REPORT"), anyMap())).thenThrow(new IllegalArgumentException("no spec"));
+
+        FunctionJob job = functionJobService.submit("REPORT", emptyMap());
+
+        FunctionJob finished = awaitFinished(job.getId());
+        assertThat(finished.getState()).isEqualTo(FunctionJob.State.FAILED);
+        assertThat(finished.getError()).isEqualTo("no spec");
+        assertThat(functionJobService.findResult(job.getId())).isEmpty();
+    }
+
+    @Test
+    public void callsOverFunctionLimitAreRejected() throws Exception {
+        when(functionService.execute(any(), anyMap())).thenAnswer(invocation -> {
+            release.await();
+            return new FunctionContext();
+        });
+
+        FunctionJob first = functionJobService.submit("REPORT", emptyMap());
+        assertThatThrownBy(() -> functionJobService.submit("REPORT", emptyMap()))
+            .isInstanceOf(BusinessException.class);
+        FunctionJob other = functionJobService.submit("EXPORT", emptyMap());
+
+        release.countDown();
+        awaitFinished(first.getId());
+        awaitFinished(other.getId());
+        // limit is released with completion
+        assertThat(functionJobService.submit("REPORT", emptyMap()).getState()).isNotNull();
+    }
+
+    private static FunctionContext dataResult() {
+        FunctionContext context = new FunctionContext().data(Map.of("data", "report"));
+        context.setOnlyData(true);
+        return context;
+    }
+
+    private FunctionJobService createService(TenantListRepository tenantListRepository) {
+        return new FunctionJobService(functionService, tenantContextHolder, authContextHolder,
+                                      mock(LepManager.class), new MetricRegistry(), functionJobRepository,
+                                      new SeparateTransactionExecutor(), tenantListRepository, new ObjectMapper(),
+                                      applicationProperties);
+    }
+
+    private FunctionJob awaitFinished(String jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            FunctionJob job = functionJobService.findJob(jobId).orElseThrow(IllegalStateException::new);
+            if (job.isFinished()) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job " + jobId + " is not finished");
+    }
+}
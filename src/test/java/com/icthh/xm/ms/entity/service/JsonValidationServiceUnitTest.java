@@ -0,0 +1,77 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.config.ApplicationProperties.JsonValidation.Engine;
+import com.icthh.xm.ms.entity.service.JsonValidationService.InvalidJsonException;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+public class JsonValidationServiceUnitTest extends AbstractUnitTest {
+
+    private static final String SCHEMA = "{\"type\": \"object\", \"properties\": {"
+        + "\"name\": {\"type\": \"string\"}, \"count\": {\"type\": \"integer\"}}, \"required\": [\"name\"]}";
+
+    @Test
+    public void validDataPassesWithBothEngines() {
+        for (Engine engine : Engine.values()) {
+            ProcessingReport report = service(engine).validateJson(Map.of("name", "entity", "count", 1), SCHEMA);
+            assertThat(report.isSuccess()).as(engine.name()).isTrue();
+        }
+    }
+
+    @Test
+    public void invalidDataFailsWithBothEngines() {
+        for (Engine engine : Engine.values()) {
+            ProcessingReport report = service(engine).validateJson(Map.of("count", "one"), SCHEMA);
+            assertThat(report.isSuccess()).as(engine.name()).isFalse();
+            assertThatThrownBy(() -> service(engine).assertJson(Map.of("count", "one"), SCHEMA))
+                .as(engine.name())
+                .isInstanceOf(InvalidJsonException.class);
+        }
+    }
+
+    @Test
+    public void fgeSchemaIsCachedWithBothEngines() throws Exception {
+        for (Engine engine : Engine.values()) {
+            JsonValidationService service = service(engine);
+            JsonSchema schema = service.getJsonSchema(SCHEMA);
+            assertThat(service.getJsonSchema(SCHEMA)).as(engine.name()).isSameAs(schema);
+            assertThat(schema.validate(new ObjectMapper().valueToTree(Map.of("count", 1))).isSuccess())
+                .as(engine.name()).isFalse();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void schemaIsCompiledOncePerSchemaText() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getJsonValidation().setSchemaCacheSize(2);
+        JsonValidationService service = new JsonValidationService(new ObjectMapper(), properties);
+        Map<String, Object> compiledSchemas = (Map<String, Object>) ReflectionTestUtils.getField(service,
+                                                                                                 "compiledSchemas");
+
+        service.validateJson(Map.of("name", "first"), SCHEMA);
+        Object compiled = compiledSchemas.get(SCHEMA);
+        service.validateJson(Map.of("name", "second"), SCHEMA);
+        assertThat(compiledSchemas.get(SCHEMA)).isSameAs(compiled);
+
+        service.validateJson(Map.of(), "{\"type\": \"object\"}");
+        service.validateJson(Map.of(), "{\"type\": \"object\", \"required\": []}");
+        assertThat(compiledSchemas).hasSize(1).doesNotContainKey(SCHEMA);
+    }
+
+    private static JsonValidationService service(Engine engine) {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getJsonValidation().setEngine(engine);
+        return new JsonValidationService(new ObjectMapper(), properties);
+    }
+}
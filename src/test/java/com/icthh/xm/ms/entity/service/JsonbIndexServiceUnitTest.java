@@ -0,0 +1,88 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.domain.spec.IndexSpec;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import com.icthh.xm.ms.entity.service.dto.JsonbIndexStatus.Index;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class JsonbIndexServiceUnitTest extends AbstractUnitTest {
+
+    @Test
+    public void testPlanBtreeIndex() {
+        List<Index> plan = JsonbIndexService.planIndexes(Collections.singletonList(
+            type("ACCOUNT", index(IndexSpec.Type.BTREE, false, "$.name", "$.address.city"))));
+
+        assertThat(plan).hasSize(1);
+        Index index = plan.get(0);
+        assertThat(index.getName()).startsWith(JsonbIndexService.INDEX_PREFIX).hasSize(31);
+        assertThat(index.getTypeKey()).isEqualTo("ACCOUNT");
+        assertThat(index.getOperation()).isEqualTo(Index.Operation.CREATE);
+        assertThat(index.getState()).isEqualTo(Index.State.PLANNED);
+        assertThat(index.getSql()).isEqualTo("create index concurrently if not exists " + index.getName()
+                                             + " on xm_entity ((jsonb_path_query_first(data, '$.name'::jsonpath)),"
+                                             + " (jsonb_path_query_first(data, '$.address.city'::jsonpath)))");
+    }
+
+    @Test
+    public void testPlanTypedBtreeIndex() {
+        IndexSpec spec = index(IndexSpec.Type.BTREE, false, "$.amount");
+        spec.setValueType(IndexSpec.ValueType.NUMERIC);
+        List<Index> plan = JsonbIndexService.planIndexes(Collections.singletonList(type("ORDER", spec)));
+
+        assertThat(plan).hasSize(1);
+        assertThat(plan.get(0).getSql()).isEqualTo(
+            "create index concurrently if not exists " + plan.get(0).getName() + " on xm_entity"
+            + " (((jsonb_path_query_first(data, '$.amount ? (@.type() == \"number\")'::jsonpath) #>> '{}')::numeric))");
+    }
+
+    @Test
+    public void testPlanPartialGinIndex() {
+        List<Index> plan = JsonbIndexService.planIndexes(Collections.singletonList(
+            type("ACCOUNT.USER'S", index(IndexSpec.Type.GIN, true))));
+
+        assertThat(plan).hasSize(1);
+        assertThat(plan.get(0).getSql()).isEqualTo("create index concurrently if not exists " + plan.get(0).getName()
+                                                   + " on xm_entity using gin (data jsonb_path_ops)"
+                                                   + " where type_key = 'ACCOUNT.USER''S'");
+    }
+
+    @Test
+    public void testPlanSameIndexOnce() {
+        List<Index> plan = JsonbIndexService.planIndexes(Arrays.asList(
+            type("ACCOUNT", index(IndexSpec.Type.BTREE, false, "$.name")),
+            type("ACCOUNT.USER", index(IndexSpec.Type.BTREE, false, "$.name"),
+                 index(IndexSpec.Type.BTREE, true, "$.name"))));
+
+        assertThat(plan).hasSize(2);
+        assertThat(plan).extracting(Index::getTypeKey).containsExactly("ACCOUNT", "ACCOUNT.USER");
+        assertThat(plan.get(0).getName()).isNotEqualTo(plan.get(1).getName());
+    }
+
+    @Test
+    public void testIgnoreBtreeIndexWithoutPaths() {
+        List<Index> plan = JsonbIndexService.planIndexes(Arrays.asList(
+            type("ACCOUNT", index(IndexSpec.Type.BTREE, false)),
+            type("PRODUCT")));
+
+        assertThat(plan).isEmpty();
+    }
+
+    private static TypeSpec type(String key, IndexSpec... indexes) {
+        return TypeSpec.builder().key(key).indexes(indexes.length == 0 ? null : Arrays.asList(indexes)).build();
+    }
+
+    private static IndexSpec index(IndexSpec.Type type, boolean partial, String... paths) {
+        IndexSpec index = new IndexSpec();
+        index.setType(type);
+        index.setPartial(partial);
+        index.setPaths(paths.length == 0 ? null : Arrays.asList(paths));
+        return index;
+    }
+}
@@ -0,0 +1,129 @@
+package com.icthh.xm.ms.entity.service;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.icthh.xm.commons.exceptions.BusinessException;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.repository.LinkPermittedRepository;
+import com.icthh.xm.ms.entity.service.dto.LinkGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class LinkServiceGraphUnitTest extends AbstractUnitTest {
+
+    /**
+     * Links id, source, target: 1 -> 2 -> 3 -> 1, 2 -> 4.
+     */
+    private static final long[][] LINKS = {{10, 1, 2}, {11, 2, 3}, {12, 3, 1}, {13, 2, 4}};
+
+    private LinkPermittedRepository permittedRepository;
+    private ApplicationProperties applicationProperties;
+    private LinkService linkService;
+    private Set<Long> hiddenNodes = new HashSet<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() {
+        permittedRepository = mock(LinkPermittedRepository.class);
+        when(permittedRepository.findGraphNodes(anyCollection(), anyList(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> !hiddenNodes.contains(id)).map(id -> new Object[]{id, "KEY-" + id}).collect(toList());
+        });
+        when(permittedRepository.findGraphEdges(anyCollection(), anyBoolean(), any(), anyInt(), any()))
+            .thenAnswer(invocation -> {
+                Collection<Long> ids = invocation.getArgument(0);
+                boolean outgoing = invocation.getArgument(1);
+                int maxResults = invocation.getArgument(3);
+                return asList(LINKS).stream()
+                                    .filter(link -> ids.contains(outgoing ? link[1] : link[2]))
+                                    .map(link -> new Object[]{link[0], "LINKED", link[1], link[2]})
+                                    .limit(maxResults)
+                                    .collect(toList());
+            });
+
+        applicationProperties = new ApplicationProperties();
+        linkService = new LinkService(null, permittedRepository, null, null, null, null, applicationProperties);
+    }
+
+    @Test
+    public void cycleIsTraversedOnce() {
+        LinkGraph graph = linkService.findGraph(1L, emptySet(), LinkGraph.Direction.OUTGOING, 5,
+                                                singletonList("key"), null, null);
+
+        assertThat(graph.getNodes()).extracting(node -> node.get("id")).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(graph.getNodes().get(0)).containsEntry("key", "KEY-1");
+        assertThat(graph.getEdges()).extracting(LinkGraph.Edge::getId).containsExactly(10L, 11L, 13L, 12L);
+        assertThat(graph.isTruncated()).isFalse();
+        // levels 1, 2 and 3, the last one has no new nodes
+        verify(permittedRepository, times(3)).findGraphEdges(anyCollection(), anyBoolean(), any(), anyInt(), any());
+    }
+
+    @Test
+    public void notPermittedNodeIsNotTraversed() {
+        hiddenNodes.add(3L);
+
+        LinkGraph graph = linkService.findGraph(2L, emptySet(), LinkGraph.Direction.BOTH, 5,
+                                                singletonList("key"), null, null);
+
+        assertThat(graph.getNodes()).extracting(node -> node.get("id")).containsExactly(2L, 4L, 1L);
+        assertThat(graph.getEdges()).extracting(LinkGraph.Edge::getId).containsExactly(13L, 10L);
+        verify(permittedRepository, times(2)).findGraphNodes(anyCollection(), anyList(), eq("XMENTITY.GET_LIST"));
+    }
+
+    @Test
+    public void depthLimitsNumberOfHops() {
+        LinkGraph graph = linkService.findGraph(2L, emptySet(), LinkGraph.Direction.BOTH, 1,
+                                                singletonList("key"), null, null);
+
+        assertThat(graph.getNodes()).extracting(node -> node.get("id")).containsExactly(2L, 3L, 4L, 1L);
+        assertThat(graph.getEdges()).extracting(LinkGraph.Edge::getId).containsExactly(11L, 13L, 10L);
+    }
+
+    @Test
+    public void graphIsTruncatedByLimit() {
+        LinkGraph graph = linkService.findGraph(1L, emptySet(), LinkGraph.Direction.OUTGOING, 5,
+                                                singletonList("key"), 2, null);
+
+        List<Object> nodeIds = graph.getNodes().stream().map(node -> node.get("id")).collect(toList());
+        assertThat(nodeIds).hasSize(2);
+        assertThat(graph.getEdges()).hasSize(1);
+        assertThat(graph.isTruncated()).isTrue();
+    }
+
+    @Test
+    public void depthOverMaxIsRejected() {
+        applicationProperties.getLinkGraph().setMaxDepth(2);
+
+        assertThatThrownBy(() -> linkService.findGraph(1L, emptySet(), LinkGraph.Direction.OUTGOING, 3,
+                                                       singletonList("key"), null, null))
+            .isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    public void unknownFieldIsRejected() {
+        assertThatThrownBy(() -> linkService.findGraph(1L, emptySet(), LinkGraph.Direction.OUTGOING, 1,
+                                                       singletonList("data"), null, null))
+            .isInstanceOf(BusinessException.class);
+    }
+}
@@ -0,0 +1,58 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+public class PermittedTypeSpecViewsUnitTest extends AbstractUnitTest {
+
+    private static final String TENANT = "XM";
+
+    private final PermittedTypeSpecViews views = new PermittedTypeSpecViews();
+    private final AtomicInteger filterCalls = new AtomicInteger();
+    private final UnaryOperator<TypeSpec> filter = spec -> {
+        filterCalls.incrementAndGet();
+        return spec.toBuilder().build();
+    };
+
+    @Test
+    public void testViewIsCachedForSameVersions() {
+        TypeSpec spec = TypeSpec.builder().key("TYPE1").build();
+        TypeSpecIndex index = TypeSpecIndex.of(Map.of(spec.getKey(), spec));
+        Set<String> permissions = Set.of("P1");
+
+        TypeSpec first = views.getView(TENANT, "ROLE", index, permissions, spec, filter);
+        TypeSpec second = views.getView(TENANT, "ROLE", index, permissions, spec, filter);
+
+        assertThat(second).isSameAs(first);
+        assertThat(filterCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testViewIsRebuiltWhenSpecOrPermissionsChanged() {
+        TypeSpec spec = TypeSpec.builder().key("TYPE1").build();
+        TypeSpecIndex index = TypeSpecIndex.of(Map.of(spec.getKey(), spec));
+        Set<String> permissions = Set.of("P1");
+
+        TypeSpec first = views.getView(TENANT, "ROLE", index, permissions, spec, filter);
+        TypeSpec otherRole = views.getView(TENANT, "OTHER_ROLE", index, permissions, spec, filter);
+        TypeSpec newPermissions = views.getView(TENANT, "ROLE", index, Set.of("P1"), spec, filter);
+        TypeSpec newIndex = views.getView(TENANT, "ROLE", TypeSpecIndex.of(Map.of(spec.getKey(), spec)),
+            permissions, spec, filter);
+        views.evict(TENANT);
+        TypeSpec evicted = views.getView(TENANT, "ROLE", index, permissions, spec, filter);
+
+        assertThat(otherRole).isNotSameAs(first);
+        assertThat(newPermissions).isNotSameAs(first);
+        assertThat(newIndex).isNotSameAs(newPermissions);
+        assertThat(evicted).isNotSameAs(newIndex);
+        assertThat(filterCalls.get()).isEqualTo(5);
+    }
+}
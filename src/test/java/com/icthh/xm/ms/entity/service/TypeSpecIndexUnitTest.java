@@ -0,0 +1,93 @@
+package com.icthh.xm.ms.entity.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.domain.spec.CalendarSpec;
+import com.icthh.xm.ms.entity.domain.spec.EventSpec;
+import com.icthh.xm.ms.entity.domain.spec.FunctionSpec;
+import com.icthh.xm.ms.entity.domain.spec.StateSpec;
+import com.icthh.xm.ms.entity.domain.spec.TypeSpec;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class TypeSpecIndexUnitTest extends AbstractUnitTest {
+
+    private TypeSpecIndex index;
+
+    @Before
+    public void init() {
+        Map<String, TypeSpec> types = new LinkedHashMap<>();
+        types.put("TYPE1", typeSpec("TYPE1", true, "F1"));
+        types.put("TYPE1.SUB1", typeSpec("TYPE1.SUB1", false, "F2"));
+        types.put("TYPE1.SUB1.SUB2", typeSpec("TYPE1.SUB1.SUB2", false, "F1"));
+        types.put("TYPE1-OTHER", typeSpec("TYPE1-OTHER", false));
+        types.put("TYPE2", typeSpec("TYPE2", false));
+        index = TypeSpecIndex.of(types);
+    }
+
+    @Test
+    public void testFindNonAbstractTypesByPrefix() {
+        assertThat(keys(index.findNonAbstractTypesByPrefix("TYPE1"))).containsExactly("TYPE1.SUB1", "TYPE1.SUB1.SUB2");
+        assertThat(keys(index.findNonAbstractTypesByPrefix("TYPE1.SUB1"))).containsExactly("TYPE1.SUB1", "TYPE1.SUB1.SUB2");
+        assertThat(keys(index.findNonAbstractTypesByPrefix("TYPE2"))).containsExactly("TYPE2");
+        assertThat(index.findNonAbstractTypesByPrefix("TYPE1.SUB")).isEmpty();
+        assertThat(index.findNonAbstractTypesByPrefix("TYPE1-")).isEmpty();
+    }
+
+    @Test
+    public void testFindState() {
+        assertThat(index.findState("TYPE2", "STATE1").map(StateSpec::getKey)).contains("STATE1");
+        assertThat(index.findState("TYPE2", "UNKNOWN")).isEmpty();
+        assertThat(index.findState("UNKNOWN", "STATE1")).isEmpty();
+    }
+
+    @Test
+    public void testFindFunctionReturnsFirstDeclared() {
+        FunctionSpec function = index.findFunction("F1").orElseThrow();
+        assertThat(function).isSameAs(index.getTypes().get("TYPE1").getFunctions().get(0));
+        assertThat(index.findFunction("F3")).isEmpty();
+    }
+
+    @Test
+    public void testFindEvents() {
+        assertThat(index.findEvents("TYPE2_EVENT")).hasSize(1);
+        assertThat(index.findEvents("UNKNOWN")).isEmpty();
+    }
+
+    @Test
+    public void testPrefixes() {
+        assertThat(TypeSpecIndex.prefixes("A.B.C")).containsExactly("A", "A.B", "A.B.C");
+        assertThat(TypeSpecIndex.prefixes("A")).containsExactly("A");
+    }
+
+    private static List<String> keys(List<TypeSpec> types) {
+        return types.stream().map(TypeSpec::getKey).collect(Collectors.toList());
+    }
+
+    private static TypeSpec typeSpec(String key, boolean isAbstract, String... functionKeys) {
+        StateSpec state = new StateSpec().key("STATE1");
+        EventSpec event = new EventSpec();
+        event.setKey(key + "_EVENT");
+        CalendarSpec calendar = new CalendarSpec();
+        calendar.setKey("CALENDAR");
+        calendar.setEvents(List.of(event));
+        List<FunctionSpec> functions = List.of(functionKeys).stream().map(functionKey -> {
+            FunctionSpec functionSpec = new FunctionSpec();
+            functionSpec.setKey(functionKey);
+            return functionSpec;
+        }).collect(Collectors.toList());
+        return TypeSpec.builder()
+            .key(key)
+            .isAbstract(isAbstract)
+            .states(List.of(state))
+            .calendars(List.of(calendar))
+            .functions(functions)
+            .build();
+    }
+}
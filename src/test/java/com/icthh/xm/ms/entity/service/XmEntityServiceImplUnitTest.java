@@ -7,6 +7,7 @@ import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -30,6 +31,7 @@ import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
 import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
 import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
 import com.icthh.xm.ms.entity.service.impl.XmEntityServiceImpl;
+import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -132,6 +134,69 @@ public class XmEntityServiceImplUnitTest extends AbstractUnitTest {
         assertTrue(uniqueFields.contains(new UniqueField(null, "$.simpleObject.uniqueSubField", "value1", TEST_TYPE_KEY, xmEntity)));
     }
 
+    @Test
+    public void setUniqFieldInJsonFormat() {
+        when(typeKeyWithExtends.doInheritance(TEST_TYPE_KEY)).thenReturn(false);
+        when(startUpdateDateGenerationStrategy.preProcessStartUpdateDates(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Optional.of(new XmEntity()));
+
+        TypeSpec typeSpec = new TypeSpec();
+        typeSpec.setUniqueFields(new HashSet<>(asList(new UniqueFieldSpec("$.uniqueDecimalField"),
+            new UniqueFieldSpec("$.uniqueDoubleField"))));
+        when(xmEntitySpecService.getTypeSpecByKey(TEST_TYPE_KEY)).thenReturn(Optional.of(typeSpec));
+
+        XmEntity any = any();
+        when(xmEntityRepository.save(any)).then(args -> args.getArguments()[0]);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("uniqueDecimalField", new BigDecimal("1.50"));
+        data.put("uniqueDoubleField", 2.0);
+
+        XmEntity xmEntity = new XmEntity().typeKey(TEST_TYPE_KEY).data(data);
+
+        xmEntityService.save(xmEntity);
+
+        ArgumentCaptor<XmEntity> argument = ArgumentCaptor.forClass(XmEntity.class);
+        verify(xmEntityRepository).save(argument.capture());
+        Set<UniqueField> uniqueFields = argument.getValue().getUniqueFields();
+        assertEquals(2, uniqueFields.size());
+        assertTrue(uniqueFields.contains(new UniqueField(null, "$.uniqueDecimalField", "1.5", TEST_TYPE_KEY, xmEntity)));
+        assertTrue(uniqueFields.contains(new UniqueField(null, "$.uniqueDoubleField", "2.0", TEST_TYPE_KEY, xmEntity)));
+    }
+
+    @Test
+    public void keepStoredUniqFieldIfValueIsNotChanged() {
+        XmEntity oldEntity = new XmEntity().typeKey(TEST_TYPE_KEY);
+        UniqueField unchanged = new UniqueField(1L, "$.unchangedField", "value1", TEST_TYPE_KEY, oldEntity);
+        UniqueField changed = new UniqueField(2L, "$.changedField", "value2", TEST_TYPE_KEY, oldEntity);
+        oldEntity.getUniqueFields().addAll(asList(unchanged, changed));
+        when(typeKeyWithExtends.doInheritance(TEST_TYPE_KEY)).thenReturn(false);
+        when(startUpdateDateGenerationStrategy.preProcessStartUpdateDates(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Optional.of(oldEntity));
+
+        TypeSpec typeSpec = new TypeSpec();
+        typeSpec.setUniqueFields(new HashSet<>(asList(new UniqueFieldSpec("$.unchangedField"),
+            new UniqueFieldSpec("$.changedField"))));
+        when(xmEntitySpecService.getTypeSpecByKey(TEST_TYPE_KEY)).thenReturn(Optional.of(typeSpec));
+
+        XmEntity any = any();
+        when(xmEntityRepository.save(any)).then(args -> args.getArguments()[0]);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("unchangedField", "value1");
+        data.put("changedField", "newValue2");
+        XmEntity xmEntity = new XmEntity().typeKey(TEST_TYPE_KEY).data(data);
+
+        xmEntityService.save(xmEntity);
+
+        Set<UniqueField> uniqueFields = xmEntity.getUniqueFields();
+        assertEquals(2, uniqueFields.size());
+        assertTrue(uniqueFields.stream().anyMatch(field -> field == unchanged));
+        assertTrue(uniqueFields.contains(new UniqueField(null, "$.changedField", "newValue2", TEST_TYPE_KEY, xmEntity)));
+        verify(uniqueFieldRepository).delete(changed);
+        verify(uniqueFieldRepository, never()).deleteByXmEntity(any());
+    }
+
     @Test(expected = BusinessException.class)
     public void testFailTransitionIfLastStateAssertChangeState() {
         when(xmEntitySpecService.nextStates("TEST_TYPE_KEY", "CURRENT_STATE")).thenReturn(null);
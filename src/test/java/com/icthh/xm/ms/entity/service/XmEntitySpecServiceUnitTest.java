@@ -185,6 +185,13 @@ public class XmEntitySpecServiceUnitTest extends AbstractUnitTest {
         assertThat(typeSpecByKey).isEmpty();
     }
 
+    @Test
+    public void testTypeSpecByKeyIsCopyOfCachedSpec() {
+        xmEntitySpecService.getTypeSpecByKey(KEY1).orElseThrow().setKey("CHANGED");
+
+        assertEquals(KEY1, xmEntitySpecService.getTypeSpecByKey(KEY1).orElseThrow().getKey());
+    }
+
     @Test
     public void testFindSpecByKey() {
         TypeSpec type = xmEntitySpecService.findTypeByKey(KEY1);
@@ -567,6 +574,33 @@ public class XmEntitySpecServiceUnitTest extends AbstractUnitTest {
         verifyNoMoreInteractions(commonConfigRepository);
     }
 
+    @Test
+    public void testUniqueFieldWithSpecialNameUsesBracketNotation() {
+        mockTenant("RESINTTEST");
+        String config = "---\n"
+                        + "types:\n"
+                        + "    - key: TEST_SPECIAL_UNIQUE_FIELD\n"
+                        + "      isApp: false\n"
+                        + "      isAbstract: false\n"
+                        + "      dataSpec: '{\"type\": \"object\", \"properties\": {"
+                        + "\"special name\": {\"type\": \"string\", \"unique\": true}, "
+                        + "\"dotted.name\": {\"type\": \"string\", \"unique\": true}, "
+                        + "\"validName\": {\"type\": \"string\", \"unique\": true}}}'\n";
+        String key = SPEC_FOLDER_URL.replace("{tenantName}", "RESINTTEST") + "/special-unique-field.yml";
+        xmEntitySpecService.onRefresh(key, config);
+
+        Map<String, TypeSpec> typeSpecs = xmEntitySpecService.getTypeSpecs();
+
+        Set<UniqueFieldSpec> uniqueFields = typeSpecs.get("TEST_SPECIAL_UNIQUE_FIELD").getUniqueFields();
+        assertEquals(Set.of(new UniqueFieldSpec("$['special name']"), new UniqueFieldSpec("$['dotted.name']"),
+                            new UniqueFieldSpec("$.validName")), uniqueFields);
+        Map<String, Object> data = Map.of("special name", "1", "dotted.name", "2", "validName", "3");
+        assertEquals(Set.of("1", "2", "3"), uniqueFields.stream()
+            .map(field -> field.getCompiledJsonPath().read(data))
+            .collect(Collectors.toSet()));
+        assertEquals(4, typeSpecs.get("TEST_UNIQ_FIELDS").getUniqueFields().size());
+    }
+
     @Test
     public void testExtendsWithSeparateFiles() {
         mockTenant("RESINTTEST");
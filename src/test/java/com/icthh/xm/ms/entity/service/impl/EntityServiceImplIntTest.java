@@ -8,7 +8,9 @@ import static java.time.Instant.now;
 import static java.util.Arrays.asList;
 import static java.util.UUID.randomUUID;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -31,7 +33,6 @@ import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.ext.IdOrKey;
 import com.icthh.xm.ms.entity.domain.template.TemplateParamsHolder;
 import com.icthh.xm.ms.entity.lep.keyresolver.TypeKeyWithExtends;
-import com.icthh.xm.ms.entity.repository.EventRepository;
 import com.icthh.xm.ms.entity.repository.LinkRepository;
 import com.icthh.xm.ms.entity.repository.SpringXmEntityRepository;
 import com.icthh.xm.ms.entity.repository.UniqueFieldRepository;
@@ -52,6 +53,7 @@ import java.net.URI;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import javax.persistence.EntityManager;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
@@ -84,7 +86,10 @@ public class EntityServiceImplIntTest extends AbstractSpringBootTest {
     private XmEntityRepositoryInternal xmEntityRepository;
 
     @Autowired
-    private EventRepository eventRepository;
+    private EntityManager entityManager;
+
+    @Autowired
+    private XmEntityCascadeDeleter xmEntityCascadeDeleter;
 
     @Autowired
     private SpringXmEntityRepository springXmEntityRepository;
@@ -137,6 +142,9 @@ public class EntityServiceImplIntTest extends AbstractSpringBootTest {
     @Mock
     private XmAuthenticationContext context;
 
+    @Mock
+    private UniqueFieldRepository uniqueFieldRepository;
+
     private Profile self;
 
     private static final String TEST_LINK_KEY = "TEST.LINK";
@@ -182,11 +190,11 @@ public class EntityServiceImplIntTest extends AbstractSpringBootTest {
             startUpdateDateGenerationStrategy,
             authContextHolder,
             objectMapper,
-            mock(UniqueFieldRepository.class),
+            uniqueFieldRepository,
             springXmEntityRepository,
             new TypeKeyWithExtends(tenantConfigService),
             new SimpleTemplateProcessor(objectMapper),
-            eventRepository
+            xmEntityCascadeDeleter
         );
         xmEntityService.setSelf(xmEntityService);
 
@@ -456,6 +464,26 @@ public class EntityServiceImplIntTest extends AbstractSpringBootTest {
 
 
 
+    @Test
+    @Transactional
+    public void testSaveAll() {
+        XmEntity loaded = xmEntityRepository.save(createEntity(null, TARGET_TYPE_KEY));
+        XmEntity existing = xmEntityRepository.save(createEntity(null, TARGET_TYPE_KEY));
+        existing.setName("Updated");
+        XmEntity created = createEntity(null, TARGET_TYPE_KEY);
+
+        List<XmEntity> result = xmEntityService.saveAll(asList(existing, created));
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getId()).isEqualTo(existing.getId());
+        assertThat(result.get(0).getName()).isEqualTo("Updated");
+        assertThat(result.get(1).getId()).isNotNull();
+        assertThat(xmEntityRepository.findById(result.get(1).getId())).isPresent();
+        verify(uniqueFieldRepository, never()).deleteByXmEntity(any());
+        assertThat(entityManager.contains(result.get(1))).isFalse();
+        assertThat(entityManager.contains(loaded)).isTrue();
+    }
+
     @Test(expected = DataIntegrityViolationException.class)
     @Transactional
     public void testUniqueField() {
@@ -3,6 +3,7 @@ package com.icthh.xm.ms.entity.service.impl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Maps;
 import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
 import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService.XmEntityTenantConfig;
 import com.icthh.xm.ms.entity.domain.FunctionContext;
@@ -66,7 +67,7 @@ public class FunctionServiceImplUnitTest extends AbstractUnitTest {
         functionContextService = Mockito.mock(FunctionContextService.class);
         dynamicPermissionCheckService = Mockito.mock(DynamicPermissionCheckService.class);
         xmEntityTenantConfigService = Mockito.mock(XmEntityTenantConfigService.class);
-        jsonValidationService = spy(new JsonValidationService(new ObjectMapper()));
+        jsonValidationService = spy(new JsonValidationService(new ObjectMapper(), new ApplicationProperties()));
         functionService = new FunctionServiceImpl(xmEntitySpecService, xmEntityService,
             functionExecutorService, functionContextService, dynamicPermissionCheckService,
                 jsonValidationService, xmEntityTenantConfigService);
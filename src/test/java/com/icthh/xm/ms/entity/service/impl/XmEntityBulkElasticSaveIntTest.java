@@ -10,13 +10,15 @@ import com.icthh.xm.ms.entity.AbstractSpringBootTest;
 import com.icthh.xm.ms.entity.config.IndexConfiguration;
 import com.icthh.xm.ms.entity.config.MappingConfiguration;
 import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
+import com.icthh.xm.ms.entity.domain.ElasticOutboxEvent;
 import com.icthh.xm.ms.entity.domain.XmEntity;
+import com.icthh.xm.ms.entity.repository.ElasticOutboxEventRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepository;
 import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
+import com.icthh.xm.ms.entity.service.ElasticOutboxDispatcher;
 import com.icthh.xm.ms.entity.service.ElasticsearchIndexService;
 import com.icthh.xm.ms.entity.service.SeparateTransactionExecutor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.mutable.MutableObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -26,17 +28,19 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
 
 import javax.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_AUTH_CONTEXT;
 import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_TENANT_CONTEXT;
 import static java.util.UUID.randomUUID;
-import static org.junit.Assert.assertEquals;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyCollection;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,6 +57,12 @@ public class XmEntityBulkElasticSaveIntTest extends AbstractSpringBootTest {
     private XmEntityServiceImpl xmEntityService;
     @Autowired
     private SeparateTransactionExecutor transactionExecutor;
+    @Autowired
+    private ElasticOutboxDispatcher elasticOutboxDispatcher;
+    @Autowired
+    private ElasticOutboxEventRepository elasticOutboxEventRepository;
+    @Autowired
+    private EntityManager entityManager;
     @Mock
     private XmAuthenticationContextHolder authContextHolder;
     @Mock
@@ -82,18 +92,9 @@ public class XmEntityBulkElasticSaveIntTest extends AbstractSpringBootTest {
     public void testDoInSeparateTransaction() {
         List<XmEntity> savedInside = new ArrayList<>();
         List<XmEntity> savedGlobal = new ArrayList<>();
-        MutableObject<List<XmEntity>> savedActual = new MutableObject<>();
         String inSeparateTransaction = "inSeparateTransaction";
         String inGlobalTransaction = "inGlobalTransaction";
 
-        // argument captor and verify statement capture only object reference, but we need collection value to assert,
-        // than erased by logic before activation finished
-        when(searchRepository.saveAll(anyCollection())).then((Answer<List<XmEntity>>) invocation -> {
-            List<XmEntity> entities = (List<XmEntity>) invocation.getArguments()[0];
-            savedActual.setValue(new ArrayList<>(entities));
-            return entities;
-        });
-
         transactionExecutor.doInSeparateTransaction(() -> {
             savedGlobal.add(xmEntityService.save(new XmEntity().name(inGlobalTransaction).key(randomUUID())
                     .typeKey("TARGET_ENTITY")));
@@ -106,16 +107,55 @@ public class XmEntityBulkElasticSaveIntTest extends AbstractSpringBootTest {
                         .typeKey("TARGET_ENTITY")));
                 return null;
             });
-            // any collection because clean up process clean collection, and test can not verify collection content
-            verify(searchRepository).saveAll(anyCollection());
-            assertEquals(savedInside, savedActual.getValue());
+            // outbox events are written on commit of the transaction which changed entities
+            assertThat(getOutboxEntityIds(savedInside)).containsExactlyElementsOf(getIds(savedInside));
+            assertThat(getOutboxEntityIds(savedGlobal)).isEmpty();
             savedGlobal.add(xmEntityService.save(new XmEntity().name(inGlobalTransaction).key(randomUUID())
                     .typeKey("TARGET_ENTITY")));
             return null;
         });
-        // any collection because clean up process clean collection, and test can not verify collection content
-        verify(searchRepository, times(2)).saveAll(anyCollection());
-        assertEquals(savedGlobal, savedActual.getValue());
+        assertThat(getOutboxEntityIds(savedGlobal)).containsExactlyElementsOf(getIds(savedGlobal));
+        verify(searchRepository, never()).saveAll(anyCollection());
+
+        List<XmEntity> indexed = new ArrayList<>();
+        // argument captor and verify statement capture only object reference
+        when(searchRepository.saveAll(anyCollection())).then((Answer<List<XmEntity>>) invocation -> {
+            List<XmEntity> entities = (List<XmEntity>) invocation.getArguments()[0];
+            indexed.addAll(entities);
+            return entities;
+        });
+
+        elasticOutboxDispatcher.dispatch();
+
+        assertThat(getIds(indexed)).containsAll(getIds(savedInside)).containsAll(getIds(savedGlobal));
+        assertThat(getOutboxEntityIds(savedInside)).isEmpty();
+        assertThat(getOutboxEntityIds(savedGlobal)).isEmpty();
+    }
+
+    @Test
+    public void testOutboxKeepsLastChangeOfEntityInTransaction() {
+        XmEntity saved = transactionExecutor.doInSeparateTransaction(() -> {
+            XmEntity entity = xmEntityService.save(new XmEntity().name("created").key(randomUUID())
+                    .typeKey("TARGET_ENTITY"));
+            entityManager.flush();
+            entity.setName("updated");
+            entityManager.flush();
+            return entity;
+        });
+
+        assertThat(getOutboxEntityIds(List.of(saved))).containsExactly(saved.getId());
+    }
+
+    private List<Long> getOutboxEntityIds(List<XmEntity> entities) {
+        List<Long> ids = getIds(entities);
+        return elasticOutboxEventRepository.findAll(Sort.by("id")).stream()
+                                           .map(ElasticOutboxEvent::getEntityId)
+                                           .filter(ids::contains)
+                                           .collect(Collectors.toList());
+    }
+
+    private static List<Long> getIds(List<XmEntity> entities) {
+        return entities.stream().map(XmEntity::getId).collect(Collectors.toList());
     }
 
 }
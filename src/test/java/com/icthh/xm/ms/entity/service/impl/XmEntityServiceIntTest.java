@@ -294,6 +294,58 @@ public class XmEntityServiceIntTest extends AbstractSpringBootTest {
     }
 
 
+    @Test
+    public void testDeleteLongCascadeChainWithCycle() {
+        List<XmEntity> chain = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            chain.add(xmEntityService.save(new XmEntity().name(" ").key(randomUUID()).typeKey("TEST_LIFECYCLE_LINK_NEW")));
+        }
+        for (int i = 0; i < chain.size(); i++) {
+            XmEntity next = chain.get((i + 1) % chain.size());
+            XmEntity entity = chain.get(i);
+            entity.addTargets(new Link().typeKey("cascadeDeleteSubLinks").target(next));
+            chain.set(i, xmEntityService.save(entity));
+        }
+
+        xmEntityService.delete(chain.get(0).getId());
+
+        chain.forEach(entity -> assertThat(xmEntityRepository.existsById(entity.getId())).isFalse());
+    }
+
+    @Test
+    public void testDeleteCascadeDiamond() {
+        XmEntity root = saveCascadeEntity();
+        XmEntity left = saveCascadeEntity();
+        XmEntity right = saveCascadeEntity();
+        XmEntity bottom = saveCascadeEntity();
+        XmEntity external = saveCascadeEntity();
+        XmEntity kept = saveCascadeEntity();
+        XmEntity keptChild = saveCascadeEntity();
+        linkCascade(root, left, right, kept);
+        linkCascade(left, bottom);
+        linkCascade(right, bottom);
+        linkCascade(external, kept);
+        linkCascade(kept, keptChild);
+
+        xmEntityService.delete(root.getId());
+
+        List.of(root, left, right, bottom)
+            .forEach(entity -> assertThat(xmEntityRepository.existsById(entity.getId())).isFalse());
+        List.of(external, kept, keptChild)
+            .forEach(entity -> assertThat(xmEntityRepository.existsById(entity.getId())).isTrue());
+    }
+
+    private XmEntity saveCascadeEntity() {
+        return xmEntityService.save(new XmEntity().name(" ").key(randomUUID()).typeKey("TEST_LIFECYCLE_LINK_NEW"));
+    }
+
+    private void linkCascade(XmEntity source, XmEntity... targets) {
+        for (XmEntity target : targets) {
+            source.addTargets(new Link().typeKey("cascadeDeleteSubLinks").target(target));
+        }
+        xmEntityService.save(source);
+    }
+
     private <T> Set<T> asSet(T... elements) {
         Set<T> set = new HashSet<>();
         for(T element: elements) {
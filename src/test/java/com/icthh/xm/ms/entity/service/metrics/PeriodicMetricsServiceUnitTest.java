@@ -0,0 +1,75 @@
+package com.icthh.xm.ms.entity.service.metrics;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.codahale.metrics.MetricRegistry;
+import com.icthh.xm.ms.entity.AbstractUnitTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
+import com.icthh.xm.ms.entity.service.metrics.CustomMetricsConfiguration.CustomMetric;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PeriodicMetricsServiceUnitTest extends AbstractUnitTest {
+
+    private CustomMetricsService customMetricsService;
+    private MetricRegistry metricRegistry;
+    private PeriodicMetricsService periodicMetricsService;
+
+    @Before
+    public void before() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setPeriodicMetricPoolSize(1);
+        applicationProperties.getCustomMetrics().setTimeoutSeconds(1);
+
+        customMetricsService = mock(CustomMetricsService.class);
+        metricRegistry = new MetricRegistry();
+        periodicMetricsService = new PeriodicMetricsService(customMetricsService, applicationProperties,
+                                                            metricRegistry);
+    }
+
+    @After
+    public void after() {
+        periodicMetricsService.destroy();
+    }
+
+    @Test
+    public void slowTenantIsInterruptedByTimeoutAndDoesNotBlockOthers() throws Exception {
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            neverReleased.await();
+            return null;
+        }).when(customMetricsService).updateMetric("slow", "SLOW");
+
+        periodicMetricsService.scheduleCustomMetric(singletonList(metric("slow")), "SLOW");
+        periodicMetricsService.scheduleCustomMetric(singletonList(metric("fast")), "FAST");
+
+        verify(customMetricsService, timeout(5000)).updateMetric(eq("fast"), eq("FAST"));
+        assertThat(metricRegistry.meter("custom.metrics.computation.slow.slow.timeouts").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer("custom.metrics.computation.slow.slow.duration").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void metricWithoutPeriodIsComputedInBackground() {
+        CustomMetric metric = new CustomMetric();
+        metric.setName("total");
+
+        periodicMetricsService.scheduleCustomMetric(singletonList(metric), "XM");
+
+        verify(customMetricsService, timeout(5000)).updateMetric(eq("total"), eq("XM"));
+    }
+
+    private static CustomMetric metric(String name) {
+        CustomMetric metric = new CustomMetric();
+        metric.setName(name);
+        metric.setUpdatePeriodSeconds(60);
+        return metric;
+    }
+}
@@ -0,0 +1,69 @@
+package com.icthh.xm.ms.entity.web.filter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.service.XmEntityService;
+import com.icthh.xm.ms.entity.web.rest.XmEntityResource;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.Filter;
+import javax.servlet.ServletResponse;
+import lombok.SneakyThrows;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+public class ContentCachingWrappingFilterIntTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private ContentCachingWrappingFilter contentCachingWrappingFilter;
+
+    private XmEntityService xmEntityService;
+
+    private MockMvc mockMvc;
+
+    private final List<ServletResponse> responses = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        xmEntityService = mock(XmEntityService.class);
+        Filter responseCapturingFilter = (request, response, chain) -> {
+            responses.add(response);
+            chain.doFilter(request, response);
+        };
+        mockMvc = MockMvcBuilders
+            .standaloneSetup(new XmEntityResource(xmEntityService, null, null, null, null, null, null))
+            .addFilters(contentCachingWrappingFilter, responseCapturingFilter)
+            .build();
+    }
+
+    @Test
+    @SneakyThrows
+    public void searchStreamIsNotCached() {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(1);
+            outputStream.write("{\"id\":1}\n{\"id\":2}\n".getBytes(UTF_8));
+            return null;
+        }).when(xmEntityService).searchToStream(eq("typeKey:ACCOUNT"), any(OutputStream.class));
+
+        mockMvc.perform(get("/api/_search/xm-entities/stream").param("query", "typeKey:ACCOUNT"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+
+        assertThat(responses).hasSize(1);
+        assertThat(responses.get(0)).isNotInstanceOf(ContentCachingResponseWrapper.class);
+    }
+}
@@ -0,0 +1,281 @@
+package com.icthh.xm.ms.entity.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.icthh.xm.commons.i18n.error.web.ExceptionTranslator;
+import com.icthh.xm.commons.tenant.TenantContextHolder;
+import com.icthh.xm.commons.tenant.TenantContextUtils;
+import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.domain.Attachment;
+import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.repository.AttachmentRepository;
+import com.icthh.xm.ms.entity.repository.ContentRepository;
+import com.icthh.xm.ms.entity.service.AttachmentContentService;
+import com.icthh.xm.ms.entity.service.ContentService;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.transaction.BeforeTransaction;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+/**
+ * Test class for the AttachmentContentResource REST controller.
+ *
+ * @see AttachmentContentResource
+ */
+@WithMockUser(authorities = {"SUPER-ADMIN"})
+public class AttachmentContentResourceIntTest extends AbstractSpringBootTest {
+
+    private static final byte[] VALUE = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private AttachmentContentService attachmentContentService;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private TenantContextHolder tenantContextHolder;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restMockMvc;
+
+    private Attachment attachment;
+
+    @BeforeTransaction
+    public void beforeTransaction() {
+        TenantContextUtils.setTenant(tenantContextHolder, "RESINTTEST");
+    }
+
+    @Before
+    public void setup() {
+        AttachmentContentResource resource = new AttachmentContentResource(attachmentContentService);
+        this.restMockMvc = MockMvcBuilders.standaloneSetup(resource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void tearDown() {
+        tenantContextHolder.getPrivilegedContext().destroyCurrentContext();
+    }
+
+    @Test
+    @Transactional
+    public void uploadAndDownloadContent() throws Exception {
+        createAttachment();
+        String checksum = DigestUtils.sha256Hex(VALUE);
+
+        restMockMvc.perform(multipart("/api/attachments/{id}/content", attachment.getId())
+                                .file(new MockMultipartFile("file", "file.txt", "text/plain", VALUE)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.contentChecksum").value(checksum))
+            .andExpect(jsonPath("$.valueContentSize").value(VALUE.length));
+        em.flush();
+        em.clear();
+
+        Attachment saved = attachmentRepository.findById(attachment.getId()).get();
+        assertThat(saved.getValueContentType()).isEqualTo("text/plain");
+        assertThat(saved.getContent().getValue()).isEqualTo(VALUE);
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + checksum + "\""))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, VALUE.length))
+            .andExpect(content().contentType("text/plain"))
+            .andExpect(content().bytes(VALUE));
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId())
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"" + checksum + "\""))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    public void downloadContentRange() throws Exception {
+        createAttachment();
+        attachmentContentService.updateContent(attachment.getId(), new ByteArrayResource(VALUE),
+                                               VALUE.length, null);
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId())
+                                .header(HttpHeaders.RANGE, "bytes=5-9"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-9/" + VALUE.length))
+            .andExpect(content().contentType("application/octet-stream"))
+            .andExpect(content().bytes(Arrays.copyOfRange(VALUE, 5, 10)));
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId())
+                                .header(HttpHeaders.RANGE, "bytes=-3"))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().bytes(Arrays.copyOfRange(VALUE, VALUE.length - 3, VALUE.length)));
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId())
+                                .header(HttpHeaders.RANGE, "bytes=100-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + VALUE.length));
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId())
+                                .header(HttpHeaders.RANGE, "bytes=5-9")
+                                .header(HttpHeaders.IF_RANGE, "\"outdated\""))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(VALUE));
+    }
+
+    @Test
+    @Transactional
+    public void downloadMissingContent() throws Exception {
+        createAttachment();
+
+        restMockMvc.perform(get("/api/attachments/{id}/content", attachment.getId()))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void shareContentOfTheSameValue() throws Exception {
+        Attachment first = createAttachment();
+        Attachment second = createAttachment();
+
+        attachmentContentService.updateContent(first.getId(), new ByteArrayResource(VALUE), VALUE.length, null);
+        attachmentContentService.updateContent(second.getId(), new ByteArrayResource(VALUE), VALUE.length, null);
+        em.flush();
+        em.clear();
+
+        Long contentId = attachmentRepository.findContentIdById(first.getId());
+        assertThat(attachmentRepository.findContentIdById(second.getId())).isEqualTo(contentId);
+        Content content = contentRepository.findById(contentId).get();
+        assertThat(content.getChecksum()).isEqualTo(DigestUtils.sha256Hex(VALUE));
+    }
+
+    @Test
+    @Transactional
+    public void linkContentByChecksum() throws Exception {
+        Attachment first = createAttachment();
+        Attachment second = createAttachment();
+        attachmentContentService.updateContent(first.getId(), new ByteArrayResource(VALUE), VALUE.length, null);
+        String checksum = DigestUtils.sha256Hex(VALUE);
+
+        restMockMvc.perform(put("/api/attachments/{id}/content/{checksum}", second.getId(), checksum))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.contentChecksum").value(checksum))
+            .andExpect(jsonPath("$.valueContentSize").value(VALUE.length));
+        em.flush();
+        em.clear();
+
+        assertThat(attachmentRepository.findContentIdById(second.getId()))
+            .isEqualTo(attachmentRepository.findContentIdById(first.getId()));
+
+        restMockMvc.perform(put("/api/attachments/{id}/content/{checksum}", second.getId(),
+                                DigestUtils.sha256Hex("unknown")))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void linkContentOnlyOfReadableAttachment() throws Exception {
+        createAttachment();
+        String checksum = DigestUtils.sha256Hex(VALUE);
+        Long contentId = contentService.store(checksum, VALUE).getId();
+        em.flush();
+
+        restMockMvc.perform(put("/api/attachments/{id}/content/{checksum}", attachment.getId(), checksum))
+            .andExpect(status().isNotFound());
+        em.flush();
+        em.clear();
+
+        assertThat(attachmentRepository.findContentIdById(attachment.getId())).isNull();
+        assertThat(contentRepository.existsById(contentId)).isTrue();
+    }
+
+    @Test
+    @Transactional
+    public void collectReplacedContent() throws Exception {
+        createAttachment();
+        attachmentContentService.updateContent(attachment.getId(), new ByteArrayResource(VALUE), VALUE.length, null);
+        em.flush();
+        Long replacedId = attachmentRepository.findContentIdById(attachment.getId());
+
+        byte[] value = "replaced".getBytes(StandardCharsets.UTF_8);
+        attachmentContentService.updateContent(attachment.getId(), new ByteArrayResource(value), value.length, null);
+        em.flush();
+        em.clear();
+
+        Instant acquiredBefore = Instant.now().plusSeconds(1);
+        List<Long> unreferenced = contentRepository.findUnreferencedIds(acquiredBefore, PageRequest.of(0, 100));
+        assertThat(unreferenced).contains(replacedId)
+                                .doesNotContain(attachmentRepository.findContentIdById(attachment.getId()));
+        assertThat(contentRepository.deleteUnreferenced(unreferenced, acquiredBefore))
+            .isEqualTo(unreferenced.size());
+        assertThat(contentRepository.existsById(replacedId)).isFalse();
+    }
+
+    @Test
+    @Transactional
+    public void collectContentSavedWithAttachment() {
+        createAttachment();
+        attachment.setContent(new Content().value(VALUE));
+        em.flush();
+        Long replacedId = attachmentRepository.findContentIdById(attachment.getId());
+
+        attachment.setContent(new Content().value("replaced".getBytes(StandardCharsets.UTF_8)));
+        em.flush();
+        Long contentId = attachmentRepository.findContentIdById(attachment.getId());
+        em.clear();
+
+        assertThat(contentRepository.findUnreferencedIds(Instant.now().minusSeconds(60), PageRequest.of(0, 100)))
+            .doesNotContain(replacedId);
+
+        Instant acquiredBefore = Instant.now().plusSeconds(1);
+        List<Long> unreferenced = contentRepository.findUnreferencedIds(acquiredBefore, PageRequest.of(0, 100));
+        assertThat(unreferenced).contains(replacedId).doesNotContain(contentId);
+        assertThat(contentRepository.deleteUnreferenced(unreferenced, acquiredBefore))
+            .isEqualTo(unreferenced.size());
+        assertThat(contentRepository.existsById(replacedId)).isFalse();
+        assertThat(contentRepository.existsById(contentId)).isTrue();
+    }
+
+    private Attachment createAttachment() {
+        attachment = AttachmentResourceIntTest.createEntity(em, AttachmentResourceIntTest.DEFAULT_TYPE_KEY);
+        em.persist(attachment);
+        em.flush();
+        return attachment;
+    }
+}
@@ -27,6 +27,7 @@ import com.icthh.xm.ms.entity.repository.AttachmentRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepository;
 import com.icthh.xm.ms.entity.repository.search.PermittedSearchRepository;
 import com.icthh.xm.ms.entity.service.AttachmentService;
+import com.icthh.xm.ms.entity.service.ContentService;
 import com.icthh.xm.ms.entity.service.XmEntitySpecService;
 import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
 import org.junit.After;
@@ -114,6 +115,9 @@ public class AttachmentResourceIntTest extends AbstractSpringBootTest {
     @Autowired
     private XmEntitySpecService xmEntitySpecService;
 
+    @Autowired
+    private ContentService contentService;
+
     @Autowired
     private EntityManager em;
 
@@ -157,7 +161,8 @@ public class AttachmentResourceIntTest extends AbstractSpringBootTest {
                                                   permittedSearchRepository,
                                                   startUpdateDateGenerationStrategy,
                                                   xmEntityRepository,
-                                                  xmEntitySpecService);
+                                                  xmEntitySpecService,
+                                                  contentService);
 
         AttachmentResource attachmentResourceMock = new AttachmentResource(attachmentService, attachmentResource);
         this.restAttachmentMockMvc = MockMvcBuilders.standaloneSetup(attachmentResourceMock)
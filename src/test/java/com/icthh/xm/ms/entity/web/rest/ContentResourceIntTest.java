@@ -15,14 +15,18 @@ import com.icthh.xm.commons.i18n.error.web.ExceptionTranslator;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
 import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.domain.Attachment;
 import com.icthh.xm.ms.entity.domain.Content;
+import com.icthh.xm.ms.entity.repository.AttachmentRepository;
 import com.icthh.xm.ms.entity.repository.ContentRepository;
 import com.icthh.xm.ms.entity.service.ContentService;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -33,6 +37,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Base64Utils;
 
+import java.time.Instant;
 import java.util.List;
 import javax.persistence.EntityManager;
 
@@ -75,6 +80,9 @@ public class ContentResourceIntTest extends AbstractSpringBootTest {
     @Autowired
     private ContentService contentService;
 
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
     @BeforeTransaction
     public void beforeTransaction() {
         TenantContextUtils.setTenant(tenantContextHolder, "RESINTTEST");
@@ -276,6 +284,66 @@ public class ContentResourceIntTest extends AbstractSpringBootTest {
         assertThat(contentList).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    @Transactional
+    public void createdContentIsNotCollected() throws Exception {
+        restContentMockMvc.perform(post("/api/contents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(content)))
+            .andExpect(status().isCreated());
+        List<Content> contentList = contentRepository.findAll();
+        Long contentId = contentList.get(contentList.size() - 1).getId();
+
+        assertThat(contentRepository.findUnreferencedIds(Instant.now().plusSeconds(60), PageRequest.of(0, 1000)))
+            .doesNotContain(contentId);
+    }
+
+    @Test
+    @Transactional
+    public void updateSharedContentIsRejected() throws Exception {
+        Content shared = contentService.store(DigestUtils.sha256Hex(DEFAULT_VALUE), DEFAULT_VALUE);
+        saveAttachment(shared);
+        saveAttachment(shared);
+
+        restContentMockMvc.perform(put("/api/contents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(updatedContent(shared.getId()))))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void updateAttachmentContentUpdatesChecksum() throws Exception {
+        Content stored = contentService.store(DigestUtils.sha256Hex(DEFAULT_VALUE), DEFAULT_VALUE);
+        Attachment attachment = saveAttachment(stored);
+
+        restContentMockMvc.perform(put("/api/contents")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(updatedContent(stored.getId()))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.checksum").value(DigestUtils.sha256Hex(UPDATED_VALUE)));
+        em.flush();
+        em.clear();
+
+        Attachment updated = attachmentRepository.findById(attachment.getId()).orElseThrow(NullPointerException::new);
+        assertThat(updated.getContentChecksum()).isEqualTo(DigestUtils.sha256Hex(UPDATED_VALUE));
+        assertThat(updated.getValueContentSize()).isEqualTo((long) UPDATED_VALUE.length);
+    }
+
+    private static Content updatedContent(Long id) {
+        Content content = new Content().value(UPDATED_VALUE);
+        content.setId(id);
+        return content;
+    }
+
+    private Attachment saveAttachment(Content content) {
+        Attachment attachment = AttachmentResourceIntTest.createEntity(em, AttachmentResourceIntTest.DEFAULT_TYPE_KEY)
+                                                         .content(content);
+        em.persist(attachment);
+        em.flush();
+        return attachment;
+    }
+
     @Test
     @Transactional
     public void equalsVerifier() throws Exception {
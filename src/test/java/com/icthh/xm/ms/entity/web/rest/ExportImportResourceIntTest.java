@@ -11,6 +11,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 
 import com.icthh.xm.commons.i18n.error.web.ExceptionTranslator;
+import com.icthh.xm.commons.lep.XmLepScriptConfigServerResourceLoader;
 import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
@@ -165,6 +166,8 @@ public class ExportImportResourceIntTest extends AbstractSpringBootTest {
     private VoteRepository voteRepository;
     @Autowired
     private ContentRepository contentRepository;
+    @Autowired
+    private XmLepScriptConfigServerResourceLoader lepLoader;
     private MockMvc restExportImportMockMvc;
 
 
@@ -217,6 +220,23 @@ public class ExportImportResourceIntTest extends AbstractSpringBootTest {
         assertThat(actual.getEntities().contains(testExportEntity31)).isEqualTo(true);
     }
 
+    @SneakyThrows
+    @Test
+    @Transactional
+    public void testExportEntitiesWithLep() {
+        String lepPath = "/config/tenants/RESINTTEST/entity/lep/service/exportImport/exportEntities$$around.groovy";
+        lepLoader.onRefresh(lepPath, "return '{\"entities\": []}'.getBytes()");
+        try {
+            createEntity(TEST_EXPORT_1, TEST_EXPORT_1 + "_1");
+
+            ImportDto actual = sendExportRequest("importexport/exportEntities.json");
+
+            assertThat(actual.getEntities()).isEmpty();
+        } finally {
+            lepLoader.onRefresh(lepPath, null);
+        }
+    }
+
     @SneakyThrows
     @Test
     @Transactional
@@ -315,6 +335,46 @@ public class ExportImportResourceIntTest extends AbstractSpringBootTest {
         assertAttachment(testExportAttachment1, actual);
     }
 
+    @SneakyThrows
+    @Test
+    @Transactional
+    public void testExportImportSharedContent() {
+        XmEntity testExportEntity11 = createEntity(TEST_EXPORT_1, TEST_EXPORT_1 + "_1");
+        Content testExportContent1 = new Content().value(TEST_EXPORT_ATTACHMENT_1.getBytes());
+        Content testExportContent2 = new Content().value(TEST_EXPORT_ATTACHMENT_1.getBytes());
+        Attachment testExportAttachment1 = attachmentService.save(createAttachment(TEST_EXPORT_ATTACHMENT_1,
+            testExportContent1, testExportEntity11));
+        Attachment testExportAttachment2 = attachmentService.save(createAttachment(TEST_EXPORT_ATTACHMENT_2,
+            testExportContent2, testExportEntity11));
+        assertThat(testExportAttachment1.getContent().getId()).isEqualTo(testExportAttachment2.getContent().getId());
+
+        byte[] exported = restExportImportMockMvc.perform(post("/api/export/xm-entities")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(getExportImportDto("importexport/exportAttachments.json")))
+                .andReturn().getResponse().getContentAsByteArray();
+        ImportDto actual = convertJsonBytesToObject(exported, ImportDto.class);
+
+        assertThat(actual.getEntities().size()).isEqualTo(1);
+        assertThat(actual.getAttachments().size()).isEqualTo(2);
+        assertThat(actual.getContents().size()).isEqualTo(1);
+
+        entityRepositoryInternal.deleteAll();
+        attachmentRepository.deleteAll();
+        contentRepository.deleteAll();
+
+        restExportImportMockMvc.perform(post("/api/import/xm-entities")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(exported));
+
+        assertThat(entityRepositoryInternal.count()).isEqualTo(1);
+        assertThat(attachmentRepository.count()).isEqualTo(2);
+        assertThat(contentRepository.count()).isEqualTo(1);
+        assertThat(attachmentRepository.findAll().stream().map(Attachment::getName).collect(toSet()))
+            .containsExactlyInAnyOrder(TEST_EXPORT_ATTACHMENT_1, TEST_EXPORT_ATTACHMENT_2);
+        assertThat(new String(contentRepository.findAll().get(0).getValue()))
+            .isEqualTo(TEST_EXPORT_ATTACHMENT_1);
+    }
+
     @SneakyThrows
     @Test
     @Transactional
@@ -501,6 +561,29 @@ public class ExportImportResourceIntTest extends AbstractSpringBootTest {
         assertThat(contentRepository.count()).isEqualTo(1);
     }
 
+    @SneakyThrows
+    @Test
+    @Transactional
+    public void testImportDataWithLep() {
+        String lepPath = "/config/tenants/RESINTTEST/entity/lep/service/exportImport/importEntities$$around.groovy";
+        lepLoader.onRefresh(lepPath, "def importDto = lepContext.inArgs.importDto\n"
+                                     + "importDto.entities.removeIf { it.typeKey != 'TEST_EXPORT_1' }\n"
+                                     + "lepContext.lep.proceed(lepContext.lep.getMethodArgValues())");
+        try {
+            entityRepositoryInternal.deleteAll();
+            linkRepository.deleteAll();
+
+            restExportImportMockMvc.perform(post("/api/import/xm-entities")
+                    .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                    .content(getExportImportDto("importexport/importWithWrongLink.json")));
+
+            assertThat(entityRepositoryInternal.findAll()).extracting(XmEntity::getTypeKey)
+                .containsOnly(TEST_EXPORT_1);
+        } finally {
+            lepLoader.onRefresh(lepPath, null);
+        }
+    }
+
     @SneakyThrows
     @Test
     @Transactional
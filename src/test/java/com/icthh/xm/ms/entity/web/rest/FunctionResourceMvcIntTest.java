@@ -4,18 +4,29 @@ import static com.google.common.collect.ImmutableMap.of;
 import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.icthh.xm.commons.i18n.error.web.ExceptionTranslator;
 import com.icthh.xm.commons.i18n.spring.service.LocalizationMessageService;
 import com.icthh.xm.ms.entity.AbstractWebMvcTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.domain.FunctionContext;
+import com.icthh.xm.ms.entity.domain.FunctionJobRecord;
+import com.icthh.xm.ms.entity.service.FunctionJobService;
 import com.icthh.xm.ms.entity.service.FunctionService;
+import com.icthh.xm.ms.entity.service.dto.FunctionJob;
+import com.icthh.xm.ms.entity.web.filter.ContentCachingWrappingFilter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Before;
@@ -23,8 +34,10 @@ import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -44,6 +57,9 @@ public class FunctionResourceMvcIntTest extends AbstractWebMvcTest {
     @MockBean
     private LocalizationMessageService localizationMessageService;
 
+    @MockBean
+    private FunctionJobService functionJobService;
+
     @Before
     public void setup() {
         // Setup MockMVC to use our Spring Configuration
@@ -106,4 +122,54 @@ public class FunctionResourceMvcIntTest extends AbstractWebMvcTest {
         assertArrayEquals(new byte[]{101, 102, 103, 104, 42}, response);
     }
 
+    @Test
+    @SneakyThrows
+    public void testCallFunctionAsync() {
+        when(functionJobService.submit("SOME-FUNCTION_KEY.TROLOLO", of("var1", "val1")))
+            .thenReturn(FunctionJob.builder().id("job-1").functionKey("SOME-FUNCTION_KEY.TROLOLO")
+                                   .state(FunctionJob.State.QUEUED).build());
+        mockMvc.perform(post("/api/functions/SOME-FUNCTION_KEY.TROLOLO/async")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content("{\"var1\":\"val1\"}"))
+            .andDo(print())
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Location", "/api/functions/jobs/job-1"))
+            .andExpect(jsonPath("$.state").value("QUEUED"));
+        verify(functionService, never()).execute(any(), any());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testGetFunctionJob() {
+        when(functionJobService.findJob("job-1"))
+            .thenReturn(Optional.of(FunctionJob.builder().id("job-1").state(FunctionJob.State.COMPLETED).build()));
+        mockMvc.perform(get("/api/functions/jobs/job-1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.state").value("COMPLETED"));
+        mockMvc.perform(get("/api/functions/jobs/job-2"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testGetFunctionJobResultThroughContentCachingFilter() {
+        FunctionJobRecord job = new FunctionJobRecord();
+        job.setResultContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        job.setResult("{\"data\":{\"test\":\"result\"}}".getBytes(StandardCharsets.UTF_8));
+        when(functionJobService.findResult("job-1")).thenReturn(Optional.of(job));
+        ApplicationProperties ignoringProperties = new ApplicationProperties();
+        ignoringProperties.setRequestCacheIgnoredPathPatternList(List.of("/api/functions/jobs/*/result"));
+
+        for (ApplicationProperties properties : List.of(new ApplicationProperties(), ignoringProperties)) {
+            MockMvc filteredMockMvc = MockMvcBuilders.webAppContextSetup(this.wac)
+                .addFilters(new ContentCachingWrappingFilter(properties)).build();
+            MvcResult result = filteredMockMvc.perform(get("/api/functions/jobs/job-1/result"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            filteredMockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.test").value("result"));
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ import com.icthh.xm.commons.i18n.error.web.ExceptionTranslator;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
 import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.domain.Link;
 import com.icthh.xm.ms.entity.repository.LinkPermittedRepository;
 import com.icthh.xm.ms.entity.repository.LinkRepository;
@@ -69,6 +70,9 @@ public class LinkResourceExtendedIntTest extends AbstractSpringBootTest {
     @Autowired
     private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private ExceptionTranslator exceptionTranslator;
 
@@ -128,7 +132,8 @@ public class LinkResourceExtendedIntTest extends AbstractSpringBootTest {
             permittedSearchRepository,
             startUpdateDateGenerationStrategy,
             xmEntityRepository,
-            dynamicPermissionCheckService);
+            dynamicPermissionCheckService,
+            applicationProperties);
 
         LinkResource linkResourceMock = new LinkResource(linkService, linkResource);
         this.restLinkMockMvc = MockMvcBuilders.standaloneSetup(linkResourceMock)
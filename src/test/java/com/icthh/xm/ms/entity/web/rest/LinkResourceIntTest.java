@@ -23,6 +23,7 @@ import com.icthh.xm.commons.security.XmAuthenticationContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextHolder;
 import com.icthh.xm.commons.tenant.TenantContextUtils;
 import com.icthh.xm.ms.entity.AbstractSpringBootTest;
+import com.icthh.xm.ms.entity.config.ApplicationProperties;
 import com.icthh.xm.ms.entity.domain.Link;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.repository.LinkPermittedRepository;
@@ -94,6 +95,9 @@ public class LinkResourceIntTest extends AbstractSpringBootTest {
     @Autowired
     private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private ExceptionTranslator exceptionTranslator;
 
@@ -145,7 +149,8 @@ public class LinkResourceIntTest extends AbstractSpringBootTest {
                                       permittedSearchRepository,
                                       startUpdateDateGenerationStrategy,
                                       xmEntityRepository,
-                                      dynamicPermissionCheckService);
+                                      dynamicPermissionCheckService,
+                                      applicationProperties);
 
         LinkResource linkResourceMock = new LinkResource(linkService, linkResource);
         this.restLinkMockMvc = MockMvcBuilders.standaloneSetup(linkResourceMock)
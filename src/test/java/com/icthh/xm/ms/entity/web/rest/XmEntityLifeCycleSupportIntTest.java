@@ -57,7 +57,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.ReflectionUtils;
-import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 @Slf4j
 @WithMockUser(authorities = {"SUPER-ADMIN"})
@@ -97,7 +97,7 @@ public class XmEntityLifeCycleSupportIntTest extends AbstractSpringBootTest {
     private MockMvc restXmEntityMockMvc;
 
     @Autowired
-    private Validator validator;
+    private LocalValidatorFactoryBean validator;
 
     @Autowired
     private TenantService tenantService;
@@ -135,6 +135,7 @@ public class XmEntityLifeCycleSupportIntTest extends AbstractSpringBootTest {
             profileEventProducer,
             functionService,
             tenantService,
+            validator,
             resourceMock
         );
         this.restXmEntityMockMvc = MockMvcBuilders.standaloneSetup(xmEntityResourceMock)
@@ -65,7 +65,6 @@ import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.ext.IdOrKey;
 import com.icthh.xm.ms.entity.domain.serializer.XmSquigglyInterceptor;
 import com.icthh.xm.ms.entity.lep.keyresolver.TypeKeyWithExtends;
-import com.icthh.xm.ms.entity.repository.EventRepository;
 import com.icthh.xm.ms.entity.repository.SpringXmEntityRepository;
 import com.icthh.xm.ms.entity.repository.UniqueFieldRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityPermittedRepository;
@@ -75,6 +74,7 @@ import com.icthh.xm.ms.entity.repository.search.XmEntityPermittedSearchRepositor
 import com.icthh.xm.ms.entity.repository.search.XmEntitySearchRepository;
 import com.icthh.xm.ms.entity.service.AttachmentService;
 import com.icthh.xm.ms.entity.service.CalendarService;
+import com.icthh.xm.ms.entity.service.ElasticOutboxDispatcher;
 import com.icthh.xm.ms.entity.service.EventService;
 import com.icthh.xm.ms.entity.service.FunctionService;
 import com.icthh.xm.ms.entity.service.LifecycleLepStrategyFactory;
@@ -88,6 +88,7 @@ import com.icthh.xm.ms.entity.service.XmEntityService;
 import com.icthh.xm.ms.entity.service.XmEntitySpecService;
 import com.icthh.xm.ms.entity.service.XmEntityTemplatesSpecService;
 import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
+import com.icthh.xm.ms.entity.service.impl.XmEntityCascadeDeleter;
 import com.icthh.xm.ms.entity.service.impl.XmEntityServiceImpl;
 import com.jayway.jsonpath.JsonPath;
 import java.io.IOException;
@@ -122,7 +123,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 /**
  * Extension Test class for the XmEntityResource REST controller. Contains additional test apart from Jhipster generated
@@ -213,7 +214,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
     private XmEntityRepositoryInternal xmEntityRepository;
 
     @Autowired
-    private EventRepository eventRepository;
+    private XmEntityCascadeDeleter xmEntityCascadeDeleter;
 
     @Autowired
     private SpringXmEntityRepository springXmEntityRepository;
@@ -250,11 +251,14 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private ElasticOutboxDispatcher elasticOutboxDispatcher;
+
     @Autowired
     private LepManager lepManager;
 
     @Autowired
-    private Validator validator;
+    private LocalValidatorFactoryBean validator;
 
     @Autowired
     private TenantContextHolder tenantContextHolder;
@@ -360,7 +364,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
                                                                       springXmEntityRepository,
                                                                       new TypeKeyWithExtends(tenantConfigService),
                                                                       new SimpleTemplateProcessor(objectMapper),
-                                                                      eventRepository);
+                                                                      xmEntityCascadeDeleter);
 
         xmEntityService.setSelf(xmEntityService);
         this.xmEntityService = xmEntityService;
@@ -377,6 +381,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
                                                                      profileEventProducer,
                                                                      functionService,
                                                                      tenantService,
+                                                                     validator,
                                                                      xmEntityResource
         );
         this.restXmEntityMockMvc = MockMvcBuilders.standaloneSetup(
@@ -625,6 +630,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
             return resultXmEntity;
         });
 
+        elasticOutboxDispatcher.dispatch();
         xmEntitySearchRepository.refresh();
 
         // Validate the XmEntity in Elasticsearch
@@ -693,6 +699,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
             return testXmEntity;
         });
 
+        elasticOutboxDispatcher.dispatch();
         xmEntitySearchRepository.refresh();
 
         // Validate the XmEntity in Elasticsearch
@@ -764,6 +771,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
             return resultXmEntity;
         });
 
+        elasticOutboxDispatcher.dispatch();
         xmEntitySearchRepository.refresh();
         // Validate the XmEntity in Elasticsearch
         XmEntity xmEntityEs = xmEntitySearchRepository.findById(valueOf(testXmEntity.getId().toString()))
@@ -1048,6 +1056,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
             return resultXmEntity;
         });
 
+        elasticOutboxDispatcher.dispatch();
         xmEntitySearchRepository.refresh();
         // Validate the XmEntity in Elasticsearch
         XmEntity xmEntityEs = xmEntitySearchRepository.findById(testXmEntity.getId())
@@ -1962,6 +1971,7 @@ public class XmEntityResourceExtendedIntTest extends AbstractSpringBootTest {
 
         Integer id = JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.id");
 
+        elasticOutboxDispatcher.dispatch();
         xmEntitySearchRepository.refresh();
         // Validate the XmEntity in Elasticsearch
         XmEntity xmEntityEs = xmEntitySearchRepository.findById(valueOf(id.toString()))
@@ -4,6 +4,7 @@ import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_AUTH_CO
 import static com.icthh.xm.commons.lep.XmLepConstants.THREAD_CONTEXT_KEY_TENANT_CONTEXT;
 import static com.icthh.xm.commons.tenant.TenantContextUtils.getRequiredTenantKeyValue;
 import static com.icthh.xm.ms.entity.config.TenantConfigMockConfiguration.getXmEntityTemplatesSpec;
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.everyItem;
@@ -43,7 +44,6 @@ import com.icthh.xm.ms.entity.config.XmEntityTenantConfigService;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.domain.spec.StateSpec;
 import com.icthh.xm.ms.entity.lep.keyresolver.TypeKeyWithExtends;
-import com.icthh.xm.ms.entity.repository.EventRepository;
 import com.icthh.xm.ms.entity.repository.SpringXmEntityRepository;
 import com.icthh.xm.ms.entity.repository.UniqueFieldRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityPermittedRepository;
@@ -62,6 +62,7 @@ import com.icthh.xm.ms.entity.service.TenantService;
 import com.icthh.xm.ms.entity.service.XmEntitySpecService;
 import com.icthh.xm.ms.entity.service.XmEntityTemplatesSpecService;
 import com.icthh.xm.ms.entity.service.impl.StartUpdateDateGenerationStrategy;
+import com.icthh.xm.ms.entity.service.impl.XmEntityCascadeDeleter;
 import com.icthh.xm.ms.entity.service.impl.XmEntityServiceImpl;
 import java.net.URI;
 import java.time.Instant;
@@ -91,7 +92,7 @@ import org.springframework.test.context.transaction.BeforeTransaction;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 /**
  * Test class for the XmEntityResource REST controller.
@@ -149,7 +150,7 @@ public class XmEntityResourceIntTest extends AbstractSpringBootTest {
     private XmEntityRepositoryInternal xmEntityRepository;
 
     @Autowired
-    private EventRepository eventRepository;
+    private XmEntityCascadeDeleter xmEntityCascadeDeleter;
 
     @Autowired
     private SpringXmEntityRepository springXmEntityRepository;
@@ -230,7 +231,7 @@ public class XmEntityResourceIntTest extends AbstractSpringBootTest {
     private XmEntity xmEntity;
 
     @Autowired
-    private Validator validator;
+    private LocalValidatorFactoryBean validator;
 
     @Autowired
     private TenantService tenantService;
@@ -285,7 +286,7 @@ public class XmEntityResourceIntTest extends AbstractSpringBootTest {
                                                       springXmEntityRepository,
                                                       new TypeKeyWithExtends(tenantConfigService),
                                                       new SimpleTemplateProcessor(objectMapper),
-                                                      eventRepository);
+                                                      xmEntityCascadeDeleter);
         xmEntityServiceImpl.setSelf(xmEntityServiceImpl);
 
         this.xmEntityServiceImpl = xmEntityServiceImpl;
@@ -301,6 +302,7 @@ public class XmEntityResourceIntTest extends AbstractSpringBootTest {
             profileEventProducer,
             functionService,
             tenantService,
+            validator,
             resourceMock
         );
         this.restXmEntityMockMvc = MockMvcBuilders.standaloneSetup(xmEntityResourceMock)
@@ -476,6 +478,25 @@ public class XmEntityResourceIntTest extends AbstractSpringBootTest {
         assertThat(xmEntityList).hasSize(databaseSizeBeforeTest);
     }
 
+    @Test
+    @Transactional
+    public void checkTypeKeyIsRequiredInBulk() throws Exception {
+        int databaseSizeBeforeTest = xmEntityRepository.findAll().size();
+        XmEntity invalid = createEntity();
+        invalid.setTypeKey(null);
+
+        restXmEntityMockMvc.perform(post("/api/xm-entities/bulk")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(asList(xmEntity, invalid))))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.error").value("error.validation"))
+            .andExpect(jsonPath("$.error_description").value(containsString("xmEntities[1].typeKey")))
+        ;
+
+        List<XmEntity> xmEntityList = xmEntityRepository.findAll();
+        assertThat(xmEntityList).hasSize(databaseSizeBeforeTest);
+    }
+
     @Test
     @Transactional
     public void checkNameIsRequired() throws Exception {
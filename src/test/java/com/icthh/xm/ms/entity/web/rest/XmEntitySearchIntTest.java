@@ -27,6 +27,7 @@ import com.icthh.xm.ms.entity.AbstractSpringBootTest;
 import com.icthh.xm.ms.entity.domain.XmEntity;
 import com.icthh.xm.ms.entity.repository.XmEntityRepository;
 import com.icthh.xm.ms.entity.repository.XmEntityRepositoryInternal;
+import com.icthh.xm.ms.entity.service.ElasticOutboxDispatcher;
 import com.icthh.xm.ms.entity.service.SeparateTransactionExecutor;
 import com.icthh.xm.ms.entity.service.impl.XmEntityServiceImpl;
 import lombok.SneakyThrows;
@@ -107,6 +108,9 @@ public class XmEntitySearchIntTest extends AbstractSpringBootTest {
     @Autowired
     private SeparateTransactionExecutor transactionExecutor;
 
+    @Autowired
+    private ElasticOutboxDispatcher elasticOutboxDispatcher;
+
     @Autowired
     private XmEntityRepositoryInternal repository;
 
@@ -131,7 +135,7 @@ public class XmEntitySearchIntTest extends AbstractSpringBootTest {
         });
 
 
-        this.restXmEntityMockMvc = MockMvcBuilders.standaloneSetup(new XmEntityResource(xmEntityService, null, null, null, null, null))
+        this.restXmEntityMockMvc = MockMvcBuilders.standaloneSetup(new XmEntityResource(xmEntityService, null, null, null, null, null, null))
             .setValidator(validator).setControllerAdvice(exceptionTranslator).setCustomArgumentResolvers(pageableArgumentResolver).build();
 
     }
@@ -238,6 +242,7 @@ public class XmEntitySearchIntTest extends AbstractSpringBootTest {
         XmEntity account = createEntity("ACCOUNT", KEY2, null);
         xmEntityRepository.save(account);
         assertEquals(databaseSizeBeforeCreate + 1, xmEntityRepository.findAll().size());
+        elasticOutboxDispatcher.dispatch();
 
         //partial match
         List<XmEntity> partialMatchResult = searchEntityByKey(KEY1);
@@ -260,6 +265,7 @@ public class XmEntitySearchIntTest extends AbstractSpringBootTest {
         XmEntity account = createEntity("ACCOUNT", KEY2, STATE_KEY2);
         xmEntityRepository.save(account);
         assertEquals(databaseSizeBeforeCreate + 1, xmEntityRepository.findAll().size());
+        elasticOutboxDispatcher.dispatch();
 
         //partial match
         List<XmEntity> partialMatchResult = searchEntityByStateKey(STATE_KEY1);
@@ -10,6 +10,9 @@ import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,6 +46,17 @@ public class EntityToCsvConverterUnitTest extends AbstractUnitTest {
         Assert.assertThat(media.length, Matchers.greaterThan(1));
     }
 
+    @Test
+    public void writeRowsToCsvStream() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        EntityToCsvConverterUtils.writeCsv(List.of(new HumanTestModel("Foo", 1), new HumanTestModel("Bar", 2))
+                                               .iterator(), HumanTestModel.class, outputStream);
+
+        String csv = outputStream.toString(StandardCharsets.UTF_8);
+        Assert.assertThat(csv.split("\n").length, Matchers.is(3));
+        Assert.assertThat(csv, Matchers.allOf(Matchers.containsString("Foo"), Matchers.containsString("Bar")));
+    }
+
     @Getter
     @AllArgsConstructor
     class HumanTestModel {
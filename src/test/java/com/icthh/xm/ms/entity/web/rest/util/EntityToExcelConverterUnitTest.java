@@ -6,12 +6,17 @@ import com.icthh.xm.ms.entity.domain.XmEntity;
 
 import com.icthh.xm.ms.entity.domain.converter.EntityToExcelConverterUtils;
 import org.hamcrest.Matchers;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.modelmapper.ModelMapper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.time.Instant;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -44,6 +49,23 @@ public class EntityToExcelConverterUnitTest extends AbstractUnitTest {
         Assert.assertThat(media.length, Matchers.greaterThan(1));
     }
 
+    @Test
+    public void writeEntitiesToExcelStream() throws Exception {
+        ModelMapper modelMapper = new ModelMapper();
+        Iterator<SimpleExportXmEntityDto> entities = IntStream.range(0, 1000)
+            .mapToObj(i -> modelMapper.map(buildXmEntity(), SimpleExportXmEntityDto.class))
+            .iterator();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        EntityToExcelConverterUtils.writeExcel(entities, "defaultSheetName", outputStream);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("defaultSheetName");
+            Assert.assertThat(sheet.getLastRowNum(), Matchers.is(1000));
+            Assert.assertThat(sheet.getRow(1000).getCell(1).getStringCellValue(), Matchers.is(DEFAULT_STRING_VALUE));
+        }
+    }
+
     @Test
     public void convertEmptyEntitiesToExcel() throws Exception {
         byte[] media = EntityToExcelConverterUtils.toExcel(null, null);